@@ -29,6 +29,10 @@ class EventCollectorConfig {
     String serviceComment = 'Collects system events'
     String jmxName = 'org.rioproject.eventcollector:type=Event Collector'
 
+    /* Retain at most 50000 events, for at most 7 days */
+    int maxEvents = 50000
+    long maxEventAge = 7*24*60*60*1000L
+
     String[] getInitialLookupGroups() {
         def groups = [System.getProperty(Constants.GROUPS_PROPERTY_NAME,
                                          System.getProperty('user.name'))]
@@ -20,6 +20,7 @@
 import org.rioproject.config.Component
 import org.rioproject.watch.ThresholdValues
 import org.rioproject.system.measurable.memory.pool.MemoryPool
+import org.rioproject.system.measurable.gc.GarbageCollectionMeasure
 import net.jini.config.Configuration
 import java.lang.management.MemoryPoolMXBean
 import java.lang.management.ManagementFactory
@@ -156,6 +157,63 @@ class MeasurableSystemMemory extends BasicMeasurable {
 @Component('org.rioproject.system.measurable.disk')
 class MeasurableDiskSpace extends BasicMeasurable {    }
 
+/*
+ * The garbage collection measures to create measurable capabilities for. Each
+ * measure is configured using its own component below.
+ */
+@Component('org.rioproject.system.measurable.gc')
+class GarbageCollectionMeasures {
+    GarbageCollectionMeasure[] getMeasures() {
+        return [GarbageCollectionMeasure.OVERHEAD,
+                GarbageCollectionMeasure.PAUSE_P99,
+                GarbageCollectionMeasure.ALLOCATION_RATE] as GarbageCollectionMeasure[]
+    }
+}
+
+/*
+ * Configuration for the GC overhead measurable capability, the fraction of
+ * time the JVM spends in garbage collection.
+ */
+@Component('org.rioproject.system.measurable.gc.overhead')
+class MeasurableGCOverhead extends BasicMeasurable {
+    /*
+     * Spending more than 10% of the time in garbage collection is a breach
+     */
+    @Override
+    ThresholdValues getThresholdValues() {
+        return new ThresholdValues(0.0, 0.10);
+    }
+}
+
+/*
+ * Configuration for the 99th percentile GC pause measurable capability,
+ * in milliseconds.
+ */
+@Component('org.rioproject.system.measurable.gc.pause99')
+class MeasurableGCPause extends BasicMeasurable {
+    /* Compute percentiles over the last 100 samples */
+    int getPauseHistorySize() {
+        return 100
+    }
+
+    @Override
+    ThresholdValues getThresholdValues() {
+        return new ThresholdValues(0.0, 1000.0);
+    }
+}
+
+/*
+ * Configuration for the allocation rate measurable capability, in bytes per
+ * second. There is no upper bound by default.
+ */
+@Component('org.rioproject.system.measurable.gc.allocationRate')
+class MeasurableAllocationRate extends BasicMeasurable {
+    @Override
+    ThresholdValues getThresholdValues() {
+        return new ThresholdValues(0.0, Double.MAX_VALUE);
+    }
+}
+
 @Component('org.rioproject.system.memory.pool')
 class MemoryPools extends BasicMeasurable {
     MemoryPool[] getMemoryPools(Configuration config) {
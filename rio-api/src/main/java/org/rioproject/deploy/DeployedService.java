@@ -28,6 +28,7 @@ public class DeployedService implements Serializable {
     private ServiceElement serviceElement;
     private ServiceBeanInstance serviceBeanInstance;
     private ComputeResourceUtilization computeResourceUtilization;
+    private String elementDigest;
 
     public DeployedService(ServiceElement serviceElement,
                            ServiceBeanInstance serviceBeanInstance,
@@ -49,6 +50,22 @@ public class DeployedService implements Serializable {
         return computeResourceUtilization;
     }
 
+    /**
+     * Get the digest of the ServiceElement the ServiceBeanInstantiator has
+     * cached
+     *
+     * @return The element digest from the {@link ServiceProvisionEvent}, if
+     * the ServiceBeanInstantiator has cached the ServiceElement using the
+     * digest, otherwise null
+     */
+    public String getElementDigest() {
+        return elementDigest;
+    }
+
+    public void setElementDigest(String elementDigest) {
+        this.elementDigest = elementDigest;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -0,0 +1,86 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.deploy;
+
+import net.jini.core.event.UnknownEventException;
+
+import java.io.Serializable;
+
+/**
+ * The result of instantiating one {@link ServiceProvisionEvent} of a batch,
+ * see {@link ServiceBeanInstantiator#instantiate(ServiceProvisionEvent[])}.
+ * Holds either the {@link DeployedService}, or the exception the
+ * instantiation failed with.
+ */
+public class InstantiationResult implements Serializable {
+    static final long serialVersionUID = 1L;
+    private final DeployedService deployedService;
+    private final Exception exception;
+
+    /**
+     * Create an InstantiationResult for a completed instantiation
+     *
+     * @param deployedService The deployed service, may be null if the
+     * ServiceBeanInstantiator did not instantiate the service
+     */
+    public InstantiationResult(final DeployedService deployedService) {
+        this.deployedService = deployedService;
+        this.exception = null;
+    }
+
+    /**
+     * Create an InstantiationResult for a failed instantiation
+     *
+     * @param exception The exception the instantiation failed with, must not
+     * be null
+     */
+    public InstantiationResult(final ServiceBeanInstantiationException exception) {
+        if(exception==null)
+            throw new IllegalArgumentException("exception is null");
+        this.deployedService = null;
+        this.exception = exception;
+    }
+
+    /**
+     * Create an InstantiationResult for an event that was not recognized
+     *
+     * @param exception The UnknownEventException, must not be null
+     */
+    public InstantiationResult(final UnknownEventException exception) {
+        if(exception==null)
+            throw new IllegalArgumentException("exception is null");
+        this.deployedService = null;
+        this.exception = exception;
+    }
+
+    /**
+     * Get the deployed service, or throw the exception the instantiation
+     * failed with
+     *
+     * @return The deployed service, or null if the ServiceBeanInstantiator did
+     * not instantiate the service
+     *
+     * @throws ServiceBeanInstantiationException if the instantiation failed
+     * @throws UnknownEventException if the event was not recognized
+     */
+    public DeployedService getDeployedService() throws ServiceBeanInstantiationException, UnknownEventException {
+        if(exception instanceof ServiceBeanInstantiationException)
+            throw (ServiceBeanInstantiationException)exception;
+        if(exception instanceof UnknownEventException)
+            throw (UnknownEventException)exception;
+        return deployedService;
+    }
+}
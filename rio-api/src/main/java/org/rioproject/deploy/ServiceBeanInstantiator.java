@@ -54,6 +54,21 @@ public interface ServiceBeanInstantiator {
     DeployedService instantiate(ServiceProvisionEvent event)
     throws ServiceBeanInstantiationException, UnknownEventException, RemoteException;
 
+    /**
+     * Instantiate the services of several {@link ServiceProvisionEvent}s in
+     * one invocation. Each event is processed as if it had been provided to
+     * {@link #instantiate(ServiceProvisionEvent)}, and the failure of one
+     * event does not affect the others.
+     *
+     * @param events The ServiceProvisionEvents, must not be null
+     *
+     * @return An InstantiationResult for each event, in the order of the
+     * events
+     *
+     * @throws RemoteException if communication errors occur
+     */
+    InstantiationResult[] instantiate(ServiceProvisionEvent[] events) throws RemoteException;
+
     /**
      * Invoked to update instantiated ServiceBean instances of changes in 
      * their {@link org.rioproject.opstring.ServiceElement} objects and
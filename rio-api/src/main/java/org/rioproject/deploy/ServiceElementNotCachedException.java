@@ -0,0 +1,44 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.deploy;
+
+/**
+ * Thrown by a {@link ServiceBeanInstantiator} when a
+ * {@link ServiceProvisionEvent} identifies its ServiceElement by a digest,
+ * and the ServiceBeanInstantiator does not have the ServiceElement for the
+ * digest. The event should be sent again with the ServiceElement.
+ */
+public class ServiceElementNotCachedException extends ServiceBeanInstantiationException {
+    static final long serialVersionUID = 1L;
+    private final String elementDigest;
+
+    /**
+     * Constructs a {@code ServiceElementNotCachedException}
+     *
+     * @param elementDigest The element digest that was not found
+     */
+    public ServiceElementNotCachedException(final String elementDigest) {
+        super("No ServiceElement for digest "+elementDigest);
+        this.elementDigest = elementDigest;
+    }
+
+    /**
+     * @return The element digest that was not found
+     */
+    public String getElementDigest() {
+        return elementDigest;
+    }
+}
@@ -21,6 +21,8 @@ import org.rioproject.opstring.ServiceElement;
 
 import java.io.Serializable;
 import java.rmi.MarshalledObject;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  * This event class is sent by a {@link ProvisionManager}
@@ -28,6 +30,14 @@ import java.rmi.MarshalledObject;
  * this event must attempt to instantiate the service described by the
  * {@link org.rioproject.opstring.ServiceElement} object.
  *
+ * <p>If the event has an element digest, the recipient may cache the
+ * ServiceElement using the digest as the key. Subsequent events for instances
+ * of the same service may then be sent with the digest and the instance's
+ * parameters only, without the ServiceElement. A recipient that does not have
+ * the ServiceElement for the digest throws a
+ * {@link ServiceElementNotCachedException}, and the event is sent again with
+ * the ServiceElement.
+ *
  * @author Dennis Reedy
  */
 public class ServiceProvisionEvent extends RemoteEvent implements Serializable {
@@ -38,6 +48,14 @@ public class ServiceProvisionEvent extends RemoteEvent implements Serializable {
     private ServiceElement svcElement;
     /** The OperationalStringManager */
     private OperationalStringManager opStringManager;    
+    /** The digest of the ServiceElement, without its instance parameters */
+    private String elementDigest;
+    /** The ServiceBeanConfig parameters specific to the service instance */
+    private Map<String, Object> instanceParameters;
+    /** The actual number of service instances, not part of the digest */
+    private int actual;
+    /** The PlatformCapability components to provision, not part of the digest */
+    private Collection<SystemComponent> provisionableCapabilities;
 
     /**
      * Create a ServiceProvisionEvent
@@ -100,6 +118,86 @@ public class ServiceProvisionEvent extends RemoteEvent implements Serializable {
         return (opStringManager);
     }
 
+    /**
+     * Set the digest identifying the ServiceElement
+     *
+     * @param elementDigest The digest of the ServiceElement, computed without
+     * its instance parameters. May be null.
+     */
+    public void setElementDigest(String elementDigest) {
+        this.elementDigest = elementDigest;
+    }
+
+    /**
+     * Get the digest identifying the ServiceElement
+     *
+     * @return The digest of the ServiceElement, or null if the ServiceElement
+     * is not identified by a digest
+     */
+    public String getElementDigest() {
+        return elementDigest;
+    }
+
+    /**
+     * Set the parameters specific to the service instance
+     *
+     * @param instanceParameters The ServiceBeanConfig configuration parameters
+     * that are not part of the element digest
+     */
+    public void setInstanceParameters(Map<String, Object> instanceParameters) {
+        this.instanceParameters = instanceParameters;
+    }
+
+    /**
+     * Get the parameters specific to the service instance
+     *
+     * @return The ServiceBeanConfig configuration parameters that are not part
+     * of the element digest, or null if not set
+     */
+    public Map<String, Object> getInstanceParameters() {
+        return instanceParameters;
+    }
+
+    /**
+     * Set the actual number of service instances, sent with the instance
+     * parameters when the ServiceElement is identified by a digest
+     *
+     * @param actual The actual number of service instances
+     */
+    public void setActual(int actual) {
+        this.actual = actual;
+    }
+
+    /**
+     * Get the actual number of service instances
+     *
+     * @return The actual number of service instances, or 0 if not set
+     */
+    public int getActual() {
+        return actual;
+    }
+
+    /**
+     * Set the PlatformCapability components to provision for the service
+     * instance, sent with the instance parameters when the ServiceElement is
+     * identified by a digest
+     *
+     * @param provisionableCapabilities The SystemComponents that need to be
+     * provisioned. May be null.
+     */
+    public void setProvisionablePlatformCapabilities(Collection<SystemComponent> provisionableCapabilities) {
+        this.provisionableCapabilities = provisionableCapabilities;
+    }
+
+    /**
+     * Get the PlatformCapability components to provision for the service instance
+     *
+     * @return The SystemComponents that need to be provisioned, or null if not set
+     */
+    public Collection<SystemComponent> getProvisionablePlatformCapabilities() {
+        return provisionableCapabilities;
+    }
+
     /**
      * Set the sequence number
      * 
@@ -18,6 +18,8 @@ package org.rioproject.deploy;
 import net.jini.id.Uuid;
 import org.rioproject.opstring.ServiceElement;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
 
@@ -229,4 +231,15 @@ public class ServiceStatement implements Serializable {
         }
         return (list.toArray(new ServiceRecord[list.size()]));
     }
+
+    /*
+     * Write the ServiceStatement holding the lock that guards the
+     * ServiceRecords, so that a ServiceStatement being changed by another
+     * thread is written as a consistent snapshot
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        synchronized(serviceRecords) {
+            out.defaultWriteObject();
+        }
+    }
 }
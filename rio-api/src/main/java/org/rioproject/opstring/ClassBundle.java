@@ -19,7 +19,6 @@ import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -49,6 +48,11 @@ public class ClassBundle implements Serializable {
      * An artifact ID.
      */
     private String artifact;
+    /**
+     * The identity of the ClassBundle, created when first needed and discarded
+     * when the className, artifact or JAR names change
+     */
+    private transient volatile ClassBundleKey key;
 
     /**
      * Create a new ClassBundle
@@ -132,6 +136,7 @@ public class ClassBundle implements Serializable {
      */
     public void setClassName(final String className) {
         this.className = className;
+        resetKey();
     }
 
     /**
@@ -159,6 +164,7 @@ public class ClassBundle implements Serializable {
      */
     public void setArtifact(final String artifact) {
         this.artifact = artifact;
+        resetKey();
     }
 
     /**
@@ -168,6 +174,7 @@ public class ClassBundle implements Serializable {
      */
     public void setJARs(final String... jars) {
         jarNames.clear();
+        resetKey();
         addJARs(jars);
     }
 
@@ -191,8 +198,10 @@ public class ClassBundle implements Serializable {
     public void addJAR(final String jar) {
         if(jar == null)
             throw new IllegalArgumentException("jar cannot be null");
-        if(!jarNames.contains(jar))
+        if(!jarNames.contains(jar)) {
             jarNames.add(jar);
+            resetKey();
+        }
     }
 
     /**
@@ -220,18 +229,33 @@ public class ClassBundle implements Serializable {
         return (urlsFromJARs(getJARNames()));
     }
 
+    /**
+     * Get the identity of the ClassBundle. The key is created once, and
+     * reused until the className, artifact or JAR names change.
+     *
+     * @return The ClassBundleKey for the current attributes
+     */
+    ClassBundleKey getKey() {
+        ClassBundleKey k = key;
+        if(k==null) {
+            synchronized(this) {
+                if(key==null)
+                    key = new ClassBundleKey(className, artifact, getJARNames());
+                k = key;
+            }
+        }
+        return k;
+    }
+
+    private synchronized void resetKey() {
+        key = null;
+    }
+
     /**
      * Override hashCode
      */
     public int hashCode() {
-        int hc = 17;
-        hc = 37*hc+(className!=null?className.hashCode():0);
-        if(!getJARList().isEmpty()) {
-            hc = 37*hc+getJARList().hashCode();
-        } else {
-            hc = 37*hc+(artifact!=null?artifact.hashCode():0);
-        }
-        return(hc);
+        return getKey().getBundleHash();
     }
 
     /**
@@ -243,16 +267,7 @@ public class ClassBundle implements Serializable {
         if(!(obj instanceof ClassBundle))
             return(false);
         ClassBundle that = (ClassBundle)obj;
-        if(this.className!=null && that.className!=null) {
-            if(this.className.equals(that.className)) {
-                if(this.artifact!=null && that.artifact!=null) {
-                    return this.artifact.equals(that.artifact);
-                } else {
-                    return this.getJARList().equals(that.getJARList());
-                }
-            }
-        }
-        return(false);
+        return this.getKey().equals(that.getKey());
     }
 
     /*
@@ -266,16 +281,6 @@ public class ClassBundle implements Serializable {
         return (urls);
     }
 
-    /*
-     * Return an ArrayList of JAR names
-     */
-    private ArrayList<String> getJARList() {
-        ArrayList<String> list = new ArrayList<String>();
-        String[] jars = getJARNames();
-        list.addAll(Arrays.asList(jars));
-        return(list);
-    }
-
     @Override
     public String toString() {
         StringBuilder buffer = new StringBuilder();
@@ -0,0 +1,76 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.opstring;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable snapshot of the attributes that identify a {@link ClassBundle}:
+ * the className, the artifact and the JAR names. Two keys are equal using the
+ * same rules as {@link ClassBundle#equals(Object)}, without copying the JAR
+ * names on each comparison.
+ *
+ * <p>The hash code of a key is the hash code of the className, since bundles
+ * with different JAR names are equal when their artifacts are equal.
+ */
+final class ClassBundleKey {
+    private final String className;
+    private final String artifact;
+    private final List<String> jarNames;
+    private final int bundleHash;
+
+    ClassBundleKey(final String className, final String artifact, final String[] jarNames) {
+        this.className = className;
+        this.artifact = artifact;
+        this.jarNames = Collections.unmodifiableList(Arrays.asList(jarNames));
+        int hc = 17;
+        hc = 37*hc+(className!=null?className.hashCode():0);
+        if(!this.jarNames.isEmpty()) {
+            hc = 37*hc+this.jarNames.hashCode();
+        } else {
+            hc = 37*hc+(artifact!=null?artifact.hashCode():0);
+        }
+        bundleHash = hc;
+    }
+
+    /**
+     * @return The value returned by {@link ClassBundle#hashCode()}
+     */
+    int getBundleHash() {
+        return bundleHash;
+    }
+
+    @Override
+    public int hashCode() {
+        return className==null?0:className.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if(this == obj)
+            return true;
+        if(!(obj instanceof ClassBundleKey))
+            return false;
+        ClassBundleKey that = (ClassBundleKey)obj;
+        if(this.className==null || that.className==null || !this.className.equals(that.className))
+            return false;
+        if(this.artifact!=null && that.artifact!=null)
+            return this.artifact.equals(that.artifact);
+        return this.jarNames.equals(that.jarNames);
+    }
+}
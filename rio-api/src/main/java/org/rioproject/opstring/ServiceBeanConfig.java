@@ -18,7 +18,7 @@ package org.rioproject.opstring;
 import net.jini.core.discovery.LookupLocator;
 import org.rioproject.log.LoggerConfig;
 
-import java.io.Serializable;
+import java.io.*;
 import java.util.*;
 
 /**
@@ -26,20 +26,41 @@ import java.util.*;
  * attributes may also be updated (groups, locators and initialization
  * properties) and used for subsequent ServiceBean initializations
  *
+ * <p>A ServiceBeanConfig created for a service instance from a template (see
+ * {@link #ServiceBeanConfig(ServiceBeanConfig, long)}) shares the template's
+ * parameters and holds only the instance ID as an override. Shared parameters
+ * are copied the first time either ServiceBeanConfig modifies them, and are
+ * merged when the ServiceBeanConfig is serialized.
+ *
  * @author Dennis Reedy
  */
 public class ServiceBeanConfig implements Serializable {
     @SuppressWarnings("unused")
     static final long serialVersionUID = 1L;
     /** Initialization Properties for the ServiceBean */
-    private final Map<String, Object> initParameters = new HashMap<String, Object>();
-    /** Configuration parameters in the form of name,value pairs */
-    private final Map<String, Object> configParms = new HashMap<String, Object>();
+    private Map<String, Object> initParameters = new HashMap<String, Object>();
+    /** Configuration parameters in the form of name,value pairs. If created
+     * from a template, the parameters that override the template's */
+    private Map<String, Object> configParms = new HashMap<String, Object>();
     /** A collection on {@code LoggerConfigs}*/
-    private final Collection<LoggerConfig> loggerConfigs = new ArrayList<LoggerConfig>();
+    private Collection<LoggerConfig> loggerConfigs = new ArrayList<LoggerConfig>();
     /** The configArgs property used to create the Configuration object for the
      * ServiceBean */
     private String[] configArgs;
+    /** The configuration parameters of the template this ServiceBeanConfig was
+     * created from, never modified */
+    private transient Map<String, Object> templateParms;
+    /** Whether the initParameters, configParms and loggerConfigs are referenced
+     * by another ServiceBeanConfig, and must be copied before being modified */
+    private transient volatile boolean shared;
+    /** The serialized form, a ServiceBeanConfig created from a template is
+     * serialized with the template's parameters merged into configParms */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("initParameters", Map.class),
+        new ObjectStreamField("configParms", Map.class),
+        new ObjectStreamField("loggerConfigs", Collection.class),
+        new ObjectStreamField("configArgs", String[].class)
+    };
     /** ServiceBean component field, used to access Configuration entries */
     public static final String COMPONENT = "configComponent";
     /** ServiceBean name field */
@@ -112,6 +133,70 @@ public class ServiceBeanConfig implements Serializable {
         System.arraycopy(configArgs, 0, this.configArgs, 0, this.configArgs.length);
     }
 
+    /**
+     * Create a new ServiceBeanConfig for a service instance. The configuration
+     * parameters, initialization parameters, {@code LoggerConfig}s and
+     * configuration arguments of the template are shared rather than copied,
+     * and the instance ID is set as an override. Changes made to either
+     * ServiceBeanConfig after this one is created are not visible to the other.
+     *
+     * @param template The ServiceBeanConfig to create this one from
+     * @param instanceID The instance ID
+     *
+     * @throws IllegalArgumentException if the template parameter is null
+     */
+    public ServiceBeanConfig(final ServiceBeanConfig template, final long instanceID) {
+        if(template == null)
+            throw new IllegalArgumentException("template is null");
+        synchronized(template) {
+            template.shared = true;
+            if(template.templateParms==null) {
+                templateParms = template.configParms;
+            } else {
+                templateParms = template.templateParms;
+                configParms.putAll(template.configParms);
+            }
+            initParameters = template.initParameters;
+            loggerConfigs = template.loggerConfigs;
+            configArgs = template.configArgs;
+        }
+        shared = true;
+        configParms.put(INSTANCE_ID, instanceID);
+        if(get(HOST_HISTORY)==null)
+            configParms.put(HOST_HISTORY, new ArrayList<String>());
+    }
+
+    /*
+     * Get a configuration parameter, from the overrides if set, otherwise
+     * from the template
+     */
+    private Object get(final String key) {
+        if(templateParms==null || configParms.containsKey(key))
+            return configParms.get(key);
+        return templateParms.get(key);
+    }
+
+    /*
+     * Set a configuration parameter
+     */
+    private void put(final String key, final Object value) {
+        unshare();
+        configParms.put(key, value);
+    }
+
+    /*
+     * Copy the parameters that are referenced by another ServiceBeanConfig,
+     * before they are modified
+     */
+    private synchronized void unshare() {
+        if(!shared)
+            return;
+        initParameters = new HashMap<String, Object>(initParameters);
+        configParms = new HashMap<String, Object>(configParms);
+        loggerConfigs = new ArrayList<LoggerConfig>(loggerConfigs);
+        shared = false;
+    }
+
     /**
      * Set the name for the ServiceBean.
      * 
@@ -119,7 +204,7 @@ public class ServiceBeanConfig implements Serializable {
      */
     public void setName(final String name) {
         if(name!=null)
-            configParms.put(NAME, name);
+            put(NAME, name);
     }
     
     /**
@@ -128,7 +213,7 @@ public class ServiceBeanConfig implements Serializable {
      * @return Name for the ServiceBean
      */
     public String getName() {
-        String name = (String)configParms.get(NAME);
+        String name = (String)get(NAME);
         return ((name==null?"":name));
     }
     
@@ -139,7 +224,7 @@ public class ServiceBeanConfig implements Serializable {
      * returned
      */
     public String getOperationalStringName() {
-        String name = (String)configParms.get(OPSTRING);
+        String name = (String)get(OPSTRING);
         return ((name==null?"":name));
     }
     
@@ -150,7 +235,7 @@ public class ServiceBeanConfig implements Serializable {
      */
     public void setOperationalStringName(final String name) {
         if(name!=null)
-            configParms.put(OPSTRING, name);
+            put(OPSTRING, name);
     }
 
     /**
@@ -159,7 +244,7 @@ public class ServiceBeanConfig implements Serializable {
      * @return Comment for the ServiceBean, may be null 
      */
     public String getComment() {
-        return ((String)configParms.get(COMMENT));
+        return ((String)get(COMMENT));
     }
     
     /**
@@ -169,7 +254,7 @@ public class ServiceBeanConfig implements Serializable {
      * be null
      */    
     public String getOrganization() {
-        return ((String)configParms.get(ORGANIZATION));
+        return ((String)get(ORGANIZATION));
     }
 
     /**
@@ -179,6 +264,7 @@ public class ServiceBeanConfig implements Serializable {
      */
     public void addLoggerConfig(LoggerConfig... loggerConfigs) {
         if(loggerConfigs!=null) {
+            unshare();
             Collections.addAll(this.loggerConfigs, loggerConfigs);
         }
     }
@@ -222,7 +308,7 @@ public class ServiceBeanConfig implements Serializable {
                     g[i] = "public";
             }
         }
-        configParms.put(GROUPS, g);
+        put(GROUPS, g);
     }
 
     /**
@@ -241,7 +327,7 @@ public class ServiceBeanConfig implements Serializable {
      * @return String array of groups
      */
     public String[] getGroups() {
-        String[] groups = (String[])configParms.get(GROUPS);
+        String[] groups = (String[])get(GROUPS);
         if(groups == null || groups.length == 0)
             groups = NO_GROUPS;
         if(groups.length > 0) {
@@ -263,7 +349,7 @@ public class ServiceBeanConfig implements Serializable {
      * @param lookupLocators Array of LookupLocator instances
      */
     public void setLocators(final LookupLocator[] lookupLocators) {
-        configParms.put(LOCATORS, lookupLocators);
+        put(LOCATORS, lookupLocators);
     }
 
     /**
@@ -272,7 +358,7 @@ public class ServiceBeanConfig implements Serializable {
      * @return Array of LookupLocator objects, or null
      */
     public LookupLocator[] getLocators() {
-        return ((LookupLocator[])configParms.get(LOCATORS));
+        return ((LookupLocator[])get(LOCATORS));
     }
 
     /**
@@ -287,16 +373,19 @@ public class ServiceBeanConfig implements Serializable {
     public void addInitParameter(final String name, final Object value) {
         if(name == null)
             throw new IllegalArgumentException("name is null");
+        unshare();
         initParameters.put(name, value);
     }
     
     /**
      * Service controlled initialization parameters.
      * 
-     * @return A Map of Service controlled initialization parameters.
+     * @return A Map of Service controlled initialization parameters. If the
+     * parameters are shared with another ServiceBeanConfig the Map cannot be
+     * modified, use {@link #addInitParameter(String, Object)} instead.
      */
-    public Map<String, Object> getInitParameters() {
-        return (initParameters);
+    public synchronized Map<String, Object> getInitParameters() {
+        return (shared?Collections.unmodifiableMap(initParameters):initParameters);
     }
 
     /**
@@ -307,6 +396,8 @@ public class ServiceBeanConfig implements Serializable {
      */
     public Map<String, Object> getConfigurationParameters() {
         Map<String, Object> map = new HashMap<String, Object>();
+        if(templateParms!=null)
+            map.putAll(templateParms);
         map.putAll(configParms);
         return (map);
     }
@@ -317,8 +408,10 @@ public class ServiceBeanConfig implements Serializable {
      * @param configParms Map of system initialization parameters.
      */
     public void setConfigurationParameters(final Map<String, Object> configParms) {
+        unshare();
         this.configParms.clear();
         this.configParms.putAll(configParms);
+        templateParms = null;
     }
 
     /**
@@ -328,7 +421,7 @@ public class ServiceBeanConfig implements Serializable {
      * @return The instance ID
      */
     public Long getInstanceID() {
-        return((Long)configParms.get(INSTANCE_ID));
+        return((Long)get(INSTANCE_ID));
     }
 
     public void setConfigArgs(String[] configArgs) {
@@ -356,12 +449,12 @@ public class ServiceBeanConfig implements Serializable {
 
     public String toString() {
         StringBuilder buffer = new StringBuilder();
-        buffer.append("configComponent=").append(configParms.get(COMPONENT)).append("\n");
-        buffer.append("serviceName=").append(configParms.get(NAME)).append("\n");
-        buffer.append("organization=" + "").append(configParms.get(ORGANIZATION)).append("\n");
-        buffer.append("serviceComment=").append(configParms.get(COMMENT)).append("\n");
-        buffer.append("opStringName=").append(configParms.get(OPSTRING)).append("\n");
-        String[] groups = (String[])configParms.get(GROUPS);
+        buffer.append("configComponent=").append(get(COMPONENT)).append("\n");
+        buffer.append("serviceName=").append(get(NAME)).append("\n");
+        buffer.append("organization=" + "").append(get(ORGANIZATION)).append("\n");
+        buffer.append("serviceComment=").append(get(COMMENT)).append("\n");
+        buffer.append("opStringName=").append(get(OPSTRING)).append("\n");
+        String[] groups = (String[])get(GROUPS);
         buffer.append("lookupGroups={");
         if(groups==null) {
             buffer.append("null");
@@ -373,7 +466,7 @@ public class ServiceBeanConfig implements Serializable {
             }
         }
         buffer.append("}\n");
-        LookupLocator[] locators = (LookupLocator[])configParms.get(LOCATORS);
+        LookupLocator[] locators = (LookupLocator[])get(LOCATORS);
         buffer.append("lookupLocators={");
         if(locators!=null) {
             for(int i=0; i<locators.length; i++) {
@@ -410,4 +503,28 @@ public class ServiceBeanConfig implements Serializable {
         buffer.append("\n");
         return(buffer.toString());
     }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("initParameters", initParameters);
+        fields.put("configParms", templateParms==null?configParms:getConfigurationParameters());
+        fields.put("loggerConfigs", loggerConfigs);
+        fields.put("configArgs", configArgs);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        initParameters = (Map<String, Object>)fields.get("initParameters", null);
+        configParms = (Map<String, Object>)fields.get("configParms", null);
+        loggerConfigs = (Collection<LoggerConfig>)fields.get("loggerConfigs", null);
+        configArgs = (String[])fields.get("configArgs", null);
+        if(initParameters==null)
+            initParameters = new HashMap<String, Object>();
+        if(configParms==null)
+            configParms = new HashMap<String, Object>();
+        if(loggerConfigs==null)
+            loggerConfigs = new ArrayList<LoggerConfig>();
+    }
 }
@@ -62,7 +62,7 @@ public class ServiceElement implements Serializable {
     private ServiceBeanConfig sbConfig;    
     /** Array of AssociationDescriptor instances, describing associations the 
      * ServiceElement has to other services */
-    private final List<AssociationDescriptor> associations = new ArrayList<AssociationDescriptor>();
+    private List<AssociationDescriptor> associations = new ArrayList<AssociationDescriptor>();
     /** The ClassBundle for the ServiceBean */
     private ClassBundle componentBundle;
     /** Array of ClassBundles containing the export codebase */
@@ -112,11 +112,17 @@ public class ServiceElement implements Serializable {
     /** ExecDescriptor, providing attributes for an external service to execute */
     private ExecDescriptor execDescriptor;
     /** Collection of artifacts to download for the service */
-    private final List<StagedData> stagedData = new ArrayList<StagedData>();
+    private List<StagedData> stagedData = new ArrayList<StagedData>();
     /** Whether the service executes in it's own JVM */
     private boolean fork = false;
-    private final List<RemoteRepository> remoteRepositories = new ArrayList<RemoteRepository>();
-    private final List<RuleMap> ruleMaps = new ArrayList<RuleMap>();
+    private List<RemoteRepository> remoteRepositories = new ArrayList<RemoteRepository>();
+    private List<RuleMap> ruleMaps = new ArrayList<RuleMap>();
+    /** Whether the associations, stagedData, remoteRepositories and ruleMaps
+     * are referenced by another ServiceElement, and must be copied before
+     * being modified */
+    private transient volatile boolean shared;
+    /** The identity of the ServiceElement, created when first needed */
+    private transient volatile ServiceElementKey key;
 
     /**
      * Construct a ServiceElement
@@ -182,6 +188,63 @@ public class ServiceElement implements Serializable {
         this.slAgreements = slAgreements;
     }
 
+    /**
+     * Construct a ServiceElement for a service instance. The attributes of the
+     * template are shared rather than copied, the number of actual instances
+     * and the provisionable platform capabilities are not. Changes made to
+     * either ServiceElement after this one is constructed are not visible to
+     * the other.
+     *
+     * @param template The ServiceElement to construct this one from
+     * @param sbConfig The ServiceBeanConfig for the service instance, typically
+     * created from the template's ServiceBeanConfig using
+     * {@link ServiceBeanConfig#ServiceBeanConfig(ServiceBeanConfig, long)}
+     */
+    public ServiceElement(ServiceElement template, ServiceBeanConfig sbConfig) {
+        if(template==null)
+            throw new IllegalArgumentException("template is null");
+        if(sbConfig==null)
+            throw new IllegalArgumentException("sbConfig is null");
+        synchronized(template) {
+            template.shared = true;
+            associations = template.associations;
+            stagedData = template.stagedData;
+            remoteRepositories = template.remoteRepositories;
+            ruleMaps = template.ruleMaps;
+        }
+        shared = true;
+        this.sbConfig = sbConfig;
+        provisionType = template.provisionType;
+        componentBundle = template.componentBundle;
+        exportBundles = template.exportBundles;
+        slAgreements = template.getServiceLevelAgreements();
+        matchOnName = template.matchOnName;
+        autoAdvertise = template.autoAdvertise;
+        discoPool = template.discoPool;
+        planned = template.planned;
+        maxPerMachine = template.maxPerMachine;
+        machineBoundary = template.machineBoundary;
+        machineCluster = template.machineCluster;
+        fdhBundle = template.fdhBundle;
+        execDescriptor = template.execDescriptor;
+        fork = template.fork;
+        key = template.key;
+    }
+
+    /*
+     * Copy the collections that are referenced by another ServiceElement,
+     * before they are modified
+     */
+    private synchronized void unshare() {
+        if(!shared)
+            return;
+        associations = new ArrayList<AssociationDescriptor>(associations);
+        stagedData = new ArrayList<StagedData>(stagedData);
+        remoteRepositories = new ArrayList<RemoteRepository>(remoteRepositories);
+        ruleMaps = new ArrayList<RuleMap>(ruleMaps);
+        shared = false;
+    }
+
     /**
      * Set the provision type set for this service.
      *
@@ -605,6 +668,7 @@ public class ServiceElement implements Serializable {
      * @param associationDescriptors {@code AssociationDescriptor} to set
      */
     public void setAssociationDescriptors(AssociationDescriptor... associationDescriptors) {
+        unshare();
         associations.clear();
         if(associationDescriptors!=null) {
             Collections.addAll(associations, associationDescriptors);
@@ -618,6 +682,7 @@ public class ServiceElement implements Serializable {
      */
     public void addAssociationDescriptors(AssociationDescriptor... associationDescriptors) {
         if(associationDescriptors!=null) {
+            unshare();
             Collections.addAll(associations, associationDescriptors);
         }
     }
@@ -689,8 +754,10 @@ public class ServiceElement implements Serializable {
      * nothing
      */
     public void setStagedData(StagedData... stagedData) {
-        if(stagedData !=null)
+        if(stagedData !=null) {
+            unshare();
             this.stagedData.addAll(Arrays.asList(stagedData));
+        }
     }
 
     /**
@@ -727,29 +794,51 @@ public class ServiceElement implements Serializable {
     }
 
     public void setRemoteRepositories(Collection<RemoteRepository> remoteRepositories) {
-        if(remoteRepositories!=null)
+        if(remoteRepositories!=null) {
+            unshare();
             this.remoteRepositories.addAll(remoteRepositories);
+        }
     }
 
-    public List<RuleMap> getRuleMaps() {
-        return ruleMaps;
+    /**
+     * Get the {@code RuleMap}s for the service
+     *
+     * @return The {@code RuleMap}s for the service. If the {@code RuleMap}s
+     * are shared with another ServiceElement the List cannot be modified, use
+     * {@link #setRuleMaps(java.util.Collection)} instead.
+     */
+    public synchronized List<RuleMap> getRuleMaps() {
+        return shared?Collections.unmodifiableList(ruleMaps):ruleMaps;
     }
 
     public void setRuleMaps(Collection<RuleMap> ruleMaps) {
+        unshare();
         this.ruleMaps.addAll(ruleMaps);
     }
 
+    /**
+     * Get the identity of the ServiceElement, used to hash and compare
+     * ServiceElements. The key is created once, and reused until the service
+     * name, OperationalString name, export bundles or component bundle change.
+     *
+     * @return The ServiceElementKey for the current attributes
+     */
+    public ServiceElementKey getKey() {
+        String name = getName();
+        String opStringName = getOperationalStringName();
+        ServiceElementKey k = key;
+        if(k==null || !k.isCurrent(name, opStringName, componentBundle, exportBundles)) {
+            k = new ServiceElementKey(name, opStringName, componentBundle, exportBundles);
+            key = k;
+        }
+        return k;
+    }
+
     /**
      * Override hashCode
      */
     public int hashCode() {
-        int hc = 17;
-        hc = 37*hc+getName().hashCode();
-        hc = 37*hc+getOperationalStringName().hashCode();
-        for (ClassBundle exportBundle : exportBundles)
-            hc = 37 * hc + exportBundle.hashCode();
-        hc = 37*hc+(componentBundle==null?0:componentBundle.hashCode());
-        return(hc);
+        return getKey().hashCode();
     }
 
     /**
@@ -761,37 +850,9 @@ public class ServiceElement implements Serializable {
         if(!(obj instanceof ServiceElement)) {
             return(false);
         }
-        ServiceElement that = (ServiceElement)obj;        
-        if(this.getName().equals(that.getName()) && 
-            this.getOperationalStringName().equals(that.getOperationalStringName())) {
-            /* If they exportBundles are different lengths, then the ServiceElements 
-             * are not equal */            
-            if(this.exportBundles.length!=that.exportBundles.length) {
-                return(false);
-            }
-            /* The ServiceElements should have the same export jar names */
-            for (ClassBundle exportBundle1 : this.exportBundles) {
-                boolean matched = false;
-                for (ClassBundle exportBundle : that.exportBundles) {
-                    if (exportBundle1.equals(exportBundle))
-                        matched = true;
-                }
-                if (!matched) {
-                    return (false);
-                }
-            }
-            /* If we've matched the exports and both ServiceElements dont have 
-             * components bundles they are the same */
-            if(this.componentBundle==null && that.componentBundle==null)
-                return(true);
-            /* If the ServiceElements do have components, make sure the component
-             * jar names are equal */
-            if(this.componentBundle!=null && that.componentBundle!=null) {
-                return(this.componentBundle.equals(that.componentBundle));
-            }
-        }        
-        return(false);
-    }  
+        ServiceElement that = (ServiceElement)obj;
+        return this.getKey().equals(that.getKey());
+    }
 
     @Override
     public String toString() {
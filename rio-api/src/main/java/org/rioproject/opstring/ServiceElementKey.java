@@ -0,0 +1,131 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.opstring;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of the attributes that identify a {@link ServiceElement}:
+ * the service name, the OperationalString name, the export bundles and the
+ * component bundle. Two keys are equal using the same rules as
+ * {@link ServiceElement#equals(Object)}. The hash code is computed once,
+ * unequal keys are usually rejected by comparing hash codes, and the export
+ * bundles are matched using a hash lookup rather than comparing each pair.
+ *
+ * <p>A ServiceElementKey is obtained using {@link ServiceElement#getKey()}.
+ */
+public final class ServiceElementKey {
+    private final String name;
+    private final String opStringName;
+    private final ClassBundleKey componentBundle;
+    private final ClassBundleKey[] exportBundles;
+    private final Set<ClassBundleKey> exportSet;
+    private final int hash;
+
+    ServiceElementKey(final String name,
+                      final String opStringName,
+                      final ClassBundle componentBundle,
+                      final ClassBundle[] exportBundles) {
+        this.name = name;
+        this.opStringName = opStringName;
+        this.componentBundle = componentBundle==null?null:componentBundle.getKey();
+        this.exportBundles = new ClassBundleKey[exportBundles.length];
+        for(int i=0; i<exportBundles.length; i++)
+            this.exportBundles[i] = exportBundles[i].getKey();
+        exportSet = this.exportBundles.length>1?new HashSet<ClassBundleKey>(Arrays.asList(this.exportBundles)):null;
+        int hc = 17;
+        hc = 37*hc+(name==null?0:name.hashCode());
+        hc = 37*hc+(opStringName==null?0:opStringName.hashCode());
+        /* Export bundles match in any order */
+        int exportHash = 0;
+        for(ClassBundleKey export : this.exportBundles)
+            exportHash += export.hashCode();
+        hc = 37*hc+exportHash;
+        hc = 37*hc+(this.componentBundle==null?0:this.componentBundle.hashCode());
+        hash = hc;
+    }
+
+    /*
+     * Determine whether this key was created from the current attributes of a
+     * ServiceElement. The name and OperationalString name are compared by
+     * reference, and the bundles by their current keys, so a change to any of
+     * them is detected without recomputing the key.
+     */
+    boolean isCurrent(final String name,
+                      final String opStringName,
+                      final ClassBundle componentBundle,
+                      final ClassBundle[] exportBundles) {
+        if(this.name!=name || this.opStringName!=opStringName)
+            return false;
+        if(componentBundle==null) {
+            if(this.componentBundle!=null)
+                return false;
+        } else if(this.componentBundle!=componentBundle.getKey()) {
+            return false;
+        }
+        if(this.exportBundles.length!=exportBundles.length)
+            return false;
+        for(int i=0; i<exportBundles.length; i++) {
+            if(this.exportBundles[i]!=exportBundles[i].getKey())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if(this == obj)
+            return true;
+        if(!(obj instanceof ServiceElementKey))
+            return false;
+        ServiceElementKey that = (ServiceElementKey)obj;
+        if(this.hash!=that.hash)
+            return false;
+        if(!equal(this.name, that.name) || !equal(this.opStringName, that.opStringName))
+            return false;
+        if(this.exportBundles.length!=that.exportBundles.length)
+            return false;
+        for(ClassBundleKey export : this.exportBundles) {
+            if(!that.hasExport(export))
+                return false;
+        }
+        if(this.componentBundle==null && that.componentBundle==null)
+            return true;
+        return this.componentBundle!=null && this.componentBundle.equals(that.componentBundle);
+    }
+
+    private boolean hasExport(final ClassBundleKey export) {
+        if(exportSet!=null)
+            return exportSet.contains(export);
+        return exportBundles.length==1 && exportBundles[0].equals(export);
+    }
+
+    private static boolean equal(final String s1, final String s2) {
+        return s1==null?s2==null:s1.equals(s2);
+    }
+
+    @Override
+    public String toString() {
+        return opStringName+"/"+name;
+    }
+}
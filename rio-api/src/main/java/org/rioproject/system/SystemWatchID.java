@@ -25,10 +25,28 @@ public interface SystemWatchID {
     static final String SYSTEM_MEMORY = "System Memory";
     static final String JVM_MEMORY = "Process Memory";
     static final String JVM_PERM_GEN = "Perm Gen";
+    static final String DISK_IO = "Disk I/O";
+    static final String NETWORK = "Network";
+    static final String GC_OVERHEAD = "GC Overhead";
+    static final String GC_PAUSE_P50 = "GC Pause p50";
+    static final String GC_PAUSE_P90 = "GC Pause p90";
+    static final String GC_PAUSE_P99 = "GC Pause p99";
+    static final String GC_COLLECTION_RATE = "GC Collection Rate";
+    static final String ALLOCATION_RATE = "Allocation Rate";
+    static final String OLD_GEN_OCCUPANCY = "Old Gen Occupancy";
     static final String[] IDs = new String[]{SYSTEM_CPU,
                                              PROC_CPU,
                                              DISK_SPACE,
                                              SYSTEM_MEMORY,
                                              JVM_MEMORY,
-                                             JVM_PERM_GEN};
+                                             JVM_PERM_GEN,
+                                             DISK_IO,
+                                             NETWORK,
+                                             GC_OVERHEAD,
+                                             GC_PAUSE_P50,
+                                             GC_PAUSE_P90,
+                                             GC_PAUSE_P99,
+                                             GC_COLLECTION_RATE,
+                                             ALLOCATION_RATE,
+                                             OLD_GEN_OCCUPANCY};
 }
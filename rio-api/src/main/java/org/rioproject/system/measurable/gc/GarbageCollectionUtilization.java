@@ -0,0 +1,151 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.gc;
+
+import org.rioproject.system.MeasuredResource;
+import org.rioproject.watch.ThresholdValues;
+
+import java.io.Serializable;
+
+/**
+ * Measured garbage collection activity of a JVM. The value is the measure
+ * the resource was created for, for example the GC overhead or the 99th
+ * percentile pause time, so that it can be compared to the thresholds of an
+ * SLA. The other measures are available from the accessors.
+ */
+public class GarbageCollectionUtilization extends MeasuredResource implements Serializable {
+    static final long serialVersionUID = 1L;
+    private final double overhead;
+    private final double pause50;
+    private final double pause90;
+    private final double pause99;
+    private final double collectionRate;
+    private final double allocationRate;
+    private final double oldGenOccupancy;
+
+    /**
+     * Construct a GarbageCollectionUtilization
+     *
+     * @param identifier Identifier for the GarbageCollectionUtilization
+     * @param value The measured value
+     * @param overhead The fraction of elapsed time spent in garbage collection
+     * @param pause50 The 50th percentile pause time, in milliseconds
+     * @param pause90 The 90th percentile pause time, in milliseconds
+     * @param pause99 The 99th percentile pause time, in milliseconds
+     * @param collectionRate Garbage collections per second
+     * @param allocationRate Bytes allocated per second, or -1 if not known
+     * @param oldGenOccupancy The fraction of the old generation in use after
+     * the last collection, or -1 if not known
+     * @param tVals ThresholdValues for the GarbageCollectionUtilization
+     */
+    public GarbageCollectionUtilization(String identifier,
+                                        double value,
+                                        double overhead,
+                                        double pause50,
+                                        double pause90,
+                                        double pause99,
+                                        double collectionRate,
+                                        double allocationRate,
+                                        double oldGenOccupancy,
+                                        ThresholdValues tVals) {
+        super(identifier, value, tVals);
+        this.overhead = overhead;
+        this.pause50 = pause50;
+        this.pause90 = pause90;
+        this.pause99 = pause99;
+        this.collectionRate = collectionRate;
+        this.allocationRate = allocationRate;
+        this.oldGenOccupancy = oldGenOccupancy;
+    }
+
+    /**
+     * Get the fraction of elapsed time spent in garbage collection
+     *
+     * @return The GC overhead, between 0 and 1
+     */
+    public double getOverhead() {
+        return overhead;
+    }
+
+    /**
+     * Get the 50th percentile pause time
+     *
+     * @return The 50th percentile pause time, in milliseconds
+     */
+    public double getPause50() {
+        return pause50;
+    }
+
+    /**
+     * Get the 90th percentile pause time
+     *
+     * @return The 90th percentile pause time, in milliseconds
+     */
+    public double getPause90() {
+        return pause90;
+    }
+
+    /**
+     * Get the 99th percentile pause time
+     *
+     * @return The 99th percentile pause time, in milliseconds
+     */
+    public double getPause99() {
+        return pause99;
+    }
+
+    /**
+     * Get the number of garbage collections per second
+     *
+     * @return The number of garbage collections per second
+     */
+    public double getCollectionRate() {
+        return collectionRate;
+    }
+
+    /**
+     * Get the number of bytes allocated per second
+     *
+     * @return The number of bytes allocated per second, or -1 if the
+     * allocation rate is not known
+     */
+    public double getAllocationRate() {
+        return allocationRate;
+    }
+
+    /**
+     * Get the fraction of the old generation in use after the last collection
+     *
+     * @return The old generation occupancy after GC, between 0 and 1, or -1
+     * if it is not known
+     */
+    public double getOldGenOccupancy() {
+        return oldGenOccupancy;
+    }
+
+    public String toString() {
+        return "GarbageCollectionUtilization{" +
+               "value=" + getValue() +
+               ", overhead=" + overhead +
+               ", pause50=" + pause50 +
+               ", pause90=" + pause90 +
+               ", pause99=" + pause99 +
+               ", collectionRate=" + collectionRate +
+               ", allocationRate=" + allocationRate +
+               ", oldGenOccupancy=" + oldGenOccupancy +
+               '}';
+    }
+}
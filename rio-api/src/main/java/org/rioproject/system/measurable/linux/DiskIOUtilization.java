@@ -0,0 +1,103 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.linux;
+
+import org.rioproject.system.MeasuredResource;
+import org.rioproject.watch.ThresholdValues;
+
+import java.io.Serializable;
+
+/**
+ * Measured disk I/O. The value is the fraction of time the busiest disk was doing I/O.
+ */
+public class DiskIOUtilization extends MeasuredResource implements Serializable {
+    static final long serialVersionUID = 1L;
+    private final double bytesRead;
+    private final double bytesWritten;
+    private final double reads;
+    private final double writes;
+
+    /**
+     * Construct a DiskIOUtilization
+     *
+     * @param identifier Identifier for the DiskIOUtilization
+     * @param utilization The fraction of time the busiest disk was doing I/O
+     * @param bytesRead Bytes read per second
+     * @param bytesWritten Bytes written per second
+     * @param reads Read operations per second
+     * @param writes Write operations per second
+     * @param tVals ThresholdValues for the DiskIOUtilization
+     */
+    public DiskIOUtilization(String identifier,
+                             double utilization,
+                             double bytesRead,
+                             double bytesWritten,
+                             double reads,
+                             double writes,
+                             ThresholdValues tVals) {
+        super(identifier, utilization, tVals);
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.reads = reads;
+        this.writes = writes;
+    }
+
+    /**
+     * Get the number of bytes read per second
+     *
+     * @return The number of bytes read per second
+     */
+    public double getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Get the number of bytes written per second
+     *
+     * @return The number of bytes written per second
+     */
+    public double getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Get the number of read operations per second
+     *
+     * @return The number of read operations per second
+     */
+    public double getReads() {
+        return reads;
+    }
+
+    /**
+     * Get the number of write operations per second
+     *
+     * @return The number of write operations per second
+     */
+    public double getWrites() {
+        return writes;
+    }
+
+    public String toString() {
+        return "DiskIOUtilization{" +
+               "utilization=" + getValue() +
+               ", bytesRead=" + bytesRead +
+               ", bytesWritten=" + bytesWritten +
+               ", reads=" + reads +
+               ", writes=" + writes +
+               '}';
+    }
+}
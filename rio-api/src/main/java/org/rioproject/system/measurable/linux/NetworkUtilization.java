@@ -0,0 +1,104 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.linux;
+
+import org.rioproject.system.MeasuredResource;
+import org.rioproject.watch.ThresholdValues;
+
+import java.io.Serializable;
+
+/**
+ * Measured network throughput. The value is the larger of the receive and transmit rates relative
+ * to the bandwidth of the network.
+ */
+public class NetworkUtilization extends MeasuredResource implements Serializable {
+    static final long serialVersionUID = 1L;
+    private final double received;
+    private final double transmitted;
+    private final double errors;
+    private final double dropped;
+
+    /**
+     * Construct a NetworkUtilization
+     *
+     * @param identifier Identifier for the NetworkUtilization
+     * @param utilization The network utilization
+     * @param received Bytes received per second
+     * @param transmitted Bytes transmitted per second
+     * @param errors Receive and transmit errors per second
+     * @param dropped Receive and transmit packets dropped per second
+     * @param tVals ThresholdValues for the NetworkUtilization
+     */
+    public NetworkUtilization(String identifier,
+                              double utilization,
+                              double received,
+                              double transmitted,
+                              double errors,
+                              double dropped,
+                              ThresholdValues tVals) {
+        super(identifier, utilization, tVals);
+        this.received = received;
+        this.transmitted = transmitted;
+        this.errors = errors;
+        this.dropped = dropped;
+    }
+
+    /**
+     * Get the number of bytes received per second
+     *
+     * @return The number of bytes received per second
+     */
+    public double getReceived() {
+        return received;
+    }
+
+    /**
+     * Get the number of bytes transmitted per second
+     *
+     * @return The number of bytes transmitted per second
+     */
+    public double getTransmitted() {
+        return transmitted;
+    }
+
+    /**
+     * Get the number of receive and transmit errors per second
+     *
+     * @return The number of errors per second
+     */
+    public double getErrors() {
+        return errors;
+    }
+
+    /**
+     * Get the number of receive and transmit packets dropped per second
+     *
+     * @return The number of packets dropped per second
+     */
+    public double getDropped() {
+        return dropped;
+    }
+
+    public String toString() {
+        return "NetworkUtilization{" +
+               "utilization=" + getValue() +
+               ", received=" + received +
+               ", transmitted=" + transmitted +
+               ", errors=" + errors +
+               ", dropped=" + dropped +
+               '}';
+    }
+}
@@ -93,6 +93,22 @@ public class Accumulator {
         statistics.setValues(getValues(getCalculables()));
     }
 
+    /**
+     * Initialize the range of values for calculating statistics, using only the
+     * values recorded within the provided time range
+     *
+     * @param from The start time
+     * @param to The end time
+     *
+     * @throws RemoteException If communication errors happen interfacing with
+     * the WatchDataSource
+     */
+    public void init(long from, long to) throws RemoteException {
+        reset();
+        calcs = source.getCalculable(from, to);
+        statistics.setValues(getValues(calcs));
+    }
+
     /**
      * Get the count of the current set of values
      * 
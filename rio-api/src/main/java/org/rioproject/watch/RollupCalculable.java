@@ -0,0 +1,99 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.watch;
+
+/**
+ * A {@code RollupCalculable} summarizes the {@code Calculable} records recorded
+ * within a time bucket. The value of the {@code RollupCalculable} is the average
+ * of the values in the bucket, and the time is the start of the bucket.
+ */
+public class RollupCalculable extends Calculable {
+    static final long serialVersionUID = 1L;
+    private final double min;
+    private final double max;
+    private final long count;
+    private final long interval;
+
+    /**
+     * Create a RollupCalculable
+     *
+     * @param id The identifier for the Calculable
+     * @param when The start of the bucket
+     * @param interval The length of the bucket, in milliseconds
+     * @param min The minimum value in the bucket
+     * @param max The maximum value in the bucket
+     * @param average The average value in the bucket
+     * @param count The number of values in the bucket
+     */
+    public RollupCalculable(String id, long when, long interval, double min, double max, double average, long count) {
+        super(id, average, when);
+        this.interval = interval;
+        this.min = min;
+        this.max = max;
+        this.count = count;
+    }
+
+    /**
+     * Get the minimum value in the bucket
+     *
+     * @return The minimum value in the bucket
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Get the maximum value in the bucket
+     *
+     * @return The maximum value in the bucket
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Get the average value in the bucket, this is the same as {@link #getValue()}
+     *
+     * @return The average value in the bucket
+     */
+    public double getAverage() {
+        return getValue();
+    }
+
+    /**
+     * Get the number of values in the bucket
+     *
+     * @return The number of values in the bucket
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the length of the bucket
+     *
+     * @return The length of the bucket, in milliseconds
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s - id: [%s], avg: [%s], min: [%s], max: [%s], count: [%s]",
+                             getFormattedDate(), getId(), getValue(), min, max, count);
+    }
+}
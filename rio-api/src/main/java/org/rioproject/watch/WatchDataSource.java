@@ -129,6 +129,25 @@ public interface WatchDataSource extends Remote {
      */
     Calculable[] getCalculable(long from, long to) throws RemoteException;
 
+    /**
+     * Get down-sampled Calculable records for the specified time range. The
+     * records are grouped into buckets of the provided interval, starting at
+     * <tt>from</tt>, and the minimum, maximum and average of each bucket is
+     * returned. Buckets without records are omitted.
+     *
+     * @param from The start time
+     * @param to The end time
+     * @param interval The length of each bucket, in milliseconds
+     *
+     * @return An array of RollupCalculable records, in time order. If there
+     * are no Calculable records in the range, a zero-length array will be
+     * returned
+     *
+     * @throws RemoteException If communication errors occur
+     * @throws IllegalArgumentException if the interval is less than 1
+     */
+    RollupCalculable[] getRollup(long from, long to, long interval) throws RemoteException;
+
     /**
      * Gets the last Calculable from the history
      *
@@ -20,6 +20,7 @@ import org.junit.Test;
 import org.rioproject.sla.ServiceLevelAgreements;
 
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Test ServiceElement
@@ -59,4 +60,89 @@ public class ServiceElementTest {
         Assert.assertTrue("s1 equal s1 ? ", s1.equals(s1));
         Assert.assertTrue("s2 equal s2 ? ", s2.equals(s2));
     }
+
+    @Test
+    public void testKeyFollowsChanges() {
+        ServiceElement s1 = createServiceElement("Echo", "export-1", "export-2");
+        ServiceElement s2 = createServiceElement("Echo", "export-2", "export-1");
+        Assert.assertEquals(s1, s2);
+        Assert.assertEquals(s1.hashCode(), s2.hashCode());
+        Assert.assertSame(s1.getKey(), s1.getKey());
+
+        s2.getExportBundles()[0].addJAR("other.jar");
+        Assert.assertFalse(s1.equals(s2));
+        s1.getExportBundles()[1].addJAR("other.jar");
+        Assert.assertEquals(s1, s2);
+
+        s2.getServiceBeanConfig().setName("Other");
+        Assert.assertFalse(s1.equals(s2));
+        s2.getServiceBeanConfig().setName("Echo");
+        Assert.assertEquals(s1, s2);
+
+        s2.setComponentBundle(new ClassBundle("com.foo.OtherImpl"));
+        Assert.assertFalse(s1.equals(s2));
+    }
+
+    @Test
+    public void testArtifactEquality() {
+        ClassBundle b1 = new ClassBundle("com.foo.Example");
+        b1.setArtifact("com.foo:example:1.0");
+        ClassBundle b2 = new ClassBundle("com.foo.Example");
+        b2.setArtifact("com.foo:example:1.0");
+        b2.addJAR("example-1.0.jar");
+        Assert.assertEquals(b1, b2);
+        ServiceElement s1 = createServiceElement("Echo");
+        s1.setExportBundles(b1);
+        ServiceElement s2 = createServiceElement("Echo");
+        s2.setExportBundles(b2);
+        Assert.assertEquals(s1, s2);
+        Assert.assertEquals(s1.hashCode(), s2.hashCode());
+        b2.setArtifact("com.foo:example:2.0");
+        Assert.assertFalse(b1.equals(b2));
+        Assert.assertFalse(s1.equals(s2));
+    }
+
+    @Test
+    public void testKeyedLookups() {
+        int count = 200;
+        Map<ServiceElement, Integer> map = new HashMap<ServiceElement, Integer>();
+        for(int i=0; i<count; i++)
+            map.put(createServiceElement("Service-"+i, "export-1", "export-2", "export-3"), i);
+        Assert.assertEquals(count, map.size());
+        for(int i=0; i<count; i++) {
+            /* An equal ServiceElement, created separately, with its export bundles in another order */
+            ServiceElement elem = createServiceElement("Service-"+i, "export-3", "export-1", "export-2");
+            ServiceElement other = createServiceElement("Service-"+i, "export-1", "export-2", "export-3");
+            Assert.assertEquals(elem.getKey(), other.getKey());
+            Assert.assertEquals(elem.getKey().hashCode(), other.getKey().hashCode());
+            Assert.assertEquals(elem.hashCode(), other.hashCode());
+            Assert.assertEquals(Integer.valueOf(i), map.get(elem));
+        }
+        Assert.assertNull(map.get(createServiceElement("Service-0", "export-1", "export-2", "export-4")));
+        Assert.assertNull(map.get(createServiceElement("Service-0", "export-1", "export-2")));
+        Assert.assertNull(map.get(createServiceElement("Service-"+count, "export-1", "export-2", "export-3")));
+
+        Assert.assertEquals(Integer.valueOf(7), map.remove(createServiceElement("Service-7", "export-2", "export-3", "export-1")));
+        Assert.assertEquals(count-1, map.size());
+        Assert.assertNull(map.get(createServiceElement("Service-7", "export-1", "export-2", "export-3")));
+    }
+
+    private ServiceElement createServiceElement(String name, String... exportJARs) {
+        ServiceBeanConfig sbc = new ServiceBeanConfig(new HashMap<String, Object>(), new String[]{"-"});
+        sbc.setName(name);
+        sbc.setOperationalStringName("Keys");
+        ClassBundle[] exports = new ClassBundle[exportJARs.length];
+        for(int i=0; i<exports.length; i++) {
+            exports[i] = new ClassBundle("com.foo.Example"+exportJARs[i].hashCode());
+            exports[i].addJARs("rio-api.jar", exportJARs[i]+".jar");
+        }
+        ClassBundle impl = new ClassBundle("com.foo.ExampleImpl");
+        impl.addJARs("rio.jar", "service.jar");
+        return new ServiceElement(ServiceElement.ProvisionType.DYNAMIC,
+                                  sbc,
+                                  new ServiceLevelAgreements(),
+                                  exports,
+                                  null,
+                                  impl);
+    }
 }
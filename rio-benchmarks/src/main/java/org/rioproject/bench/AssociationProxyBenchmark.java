@@ -0,0 +1,110 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.bench;
+
+import net.jini.core.lookup.ServiceID;
+import net.jini.core.lookup.ServiceItem;
+import org.openjdk.jmh.annotations.*;
+import org.rioproject.associations.Association;
+import org.rioproject.associations.AssociationDescriptor;
+import org.rioproject.associations.AssociationProxy;
+import org.rioproject.associations.AssociationProxyFactory;
+import org.rioproject.associations.AssociationProxySupport;
+import org.rioproject.associations.strategy.FailOver;
+import org.rioproject.associations.strategy.RoundRobin;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures invocations made through an association proxy created by the
+ * {@link AssociationProxyFactory} (dispatching through {@link AssociationProxySupport}), against
+ * in-process services. Sweeps the number of associated services and the selection strategy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssociationProxyBenchmark {
+    @Param({"1", "10", "100"})
+    public int services;
+    @Param({"FailOver", "RoundRobin"})
+    public String strategy;
+    private Echo proxy;
+    private Echo direct;
+    private int value;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        AssociationDescriptor descriptor = new AssociationDescriptor();
+        descriptor.setName("echo");
+        descriptor.setInterfaceNames(Echo.class.getName());
+        String strategyClass = strategy.equals("RoundRobin")?RoundRobin.class.getName():FailOver.class.getName();
+        descriptor.setServiceSelectionStrategy(strategyClass);
+        Association<Echo> association = new Association<Echo>(descriptor);
+        for(int i=0; i<services; i++) {
+            UUID uuid = UUID.randomUUID();
+            association.addServiceItem(new ServiceItem(new ServiceID(uuid.getMostSignificantBits(),
+                                                                     uuid.getLeastSignificantBits()),
+                                                       new EchoImpl(i),
+                                                       null));
+        }
+        direct = association.getService();
+        proxy = (Echo) AssociationProxyFactory.createProxy(AssociationProxySupport.class.getName(),
+                                                           strategyClass,
+                                                           association,
+                                                           getClass().getClassLoader());
+        ((AssociationProxy<Echo>)proxy).discovered(association, direct);
+    }
+
+    @Benchmark
+    public int invokeProxy() {
+        return proxy.echo(value++);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int invokeProxyContended() {
+        return proxy.echo(value);
+    }
+
+    @Benchmark
+    public int invokeDirect() {
+        return direct.echo(value++);
+    }
+
+    /**
+     * The associated service interface
+     */
+    public interface Echo {
+        int echo(int value);
+    }
+
+    public static class EchoImpl implements Echo {
+        private final int index;
+
+        public EchoImpl(int index) {
+            this.index = index;
+        }
+
+        public int echo(int value) {
+            return value + index;
+        }
+    }
+}
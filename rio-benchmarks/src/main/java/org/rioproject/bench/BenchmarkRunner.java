@@ -0,0 +1,56 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.bench;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.results.format.ResultFormatType;
+
+/**
+ * Runs the benchmarks, accepting the standard JMH command line options. Unless a result format or
+ * result file is provided, results are written as JSON to {@code jmh-result.json} so runs can be
+ * compared by tooling.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar                            # all benchmarks
+ * java -jar target/benchmarks.jar WatchDataSource -p historySize=1000
+ * java -jar target/benchmarks.jar -rf csv -rff results.csv   # other formats
+ * </pre>
+ */
+public final class BenchmarkRunner {
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String... args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if(cmdOptions.shouldHelp() || cmdOptions.shouldList() || cmdOptions.shouldListProfilers()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cmdOptions);
+        if(!cmdOptions.getResultFormat().hasValue())
+            builder.resultFormat(ResultFormatType.JSON);
+        if(!cmdOptions.getResult().hasValue())
+            builder.result(System.getProperty("rio.bench.result", "jmh-result.json"));
+        if(cmdOptions.getIncludes().isEmpty())
+            builder.include(BenchmarkRunner.class.getPackage().getName()+".*");
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.bench;
+
+import net.jini.core.event.RemoteEvent;
+import net.jini.core.event.RemoteEventListener;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rioproject.event.DispatchEventHandler;
+import org.rioproject.event.EventDescriptor;
+import org.rioproject.event.RemoteServiceEvent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DispatchEventHandler#fire(RemoteServiceEvent)} delivering to in-process
+ * listeners, sweeping the number of registrations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchEventHandlerBenchmark {
+    @Param({"1", "10", "100"})
+    public int registrations;
+    private DispatchEventHandler eventHandler;
+    private RemoteServiceEvent event;
+
+    @Setup
+    public void setup(Blackhole blackhole) throws Exception {
+        EventDescriptor descriptor = new EventDescriptor(RemoteServiceEvent.class, 1L);
+        eventHandler = new DispatchEventHandler(descriptor);
+        for(int i=0; i<registrations; i++)
+            eventHandler.register(this, new Listener(blackhole), null, TimeUnit.HOURS.toMillis(1));
+        event = new RemoteServiceEvent(this);
+    }
+
+    @TearDown
+    public void tearDown() {
+        eventHandler.terminate();
+    }
+
+    @Benchmark
+    public void fire() {
+        eventHandler.fire(event);
+    }
+
+    /**
+     * A listener that consumes the event in the calling thread
+     */
+    static class Listener implements RemoteEventListener {
+        final Blackhole blackhole;
+
+        Listener(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        public void notify(RemoteEvent event) {
+            blackhole.consume(event);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.rioproject.associations.AssociationDescriptor;
+import org.rioproject.associations.AssociationType;
+import org.rioproject.jsb.ServiceElementUtil;
+import org.rioproject.log.LoggerConfig;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.resolver.RemoteRepository;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Measures creating the per-instance ServiceElements of a service with
+ * {@link ServiceElementUtil#prepareInstanceID(ServiceElement, boolean, long)}, which overlays each
+ * instance's ServiceBeanConfig on the template, against the deep copy ServiceElementUtil made before
+ * the template was shared. Each invocation creates and keeps {@code instances} ServiceElements, run
+ * with the GC profiler to report the footprint as the bytes allocated per invocation:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ServiceElementFootprint -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceElementFootprintBenchmark {
+    @Param({"100", "10000"})
+    public int instances;
+    private ServiceElement template;
+
+    @Setup
+    public void setup() {
+        template = createServiceElement();
+    }
+
+    @Benchmark
+    public ServiceElement[] overlaid() {
+        ServiceElement[] elems = new ServiceElement[instances];
+        for(int i=0; i<elems.length; i++)
+            elems[i] = ServiceElementUtil.prepareInstanceID(template, true, i+1);
+        return elems;
+    }
+
+    @Benchmark
+    public ServiceElement[] copied() {
+        ServiceElement[] elems = new ServiceElement[instances];
+        for(int i=0; i<elems.length; i++)
+            elems[i] = copyAndPrepareInstanceID(template, i+1);
+        return elems;
+    }
+
+    /*
+     * Copy the ServiceElement and set its instance ID the way ServiceElementUtil did before
+     * instances shared the template, copying the parameters of the ServiceBeanConfig twice
+     */
+    private static ServiceElement copyAndPrepareInstanceID(ServiceElement sElem, long id) {
+        ServiceBeanConfig oldSBC = sElem.getServiceBeanConfig();
+        ServiceBeanConfig sbc = new ServiceBeanConfig(oldSBC.getConfigurationParameters(), oldSBC.getConfigArgs());
+        for(Map.Entry<String, Object> entry : oldSBC.getInitParameters().entrySet())
+            sbc.addInitParameter(entry.getKey(), entry.getValue());
+        sbc.addLoggerConfig(oldSBC.getLoggerConfigs());
+        ServiceElement elem = new ServiceElement(sElem.getProvisionType(),
+                                                 sbc,
+                                                 sElem.getServiceLevelAgreements(),
+                                                 sElem.getExportBundles(),
+                                                 sElem.getFaultDetectionHandlerBundle(),
+                                                 sElem.getComponentBundle());
+        elem.setPlanned(sElem.getPlanned());
+        elem.setCluster(sElem.getCluster());
+        elem.setMaxPerMachine(sElem.getMaxPerMachine());
+        elem.setMatchOnName(sElem.getMatchOnName());
+        elem.setMachineBoundary(sElem.getMachineBoundary());
+        elem.setAutoAdvertise(sElem.getAutoAdvertise());
+        elem.setDiscoveryManagementPooling(sElem.getDiscoveryManagementPooling());
+        elem.setAssociationDescriptors(sElem.getAssociationDescriptors());
+        elem.setExecDescriptor(sElem.getExecDescriptor());
+        elem.setStagedData(sElem.getStagedData());
+        elem.setFork(sElem.forkService());
+        List<RemoteRepository> rr = new ArrayList<RemoteRepository>();
+        rr.addAll(Arrays.asList(sElem.getRemoteRepositories()));
+        elem.setRemoteRepositories(rr);
+        elem.setRuleMaps(sElem.getRuleMaps());
+
+        Map<String, Object> parms = elem.getServiceBeanConfig().getConfigurationParameters();
+        parms.put(ServiceBeanConfig.INSTANCE_ID, id);
+        ServiceBeanConfig instanceSBC = new ServiceBeanConfig(parms, elem.getServiceBeanConfig().getConfigArgs());
+        for(Map.Entry<String, Object> entry : elem.getServiceBeanConfig().getInitParameters().entrySet())
+            instanceSBC.addInitParameter(entry.getKey(), entry.getValue());
+        elem.setServiceBeanConfig(instanceSBC);
+        return elem;
+    }
+
+    private ServiceElement createServiceElement() {
+        Map<String, Object> parms = new HashMap<String, Object>();
+        for(int i=1; i<=20; i++)
+            parms.put("parm-"+i, "value-"+i);
+        String[] configArgs = new String[10];
+        for(int i=0; i<configArgs.length; i++)
+            configArgs[i] = "org.rioproject.bench.entry"+i+"=\"value\"";
+        ServiceBeanConfig sbc = new ServiceBeanConfig(parms, configArgs);
+        sbc.setName("Echo");
+        sbc.setOperationalStringName("Footprint");
+        sbc.setGroups("rio");
+        for(int i=1; i<=10; i++)
+            sbc.addInitParameter("init-"+i, "value-"+i);
+        sbc.addLoggerConfig(new LoggerConfig("org.rioproject.bench", Level.INFO));
+        ServiceElement elem = new ServiceElement(ServiceElement.ProvisionType.DYNAMIC,
+                                                 sbc,
+                                                 null,
+                                                 new ClassBundle[]{new ClassBundle("org.rioproject.bench.Echo")},
+                                                 null,
+                                                 new ClassBundle("org.rioproject.bench.EchoImpl"));
+        elem.setPlanned(instances);
+        elem.setAssociationDescriptors(new AssociationDescriptor(AssociationType.USES, "Hello"),
+                                       new AssociationDescriptor(AssociationType.REQUIRES, "World"));
+        return elem;
+    }
+}
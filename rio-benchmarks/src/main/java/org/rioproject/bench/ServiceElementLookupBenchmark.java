@@ -0,0 +1,149 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.sla.ServiceLevelAgreements;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lookups in a map keyed by {@link ServiceElement}, as used by the DeploymentMap and the
+ * InstantiatorResource, against a key that hashes and compares a ServiceElement the way
+ * ServiceElement did before it used a {@code ServiceElementKey}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceElementLookupBenchmark {
+    @Param({"100", "2000"})
+    public int elements;
+    @Param({"1", "3"})
+    public int exports;
+    private ServiceElement[] lookups;
+    private Map<ServiceElement, Integer> map;
+    private Map<LegacyKey, Integer> legacyMap;
+    private int next;
+
+    @Setup
+    public void setup() {
+        lookups = new ServiceElement[elements];
+        map = new HashMap<ServiceElement, Integer>();
+        legacyMap = new HashMap<LegacyKey, Integer>();
+        for(int i=0; i<elements; i++) {
+            map.put(createServiceElement("Service-"+i), i);
+            legacyMap.put(new LegacyKey(createServiceElement("Service-"+i)), i);
+            lookups[i] = createServiceElement("Service-"+i);
+        }
+    }
+
+    @Benchmark
+    public Integer lookup() {
+        return map.get(lookups[next()]);
+    }
+
+    @Benchmark
+    public Integer legacyLookup() {
+        return legacyMap.get(new LegacyKey(lookups[next()]));
+    }
+
+    private int next() {
+        int i = next++;
+        if(next==lookups.length)
+            next = 0;
+        return i;
+    }
+
+    private ServiceElement createServiceElement(String name) {
+        ServiceBeanConfig sbc = new ServiceBeanConfig(new HashMap<String, Object>(), new String[]{"-"});
+        sbc.setName(name);
+        sbc.setOperationalStringName("Lookup");
+        ClassBundle[] exportBundles = new ClassBundle[exports];
+        for(int i=0; i<exportBundles.length; i++) {
+            exportBundles[i] = new ClassBundle("com.foo.Example"+i);
+            exportBundles[i].addJARs("rio-api.jar", "export-"+i+".jar");
+        }
+        ClassBundle impl = new ClassBundle("com.foo.ExampleImpl");
+        impl.addJARs("rio.jar", "service.jar");
+        return new ServiceElement(ServiceElement.ProvisionType.DYNAMIC,
+                                  sbc,
+                                  new ServiceLevelAgreements(),
+                                  exportBundles,
+                                  null,
+                                  impl);
+    }
+
+    /*
+     * Hashes and compares a ServiceElement the way ServiceElement did before
+     * it used a ServiceElementKey, copying the JAR names of each bundle
+     */
+    private static class LegacyKey {
+        final ServiceElement elem;
+
+        LegacyKey(ServiceElement elem) {
+            this.elem = elem;
+        }
+
+        @Override
+        public int hashCode() {
+            int hc = 17;
+            hc = 37*hc+elem.getName().hashCode();
+            hc = 37*hc+elem.getOperationalStringName().hashCode();
+            for (ClassBundle exportBundle : elem.getExportBundles())
+                hc = 37*hc+bundleHash(exportBundle);
+            hc = 37*hc+bundleHash(elem.getComponentBundle());
+            return hc;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            ServiceElement that = ((LegacyKey)obj).elem;
+            if(!elem.getName().equals(that.getName()) ||
+               !elem.getOperationalStringName().equals(that.getOperationalStringName()))
+                return false;
+            for(ClassBundle export1 : elem.getExportBundles()) {
+                boolean matched = false;
+                for(ClassBundle export2 : that.getExportBundles()) {
+                    if(bundleEquals(export1, export2))
+                        matched = true;
+                }
+                if(!matched)
+                    return false;
+            }
+            return bundleEquals(elem.getComponentBundle(), that.getComponentBundle());
+        }
+
+        static int bundleHash(ClassBundle bundle) {
+            int hc = 17;
+            hc = 37*hc+bundle.getClassName().hashCode();
+            hc = 37*hc+new ArrayList<String>(Arrays.asList(bundle.getJARNames())).hashCode();
+            return hc;
+        }
+
+        static boolean bundleEquals(ClassBundle b1, ClassBundle b2) {
+            return b1.getClassName().equals(b2.getClassName()) &&
+                   new ArrayList<String>(Arrays.asList(b1.getJARNames())).equals(
+                       new ArrayList<String>(Arrays.asList(b2.getJARNames())));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.bench;
+
+import net.jini.id.UuidFactory;
+import org.openjdk.jmh.annotations.*;
+import org.rioproject.deploy.SystemRequirements;
+import org.rioproject.monitor.InstantiatorResource;
+import org.rioproject.monitor.ProvisionRequest;
+import org.rioproject.monitor.selectors.LeastActiveSelector;
+import org.rioproject.monitor.selectors.RoundRobinSelector;
+import org.rioproject.monitor.selectors.ServiceResourceSelector;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.resources.servicecore.ServiceResource;
+import org.rioproject.sla.ServiceLevelAgreements;
+import org.rioproject.system.ComputeResourceUtilization;
+import org.rioproject.system.MeasuredResource;
+import org.rioproject.system.ResourceCapability;
+import org.rioproject.system.capability.PlatformCapability;
+import org.rioproject.watch.ThresholdValues;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a {@link ServiceResourceSelector} takes to pick a Cybernode for a dynamic
+ * service. Cybernodes are represented by in-process {@link InstantiatorResource}s that are never
+ * contacted. Sweeps the number of registered Cybernodes, the selector implementation and the
+ * percentage of Cybernodes whose measured resources are breached (and must be skipped).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceResourceSelectorBenchmark {
+    private static final String[] MEASURED = new String[]{"CPU", "Memory", "DiskSpace", "Load"};
+    @Param({"10", "100", "1000"})
+    public int cybernodes;
+    @Param({"RoundRobin", "LeastActive"})
+    public String selectorType;
+    @Param({"0", "50", "90"})
+    public int breachedPercent;
+    private ServiceResourceSelector selector;
+    private ServiceElement serviceElement;
+
+    @Setup
+    public void setup() {
+        selector = selectorType.equals("LeastActive")? new LeastActiveSelector() : new RoundRobinSelector();
+        int breached = (cybernodes*breachedPercent)/100;
+        for(int i=0; i<cybernodes; i++) {
+            /* Breached Cybernodes are registered first, so a selector has to walk past them */
+            InstantiatorResource ir = createInstantiatorResource(i, i<breached);
+            selector.register(new ServiceResource(ir));
+        }
+        serviceElement = createServiceElement();
+    }
+
+    @Benchmark
+    public ServiceResource getServiceResource() throws Exception {
+        return selector.getServiceResource(new ProvisionRequest(serviceElement, null, null, null));
+    }
+
+    @Benchmark
+    public ServiceResource[] getServiceResources() throws Exception {
+        return selector.getServiceResources(new ProvisionRequest(serviceElement, null, null, null));
+    }
+
+    private InstantiatorResource createInstantiatorResource(int index, boolean breached) {
+        String host = String.format("cybernode-%d", index);
+        String address = String.format("10.%d.%d.%d", (index>>16)&0xff, (index>>8)&0xff, index&0xff);
+        List<MeasuredResource> measured = new ArrayList<MeasuredResource>();
+        for(String id : MEASURED)
+            measured.add(new MeasuredResource(id, breached?0.95:0.25, new ThresholdValues(0.0, 0.9)));
+        ComputeResourceUtilization utilization = new ComputeResourceUtilization(host, host, address, 0.25, measured);
+        ResourceCapability capability = new ResourceCapability(address,
+                                                               host,
+                                                               false,
+                                                               new PlatformCapability[0],
+                                                               utilization);
+        InstantiatorResource ir = new InstantiatorResource(null,
+                                                           null,
+                                                           host,
+                                                           UuidFactory.generate(),
+                                                           null,
+                                                           capability,
+                                                           500);
+        ir.setDynamicEnabledOn();
+        return ir;
+    }
+
+    private ServiceElement createServiceElement() {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put(ServiceBeanConfig.NAME, "Bench");
+        config.put(ServiceBeanConfig.OPSTRING, "Benchmarks");
+        ServiceLevelAgreements sla = new ServiceLevelAgreements();
+        SystemRequirements requirements = new SystemRequirements();
+        requirements.addSystemThreshold("CPU", new ThresholdValues(0.0, 0.9));
+        requirements.addSystemThreshold("Memory", new ThresholdValues(0.0, 0.9));
+        sla.setServiceRequirements(requirements);
+        ServiceElement elem = new ServiceElement(ServiceElement.ProvisionType.DYNAMIC,
+                                                 new ServiceBeanConfig(config, new String[]{"-"}),
+                                                 sla,
+                                                 new ClassBundle[0]);
+        elem.setPlanned(1);
+        return elem;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.rioproject.watch.Statistics;
+
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link Statistics} calculations used by the {@code Accumulator} and the watch UI,
+ * sweeping the number of values and the number of distinct values (which drives the mode
+ * calculation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticsBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int size;
+    @Param({"10", "100000"})
+    public int distinct;
+    private Vector<Double> values;
+    private Statistics statistics;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        values = new Vector<Double>(size);
+        for(int i=0; i<size; i++)
+            values.add((double)random.nextInt(distinct));
+        statistics = new Statistics(values);
+    }
+
+    @Benchmark
+    public Statistics setValues() {
+        Statistics s = new Statistics();
+        s.setValues(values);
+        return s;
+    }
+
+    @Benchmark
+    public double mean() {
+        return statistics.mean();
+    }
+
+    @Benchmark
+    public double median() {
+        return statistics.median();
+    }
+
+    @Benchmark
+    public double mode() {
+        return statistics.mode();
+    }
+
+    @Benchmark
+    public double standardDeviation() {
+        return statistics.standardDeviation();
+    }
+
+    @Benchmark
+    public double range() {
+        return statistics.range();
+    }
+}
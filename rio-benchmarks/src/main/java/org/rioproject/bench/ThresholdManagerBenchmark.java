@@ -0,0 +1,91 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rioproject.watch.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link BoundedThresholdManager#checkThreshold(Calculable)} for values that stay within
+ * the thresholds (no notification) and values that alternate between breached and cleared (a
+ * notification on every check), sweeping the number of registered listeners.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThresholdManagerBenchmark {
+    @Param({"0", "1", "8", "32"})
+    public int listeners;
+    @Param({"false", "true"})
+    public boolean observing;
+    private BoundedThresholdManager thresholdManager;
+    private Calculable within;
+    private Calculable breached;
+    private Calculable cleared;
+    private boolean breach;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        thresholdManager = new BoundedThresholdManager("bench");
+        thresholdManager.setThresholdValues(new ThresholdValues(10, 90));
+        for(int i=0; i<listeners; i++)
+            thresholdManager.addThresholdListener(observing?
+                                                  new ObservingListener(blackhole) :
+                                                  new Listener(blackhole));
+        within = new Calculable("bench", 50);
+        breached = new Calculable("bench", 95);
+        cleared = new Calculable("bench", 50);
+    }
+
+    @Benchmark
+    public void checkWithinThresholds() {
+        thresholdManager.checkThreshold(within);
+    }
+
+    @Benchmark
+    public void checkOscillating() {
+        breach = !breach;
+        thresholdManager.checkThreshold(breach?breached:cleared);
+    }
+
+    static class Listener implements ThresholdListener {
+        final Blackhole blackhole;
+
+        Listener(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        public void notify(Calculable calculable, ThresholdValues thresholdValues, ThresholdType type) {
+            blackhole.consume(type);
+        }
+    }
+
+    static class ObservingListener extends Listener implements ObservingThresholdListener {
+        ObservingListener(Blackhole blackhole) {
+            super(blackhole);
+        }
+
+        public void observe(Calculable calculable, ThresholdValues thresholdValues) {
+            blackhole.consume(calculable);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.bench;
+
+import net.jini.config.EmptyConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.rioproject.watch.Calculable;
+import org.rioproject.watch.WatchDataReplicator;
+import org.rioproject.watch.WatchDataSourceImpl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link WatchDataSourceImpl#addCalculable(Calculable)} with a full history, sweeping the
+ * history size and the number of attached {@link WatchDataReplicator}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WatchDataSourceBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int historySize;
+    @Param({"0", "1", "4"})
+    public int replicators;
+    private WatchDataSourceImpl watchDataSource;
+    private long when;
+
+    @Setup
+    public void setup() {
+        watchDataSource = new WatchDataSourceImpl("bench", EmptyConfiguration.INSTANCE);
+        watchDataSource.setMaxSize(historySize);
+        for(int i=0; i<replicators; i++)
+            watchDataSource.addWatchDataReplicator(new NoOpReplicator());
+        /* Start with a full history so every add trims the oldest entry */
+        for(int i=0; i<historySize; i++)
+            watchDataSource.addCalculable(new Calculable("bench", i, when++));
+    }
+
+    @TearDown
+    public void tearDown() {
+        watchDataSource.close();
+    }
+
+    @Benchmark
+    public void addCalculable() {
+        long t = when++;
+        watchDataSource.addCalculable(new Calculable("bench", t, t));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addCalculableContended() {
+        long t = System.nanoTime();
+        watchDataSource.addCalculable(new Calculable("bench", t, t));
+    }
+
+    @Benchmark
+    public Calculable[] getCalculable() {
+        return watchDataSource.getCalculable();
+    }
+
+    /**
+     * A replicator that accepts and drops every record
+     */
+    static class NoOpReplicator implements WatchDataReplicator<Calculable> {
+        public void addCalculable(Calculable calculable) {
+        }
+
+        public void close() {
+        }
+    }
+}
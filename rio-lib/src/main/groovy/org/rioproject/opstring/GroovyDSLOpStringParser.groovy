@@ -17,7 +17,9 @@ package org.rioproject.opstring
 
 import net.jini.core.discovery.LookupLocator
 import org.rioproject.RioVersion
+import org.codehaus.groovy.runtime.InvokerHelper
 import org.rioproject.associations.AssociationDescriptor
+import org.rioproject.config.GroovyScriptCache
 import org.rioproject.deploy.StagedData
 import org.rioproject.deploy.StagedSoftware
 import org.rioproject.deploy.SystemComponent
@@ -81,11 +83,7 @@ class GroovyDSLOpStringParser implements OpStringParser {
             throw new DSLException("Unrecognized source "+source)
         }
 
-        Script dslScript
-        if(loader==null)
-            dslScript = new GroovyShell().parse(groovyCodeSource)
-        else
-            dslScript = new GroovyShell(loader).parse(groovyCodeSource)
+        Script dslScript = createScript(groovyCodeSource, loader)
 
         def opStrings = []
         OpStringParserHelper helper = new OpStringParserHelper()
@@ -775,6 +773,24 @@ class GroovyDSLOpStringParser implements OpStringParser {
         return opStrings
     }
 
+    /*
+     * Create the Script for the DSL, using the classes from the GroovyScriptCache if
+     * possible, otherwise compiling the DSL
+     */
+    private Script createScript(GroovyCodeSource groovyCodeSource, ClassLoader loader) {
+        try {
+            GroovyScriptCache.LoadedScript loaded = GroovyScriptCache.instance.load(groovyCodeSource, loader)
+            Class scriptClass = loaded.getClass(Script.class)
+            if(scriptClass!=null)
+                return InvokerHelper.createScript(scriptClass, new Binding())
+        } catch(IOException e) {
+            logger.warn "Unable to use cached classes for ${groovyCodeSource.name}, compiling. ${e.message}"
+        }
+        if(loader==null)
+            return new GroovyShell().parse(groovyCodeSource)
+        return new GroovyShell(loader).parse(groovyCodeSource)
+    }
+
     protected void processAdditionalTags(ExpandoMetaClass emc) {
         // do nothing by default -- this is here so that subclasses can add additional behaviour!
     }
@@ -242,6 +242,8 @@ class OpStringParserHelper {
         String handler = "org.rioproject.sla."
         if (type == "scaling") {
             handler = handler + "ScalingPolicyHandler"
+        } else if (type == "predictive") {
+            handler = handler + "PredictiveScalingPolicyHandler"
         } else if (type == "relocation") {
             handler = handler + "RelocationPolicyHandler"
         } else if (type == "restart") {
@@ -71,35 +71,25 @@ public class HarvesterAgent {
                 println "${parent} -> ${fileList}"
                 println "---"
             }
+            List<HarvestProtocol.HarvestFile> files = new ArrayList<HarvestProtocol.HarvestFile>()
+            fileMap.each { parent, fileList ->
+                for(File file : fileList) {
+                    String filePath = file.absolutePath
+                    String baseDirName = filePath.substring(parent.length())
+                    if(!baseDirName.startsWith(File.separator))
+                        baseDirName = File.separator+baseDirName
+                    files.add(new HarvestProtocol.HarvestFile("${prefix}${hostName}${baseDirName}", file))
+                }
+            }
             HarvesterSession session = harvester.connect()
             Socket socket = new Socket(session.host, session.port)
-            socket.withStreams { input, output ->
-                def writer = new PrintWriter(output)
-                if(fileMap.size()==0) {
-                    writer.write("empty\n")
-                    writer.flush()
-                    println "No files to send, exit immediately"
-                    return
-                }
-                fileMap.each { parent, fileList ->
-                    println "===> Directory ${parent} has ${fileList.size()} files to send"
-                    for(File file : fileList) {
-                        println "===> Processing file [${file.absolutePath}]"
-                        String filePath = file.absolutePath
-                        String baseDirName = filePath.substring(parent.length())
-                        if(!baseDirName.startsWith(File.separator))
-                            baseDirName = File.separator+baseDirName
-                        println "     Sending file    [filename:${prefix}${hostName}${baseDirName}]"
-                        writer.write("filename:${prefix}${hostName}${baseDirName}\n")
-                        writer.flush()
-                        file.eachLine { line ->
-                            //print "."
-                            writer.write("${line}\n")
-                            writer.flush()
-                        }
-                        //println "."
-                    }
-                }
+            try {
+                if(files.size()==0)
+                    println "No files to send"
+                long sent = HarvestProtocol.send(socket, files)
+                println "===> Sent ${sent} bytes for ${files.size()} files"
+            } finally {
+                socket.close()
             }
         }
     }
@@ -33,9 +33,15 @@ import org.rioproject.net.HostUtil
 import org.slf4j.LoggerFactory
 
 import java.rmi.Remote
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Semaphore
 
 /**
- * Provides an implementation of  {@link Harvester}
+ * Provides an implementation of  {@link Harvester}. HarvesterAgents connect to a single server socket,
+ * connections are handled concurrently by at most {@code maxConcurrentAgents} threads. A read on a
+ * connection that blocks for longer than {@code socketTimeout} milliseconds fails the connection, so an
+ * agent that stops sending does not hold a handler.
  */
 class HarvesterBean implements Harvester {
     JoinManager joiner
@@ -43,6 +49,10 @@ class HarvesterBean implements Harvester {
     final List<HarvesterSession> agentsHandled = new ArrayList<HarvesterSession>()
     def logger = LoggerFactory.getLogger(HarvesterBean.class.getName())
     String harvestDir
+    int maxConcurrentAgents = 4
+    int socketTimeout = 60*1000
+    private ServerSocket server
+    private ExecutorService agentHandlers
 
     def HarvesterBean(DiscoveryManagement dMgr) {
         advertise(export(), dMgr)
@@ -74,76 +84,85 @@ class HarvesterBean implements Harvester {
 
     def unadvertise() {
         joiner.terminate()
-    }
-
-    HarvesterSession connect() {
-        String address = HostUtil.getHostAddressFromProperty(Constants.RMI_HOST_ADDRESS)
-        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName(address))
-        HarvesterSession hSession =
-        new HarvesterSession(server.localPort,
-                             InetAddress.localHost.hostName)
-        Thread.start {
-            File parent
-            if (harvestDir) {
-                if (harvestDir.startsWith(File.separator))
-                    parent = new File(harvestDir)
-                else
-                    parent = new File(System.getProperty("user.dir"), harvestDir)
-            } else {
-                parent = new File(System.getProperty("user.dir"), "logs")
+        synchronized (this) {
+            if (server) {
+                server.close()
+                agentHandlers.shutdown()
             }
+        }
+    }
 
-            if (!parent.exists())
-                parent.mkdirs()
+    synchronized HarvesterSession connect() {
+        if (server == null) {
+            String address = HostUtil.getHostAddressFromProperty(Constants.RMI_HOST_ADDRESS)
+            server = new ServerSocket(0, 50, InetAddress.getByName(address))
+            agentHandlers = Executors.newFixedThreadPool(maxConcurrentAgents)
+            ServerSocket s = server
+            Thread t = new Thread({ accept(s) }, "Harvester accept")
+            t.daemon = true
+            t.start()
+        }
+        return new HarvesterSession(server.localPort, InetAddress.localHost.hostName)
+    }
 
-            logger.info "Harvesting to directory ${parent.absolutePath}"
-            handleConnect(server, hSession, parent)
-            server.close()
-            synchronized (agentsHandled) {
-                agentsHandled.add(hSession)
+    /*
+     * Accept HarvesterAgent connections. A connection is only accepted when a handler is available to
+     * process it, bounding the number of concurrent connections and the memory used to process them
+     */
+    void accept(ServerSocket server) {
+        Semaphore available = new Semaphore(maxConcurrentAgents)
+        while (!server.closed) {
+            available.acquire()
+            Socket socket
+            try {
+                socket = server.accept()
+            } catch (IOException e) {
+                available.release()
+                if (!server.closed)
+                    logger.warn("Accepting HarvesterAgent connection", e)
+                continue
+            }
+            agentHandlers.execute {
+                try {
+                    socket.soTimeout = socketTimeout
+                    File parent = getHarvestDirectory()
+                    handleConnect(socket, parent)
+                    HarvesterSession hSession = new HarvesterSession(socket.port,
+                                                                     socket.inetAddress.hostName)
+                    synchronized (agentsHandled) {
+                        agentsHandled.add(hSession)
+                    }
+                } catch (Exception e) {
+                    logger.warn("Harvesting from ${socket.remoteSocketAddress}", e)
+                } finally {
+                    socket.close()
+                    available.release()
+                }
             }
         }
-        return hSession
     }
 
-    List<File> handleConnect(ServerSocket server, HarvesterSession hSession, File parent) {
-        List<File> harvested = new ArrayList<File>()
-        Socket socket = server.accept()
+    File getHarvestDirectory() {
+        File parent
+        if (harvestDir) {
+            if (harvestDir.startsWith(File.separator))
+                parent = new File(harvestDir)
+            else
+                parent = new File(System.getProperty("user.dir"), harvestDir)
+        } else {
+            parent = new File(System.getProperty("user.dir"), "logs")
+        }
+        if (!parent.exists())
+            parent.mkdirs()
+        return parent
+    }
+
+    List<File> handleConnect(Socket socket, File parent) {
         SocketAddress sockAddr = socket.remoteSocketAddress
         if (logger.isInfoEnabled())
             logger.info "Connect from HarvesterAgent " +
-                        "[$sockAddr.hostName, $sockAddr.port]"
-        def line
-        File file
-        PrintWriter writer = null
-        def reader = new BufferedReader(new InputStreamReader(socket.inputStream))
-        while ((line = reader.readLine()) != null) {
-            if (line.startsWith("filename:")) {
-                String filename = line.substring(9)
-                //println "===> filename: arg [${filename}]"
-                int ndx = filename.lastIndexOf("/")
-                if (ndx > 0) {
-                    String parentDir = filename.substring(0, ndx)
-                    //println "===> parentDir = ${parentDir}"
-                    File p = new File(parent, parentDir)
-                    if (!p.exists())
-                        p.mkdirs()
-                }
-                file = new File(parent, filename)
-                if (!file.exists()) {
-                    file.createNewFile()
-                }
-                harvested.add(file)
-                writer = file.newPrintWriter()
-                //println "===> Using file ${file.path}"
-            } else {
-                if (writer) {
-                    writer.write("${line}\n")
-                    writer.flush()
-                }
-            }
-        }
-        return harvested
+                        "[$sockAddr.hostName, $sockAddr.port], harvesting to directory ${parent.absolutePath}"
+        return HarvestProtocol.receive(socket, parent)
     }
 
     int getAgentsHandledCount() {
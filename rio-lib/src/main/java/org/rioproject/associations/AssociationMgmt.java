@@ -1016,8 +1016,7 @@ public class AssociationMgmt implements AssociationManagement {
                     LookupCachePool lcPool = LookupCachePool.getInstance();
                     String sharedName = aDesc.getOperationalStringName();
 
-                    lCache = lcPool.getLookupCache(sharedName, aDesc.getGroups(), aDesc.getLocators(), template);
-                    lCache.addListener(this);
+                    lCache = lcPool.getLookupCache(sharedName, aDesc.getGroups(), aDesc.getLocators(), template, this);
                     logger.debug("AssociationManagement for [{}], obtained LookupCache for [{}]",
                                  clientName, aDesc.getName());
                 } else {
@@ -48,21 +48,24 @@ public class BeanHelper {
             return;
         }
         /* First check if the annotation is declared */
+        LifeCycleDescriptor descriptor = LifeCycleDescriptor.getDescriptor(bean.getClass());
         String methodNameToInvoke = methodName;
-        Method m = getAnnotatedMethod(bean, annClass);
+        Method m = descriptor.getAnnotatedMethod(annClass);
         if (m != null) {
             methodNameToInvoke = m.getName();
         }
+        Method method = descriptor.getMethod(methodNameToInvoke, null);
+        if(method==null) {
+            logger.trace("Bean [{}] does not have lifecycle method {}() defined", bean.getClass().getName(), methodNameToInvoke);
+            return;
+        }
         ClassLoader currentCL = Thread.currentThread().getContextClassLoader();
         ClassLoader beanCL = bean.getClass().getClassLoader();
         Thread.currentThread().setContextClassLoader(beanCL);
         Throwable abort = null;
         try {
-            Method method = bean.getClass().getMethod(methodNameToInvoke, (Class[]) null);
             logger.trace("Invoking method [{}] on [{}]", methodNameToInvoke, bean.getClass().getName());
             method.invoke(bean, (Object[]) null);
-        } catch (NoSuchMethodException e) {
-            logger.trace("Bean [{}] does not have lifecycle method {}() defined", bean.getClass().getName(), methodNameToInvoke);
         } catch (IllegalAccessException e) {
             logger.trace("Bean [{}] {}() method security access", bean.getClass().getName(), methodNameToInvoke, e);
             abort = e;
@@ -98,21 +101,24 @@ public class BeanHelper {
                                           final Class[] classArgs,
                                           final Object[] objectArgs) throws ServiceBeanInstantiationException {
          /* First check if the annotation is declared */
-        Method m = getAnnotatedMethod(bean, annClass);
+        LifeCycleDescriptor descriptor = LifeCycleDescriptor.getDescriptor(bean.getClass());
+        Method m = descriptor.getAnnotatedMethod(annClass);
         String methodNameToInvoke = methodName;
         if (m != null) {
             methodNameToInvoke = m.getName();
         }
+        Method method = descriptor.getMethod(methodNameToInvoke, classArgs);
+        if(method==null) {
+            logger.trace("Bean [{}] does not have a {}() method defined", bean.getClass().getName(), methodNameToInvoke);
+            return null;
+        }
         Object result = null;
         ClassLoader currentCL = Thread.currentThread().getContextClassLoader();
         ClassLoader beanCL = bean.getClass().getClassLoader();
         Throwable abort = null;
         Thread.currentThread().setContextClassLoader(beanCL);
         try {
-            Method method = bean.getClass().getMethod(methodNameToInvoke, classArgs);
             result = method.invoke(bean, objectArgs);
-        } catch (NoSuchMethodException e) {
-            logger.trace("Bean [{}] does not have a {}() method defined", bean.getClass().getName(), methodNameToInvoke);
         } catch (IllegalAccessException e) {
             logger.trace("Bean [{}] {}() method security access", bean.getClass().getName(), methodNameToInvoke, e);
             abort = e;
@@ -133,14 +139,7 @@ public class BeanHelper {
     }
 
     public static Class getMethodFirstParamType(final String methodName, final Object o) {
-        Class firstParamType = null;
-        Method[] methods = o.getClass().getMethods();
-        for (Method method : methods) {
-            if (method.getName().equals(methodName)) {
-                firstParamType = getMethodFirstParamType(method);
-            }
-        }
-        return (firstParamType);
+        return LifeCycleDescriptor.getDescriptor(o.getClass()).getMethodFirstParamType(methodName);
     }
 
     public static Class getMethodFirstParamType(final Method method) {
@@ -156,14 +155,18 @@ public class BeanHelper {
     public static Method getAnnotatedMethod(final Object bean, final Class<? extends Annotation> annClass) {
         Method m = null;
         if(bean!=null && annClass!=null) {
-            Method[] methods = bean.getClass().getMethods();
-            for (Method method : methods) {
-                if(method.getAnnotation(annClass)!=null) {
-                    m = method;
-                    break;
-                }                
-            }
+            m = LifeCycleDescriptor.getDescriptor(bean.getClass()).getAnnotatedMethod(annClass);
         }
         return (m);
     }
+
+    /**
+     * Release the lifecycle information held for bean classes loaded by a class loader, or any of its
+     * descendants
+     *
+     * @param loader The class loader being released
+     */
+    public static void release(final ClassLoader loader) {
+        LifeCycleDescriptor.release(loader);
+    }
 }
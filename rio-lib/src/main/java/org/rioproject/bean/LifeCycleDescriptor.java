@@ -0,0 +1,189 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.bean;
+
+import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Describes the lifecycle and injection methods of a bean class. The public methods
+ * of the class are scanned for annotations once, and methods looked up by name and parameter
+ * types are resolved once, making repeated lifecycle invocations on instances of the class
+ * free of reflective lookups.
+ *
+ * <p>Descriptors are cached by the class loader of the bean class, and are discarded when
+ * the class loader is {@link #release(ClassLoader) released}. A descriptor references its
+ * class (and so the class loader) strongly, the descriptors for a class loader are therefore
+ * held by a soft reference, so a class loader that is discarded without being released can
+ * still be collected.</p>
+ */
+final class LifeCycleDescriptor {
+    private static final Map<ClassLoader, SoftReference<Map<Class<?>, LifeCycleDescriptor>>> descriptors =
+        new WeakHashMap<ClassLoader, SoftReference<Map<Class<?>, LifeCycleDescriptor>>>();
+    /** Marks a method looked up by signature that the class does not have */
+    private static final Method NO_METHOD;
+    static {
+        try {
+            NO_METHOD = Object.class.getMethod("toString");
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    private final Map<Class<? extends Annotation>, Method> annotated =
+        new HashMap<Class<? extends Annotation>, Method>();
+    private final Map<String, Method> lastByName = new HashMap<String, Method>();
+    private final ConcurrentMap<Signature, Method> resolved = new ConcurrentHashMap<Signature, Method>();
+    private final Class<?> beanClass;
+
+    private LifeCycleDescriptor(final Class<?> beanClass) {
+        this.beanClass = beanClass;
+        for(Method method : beanClass.getMethods()) {
+            for(Annotation annotation : method.getAnnotations()) {
+                if(!annotated.containsKey(annotation.annotationType()))
+                    annotated.put(annotation.annotationType(), makeAccessible(method));
+            }
+            lastByName.put(method.getName(), method);
+        }
+    }
+
+    /**
+     * Get the descriptor for a class
+     *
+     * @param beanClass The class, must not be null
+     *
+     * @return The descriptor for the class
+     */
+    static LifeCycleDescriptor getDescriptor(final Class<?> beanClass) {
+        ClassLoader loader = beanClass.getClassLoader();
+        synchronized(descriptors) {
+            SoftReference<Map<Class<?>, LifeCycleDescriptor>> ref = descriptors.get(loader);
+            Map<Class<?>, LifeCycleDescriptor> map = ref==null?null:ref.get();
+            if(map==null) {
+                map = new HashMap<Class<?>, LifeCycleDescriptor>();
+                descriptors.put(loader, new SoftReference<Map<Class<?>, LifeCycleDescriptor>>(map));
+            }
+            LifeCycleDescriptor descriptor = map.get(beanClass);
+            if(descriptor==null) {
+                descriptor = new LifeCycleDescriptor(beanClass);
+                map.put(beanClass, descriptor);
+            }
+            return descriptor;
+        }
+    }
+
+    /**
+     * Discard descriptors for classes loaded by a class loader, or any of its descendants
+     *
+     * @param loader The class loader
+     */
+    static void release(final ClassLoader loader) {
+        synchronized(descriptors) {
+            for(Iterator<ClassLoader> it = descriptors.keySet().iterator(); it.hasNext();) {
+                ClassLoader cl = it.next();
+                while(cl!=null && !cl.equals(loader))
+                    cl = cl.getParent();
+                if(cl!=null)
+                    it.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the first public method annotated with an annotation
+     *
+     * @param annClass The annotation class, may be null
+     *
+     * @return The annotated method, or null if there is none
+     */
+    Method getAnnotatedMethod(final Class<? extends Annotation> annClass) {
+        return annClass==null?null:annotated.get(annClass);
+    }
+
+    /**
+     * Get a public method
+     *
+     * @param name The method name
+     * @param parameterTypes The method's parameter types, may be null
+     *
+     * @return The method, or null if the class has no such method
+     */
+    Method getMethod(final String name, final Class[] parameterTypes) {
+        Signature signature = new Signature(name, parameterTypes);
+        Method method = resolved.get(signature);
+        if(method==null) {
+            try {
+                method = makeAccessible(beanClass.getMethod(name, parameterTypes));
+            } catch (NoSuchMethodException e) {
+                method = NO_METHOD;
+            }
+            resolved.put(signature, method);
+        }
+        return method==NO_METHOD?null:method;
+    }
+
+    /**
+     * Get the type of the first parameter of the last public method with a name
+     *
+     * @param name The method name
+     *
+     * @return The type of the first parameter, or null if there is no method with the name, or
+     * it has no parameters
+     */
+    Class getMethodFirstParamType(final String name) {
+        Method method = lastByName.get(name);
+        return method==null?null:BeanHelper.getMethodFirstParamType(method);
+    }
+
+    private static Method makeAccessible(final Method method) {
+        try {
+            method.setAccessible(true);
+        } catch(SecurityException e) {
+            /* Invoked with access checks */
+        }
+        return method;
+    }
+
+    private static class Signature {
+        private final String name;
+        private final Class[] parameterTypes;
+        private final int hash;
+
+        Signature(final String name, final Class[] parameterTypes) {
+            this.name = name;
+            this.parameterTypes = parameterTypes==null?new Class[0]:parameterTypes;
+            this.hash = 31*name.hashCode()+Arrays.hashCode(this.parameterTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this==o)
+                return true;
+            if(!(o instanceof Signature))
+                return false;
+            Signature that = (Signature) o;
+            return name.equals(that.name) && Arrays.equals(parameterTypes, that.parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -95,7 +95,11 @@ public interface ServiceBeanContainer {
     int getServiceCounter();
     
     /**
-     * Load and start a service defined by provided attributes
+     * Load and start a service defined by provided attributes. An instance of
+     * the ServiceElement must have been reserved with
+     * {@link #reserve(ServiceElement, int, int)}. The activated instance holds
+     * the reservation until it is discarded or removed, and the reservation is
+     * released if the service cannot be activated.
      * 
      * @param sElem The ServiceElement
      * @param opStringMgr The {@link org.rioproject.opstring.OperationalStringManager}
@@ -138,6 +142,64 @@ public interface ServiceBeanContainer {
      */
     ServiceRecord[] getServiceRecords();
 
+    /**
+     * The outcome of reserving an instance of a
+     * {@link org.rioproject.opstring.ServiceElement}
+     */
+    enum Reservation {
+        /** The instance has been reserved */
+        RESERVED,
+        /** The ServiceElement has reached its limit of instances */
+        ELEMENT_LIMIT_REACHED,
+        /** The ServiceBeanContainer has reached its limit of services */
+        SERVICE_LIMIT_REACHED
+    }
+
+    /**
+     * Reserve an instance of a {@link org.rioproject.opstring.ServiceElement}
+     * for activation. The ServiceBeanContainer keeps a count of the instances
+     * of each ServiceElement, and a count of all service instances. Both
+     * counts include reserved instances, instances being activated and active
+     * instances. The reservation is made only if the count for the
+     * ServiceElement is less than <code>limit</code> and the count of all
+     * service instances is less than <code>serviceLimit</code>, and it is made
+     * atomically with respect to other reservations.
+     *
+     * <p>A reservation is either passed to
+     * {@link #activate(ServiceElement, OperationalStringManager, EventHandler)},
+     * which counts the instance until it is discarded or removed, or released
+     * with {@link #release(ServiceElement)}.
+     *
+     * @param element The ServiceElement to reserve an instance of, must not
+     * be null
+     * @param limit The maximum number of instances of the ServiceElement
+     * @param serviceLimit The maximum number of service instances
+     *
+     * @return The outcome of the reservation
+     */
+    Reservation reserve(ServiceElement element, int limit, int serviceLimit);
+
+    /**
+     * Release a reservation that will not be activated
+     *
+     * @param element The ServiceElement the reservation was made for, must
+     * not be null
+     */
+    void release(ServiceElement element);
+
+    /**
+     * Get the number of instances of a
+     * {@link org.rioproject.opstring.ServiceElement}. The number includes
+     * reserved instances, instances being activated and active instances. An
+     * instance is counted until it has been discarded or removed.
+     *
+     * @param element The ServiceElement to count instances of, must not be
+     * null
+     *
+     * @return The number of instances of the ServiceElement
+     */
+    int getServiceCount(ServiceElement element);
+
     /**
      * Get all {@link org.rioproject.deploy.ServiceBeanInstance} objects for a
      * {@link org.rioproject.opstring.ServiceElement}
@@ -30,6 +30,7 @@ import net.jini.security.policy.PolicyFileProvider;
 import org.rioproject.RioVersion;
 import org.rioproject.admin.ServiceBeanControl;
 import org.rioproject.bean.BeanAdapter;
+import org.rioproject.bean.BeanHelper;
 import org.rioproject.config.Constants;
 import org.rioproject.core.jsb.ServiceBeanContext;
 import org.rioproject.core.jsb.ServiceBeanContextFactory;
@@ -183,6 +184,7 @@ public class ServiceBeanLoader {
         if(globalPolicy!=null)
             globalPolicy.setPolicy(loader, null);
         checkAndMaybeCleanProvisionedResources(elem);
+        BeanHelper.release(loader);
         service.submit(new Runnable() {
             @Override
             public void run() {
@@ -246,6 +248,7 @@ public class ServiceBeanLoader {
         ServiceBeanFactory.Created created = null;
         MarshalledInstance marshalledProxy = null;
         ServiceBeanContext context;
+        ServiceClassLoader jsbCL = null;
         CommonClassLoader commonCL = CommonClassLoader.getInstance();
         ComputeResource computeResource = container.getComputeResource();
 
@@ -310,10 +313,10 @@ public class ServiceBeanLoader {
             Properties metaData = new Properties();
             metaData.setProperty("opStringName", sElem.getOperationalStringName());
             metaData.setProperty("serviceName", sElem.getName());
-            ServiceClassLoader jsbCL = new ServiceClassLoader(ServiceClassLoader.getURIs(classpath),
-                                                              new ClassAnnotator(exports),
-                                                              commonCL,
-                                                              metaData);
+            jsbCL = new ServiceClassLoader(ServiceClassLoader.getURIs(classpath),
+                                           new ClassAnnotator(exports),
+                                           commonCL,
+                                           metaData);
 
             /*
             ServiceClassLoader jsbCL =
@@ -468,6 +471,12 @@ public class ServiceBeanLoader {
         } catch(Throwable t) {
             ServiceBeanInstantiationException e;
             logger.trace("Loading ServiceBean", t);
+            /* The ServiceClassLoader is discarded, release what has been cached for it */
+            if(jsbCL!=null) {
+                if(globalPolicy!=null)
+                    globalPolicy.setPolicy(jsbCL, null);
+                BeanHelper.release(jsbCL);
+            }
             if(t instanceof ServiceBeanInstantiationException)
                 e = (ServiceBeanInstantiationException)t;
             else
@@ -34,6 +34,9 @@ import org.rioproject.system.capability.PlatformCapability;
 import org.rioproject.system.measurable.SigarHelper;
 import org.rioproject.system.measurable.cpu.CPU;
 import org.rioproject.system.measurable.cpu.ProcessCPUHandler;
+import org.rioproject.system.measurable.gc.GarbageCollection;
+import org.rioproject.system.measurable.gc.GarbageCollectionMeasure;
+import org.rioproject.system.measurable.gc.GarbageCollectionMonitor;
 import org.rioproject.system.measurable.memory.Memory;
 import org.rioproject.system.measurable.memory.ProcessMemoryMonitor;
 import org.rioproject.watch.WatchDescriptor;
@@ -177,6 +180,7 @@ public class ServiceExecutor {
     private SigarHelper sigar;
     private Memory memory;
     private CPU cpu;
+    private final List<GarbageCollection> gcWatches = new ArrayList<GarbageCollection>();
     private long actualPID=-1;
     private MBeanServerConnection mbsc;
     private ServiceBeanContext context;
@@ -370,6 +374,8 @@ public class ServiceExecutor {
             mRes =  new ArrayList<MeasuredResource>();            
             mRes.add(memory.getMeasuredResource());
             mRes.add(cpu.getMeasuredResource());
+            for(GarbageCollection gc : gcWatches)
+                mRes.add(gc.getMeasuredResource());
         } else {
             mRes = Collections.unmodifiableList(new ArrayList<MeasuredResource>());
         }
@@ -416,6 +422,30 @@ public class ServiceExecutor {
 
             context.getWatchRegistry().register(memory, cpu);
         }
+        createGarbageCollectionWatches();
+    }
+
+    /*
+     * Create garbage collection watches that use the garbage collector and
+     * memory pool MXBeans of the exec'd JVM
+     */
+    private void createGarbageCollectionWatches() {
+        GarbageCollectionMeasure[] measures;
+        try {
+            measures = GarbageCollection.getConfiguredMeasures(config);
+        } catch (ConfigurationException e) {
+            logger.warn("Getting garbage collection measures, garbage collection will not be monitored", e);
+            return;
+        }
+        for(GarbageCollectionMeasure measure : measures) {
+            GarbageCollection gc = new GarbageCollection(measure, config);
+            if(!gc.isEnabled() || !(gc.getMeasurableMonitor() instanceof GarbageCollectionMonitor))
+                continue;
+            ((GarbageCollectionMonitor)gc.getMeasurableMonitor()).setMBeanServerConnection(mbsc);
+            gc.start();
+            context.getWatchRegistry().register(gc);
+            gcWatches.add(gc);
+        }
     }
 
     private <T> T getPlatformMXBeanProxy(final MBeanServerConnection mbsc,
@@ -499,6 +529,8 @@ public class ServiceExecutor {
             memory.stop();
         if(cpu!=null)
             cpu.stop();
+        for(GarbageCollection gc : gcWatches)
+            gc.stop();
         if (processManager != null) {
             processManager.destroy(true);
         }
@@ -15,6 +15,7 @@
  */
 package org.rioproject.jsb;
 
+import net.jini.config.Configuration;
 import net.jini.config.ConfigurationException;
 import org.rioproject.config.Constants;
 import org.rioproject.core.jsb.ServiceBeanContext;
@@ -187,6 +188,48 @@ public class ServiceBeanSLAManager {
                 } catch (Exception e) {
                     logger.warn("Creating SLAPolicyHandler for SLA [{}]", sla.getIdentifier(), e);
                 }
+
+            /* Check if the SLA matches the ThreadContentionMonitor. */
+            } else if(identifier.equals(ThreadContentionMonitor.ID)) {
+                WatchDescriptor wDesc = ServiceElementUtil.getWatchDescriptor(elem, ThreadContentionMonitor.ID);
+                if(wDesc==null)
+                    wDesc = ThreadContentionMonitor.getWatchDescriptor();
+
+                /* Thread contention is measured for a whole JVM. If the
+                 * service is not forked and running in it's own VM, the
+                 * measurement would include the threads of the Cybernode and
+                 * of every other service it hosts, so it is not enabled */
+                if(wDesc.getMBeanServerConnection()==null && !runningForked()) {
+                    logger.warn("Thread contention monitoring is measured at the process level, and is only " +
+                                "enabled for services that are forked. The SLA declaration for " +
+                                "the [{}] service will be ignored.", elem.getName());
+                    continue;
+                }
+                if(wDesc.getPeriod()<1000) {
+                    logger.info("Thread contention monitoring has been disabled " +
+                                "for service [{}]. The configured thread contention check time was " +
+                                "[{}]. To enable thread contention monitoring, the thread contention " +
+                                "check time must be >= 1000 milliseconds.", elem.getName(), wDesc.getPeriod());
+                    continue;
+                }
+                try {
+                    ClassLoader loader = impl.getClass().getClassLoader();
+                    handler = createSLAPolicyHandler(sla, loader);
+                    Method getThreadContentionCalculable =
+                        ThreadContentionMonitor.class.getMethod("getThreadContentionCalculable");
+                    ThreadContentionMonitor threadContentionMonitor = createThreadContentionMonitor();
+                    if(wDesc.getMBeanServerConnection()!=null) {
+                        ThreadMXBean threadMXBean =
+                            JMXUtil.getPlatformMXBeanProxy(wDesc.getMBeanServerConnection(),
+                                                           ManagementFactory.THREAD_MXBEAN_NAME,
+                                                           ThreadMXBean.class);
+                        threadContentionMonitor.setThreadMXBean(threadMXBean);
+                    }
+                    logger.info("Setting thread contention monitoring: {}", sla);
+                    watchInjector.inject(wDesc, threadContentionMonitor, getThreadContentionCalculable);
+                } catch (Exception e) {
+                    logger.warn("Creating SLAPolicyHandler for SLA [{}]", sla.getIdentifier(), e);
+                }
             } else {
                 try {
                     handler = createSLAPolicyHandler(sla, impl.getClass().getClassLoader());
@@ -408,6 +451,29 @@ public class ServiceBeanSLAManager {
         return (list.toArray(new WatchDescriptor[list.size()]));
     }
 
+    /*
+     * Create a ThreadContentionMonitor using the threadContentionOverheadBudget,
+     * threadContentionStackDepth and threadContentionTopLocks entries of the
+     * service's configuration
+     */
+    private ThreadContentionMonitor createThreadContentionMonitor() throws ConfigurationException {
+        ThreadContentionMonitor monitor = new ThreadContentionMonitor();
+        Configuration config = context.getConfiguration();
+        monitor.setOverheadBudget((Double)config.getEntry(COMPONENT,
+                                                          "threadContentionOverheadBudget",
+                                                          double.class,
+                                                          ThreadContentionMonitor.DEFAULT_OVERHEAD_BUDGET));
+        monitor.setStackDepth((Integer)config.getEntry(COMPONENT,
+                                                       "threadContentionStackDepth",
+                                                       int.class,
+                                                       ThreadContentionMonitor.DEFAULT_STACK_DEPTH));
+        monitor.setTopLocks((Integer)config.getEntry(COMPONENT,
+                                                     "threadContentionTopLocks",
+                                                     int.class,
+                                                     ThreadContentionMonitor.DEFAULT_TOP_LOCKS));
+        return monitor;
+    }
+
     /*
      * Get the MeasurableCapability for a SLA
      *
@@ -30,7 +30,6 @@ import org.rioproject.log.LoggerConfig;
 import org.rioproject.opstring.ClassBundle;
 import org.rioproject.opstring.ServiceBeanConfig;
 import org.rioproject.opstring.ServiceElement;
-import org.rioproject.resolver.RemoteRepository;
 import org.rioproject.sla.SLA;
 import org.rioproject.sla.SLAPolicyHandler;
 import org.rioproject.sla.ServiceLevelAgreements;
@@ -41,10 +40,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.management.MBeanServerConnection;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 
 /**
  * The ServiceElementUtil class provides static methods to assist in working
@@ -54,6 +57,8 @@ import java.util.Map;
  */
 public final class ServiceElementUtil {
     private static Logger logger = LoggerFactory.getLogger("org.rioproject.jsb.ServiceElementUtil");
+    /** The ServiceBeanConfig parameters that are specific to a service instance */
+    private static final String[] INSTANCE_PARAMETERS = {ServiceBeanConfig.INSTANCE_ID, ServiceBeanConfig.HOST_HISTORY};
 
     private ServiceElementUtil() {}
 
@@ -294,7 +299,10 @@ public final class ServiceElementUtil {
     }
     
     /**
-     * Set the instanceID, optionally making a copy of the ServiceElement
+     * Set the instanceID, optionally making a copy of the ServiceElement. The
+     * copy shares the attributes of the ServiceElement and its
+     * ServiceBeanConfig, see
+     * {@link ServiceElement#ServiceElement(ServiceElement, ServiceBeanConfig)}
      * 
      * @param sElem The ServiceElement to use
      * @param copy If true, make a copy of the ServiceElement before assigning
@@ -304,21 +312,11 @@ public final class ServiceElementUtil {
      * @return A ServiceElement with it's instanceID set to the value provided
      */
     public static ServiceElement prepareInstanceID(ServiceElement sElem,  boolean copy, long id) {
-        ServiceElement elem = sElem;
+        ServiceBeanConfig sbConfig = new ServiceBeanConfig(sElem.getServiceBeanConfig(), id);
         if(copy)
-            elem = copyServiceElement(sElem);
-        
-        /* set the instance id */
-        Map<String, Object> parms = elem.getServiceBeanConfig().getConfigurationParameters();
-        parms.put(ServiceBeanConfig.INSTANCE_ID, id);
-        ServiceBeanConfig sbConfig = new ServiceBeanConfig(parms, elem.getServiceBeanConfig().getConfigArgs());
-        /* Get the initialization parameters and add them */
-        Map<String, Object> initParms = elem.getServiceBeanConfig().getInitParameters();
-        for (Map.Entry<String, Object> e : initParms.entrySet()) {
-            sbConfig.addInitParameter(e.getKey(), e.getValue());
-        }
-        elem.setServiceBeanConfig(sbConfig);        
-        return(elem);
+            return(new ServiceElement(sElem, sbConfig));
+        sElem.setServiceBeanConfig(sbConfig);
+        return(sElem);
     }
     
     /**
@@ -364,33 +362,117 @@ public final class ServiceElementUtil {
      * @return A new ServiceElement
      */
     public static ServiceElement copyServiceElement(ServiceElement sElem) {
-        ServiceBeanConfig oldSBC = sElem.getServiceBeanConfig();
-        ServiceBeanConfig sbc = new ServiceBeanConfig(oldSBC.getConfigurationParameters(), oldSBC.getConfigArgs());
-        for(Map.Entry<String, Object> entry : oldSBC.getInitParameters().entrySet()) {
-            sbc.addInitParameter(entry.getKey(), entry.getValue());
+        ServiceBeanConfig sbConfig = sElem.getServiceBeanConfig();
+        Long id = sbConfig.getInstanceID();
+        return(new ServiceElement(sElem, new ServiceBeanConfig(sbConfig, id==null?0:id)));
+    }
+
+    /**
+     * Get the ServiceBeanConfig parameters that are specific to a service
+     * instance: the instance ID and the host history
+     *
+     * @param sElem The ServiceElement for the service instance
+     *
+     * @return A Map of the instance parameters that are set. A new Map is
+     * allocated each time.
+     */
+    public static Map<String, Object> getInstanceParameters(ServiceElement sElem) {
+        Map<String, Object> configParms = sElem.getServiceBeanConfig().getConfigurationParameters();
+        Map<String, Object> instanceParms = new HashMap<String, Object>();
+        for(String key : INSTANCE_PARAMETERS) {
+            if(configParms.containsKey(key))
+                instanceParms.put(key, configParms.get(key));
         }
-        sbc.addLoggerConfig(oldSBC.getLoggerConfigs());
-        ServiceElement elem = new ServiceElement(sElem.getProvisionType(),
-                                                 sbc,
-                                                 sElem.getServiceLevelAgreements(),
-                                                 sElem.getExportBundles(),
-                                                 sElem.getFaultDetectionHandlerBundle(),
-                                                 sElem.getComponentBundle());
-        elem.setPlanned(sElem.getPlanned());
-        elem.setCluster(sElem.getCluster());
-        elem.setMaxPerMachine(sElem.getMaxPerMachine());
-        elem.setMatchOnName(sElem.getMatchOnName());
-        elem.setMachineBoundary(sElem.getMachineBoundary());
-        elem.setAutoAdvertise(sElem.getAutoAdvertise());
-        elem.setDiscoveryManagementPooling(sElem.getDiscoveryManagementPooling());
-        elem.setAssociationDescriptors(sElem.getAssociationDescriptors());
-        elem.setExecDescriptor(sElem.getExecDescriptor());
-        elem.setStagedData(sElem.getStagedData());
-        elem.setFork(sElem.forkService());
-        List<RemoteRepository> rr = new ArrayList<RemoteRepository>();
-        rr.addAll(Arrays.asList(sElem.getRemoteRepositories()));
-        elem.setRemoteRepositories(rr);
-        elem.setRuleMaps(sElem.getRuleMaps());
+        return(instanceParms);
+    }
+
+    /**
+     * Compute a digest of a ServiceElement without its instance parameters.
+     * Instances of a service that differ only in their instance parameters
+     * have the same digest.
+     *
+     * <p>The digest is computed from a canonical form of the ServiceElement:
+     * the ServiceElement without its ServiceBeanConfig, actual instance count
+     * and provisionable platform capabilities, followed by the configuration
+     * and initialization parameters in key order, the {@code LoggerConfig}s and
+     * the configuration arguments. Equal parameters produce the same digest
+     * regardless of the order they were added in.
+     *
+     * @param sElem The ServiceElement
+     *
+     * @return The SHA-1 digest of the canonical form, as a hexadecimal String
+     *
+     * @throws IOException if the ServiceElement cannot be serialized
+     */
+    public static String getElementDigest(ServiceElement sElem) throws IOException {
+        ServiceBeanConfig sbConfig = sElem.getServiceBeanConfig();
+        Map<String, Object> configParms = new TreeMap<String, Object>(sbConfig.getConfigurationParameters());
+        for(String key : INSTANCE_PARAMETERS)
+            configParms.remove(key);
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-1 is not available", e);
+        }
+        ObjectOutputStream out = new ObjectOutputStream(new DigestOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, digest));
+        out.writeObject(new ServiceElement(sElem, new ServiceBeanConfig()));
+        writeParameters(out, configParms);
+        writeParameters(out, new TreeMap<String, Object>(sbConfig.getInitParameters()));
+        out.writeObject(sbConfig.getLoggerConfigs());
+        out.writeObject(sbConfig.getConfigArgs());
+        out.close();
+        return(String.format("%040x", new BigInteger(1, digest.digest())));
+    }
+
+    /*
+     * Write parameters in the iteration order of the Map
+     */
+    private static void writeParameters(ObjectOutputStream out, Map<String, Object> parameters) throws IOException {
+        out.writeInt(parameters.size());
+        for(Map.Entry<String, Object> entry : parameters.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    /**
+     * Create the ServiceElement for a service instance from a ServiceElement
+     * that has the same element digest, and the instance parameters
+     *
+     * @param template A ServiceElement with the same element digest, typically
+     * for another instance of the service
+     * @param instanceParameters The instance parameters, as returned by
+     * {@link #getInstanceParameters(ServiceElement)}
+     *
+     * @return A new ServiceElement, sharing the attributes of the template
+     */
+    public static ServiceElement createInstance(ServiceElement template, Map<String, Object> instanceParameters) {
+        Map<String, Object> configParms = template.getServiceBeanConfig().getConfigurationParameters();
+        for(String key : INSTANCE_PARAMETERS)
+            configParms.remove(key);
+        if(instanceParameters!=null)
+            configParms.putAll(instanceParameters);
+        ServiceBeanConfig sbConfig = new ServiceBeanConfig(template.getServiceBeanConfig(), 0);
+        sbConfig.setConfigurationParameters(configParms);
+        return(createInstance(template, sbConfig));
+    }
+
+    /*
+     * Create a ServiceElement sharing the attributes of the template,
+     * including those that are not shared by the ServiceElement constructor
+     */
+    private static ServiceElement createInstance(ServiceElement template, ServiceBeanConfig sbConfig) {
+        ServiceElement elem = new ServiceElement(template, sbConfig);
+        elem.setActual(template.getActual());
+        elem.setProvisionablePlatformCapabilities(template.getProvisionablePlatformCapabilities());
         return(elem);
     }
 
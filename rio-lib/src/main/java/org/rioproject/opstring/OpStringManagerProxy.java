@@ -18,6 +18,8 @@ package org.rioproject.opstring;
 import net.jini.admin.Administrable;
 import net.jini.config.ConfigurationException;
 import net.jini.core.discovery.LookupLocator;
+import net.jini.core.entry.Entry;
+import net.jini.core.lookup.ServiceID;
 import net.jini.core.lookup.ServiceItem;
 import net.jini.core.lookup.ServiceTemplate;
 import net.jini.discovery.DiscoveryManagement;
@@ -25,6 +27,11 @@ import net.jini.lookup.LookupCache;
 import net.jini.lookup.ServiceDiscoveryEvent;
 import org.rioproject.deploy.DeployAdmin;
 import org.rioproject.deploy.ProvisionManager;
+import org.rioproject.event.BasicEventConsumer;
+import org.rioproject.event.EventDescriptor;
+import org.rioproject.event.EventProducer;
+import org.rioproject.event.RemoteServiceEvent;
+import org.rioproject.event.RemoteServiceEventListener;
 import org.rioproject.resources.client.DiscoveryManagementPool;
 import org.rioproject.resources.client.LookupCachePool;
 import org.rioproject.resources.client.ServiceDiscoveryAdapter;
@@ -34,14 +41,23 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.rmi.ConnectIOException;
+import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A generated proxy to assist with the management of {@link OperationalStringManager} instances.
+ * Proxies created for the same OperationalString share a dispatcher, and all dispatchers
+ * share a single listener for ProvisionMonitor discovery.
  *
  * @author Dennis Reedy
  */
@@ -69,9 +85,7 @@ public class OpStringManagerProxy {
         if(discoMgmt==null) {
             throw new IllegalStateException("DiscoveryManagement has not been set into proxy");
         }
-        return (OperationalStringManager) Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(),
-                                                                 new Class[]{OpStringManager.class},
-                                                                 new OpStringManagerDispatcher(name, manager, discoMgmt));
+        return createProxy(name, manager, discoMgmt);
     }
 
     /**
@@ -96,140 +110,488 @@ public class OpStringManagerProxy {
         assert dMgr!=null;
         if(discoMgmt==null)
             discoMgmt = dMgr;
+        return createProxy(name, manager, dMgr);
+    }
+
+    /*
+     * Create a proxy that uses the shared dispatcher for the OperationalString
+     */
+    private static OperationalStringManager createProxy(String name,
+                                                        OperationalStringManager manager,
+                                                        DiscoveryManagement dMgr)
+        throws ConfigurationException, IOException {
+        OpStringManagerDispatcher dispatcher = MonitorTracker.acquire(name, manager, dMgr);
         return (OperationalStringManager) Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(),
                                                                  new Class[]{OpStringManager.class},
-                                                                 new OpStringManagerDispatcher(name, manager, dMgr));
+                                                                 new OpStringManagerHandle(dispatcher));
     }
 
     /**
-     * A CGLIB dispatcher for managing the invocation of methods to the
-     * primary {@link OperationalStringManager} instance.
+     * The invocation handler of each proxy. Proxies for the same
+     * OperationalString share one {@link OpStringManagerDispatcher}, the
+     * dispatcher is terminated when the last proxy using it is terminated.
      */
-    public static class OpStringManagerDispatcher extends ServiceDiscoveryAdapter implements InvocationHandler {
-        String name;
-        OperationalStringManager manager;
-        DiscoveryManagement dMgr;
-        LookupCache lCache;
-        boolean terminated = false;
-        final List<ProvisionManager> monitors = new ArrayList<ProvisionManager>();
-        final Logger logger = LoggerFactory.getLogger(OpStringManagerDispatcher.class);
+    static class OpStringManagerHandle implements InvocationHandler {
+        final OpStringManagerDispatcher dispatcher;
+        final AtomicBoolean terminated = new AtomicBoolean(false);
 
-        public OpStringManagerDispatcher(String name,
-                                         OperationalStringManager manager,
-                                         DiscoveryManagement dMgr) throws ConfigurationException, IOException {
-            this.name = name;
-            this.manager = manager;
+        OpStringManagerHandle(OpStringManagerDispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if(terminated.get()) {
+                throw new IllegalStateException("The OpStringManagerDispatcher has been terminated, " +
+                                                "invocations through this utility are not possible " +
+                                                "in it's current state. Make sure all invoking " +
+                                                "threads are terminated to resolve this issue");
+            }
+            if(method.getName().equals("terminate")) {
+                if(terminated.compareAndSet(false, true))
+                    MonitorTracker.release(dispatcher);
+                return null;
+            }
+            return dispatcher.invoke(proxy, method, args);
+        }
+    }
+
+    /**
+     * Tracks the ProvisionMonitor instances discovered using a
+     * DiscoveryManagement instance, and the {@link OpStringManagerDispatcher}s
+     * that use them, one for each OperationalString. A single
+     * {@code LookupCache} listener is registered for all dispatchers, and a
+     * dispatcher is shared by all proxies for the same OperationalString.
+     * The listener is removed when the last dispatcher is terminated.
+     *
+     * <p>A tracker performs a remote lookup of ProvisionMonitor instances when
+     * created, it is therefore created without holding the trackers lock. If
+     * trackers for the same DiscoveryManagement are created concurrently, the
+     * first one published is used and the others are terminated.
+     */
+    static class MonitorTracker extends ServiceDiscoveryAdapter {
+        private static final Map<DiscoveryManagement, MonitorTracker> trackers =
+            new HashMap<DiscoveryManagement, MonitorTracker>();
+        /* Provides the LookupCache instances trackers use, replaced for testing */
+        static LookupCacheSource cacheSource = new LookupCacheSource();
+        final DiscoveryManagement dMgr;
+        final LookupCache lCache;
+        final CopyOnWriteArrayList<ProvisionManager> monitors = new CopyOnWriteArrayList<ProvisionManager>();
+        /* Dispatchers by OperationalString name, guarded by the trackers lock */
+        final Map<String, OpStringManagerDispatcher> dispatchers = new HashMap<String, OpStringManagerDispatcher>();
+        final Logger logger = LoggerFactory.getLogger(MonitorTracker.class);
+
+        MonitorTracker(DiscoveryManagement dMgr) throws ConfigurationException, IOException {
             this.dMgr = dMgr;
             ServiceTemplate template = new ServiceTemplate(null, new Class[] {ProvisionManager.class}, null);
-            lCache = LookupCachePool.getInstance().getLookupCache(dMgr, template);
-            if(lCache instanceof LookupCachePool.SharedLookupCache) {
-                LookupCachePool.SharedLookupCache sCache =
-                    (LookupCachePool.SharedLookupCache)lCache;
-                for(ServiceItem item : sCache.lookupRemote(null, Integer.MAX_VALUE)) {
-                    synchronized(monitors) {
-                        monitors.add((ProvisionManager) item.service);
-                    }
+            LookupCache cache;
+            while(true) {
+                cache = cacheSource.getLookupCache(dMgr, template);
+                ServiceItem[] items;
+                if(cache instanceof LookupCachePool.SharedLookupCache) {
+                    LookupCachePool.SharedLookupCache sCache =
+                        (LookupCachePool.SharedLookupCache)cache;
+                    items = sCache.lookupRemote(null, Integer.MAX_VALUE);
+                } else {
+                    items = cache.lookup(null, Integer.MAX_VALUE);
+                }
+                for(ServiceItem item : items) {
+                    addMonitor((ProvisionManager) item.service);
+                    MonitorEventRegistry.getInstance().register(item);
+                }
+                try {
+                    cache.addListener(this);
+                    break;
+                } catch(IllegalStateException e) {
+                    /* The shared LookupCache was terminated after we obtained it, get a fresh one */
+                    logger.debug("LookupCache terminated before adding listener, retrying");
                 }
-            } else {
-                for(ServiceItem item : lCache.lookup(null, Integer.MAX_VALUE)) {
-                    synchronized(monitors) {
-                        monitors.add((ProvisionManager) item.service);
+            }
+            lCache = cache;
+        }
+
+        /*
+         * Get the dispatcher for an OperationalString, creating it if needed,
+         * and add a reference to it
+         */
+        static OpStringManagerDispatcher acquire(String name,
+                                                 OperationalStringManager manager,
+                                                 DiscoveryManagement dMgr) throws ConfigurationException, IOException {
+            MonitorTracker created = null;
+            while(true) {
+                MonitorTracker unused = null;
+                OpStringManagerDispatcher dispatcher = null;
+                synchronized(trackers) {
+                    MonitorTracker tracker = trackers.get(dMgr);
+                    if(tracker==null && created!=null) {
+                        trackers.put(dMgr, created);
+                        tracker = created;
+                    } else {
+                        unused = created;
+                    }
+                    if(tracker!=null) {
+                        dispatcher = tracker.dispatchers.get(name);
+                        if(dispatcher==null) {
+                            dispatcher = new OpStringManagerDispatcher(name, manager, tracker);
+                            tracker.dispatchers.put(name, dispatcher);
+                            MonitorEventRegistry.getInstance().addDispatcher(dispatcher);
+                        } else {
+                            dispatcher.offer(manager);
+                        }
+                        dispatcher.references++;
                     }
                 }
+                if(unused!=null)
+                    unused.terminate();
+                if(dispatcher!=null)
+                    return dispatcher;
+                /* Create the tracker outside of the lock, it looks up the known ProvisionMonitor instances */
+                created = new MonitorTracker(dMgr);
+            }
+        }
+
+        /*
+         * Remove a reference to a dispatcher, terminating the dispatcher when
+         * it is no longer referenced, and the tracker when it has no dispatchers
+         */
+        static void release(OpStringManagerDispatcher dispatcher) {
+            synchronized(trackers) {
+                if(--dispatcher.references>0)
+                    return;
+                MonitorTracker tracker = dispatcher.tracker;
+                tracker.dispatchers.remove(dispatcher.name);
+                MonitorEventRegistry.getInstance().removeDispatcher(dispatcher);
+                dispatcher.terminated = true;
+                dispatcher.logger.debug("Terminated OpStringManagerDispatcher for [{}]", dispatcher.name);
+                if(tracker.dispatchers.isEmpty()) {
+                    tracker.terminate();
+                    trackers.remove(tracker.dMgr);
+                }
+            }
+        }
+
+        /*
+         * Remove the LookupCache listener and clear the known ProvisionMonitor instances
+         */
+        void terminate() {
+            lCache.removeListener(this);
+            monitors.clear();
+        }
+
+        /*
+         * Get the MonitorTracker for a DiscoveryManagement, made visible for testing
+         */
+        static MonitorTracker getTracker(DiscoveryManagement dMgr) {
+            synchronized(trackers) {
+                return trackers.get(dMgr);
             }
-            lCache.addListener(this);
+        }
+
+        List<ProvisionManager> getMonitors() {
+            return new ArrayList<ProvisionManager>(monitors);
+        }
+
+        void addMonitor(ProvisionManager monitor) {
+            monitors.addIfAbsent(monitor);
+        }
+
+        void removeMonitor(ProvisionManager monitor) {
+            if(monitor!=null)
+                monitors.remove(monitor);
         }
 
         public void serviceAdded(ServiceDiscoveryEvent event) {
             ServiceItem item = event.getPostEventServiceItem();
-            synchronized(monitors) {
-                ProvisionManager monitor = (ProvisionManager)item.service;
-                if(!monitors.contains(monitor))
-                    monitors.add(monitor);
-            }
+            addMonitor((ProvisionManager)item.service);
+            MonitorEventRegistry.getInstance().register(item);
         }
 
         public void serviceRemoved(ServiceDiscoveryEvent event) {
             ServiceItem item = event.getPreEventServiceItem();
             ProvisionManager m = (ProvisionManager)item.service;
-            synchronized(monitors) {
-                monitors.remove(m);
-            }
+            removeMonitor(m);
             lCache.discard(m);
+            MonitorEventRegistry.getInstance().deregister(item.serviceID);
+            OpStringManagerDispatcher[] current;
+            synchronized(trackers) {
+                current = dispatchers.values().toArray(new OpStringManagerDispatcher[dispatchers.size()]);
+            }
+            for(OpStringManagerDispatcher dispatcher : current)
+                dispatcher.monitorRemoved(m);
         }
+    }
 
-        OperationalStringManager getManager() throws Throwable {
-            OperationalStringManager opMgr = null;
-            ProvisionManager monitor;
-            synchronized(monitors) {
-                if(!monitors.isEmpty())
-                    monitor = monitors.get(0);
-                else {
-                    StringBuilder sb = new StringBuilder();
-                    if(dMgr instanceof DiscoveryManagementPool.SharedDiscoveryManager) {
-                        DiscoveryManagementPool.SharedDiscoveryManager sdm =
-                            (DiscoveryManagementPool.SharedDiscoveryManager)dMgr;
-                        sb.append("Using discovery attributes: ");
-                        if(sdm.getGroups()!=null) {
-                            sb.append("groups=[");
-                            int i=0;
-                            for(String s : sdm.getGroups()) {
-                                if(i>0)
-                                    sb.append(", ");
-                                sb.append(s);
-                                i++;
-                            }
-                            sb.append("]");
-                        }
-                        if(sdm.getLocators()!=null) {
-                            sb.append(" ");
-                            sb.append("locators=[");
-                            int i=0;
-                            for(LookupLocator l : sdm.getLocators()) {
-                                if(i>0)
-                                    sb.append(", ");
-                                sb.append(l.toString());
-                                i++;
-                            }
-                            sb.append("] ");
+    /**
+     * Provides the {@code LookupCache} a {@link MonitorTracker} uses to
+     * discover ProvisionMonitor instances
+     */
+    static class LookupCacheSource {
+        LookupCache getLookupCache(DiscoveryManagement dMgr, ServiceTemplate template) throws IOException {
+            return LookupCachePool.getInstance().getLookupCache(dMgr, template);
+        }
+    }
+
+    /**
+     * A dispatcher for managing the invocation of methods to the primary
+     * {@link OperationalStringManager} instance.
+     *
+     * <p>The primary is verified once, and then tracked from
+     * {@code ProvisionMonitorEvent} notifications indicating the managing
+     * monitor changed, and from lookup discovery of ProvisionMonitor instances.
+     * Invocations go directly to the tracked primary; the primary is only
+     * re-resolved if it is invalidated by one of these notifications, or if an
+     * invocation fails with a remote failure indicating the manager is no longer
+     * reachable.
+     *
+     * <p>If no ProvisionMonitor reports it is managing the OperationalString,
+     * the manager of the first ProvisionMonitor that provides one is used as a
+     * fallback, but is not verified. The fallback is re-checked on a later
+     * invocation, backing off from {@link #MIN_RECHECK} up to
+     * {@link #MAX_RECHECK} between re-checks, until a managing primary is found.
+     *
+     * <p>A dispatcher is shared by all proxies for the same OperationalString
+     * that use the same DiscoveryManagement, and obtains the known
+     * ProvisionMonitor instances from a {@code MonitorTracker}.
+     */
+    public static class OpStringManagerDispatcher implements InvocationHandler {
+        final String name;
+        final DiscoveryManagement dMgr;
+        final MonitorTracker tracker;
+        /* The number of proxies using the dispatcher, guarded by the MonitorTracker lock */
+        int references;
+        volatile boolean terminated = false;
+        /* The current primary, and the monitor it was obtained from. The
+         * monitor is null if the primary was provided when created */
+        volatile OperationalStringManager manager;
+        volatile ProvisionManager managingMonitor;
+        /* Whether the primary has been verified to be managing the OperationalString */
+        volatile boolean verified = false;
+        /* When an unverified fallback primary is next re-checked, and the
+         * current interval between re-checks, guarded by the resolveLock */
+        volatile long recheckTime;
+        long recheckInterval;
+        /** The initial interval between re-checks of a fallback primary */
+        static final long MIN_RECHECK = 1000;
+        /** The maximum interval between re-checks of a fallback primary */
+        static final long MAX_RECHECK = 30*1000;
+        final Object resolveLock = new Object();
+        final Logger logger = LoggerFactory.getLogger(OpStringManagerDispatcher.class);
+
+        OpStringManagerDispatcher(String name,
+                                  OperationalStringManager manager,
+                                  MonitorTracker tracker) {
+            this.name = name;
+            this.manager = manager;
+            this.tracker = tracker;
+            this.dMgr = tracker.dMgr;
+        }
+
+        /*
+         * Use the OperationalStringManager provided for another proxy if the
+         * primary has not been verified
+         */
+        void offer(OperationalStringManager opMgr) {
+            if(opMgr==null)
+                return;
+            synchronized(resolveLock) {
+                if(!verified || manager==null) {
+                    manager = opMgr;
+                    managingMonitor = null;
+                    recheckTime = 0;
+                }
+            }
+        }
+
+        /*
+         * Notification that a ProvisionMonitor has been removed
+         */
+        void monitorRemoved(ProvisionManager m) {
+            /* If the removed monitor was (or may have been) managing the
+             * OperationalString, the primary must be re-resolved */
+            ProvisionManager current = managingMonitor;
+            if(current==null || current.equals(m)) {
+                logger.debug("ProvisionMonitor removed, invalidate primary for [{}]", name);
+                verified = false;
+                recheckTime = 0;
+            }
+        }
+
+        /**
+         * Notification that a ProvisionMonitor has become the manager of the
+         * OperationalString
+         *
+         * @param monitor The ProvisionMonitor now managing the OperationalString
+         */
+        void primaryChanged(ProvisionManager monitor) {
+            if(terminated)
+                return;
+            synchronized(resolveLock) {
+                try {
+                    OperationalStringManager opMgr = getOperationalStringManager(monitor);
+                    manager = opMgr;
+                    managingMonitor = monitor;
+                    setVerified();
+                    tracker.addMonitor(monitor);
+                    logger.debug("Primary OperationalStringManager for [{}] changed", name);
+                } catch(Exception e) {
+                    verified = false;
+                    recheckTime = 0;
+                    logger.debug("Unable to get new primary OperationalStringManager for [{}], will resolve on next invocation",
+                                 name, e);
+                }
+            }
+        }
+
+        /*
+         * Get the primary OperationalStringManager, verifying it once if it has
+         * not been verified since it was last invalidated. An unverified fallback
+         * is used until it is due to be re-checked
+         */
+        OperationalStringManager getPrimary() throws Throwable {
+            OperationalStringManager current = manager;
+            if(current!=null && (verified || isRecheckPending()))
+                return current;
+            synchronized(resolveLock) {
+                if(manager!=null && (verified || isRecheckPending()))
+                    return manager;
+                if(manager!=null) {
+                    try {
+                        if(manager.isManaging()) {
+                            setVerified();
+                            return manager;
                         }
+                    } catch(Throwable t) {
+                        if(ThrowableUtil.isRetryable(t))
+                            throw t;
+                        logger.debug("Primary OperationalStringManager for [{}] unreachable, select another", name);
+                        removeMonitor(managingMonitor);
                     }
-                    throw new RemoteException("No ProvisionMonitor instances available. "+sb.toString());
+                }
+                manager = getManager();
+                return manager;
+            }
+        }
+
+        private boolean isRecheckPending() {
+            long time = recheckTime;
+            return time!=0 && System.currentTimeMillis()<time;
+        }
+
+        /* Must be called holding the resolveLock */
+        private void setVerified() {
+            verified = true;
+            recheckTime = 0;
+            recheckInterval = 0;
+        }
+
+        /* Must be called holding the resolveLock */
+        private void scheduleRecheck() {
+            verified = false;
+            recheckInterval = recheckInterval==0?MIN_RECHECK:Math.min(recheckInterval*2, MAX_RECHECK);
+            recheckTime = System.currentTimeMillis()+recheckInterval;
+        }
+
+        /*
+         * Invalidate the primary if it is the manager that failed
+         */
+        void invalidate(OperationalStringManager failed) {
+            synchronized(resolveLock) {
+                if(manager==failed) {
+                    verified = false;
+                    removeMonitor(managingMonitor);
+                    manager = null;
+                    managingMonitor = null;
                 }
             }
-            /* If we get an OperationalStringException getting the primary
-             * manager, retry before re-throwing the exception. This is to
-             * allow for a backup ProvisionMonitor to take over */
+        }
+
+        private void removeMonitor(ProvisionManager monitor) {
+            tracker.removeMonitor(monitor);
+        }
+
+        private OperationalStringManager getOperationalStringManager(ProvisionManager monitor) throws Exception {
+            DeployAdmin dAdmin = (DeployAdmin)((Administrable)monitor).getAdmin();
+            return dAdmin.getOperationalStringManager(name);
+        }
+
+        /*
+         * Select the managing OperationalStringManager from the known ProvisionMonitor
+         * instances. A backup is used directly if it reports it is managing the
+         * OperationalString, otherwise the first ProvisionMonitor that provides a
+         * manager is used as an unverified fallback, and is re-checked later.
+         * Must be called holding the resolveLock
+         */
+        OperationalStringManager getManager() throws Throwable {
+            List<ProvisionManager> candidates = tracker.getMonitors();
+            if(candidates.isEmpty())
+                throw new RemoteException("No ProvisionMonitor instances available. "+getDiscoveryAttributes());
+
+            /* Fail over to a monitor that already manages the OperationalString */
+            OperationalStringManager fallback = null;
+            ProvisionManager fallbackMonitor = null;
             Throwable toThrow = null;
-            for(int i=0; i<3; i++) {
+            for(ProvisionManager monitor : candidates) {
                 if(terminated)
                     break;
                 try {
-                    DeployAdmin dAdmin = (DeployAdmin)((Administrable)monitor).getAdmin();
-                    opMgr = dAdmin.getOperationalStringManager(name);
-                    toThrow = null;
-                    break;
-                } catch(Throwable t) {
-                    //t.printStackTrace();
-                    toThrow = t;
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e1) {
-                        /* ignore */
+                    OperationalStringManager opMgr = getOperationalStringManager(monitor);
+                    if(opMgr.isManaging()) {
+                        managingMonitor = monitor;
+                        setVerified();
+                        return opMgr;
                     }
-                    if(!ThrowableUtil.isRetryable(t)) {
-                        synchronized(monitors) {
-                            if(!monitors.isEmpty())
-                                monitors.remove(monitor);
-                            else
-                                toThrow = t;
-                        }
+                    if(fallback==null) {
+                        fallback = opMgr;
+                        fallbackMonitor = monitor;
                     }
+                } catch(Throwable t) {
+                    toThrow = t;
+                    if(!ThrowableUtil.isRetryable(t))
+                        removeMonitor(monitor);
                 }
             }
+            if(fallback!=null) {
+                managingMonitor = fallbackMonitor;
+                scheduleRecheck();
+                logger.debug("No ProvisionMonitor reports managing [{}], re-check the fallback in {} ms",
+                             name, recheckInterval);
+                return fallback;
+            }
             if(toThrow!=null)
                 throw toThrow;
-            return opMgr;
+            throw new RemoteException("No ProvisionMonitor instances available. "+getDiscoveryAttributes());
+        }
+
+        private String getDiscoveryAttributes() {
+            StringBuilder sb = new StringBuilder();
+            if(dMgr instanceof DiscoveryManagementPool.SharedDiscoveryManager) {
+                DiscoveryManagementPool.SharedDiscoveryManager sdm =
+                    (DiscoveryManagementPool.SharedDiscoveryManager)dMgr;
+                sb.append("Using discovery attributes: ");
+                if(sdm.getGroups()!=null) {
+                    sb.append("groups=[");
+                    int i=0;
+                    for(String s : sdm.getGroups()) {
+                        if(i>0)
+                            sb.append(", ");
+                        sb.append(s);
+                        i++;
+                    }
+                    sb.append("]");
+                }
+                if(sdm.getLocators()!=null) {
+                    sb.append(" ");
+                    sb.append("locators=[");
+                    int i=0;
+                    for(LookupLocator l : sdm.getLocators()) {
+                        if(i>0)
+                            sb.append(", ");
+                        sb.append(l.toString());
+                        i++;
+                    }
+                    sb.append("] ");
+                }
+            }
+            return sb.toString();
         }
 
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
@@ -239,32 +601,133 @@ public class OpStringManagerProxy {
                                                 "in it's current state. Make sure all invoking " +
                                                 "threads are terminated to resolve this issue");
             }
-            if(method.getName().equals("terminate")) {
-                lCache.removeListener(this);
-                monitors.clear();
-                terminated = true;
-                logger.debug("Terminated OpStringManagerDispatcher");
-                return null;
-            }
-            while(!terminated) {
+            /* Retry once if the invocation was not delivered to the primary */
+            for(int attempt=0; ; attempt++) {
+                if(terminated)
+                    return null;
+                OperationalStringManager opMgr = getPrimary();
                 try {
-                    if(manager.isManaging())
-                        break;
-                    manager = getManager();
-                } catch (Throwable t) {
-                    if(terminated)
-                        break;
-                    if(!ThrowableUtil.isRetryable(t)) {
-                        manager = getManager();
-                    } else {
-                        throw t;
+                    return method.invoke(opMgr, args);
+                } catch(InvocationTargetException e) {
+                    Throwable cause = e.getCause()==null?e.getTargetException():e.getCause();
+                    if(ThrowableUtil.isRetryable(cause))
+                        throw cause;
+                    invalidate(opMgr);
+                    if(attempt>0 || !notDelivered(cause))
+                        throw cause;
+                    logger.debug("Primary OperationalStringManager for [{}] not reachable, retry [{}]",
+                                 name, method.getName());
+                }
+            }
+        }
+
+        /*
+         * Whether the remote failure indicates the call never reached the
+         * remote object, and may therefore be safely re-issued
+         */
+        private boolean notDelivered(Throwable t) {
+            return t instanceof java.rmi.ConnectException ||
+                   t instanceof ConnectIOException ||
+                   t instanceof NoSuchObjectException ||
+                   ThrowableUtil.getRootCause(t) instanceof java.net.ConnectException;
+        }
+    }
+
+    /**
+     * Registers for {@code ProvisionMonitorEvent} notifications from discovered
+     * ProvisionMonitor instances on behalf of all {@link OpStringManagerDispatcher}
+     * instances, notifying dispatchers when the managing ProvisionMonitor for
+     * their OperationalString changes. The event class is accessed by name, the
+     * ProvisionMonitor API is not required to be available to this utility.
+     */
+    static class MonitorEventRegistry implements RemoteServiceEventListener {
+        static final String PROVISION_MONITOR_EVENT = "org.rioproject.monitor.ProvisionMonitorEvent";
+        static final String OPSTRING_MGR_CHANGED = "OPSTRING_MGR_CHANGED";
+        private static final MonitorEventRegistry instance = new MonitorEventRegistry();
+        private final List<OpStringManagerDispatcher> dispatchers = new CopyOnWriteArrayList<OpStringManagerDispatcher>();
+        private BasicEventConsumer eventConsumer;
+        private boolean consumerFailed;
+        private final Logger logger = LoggerFactory.getLogger(MonitorEventRegistry.class);
+
+        static MonitorEventRegistry getInstance() {
+            return instance;
+        }
+
+        void addDispatcher(OpStringManagerDispatcher dispatcher) {
+            dispatchers.add(dispatcher);
+        }
+
+        synchronized void removeDispatcher(OpStringManagerDispatcher dispatcher) {
+            dispatchers.remove(dispatcher);
+            if(dispatchers.isEmpty() && eventConsumer!=null) {
+                eventConsumer.terminate();
+                eventConsumer = null;
+            }
+        }
+
+        synchronized void register(ServiceItem item) {
+            if(!(item.service instanceof EventProducer))
+                return;
+            EventDescriptor eDesc = null;
+            if(item.attributeSets!=null) {
+                for(Entry entry : item.attributeSets) {
+                    if(entry instanceof EventDescriptor) {
+                        EventDescriptor ed = (EventDescriptor)entry;
+                        if(ed.eventClass!=null && ed.eventClass.getName().equals(PROVISION_MONITOR_EVENT)) {
+                            eDesc = ed;
+                            break;
+                        }
                     }
                 }
             }
-            if(terminated)
-                return null;
+            if(eDesc==null)
+                return;
+            BasicEventConsumer consumer = getEventConsumer();
+            if(consumer!=null)
+                consumer.register((EventProducer)item.service, eDesc, item.serviceID);
+        }
+
+        synchronized void deregister(ServiceID serviceID) {
+            if(eventConsumer!=null)
+                eventConsumer.deregister(serviceID, false);
+        }
 
-            return method.invoke(manager, args);
+        private BasicEventConsumer getEventConsumer() {
+            if(eventConsumer==null && !consumerFailed) {
+                try {
+                    eventConsumer = new BasicEventConsumer(this);
+                } catch(Exception e) {
+                    /* Dispatchers still track the primary from discovery and remote failures */
+                    consumerFailed = true;
+                    logger.warn("Unable to create event consumer for ProvisionMonitor events, " +
+                                "changes in the primary OperationalStringManager will be detected on failure", e);
+                }
+            }
+            return eventConsumer;
+        }
+
+        public void notify(RemoteServiceEvent event) {
+            if(!event.getClass().getName().equals(PROVISION_MONITOR_EVENT))
+                return;
+            if(!OPSTRING_MGR_CHANGED.equals(getProperty(event, "getAction")))
+                return;
+            if(!(event.getSource() instanceof ProvisionManager))
+                return;
+            String opStringName = getProperty(event, "getOperationalStringName");
+            for(OpStringManagerDispatcher dispatcher : dispatchers) {
+                if(dispatcher.name.equals(opStringName))
+                    dispatcher.primaryChanged((ProvisionManager)event.getSource());
+            }
+        }
+
+        private String getProperty(RemoteServiceEvent event, String accessor) {
+            try {
+                Object value = event.getClass().getMethod(accessor).invoke(event);
+                return value==null?null:value.toString();
+            } catch(Exception e) {
+                logger.trace("Unable to get {} from {}", accessor, event.getClass().getName(), e);
+                return null;
+            }
         }
     }
 
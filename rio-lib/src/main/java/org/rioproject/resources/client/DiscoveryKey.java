@@ -0,0 +1,82 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.resources.client;
+
+import net.jini.core.discovery.LookupLocator;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A canonical, hashable key for discovery criteria: a shared name, the groups
+ * and the locators to discover. Groups and locators are compared as sets, the
+ * order they are provided in does not matter. {@code null} groups
+ * ({@code LookupDiscovery.ALL_GROUPS}) are distinct from an empty group array
+ * ({@code LookupDiscovery.NO_GROUPS}), {@code null} locators and an empty
+ * locator array are equivalent.
+ */
+final class DiscoveryKey {
+    private final String sharedName;
+    private final Set<String> groups;
+    private final Set<String> locators;
+    private final int hash;
+
+    DiscoveryKey(final String sharedName, final String[] groups, final LookupLocator[] locators) {
+        this.sharedName = sharedName;
+        if(groups==null) {
+            this.groups = null;
+        } else {
+            this.groups = new TreeSet<String>();
+            for(String group : groups)
+                this.groups.add(group);
+        }
+        this.locators = new TreeSet<String>();
+        if(locators!=null) {
+            for(LookupLocator locator : locators)
+                this.locators.add(locator.getHost().toLowerCase()+":"+locator.getPort());
+        }
+        int h = sharedName==null?0:sharedName.hashCode();
+        h = 31*h + (this.groups==null?-1:this.groups.hashCode());
+        h = 31*h + this.locators.hashCode();
+        hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if(this==o)
+            return true;
+        if(!(o instanceof DiscoveryKey))
+            return false;
+        DiscoveryKey that = (DiscoveryKey)o;
+        if(hash!=that.hash)
+            return false;
+        if(sharedName==null?that.sharedName!=null:!sharedName.equals(that.sharedName))
+            return false;
+        if(groups==null?that.groups!=null:!groups.equals(that.groups))
+            return false;
+        return locators.equals(that.locators);
+    }
+
+    @Override
+    public String toString() {
+        return "name="+sharedName+", groups="+(groups==null?"ALL_GROUPS":groups)+", locators="+locators;
+    }
+}
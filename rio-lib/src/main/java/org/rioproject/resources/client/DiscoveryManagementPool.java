@@ -22,7 +22,6 @@ import net.jini.config.EmptyConfiguration;
 import net.jini.core.discovery.LookupLocator;
 import net.jini.discovery.DiscoveryListener;
 import net.jini.discovery.DiscoveryManagement;
-import net.jini.discovery.LookupDiscovery;
 import net.jini.discovery.LookupDiscoveryManager;
 import org.rioproject.config.Constants;
 import org.slf4j.Logger;
@@ -31,9 +30,8 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -50,7 +48,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  * use the OperationalString name as the shared name. Therefore all services 
  * instantiated in the same Cybernode, that are in the same OperationalString, 
  * which have the same DiscoveryManagement groups and locators, will share the 
- * same DiscoveryManagement instance.
+ * same DiscoveryManagement instance. Groups and locators are matched as sets,
+ * the order they are declared in does not matter.
  * <p>
  * Of course use of shared DiscoveryManagement instances must be used with care 
  * as changing the settings of a shared DiscoveryManagement instance may present 
@@ -66,7 +65,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @author Dennis Reedy
  */
 public class DiscoveryManagementPool {
-    private final List<DiscoveryControl> pool = new ArrayList<DiscoveryControl>();
+    private final ConcurrentMap<String, DiscoveryControl> pool = new ConcurrentHashMap<String, DiscoveryControl>();
+    /* Key used for DiscoveryControl instances created without a shared name */
+    private static final String NO_SHARED_NAME = DiscoveryManagementPool.class.getName()+".none";
     private final static String COMPONENT = DiscoveryManagementPool.class.getName();
     private static Logger logger = LoggerFactory.getLogger(COMPONENT);
     private Configuration defaultConfig;
@@ -196,29 +197,8 @@ public class DiscoveryManagementPool {
                                                    LookupLocator[] locators, 
                                                    DiscoveryListener listener,
                                                    Configuration config) throws IOException {
-        
-        LookupDiscoveryManager ldm  ;
-        synchronized(this) {
-            DiscoveryControl discoControl = getDiscoveryControl(sharedName);
-            if(discoControl==null) {
-                discoControl = new DiscoveryControl(sharedName);
-                pool.add(discoControl);
-                if(logger.isDebugEnabled()) 
-                    logger.debug("Create new DiscoveryControl for [{}]", sharedName);
-            } else {
-                if(logger.isDebugEnabled()) 
-                    logger.debug("DiscoveryControl obtained for [{}]", sharedName);
-            }
-            ldm = discoControl.getLookupDiscoveryManager(groups, locators);        
-            if(ldm==null) {
-                ldm = discoControl.createLookupDiscoveryManager(groups, locators, listener, config);
-            } else {
-                ((SharedDiscoveryManager)ldm).incrementRefCounter();
-                if(listener!=null)
-                    ldm.addDiscoveryListener(listener);
-            }
-        }
-        return(ldm);
+        DiscoveryControl discoControl = getDiscoveryControl(sharedName);
+        return(discoControl.getDiscoveryManager(groups, locators, listener, config));
     }
 
     /**
@@ -226,7 +206,7 @@ public class DiscoveryManagementPool {
      * them and set the singleton instance to null;
      */
     public void terminate() {
-        for(DiscoveryControl dc : pool) {
+        for(DiscoveryControl dc : pool.values()) {
             dc.terminate();
         }
         pool.clear();
@@ -234,16 +214,17 @@ public class DiscoveryManagementPool {
     }
     
     /*
-     * Get a DiscoveryControl instance
+     * Get a DiscoveryControl instance, creating one if needed
      */    
     private DiscoveryControl getDiscoveryControl(String name) {
-        DiscoveryControl discoControl=null;
-        synchronized(pool) {
-            for(DiscoveryControl dc : pool) {
-                if(dc.namesMatch(name)) {
-                    discoControl = dc;
-                    break;
-                }
+        String key = name==null?NO_SHARED_NAME:name;
+        DiscoveryControl discoControl = pool.get(key);
+        if(discoControl==null) {
+            DiscoveryControl created = new DiscoveryControl(name);
+            discoControl = pool.putIfAbsent(key, created);
+            if(discoControl==null) {
+                discoControl = created;
+                logger.debug("Create new DiscoveryControl for [{}]", name);
             }
         }
         return(discoControl);
@@ -254,43 +235,47 @@ public class DiscoveryManagementPool {
      */
     public static class DiscoveryControl {
         String sharedName;
-        final List<SharedDiscoveryManager> pool = Collections.synchronizedList(new ArrayList<SharedDiscoveryManager>());
+        final ConcurrentMap<DiscoveryKey, SharedDiscoveryManager> pool =
+            new ConcurrentHashMap<DiscoveryKey, SharedDiscoveryManager>();
         
         DiscoveryControl(String sharedName) {
             this.sharedName = sharedName;
         }
 
-        /*
-         * Determine if names match
-         */
-        boolean namesMatch(String name) {
-            if(sharedName == null && name == null)
-                return (true);
-            if(sharedName == null)
-                return (false);
-            if(name == null)
-                return (false);
-            return(sharedName.equals(name));
-        }
-        
         String getSharedName() {
             return(sharedName);
         }
         
         /*
-         * Add a LookupDiscoveryManager instance to the pool
+         * Get a shared LookupDiscoveryManager for the groups and locators, creating
+         * one if needed
          */
-        void addLookupDiscoveryManager(SharedDiscoveryManager ldm) {
-            if(pool!=null)
-                pool.add(ldm);
+        LookupDiscoveryManager getDiscoveryManager(String[] groups,
+                                                   LookupLocator[] locators,
+                                                   DiscoveryListener listener,
+                                                   Configuration config) throws IOException {
+            DiscoveryKey key = new DiscoveryKey(null, groups, locators);
+            SharedDiscoveryManager ldm = pool.get(key);
+            if(ldm==null || !ldm.acquire()) {
+                /* Creation is serialized so equivalent criteria never create more than one instance */
+                synchronized(this) {
+                    ldm = pool.get(key);
+                    if(ldm==null || !ldm.acquire()) {
+                        return(createLookupDiscoveryManager(groups, locators, listener, config));
+                    }
+                }
+            }
+            logger.debug("DiscoveryManagement obtained for [{}]", sharedName);
+            if(listener!=null)
+                ldm.addDiscoveryListener(listener);
+            return(ldm);
         }
-        
+
         /*
          * Remove a LookupDiscoveryManager instance from the pool
          */
         void removeLookupDiscoveryManager(SharedDiscoveryManager ldm) {
-            if(pool!=null)
-                pool.remove(ldm);
+            pool.values().remove(ldm);
         }
      
         /*
@@ -347,9 +332,8 @@ public class DiscoveryManagementPool {
                 logger.warn("Could not create SharedDiscoveryManager", e);
                 throw e;
             }
-            if(ldm!=null)
-                ldm.incrementRefCounter();
-            addLookupDiscoveryManager(ldm);
+            ldm.incrementRefCounter();
+            pool.put(new DiscoveryKey(null, groups, locators), ldm);
             return(ldm);
         }
 
@@ -430,10 +414,7 @@ public class DiscoveryManagementPool {
          * Terminate all LookupDiscoveryManager instances
          */
         void terminate() {
-            SharedDiscoveryManager[] dms;
-            synchronized(pool) {
-                dms = pool.toArray(new SharedDiscoveryManager[pool.size()]);                
-            }
+            SharedDiscoveryManager[] dms = pool.values().toArray(new SharedDiscoveryManager[0]);
             for(DiscoveryManagement dm : dms) {
                 dm.terminate();
             }
@@ -445,60 +426,7 @@ public class DiscoveryManagementPool {
          * If a match cannot be found return null
          */
         LookupDiscoveryManager getLookupDiscoveryManager(String[] groupsToMatch, LookupLocator[] locatorsToMatch) {
-            SharedDiscoveryManager[] dms;
-            synchronized(pool) {
-                dms = pool.toArray(new SharedDiscoveryManager[pool.size()]);
-            }
-            for(LookupDiscoveryManager ldm : dms) {
-                String[] groups = ldm.getGroups();
-                /* If both are set to ALL_GROUPS we have a match */
-                if(groupsToMatch == LookupDiscovery.ALL_GROUPS && groups == LookupDiscovery.ALL_GROUPS) {
-                    if(matchLocators(locatorsToMatch, ldm)) {
-                        return(ldm);
-                    }
-                }
-                /* If one or the other is set to ALL_GROUPS keep looking */
-                if(groupsToMatch == LookupDiscovery.ALL_GROUPS || groups == LookupDiscovery.ALL_GROUPS)
-                    continue;
-                /* If both have the same "set", check for equivalence */
-                if(groupsToMatch.length == groups.length) {
-                    int matches=0;
-                    for(int i=0; i<groupsToMatch.length; i++) {
-                        if(groupsToMatch[i].equals(groups[i]))
-                            matches++;
-                    }
-                    if(matches==groupsToMatch.length) {
-                        if(matchLocators(locatorsToMatch, ldm)) {
-                            return(ldm);
-                        }
-                    }
-                }
-            }
-            return(null);
-        }
-        
-        /*
-         * Determine if the locators match
-         */
-        boolean matchLocators(LookupLocator[] locatorsToMatch, LookupDiscoveryManager ldm) {
-            boolean matched=false;
-            LookupLocator[] locators = ldm.getLocators();
-            if(locatorsToMatch == null && locators == null)
-                return(true);
-            if(locatorsToMatch == null && locators.length==0)
-                return(true);
-            if(locatorsToMatch!=null && locators!=null) {
-                if(locatorsToMatch.length == locators.length) {
-                    int matches=0;
-                    for(int i=0; i<locatorsToMatch.length; i++) {
-                        if(locatorsToMatch[i].equals(locators[i]))
-                            matches++;
-                    }
-                    if(matches==locatorsToMatch.length)
-                        matched=true;
-                }
-            }
-            return(matched);
+            return(pool.get(new DiscoveryKey(null, groupsToMatch, locatorsToMatch)));
         }
     }
 
@@ -509,10 +437,10 @@ public class DiscoveryManagementPool {
      * terminated. The reference counter is incremented each time this instance is
      * shared, and decremented each time the terminate method is called. If the 
      * reference counter goes to zero upon termination the LookupDiscoveryManager 
-     * will be terminated
+     * will be terminated, and can no longer be shared
      */
     public static class SharedDiscoveryManager extends LookupDiscoveryManager {
-        private AtomicInteger refCounter = new AtomicInteger();
+        private final AtomicInteger refCounter = new AtomicInteger();
         private DiscoveryControl discoControl;
         
         public SharedDiscoveryManager(DiscoveryControl discoControl,
@@ -542,22 +470,33 @@ public class DiscoveryManagementPool {
         /*
          * Increment the references
          */
-        synchronized void incrementRefCounter() {
+        void incrementRefCounter() {
             refCounter.incrementAndGet();
         }
 
+        /*
+         * Increment the references if this instance has not been terminated
+         */
+        boolean acquire() {
+            int count;
+            do {
+                count = refCounter.get();
+                if(count<=0)
+                    return(false);
+            } while(!refCounter.compareAndSet(count, count+1));
+            return(true);
+        }
+
         
         /**
          * Override parent's terminate method. Only call 
          * LookupDiscoveryManager.terminate() if there are no clients or users.
          */
         public void terminate() {            
-            synchronized(this) {
-                int counter = refCounter.decrementAndGet();
-                if(counter==0) {
-                    super.terminate();
-                    discoControl.removeLookupDiscoveryManager(this);
-                }
+            int counter = refCounter.decrementAndGet();
+            if(counter==0) {
+                discoControl.removeLookupDiscoveryManager(this);
+                super.terminate();
             }
         }
     }           
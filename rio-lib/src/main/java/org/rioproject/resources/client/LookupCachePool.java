@@ -15,7 +15,6 @@
  */
 package org.rioproject.resources.client;
 
-import com.sun.jini.lookup.entry.LookupAttributes;
 import net.jini.admin.Administrable;
 import net.jini.admin.JoinAdmin;
 import net.jini.config.Configuration;
@@ -27,7 +26,6 @@ import net.jini.core.lookup.ServiceID;
 import net.jini.core.lookup.ServiceItem;
 import net.jini.core.lookup.ServiceTemplate;
 import net.jini.discovery.DiscoveryManagement;
-import net.jini.discovery.LookupDiscovery;
 import net.jini.id.Uuid;
 import net.jini.lease.LeaseRenewalManager;
 import net.jini.lookup.*;
@@ -46,17 +44,25 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.rmi.RemoteException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The LookupCachePool class provides the support to get an existing 
  * LookupCache from a pool of created LookupCache instances. Criteria for 
- * determining LookupCache matching is based on ServiceTemplate matching
+ * determining LookupCache matching is based on ServiceTemplate matching.
+ *
+ * <p>ServiceDiscoveryManager instances are indexed by their discovery criteria,
+ * and LookupCache instances by their ServiceTemplate, using canonical keys.
+ * Equivalent criteria (for example the same groups in a different order) share
+ * the same ServiceDiscoveryManager and LookupCache.
  *
  * @author Dennis Reedy
  */
 public class LookupCachePool {
-    private final List<SDMWrapper> pool = new ArrayList<SDMWrapper>();
+    private final ConcurrentMap<DiscoveryKey, SDMWrapper> pool = new ConcurrentHashMap<DiscoveryKey, SDMWrapper>();
     private ServiceBeanContainerListener containerListener;
     private static final String COMPONENT = LookupCachePool.class.getName();
     private static final Logger logger = LoggerFactory.getLogger(COMPONENT);
@@ -131,6 +137,37 @@ public class LookupCachePool {
         DiscoveryManagementPool.SharedDiscoveryManager sharedDM = (DiscoveryManagementPool.SharedDiscoveryManager)dMgr;
         return(getLookupCache(sharedDM.getSharedName(), sharedDM.getGroups(), sharedDM.getLocators(), template));
     }
+
+    /**
+     * Get a LookupCache as {@link #getLookupCache(DiscoveryManagement, ServiceTemplate)}
+     * does, and add a listener to it.
+     *
+     * <p>A shared LookupCache is terminated when its last listener is removed, and
+     * {@link LookupCache#addListener(ServiceDiscoveryListener)} throws an
+     * {@code IllegalStateException} if it is called after the LookupCache has been
+     * terminated. This method retries with a fresh LookupCache if that happens between
+     * obtaining the LookupCache and adding the listener.
+     *
+     * @param dMgr A DiscoveryManager instance created by the DiscoveryManagementPool
+     * @param template ServiceTemplate to match
+     * @param listener The listener to add
+     *
+     * @return The LookupCache the listener was added to, or null if the DiscoveryManagement
+     * instance was not created by the DiscoveryManagementPool
+     *
+     * @throws IOException If discovery management cannot be created
+     */
+    public LookupCache getLookupCache(final DiscoveryManagement dMgr,
+                                      final ServiceTemplate template,
+                                      final ServiceDiscoveryListener listener) throws IOException {
+        if(!(dMgr instanceof DiscoveryManagementPool.SharedDiscoveryManager)) {
+            logger.warn("The DiscoveryManagement instance passed was not created by the {}, returning null",
+                        DiscoveryManagementPool.class.getName());
+            return(null);
+        }
+        DiscoveryManagementPool.SharedDiscoveryManager sharedDM = (DiscoveryManagementPool.SharedDiscoveryManager)dMgr;
+        return(getLookupCache(sharedDM.getSharedName(), sharedDM.getGroups(), sharedDM.getLocators(), template, listener));
+    }
     
     /**
      * This method will return an instance of LookupCache based on matching the
@@ -160,15 +197,47 @@ public class LookupCachePool {
                                       final String[] groups,
                                       final LookupLocator[] locators,
                                       final ServiceTemplate template) throws IOException {
+        return(getLookupCache(sharedName, groups, locators, template, null));
+    }
+
+    /**
+     * Get a LookupCache as {@link #getLookupCache(String, String[], LookupLocator[], ServiceTemplate)}
+     * does, and add a listener to it. If the LookupCache is terminated before the
+     * listener is added, a fresh LookupCache is obtained and the listener added to it.
+     *
+     * @param sharedName The name the LookupCache instances are shared across
+     * @param groups An array of String objects indicating the Jini Lookup
+     * Service groups to discover
+     * @param locators An array of LookupLocator objects indicating specific
+     * Jini Lookup Service instances to discover
+     * @param template ServiceTemplate to match
+     * @param listener The listener to add, may be null
+     *
+     * @return The LookupCache the listener was added to
+     *
+     * @throws IOException If discovery management cannot be created
+     */
+    public LookupCache getLookupCache(final String sharedName,
+                                      final String[] groups,
+                                      final LookupLocator[] locators,
+                                      final ServiceTemplate template,
+                                      final ServiceDiscoveryListener listener) throws IOException {
         if(template==null)
             throw new IllegalArgumentException("template is null");
-        SDMWrapper sdmWrapper;
-        try {
-            sdmWrapper = getSDMWrapper(sharedName, groups, locators);
-        } catch(ConfigurationException e) {
-            throw new IOException("Configuration problem creating a SDMWrapper", e);
+        DiscoveryKey discoveryKey = new DiscoveryKey(sharedName, groups, locators);
+        TemplateKey templateKey = new TemplateKey(template);
+        while(true) {
+            SDMWrapper sdmWrapper;
+            try {
+                sdmWrapper = getSDMWrapper(discoveryKey, sharedName, groups, locators);
+            } catch(ConfigurationException e) {
+                throw new IOException("Configuration problem creating a SDMWrapper", e);
+            }
+            SharedLookupCache lCache = sdmWrapper.getLookupCache(templateKey, true);
+            if(lCache!=null && (listener==null || lCache.tryAddListener(listener)))
+                return(lCache);
+            /* The SDMWrapper or LookupCache was terminated after we obtained it, a new one will be created */
         }
-        return(sdmWrapper.getLookupCache(template, true));
     }
     
     /**
@@ -185,43 +254,34 @@ public class LookupCachePool {
     }
 
     private SDMWrapper[] getSDMWrappers() {
-        SDMWrapper[] sdms;
-        synchronized(pool) {
-            sdms = pool.toArray(new SDMWrapper[pool.size()]);
-        }
-        return sdms;
+        Collection<SDMWrapper> sdms = pool.values();
+        return sdms.toArray(new SDMWrapper[sdms.size()]);
     }
 
     /*
      * Get an SDMWrapper which matches the sharedName, discovery criteria, or 
      * create one if not found
      */
-    private SDMWrapper getSDMWrapper(final String sharedName,
+    private SDMWrapper getSDMWrapper(final DiscoveryKey key,
+                                     final String sharedName,
                                      final String[] groupsToMatch,
                                      final LookupLocator[] locatorsToMatch) throws IOException, ConfigurationException {
-        SDMWrapper sdmWrapper = null;
-        SDMWrapper[] sdms = getSDMWrappers();
-        for(SDMWrapper wrapper : sdms) {
-            if(wrapper.namesMatch(sharedName) &&
-               wrapper.groupsMatch(groupsToMatch) &&
-               wrapper.locatorsMatch(locatorsToMatch)) {
-                sdmWrapper = wrapper;
-                break;
-            }
-        }
-
-        if(sdmWrapper==null) {            
-            config = (config==null?EmptyConfiguration.INSTANCE:config);
-            ServiceDiscoveryManager sdm = 
-                new ServiceDiscoveryManager(DiscoveryManagementPool.getInstance().getDiscoveryManager(sharedName,
-                                                                                                      groupsToMatch,
-                                                                                                      locatorsToMatch),
-                                            new LeaseRenewalManager(config),
-                                            config);
-                    
-            sdmWrapper = new SDMWrapper(sharedName, sdm, groupsToMatch, locatorsToMatch);
-            synchronized(pool) {
-                pool.add(sdmWrapper);
+        SDMWrapper sdmWrapper = pool.get(key);
+        if(sdmWrapper!=null)
+            return(sdmWrapper);
+        /* Creation is serialized so equivalent criteria never create more than one ServiceDiscoveryManager */
+        synchronized(pool) {
+            sdmWrapper = pool.get(key);
+            if(sdmWrapper==null) {
+                config = (config==null?EmptyConfiguration.INSTANCE:config);
+                ServiceDiscoveryManager sdm =
+                    new ServiceDiscoveryManager(DiscoveryManagementPool.getInstance().getDiscoveryManager(sharedName,
+                                                                                                          groupsToMatch,
+                                                                                                          locatorsToMatch),
+                                                new LeaseRenewalManager(config),
+                                                config);
+                sdmWrapper = new SDMWrapper(key, sharedName, sdm);
+                pool.put(key, sdmWrapper);
             }
         }
         return(sdmWrapper);
@@ -235,212 +295,71 @@ public class LookupCachePool {
      * LookupCache instances match criteria
      */
     class SDMWrapper {
+        final DiscoveryKey key;
         final String sharedName;
         final ServiceDiscoveryManager sdm;
-        String[] groups;
-        final LookupLocator[] locators;
-        final Hashtable<ServiceTemplate, SharedLookupCache> cacheTable = new Hashtable<ServiceTemplate, SharedLookupCache>();
+        final ConcurrentMap<TemplateKey, SharedLookupCache> cacheTable =
+            new ConcurrentHashMap<TemplateKey, SharedLookupCache>();
+        /* Guarded by this */
+        private boolean terminated;
         
-        SDMWrapper(final String sharedName, final ServiceDiscoveryManager sdm, final String[] groups, final LookupLocator[] locators) {
+        SDMWrapper(final DiscoveryKey key, final String sharedName, final ServiceDiscoveryManager sdm) {
+            this.key = key;
             this.sharedName = sharedName;
             this.sdm = sdm;
-            if(groups!=null) {
-                this.groups = new String[groups.length];
-                System.arraycopy(groups, 0, this.groups, 0, this.groups.length);
-            }
-            this.locators = new LookupLocator[locators.length];
-            System.arraycopy(locators, 0, this.locators, 0, this.locators.length);
         }
         
         void removeCache(final SharedLookupCache lCache) {
-            ServiceTemplate templateToMatch = lCache.getServiceTemplate();
-            for(Enumeration<ServiceTemplate> en=cacheTable.keys(); en.hasMoreElements();) {
-                ServiceTemplate template = en.nextElement();
-                if(templatesMatch(template, templateToMatch)) {
-                    cacheTable.remove(templateToMatch);
-                    break;
-                }
-            }
-            logger.trace("removeCache(), cacheTable.size()=={}",cacheTable.size());
-            if(cacheTable.size()==0) {
-                try {
-                    sdm.terminate();
-                } catch (IllegalStateException e) {
-                    logger.trace("Terminating SDM", e);
-                }
-                synchronized(pool) {
-                    pool.remove(this);
-                }
-            }
-        }
-        
-        /*
-         * See if the sharedNames match
-         * 
-         * @param name
-         *
-         * @return true if they do, false otherwise
-         */
-        boolean namesMatch(final String name) {
-            if(sharedName==null && name==null)
-                return(true);
-            if(sharedName==null)
-                return(false);
-            if(name == null)
-                return (false);
-            return(sharedName.equals(name));
-        }               
-                
-        /**
-         * See if the groups provided match the groups for the referenced SDM
-         * 
-         * @param groupsToMatch The groups
-         * 
-         * @return true if they do, false otherwise
-         */
-        boolean groupsMatch(final String[] groupsToMatch) {
-            /* If both are set to ALL_GROUPS we have a match */
-            if(groupsToMatch == LookupDiscovery.ALL_GROUPS && 
-               groups == LookupDiscovery.ALL_GROUPS) {
-                return(true);
-            }
-            /* If one or the other is set to ALL_GROUPS return false */
-            if(groupsToMatch == LookupDiscovery.ALL_GROUPS || 
-               groups == LookupDiscovery.ALL_GROUPS)
-                return(false);
-            
-            /* If both have the same "set", check for equivalence */
-            if(groupsToMatch.length == groups.length) {
-                int matches=0;
-                for(int i=0; i<groupsToMatch.length; i++) {
-                    if(groupsToMatch[i].equals(groups[i]))
-                        matches++;
-                }
-                if(matches==groupsToMatch.length) {
-                    return(true);
-                }
+            synchronized(this) {
+                cacheTable.remove(lCache.getTemplateKey(), lCache);
+                logger.trace("removeCache(), cacheTable.size()=={}",cacheTable.size());
+                if(!cacheTable.isEmpty())
+                    return;
+                terminated = true;
+                pool.remove(key, this);
             }
-            return(false);
-        }        
-        
-        /**
-         * See if the locators provided match the locators for the referenced SDM
-         * 
-         * @param locatorsToMatch  The locators
-         * 
-         * @return true if they do. false otherwise
-         */
-        boolean locatorsMatch(final LookupLocator[] locatorsToMatch) {
-            boolean matched=false;
-            if(locatorsToMatch == null && locators == null)
-                return(true);
-            if(locatorsToMatch == null && locators.length==0)
-                return(true);
-            if(locatorsToMatch!=null && locators!=null) {
-                if(locatorsToMatch.length == locators.length) {
-                    int matches=0;
-                    for(int i=0; i<locatorsToMatch.length; i++) {
-                        if(locatorsToMatch[i].equals(locators[i]))
-                            matches++;
-                    }
-                    if(matches==locatorsToMatch.length)
-                        matched=true;
-                }
+            try {
+                sdm.terminate();
+            } catch (IllegalStateException e) {
+                logger.trace("Terminating SDM", e);
             }
-            return(matched);
         }
-                
+
         /**
          * Get a LookupCache from the cacheTable for the provided ServiceTemplate.
          * 
          * @param templateToMatch The template
          * @param create If true and a a LookupCache does not exist, create one
          * 
-         * @return A SharedLookupCache for the ServiceTemplate
+         * @return A SharedLookupCache for the ServiceTemplate. If this SDMWrapper has
+         * been terminated, or a LookupCache does not exist and {@code create} is false,
+         * return {@code null}
          *
          * @throws IOException If a LookupCache cannot be created
          */
-        SharedLookupCache getLookupCache(final ServiceTemplate templateToMatch, final boolean create) throws IOException {
-            SharedLookupCache lCache = null;
-            for(Enumeration en=cacheTable.keys(); en.hasMoreElements();) {
-                ServiceTemplate template = (ServiceTemplate)en.nextElement();
-                if(templatesMatch(template, templateToMatch)) {
-                    lCache = cacheTable.get(template);
-                    break;
+        SharedLookupCache getLookupCache(final TemplateKey templateToMatch, final boolean create) throws IOException {
+            SharedLookupCache lCache = cacheTable.get(templateToMatch);
+            if(lCache!=null && !lCache.isTerminated())
+                return(lCache);
+            if(!create)
+                return(null);
+            synchronized(this) {
+                if(terminated)
+                    return(null);
+                lCache = cacheTable.get(templateToMatch);
+                if(lCache==null || lCache.isTerminated()) {
+                    ServiceTemplate template = templateToMatch.getServiceTemplate();
+                    ServiceItemFilter filter = (sharedName==null?null: new OpStringFilter(sharedName));
+                    LookupCache lc = sdm.createLookupCache(template, filter, null);
+                    lCache = new SharedLookupCache(lc, templateToMatch, this);
+                    lCache.setServiceItemFilter(filter);
+                    cacheTable.put(templateToMatch, lCache);
                 }
             }
-            if(lCache==null && create) {
-                ServiceItemFilter filter = (sharedName==null?null: new OpStringFilter(sharedName));
-                LookupCache lc = sdm.createLookupCache(templateToMatch, filter, null);
-                lCache = new SharedLookupCache(lc, templateToMatch, this);
-                lCache.setServiceItemFilter(filter);
-                cacheTable.put(templateToMatch, lCache);
-            }            
             return(lCache);
         }
-        
-        /**
-         * Determine of the ServiceTemplate instances match each other
-         *
-         * @param st1 ServiceTemplate instance 1
-         * @param st2 ServiceTemplate instance 2
-         *
-         * @return true if they match
-         */
-        boolean templatesMatch(final ServiceTemplate st1, final ServiceTemplate st2) {
-            if(attributesMatch(st1.attributeSetTemplates, st2.attributeSetTemplates) &&
-               serviceIDsMatch(st1.serviceID, st2.serviceID) &&
-               serviceTypesMatch(st1.serviceTypes, st2.serviceTypes)) {
-                return(true);
-            }                                      
-            return(false);
-        }
     }
         
-    /*
-     * Check if attributes match
-     */
-    boolean attributesMatch(final Entry[] attr1, final Entry[] attr2) {
-        if(attr1==null && attr2==null)
-            return(true);
-        if(attr1==null || attr2==null)
-            return(false);
-        return(LookupAttributes.equal(attr1, attr2));
-    }
-    
-    /*
-     * Check if service ID match
-     */
-    boolean serviceIDsMatch(final ServiceID sid1, final ServiceID sid2) {
-        if(sid1==null && sid2==null)
-            return(true);
-        if(sid1==null || sid2==null)
-            return(false);
-        return(sid1.equals(sid2));
-    }
-    
-    /*
-     * Check if service types match
-     */
-    boolean serviceTypesMatch(final Class[] types1, final Class[] types2) {
-        if(types1==null && types2==null)
-            return(true);
-        if(types1==null || types2==null)
-            return(false);
-        if(types1.length == types2.length) {            
-            int matches = 0;
-            for (Class c1 : types1) {
-                for (Class c2 : types2) {
-                    if (c1.getName().equals(c2.getName()))
-                        matches++;
-                }
-            }
-            if(matches==types1.length)
-                return(true);
-        }
-        return(false);
-    }    
-    
     /**
      * The SharedLookupCache implements a LookupCache and delegates all method
      * invocations to it's LookupDiscoveryManager, and maintains a
@@ -449,22 +368,24 @@ public class LookupCachePool {
      * terminated. The reference counter is increments each time this instance is 
      * shared, and decremented each time the terminate method is called. If the 
      * reference counter goes to zero upon termination the LookupDiscoveryManager 
-     * will be terminated
+     * will be terminated. A reference counter of -1 indicates the instance has
+     * been terminated.
      */
     public class SharedLookupCache implements LookupCache {
         private final LookupCache lCache;
+        private final TemplateKey templateKey;
         private final ServiceTemplate template;
         private final AtomicInteger refCounter = new AtomicInteger();
         private final SDMWrapper sdmWrapper;
-        private boolean terminated = false;
         private ServiceItemFilter filter;
-        private final List<ServiceDiscoveryListener> localListeners = new ArrayList<ServiceDiscoveryListener>();
+        private final List<ServiceDiscoveryListener> localListeners = new CopyOnWriteArrayList<ServiceDiscoveryListener>();
         
-        public SharedLookupCache(final LookupCache lCache,
-                                 final ServiceTemplate template,
-                                 final SDMWrapper sdmWrapper) {
+        SharedLookupCache(final LookupCache lCache,
+                          final TemplateKey templateKey,
+                          final SDMWrapper sdmWrapper) {
             this.lCache = lCache;
-            this.template = template;
+            this.templateKey = templateKey;
+            this.template = templateKey.getServiceTemplate();
             this.sdmWrapper = sdmWrapper;
         }                
 
@@ -472,11 +393,12 @@ public class LookupCachePool {
             this.filter = filter;
         }
 
-        /*
-         * Get the ServiceTemplate
-         */
-        private ServiceTemplate getServiceTemplate() {
-            return(template);
+        TemplateKey getTemplateKey() {
+            return(templateKey);
+        }
+
+        boolean isTerminated() {
+            return(refCounter.get()<0);
         }
 
         /* (non-Javadoc)
@@ -500,34 +422,49 @@ public class LookupCachePool {
             return sdmWrapper.sdm.lookup(template, maxMatches, filter);
         }
 
-        /* (non-Javadoc)
-         * @see LookupCache#addListener(ServiceDiscoveryListener)
+        /**
+         * Add a listener, incrementing the reference count
+         *
+         * @param listener The listener to add
+         *
+         * @throws IllegalStateException if the LookupCache has been terminated because
+         * its last listener was removed. Use
+         * {@link LookupCachePool#getLookupCache(String, String[], LookupLocator[], ServiceTemplate, ServiceDiscoveryListener)}
+         * to obtain a fresh LookupCache and add the listener in one step
+         */
+        public void addListener(final ServiceDiscoveryListener listener) {
+            if(!tryAddListener(listener))
+                throw new IllegalStateException("The LookupCache has been terminated");
+        }
+
+        /*
+         * Add a listener, returning false if the LookupCache has been terminated
          */
-        public synchronized void addListener(final ServiceDiscoveryListener listener) {
-            refCounter.incrementAndGet();
+        boolean tryAddListener(final ServiceDiscoveryListener listener) {
+            int count;
+            do {
+                count = refCounter.get();
+                if(count<0)
+                    return(false);
+            } while(!refCounter.compareAndSet(count, count+1));
             logger.trace("Added LookupCache Listener for template [{}], refCounter: {}",
-                         getServiceTemplateAsString(), refCounter.get());
-            synchronized(localListeners) {
-                localListeners.add(listener);
-            }
+                         getServiceTemplateAsString(), count+1);
+            localListeners.add(listener);
             lCache.addListener(listener);
+            return(true);
         }
 
         /* (non-Javadoc)
          * @see LookupCache#removeListener(ServiceDiscoveryListener)
          */
-        public synchronized void removeListener(final ServiceDiscoveryListener listener) {
-            if(!terminated) {
-                synchronized(localListeners) {
-                    localListeners.remove(listener);
-                }
-                lCache.removeListener(listener);
-                refCounter.decrementAndGet();
-            }
+        public void removeListener(final ServiceDiscoveryListener listener) {
+            if(isTerminated() || !localListeners.remove(listener))
+                return;
+            lCache.removeListener(listener);
+            int count = refCounter.decrementAndGet();
             logger.trace("Removed LookupCache Listener for template [{}], refCounter: {}",
-                         getServiceTemplateAsString(), refCounter.get());
-            logger.trace("lCache={} refCounter={}", lCache.toString(), refCounter.get());
-            if(refCounter.get()==0) {
+                         getServiceTemplateAsString(), count);
+            if(count==0) {
                 terminate();
             }
         }
@@ -548,11 +485,9 @@ public class LookupCachePool {
         /* (non-Javadoc)
          * @see net.jini.lookup.LookupCache#terminate()
          */
-        public synchronized void terminate() {
-            if(refCounter.get()==0) {
-                logger.trace("Terminating LookupCache for template [{}], refCounter: {}",
-                             getServiceTemplateAsString(), refCounter.get());
-                terminated = true;
+        public void terminate() {
+            if(refCounter.compareAndSet(0, -1)) {
+                logger.trace("Terminating LookupCache for template [{}]", getServiceTemplateAsString());
                 lCache.terminate();
                 sdmWrapper.removeCache(this);
             }
@@ -591,11 +526,7 @@ public class LookupCachePool {
                 cleared = filter.check(item);
             }
             if(cleared) {
-                ServiceDiscoveryListener[] listeners;
-                synchronized(localListeners) {
-                    listeners = localListeners.toArray(new ServiceDiscoveryListener[localListeners.size()]);
-                }
-                for(ServiceDiscoveryListener l : listeners) {
+                for(ServiceDiscoveryListener l : localListeners) {
                     l.serviceAdded(new ServiceDiscoveryEvent(this, null, item));
                 }
             }
@@ -646,8 +577,8 @@ public class LookupCachePool {
                     theInterfaceClass = Service.class;
                 }
                 logger.trace("[{}] selected: {}", record.getServiceElement().getName(), theInterfaceClass.getName());
-                ServiceTemplate templateToMatch = JiniClient.getServiceTemplate(record.getServiceElement(),
-                                                                                theInterfaceClass);
+                TemplateKey templateToMatch = new TemplateKey(JiniClient.getServiceTemplate(record.getServiceElement(),
+                                                                                            theInterfaceClass));
                 SDMWrapper[] sdms = getSDMWrappers();
                 for(SDMWrapper sdm : sdms) {
                     SharedLookupCache lCache = sdm.getLookupCache(templateToMatch, false);
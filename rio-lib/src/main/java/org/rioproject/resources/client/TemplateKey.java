@@ -0,0 +1,120 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.resources.client;
+
+import com.sun.jini.lookup.entry.LookupAttributes;
+import net.jini.core.entry.Entry;
+import net.jini.core.lookup.ServiceID;
+import net.jini.core.lookup.ServiceTemplate;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A canonical, hashable key for a {@link ServiceTemplate}. Two keys are equal if
+ * their templates have the same service ID, the same set of service type names
+ * and equal attribute sets (as determined by {@link LookupAttributes#equal(Entry[], Entry[])}).
+ * The order of service types and attributes does not matter, and {@code null}
+ * and empty arrays are equivalent.
+ */
+final class TemplateKey {
+    private final ServiceTemplate template;
+    private final ServiceID serviceID;
+    private final Set<String> serviceTypes = new TreeSet<String>();
+    private final Entry[] attributes;
+    private final int hash;
+
+    TemplateKey(final ServiceTemplate template) {
+        if(template==null)
+            throw new IllegalArgumentException("template is null");
+        this.template = template;
+        this.serviceID = template.serviceID;
+        if(template.serviceTypes!=null) {
+            for(Class<?> type : template.serviceTypes)
+                serviceTypes.add(type.getName());
+        }
+        this.attributes = template.attributeSetTemplates==null?new Entry[0]:template.attributeSetTemplates;
+        int h = serviceID==null?0:serviceID.hashCode();
+        h = 31*h + serviceTypes.hashCode();
+        h = 31*h + hashAttributes(attributes);
+        hash = h;
+    }
+
+    ServiceTemplate getServiceTemplate() {
+        return template;
+    }
+
+    /*
+     * An order independent hash of the attributes, consistent with LookupAttributes.equal
+     */
+    private static int hashAttributes(final Entry[] entries) {
+        Set<Integer> hashes = new HashSet<Integer>();
+        for(Entry entry : entries)
+            hashes.add(hashEntry(entry));
+        int h = 0;
+        for(Integer i : hashes)
+            h += i;
+        return h;
+    }
+
+    /*
+     * Hash the class and the public, non-static, non-transient, non-final fields of
+     * the entry. These are the fields LookupAttributes uses for equality
+     */
+    private static int hashEntry(final Entry entry) {
+        if(entry==null)
+            return 0;
+        int h = entry.getClass().getName().hashCode();
+        for(Field field : entry.getClass().getFields()) {
+            int modifiers = field.getModifiers();
+            if((modifiers & (Modifier.STATIC|Modifier.TRANSIENT|Modifier.FINAL))!=0)
+                continue;
+            try {
+                Object value = field.get(entry);
+                /* Arrays are left out of the hash, equality still compares them */
+                if(value!=null && !value.getClass().isArray())
+                    h += field.getName().hashCode() ^ value.hashCode();
+            } catch(IllegalAccessException e) {
+                /* public field, should not happen */
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if(this==o)
+            return true;
+        if(!(o instanceof TemplateKey))
+            return false;
+        TemplateKey that = (TemplateKey)o;
+        if(hash!=that.hash)
+            return false;
+        if(serviceID==null?that.serviceID!=null:!serviceID.equals(that.serviceID))
+            return false;
+        if(!serviceTypes.equals(that.serviceTypes))
+            return false;
+        return LookupAttributes.equal(attributes, that.attributes);
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.sla;
+
+import net.jini.config.Configuration;
+import org.rioproject.core.jsb.ServiceBeanContext;
+import org.rioproject.deploy.ServiceBeanInstance;
+import org.rioproject.event.EventHandler;
+import org.rioproject.opstring.OperationalStringManager;
+import org.rioproject.watch.Calculable;
+import org.rioproject.watch.ObservingThresholdListener;
+import org.rioproject.watch.ThresholdType;
+import org.rioproject.watch.ThresholdValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The PredictiveScalingPolicyHandler extends the {@link ScalingPolicyHandler},
+ * forecasting demand from every observation of the watch it is attached to
+ * rather than waiting for a threshold to be breached. Observations are smoothed
+ * using a {@link TrendForecaster}, and the forecast value for the configured
+ * horizon is used to compute the number of instances required to bring
+ * per-instance utilization to the target utilization:
+ *
+ * <pre>
+ * desired = ceil(forecast * current / targetUtilization)
+ * </pre>
+ *
+ * <p>The result is bounded by the minimum number of services and the SLA's
+ * <tt>maxServices</tt>. When more instances are needed, the instance with the
+ * lowest instance identifier requests the difference (less any pending
+ * requests), at most <tt>maxScalingStep</tt> at a time. When fewer instances
+ * are needed, the instances with the highest instance identifiers decrement
+ * themselves. Scale up and scale down actions are separated by cool down
+ * periods, and no action is taken while the forecast lies between the low and
+ * high thresholds.
+ *
+ * <p>Until enough observations have been made the handler behaves like the
+ * {@link ScalingPolicyHandler}.
+ *
+ * <p>The PredictiveScalingPolicyHandler supports the following configuration
+ * entries, in addition to those supported by the {@link ScalingPolicyHandler};
+ * each entry is associated with the component name <code>scalingPolicyHandler</code>:
+ * <ul>
+ * <li><tt>forecastSmoothing</tt> (double, default 0.5): Smoothing factor applied to the level</li>
+ * <li><tt>trendSmoothing</tt> (double, default 0.3): Smoothing factor applied to the trend,
+ * 0 disables trend estimation</li>
+ * <li><tt>forecastHorizon</tt> (long, default the upper threshold dampening time): How far
+ * ahead (in milliseconds) to forecast</li>
+ * <li><tt>forecastMinSamples</tt> (int, default 3): Number of observations required before
+ * forecasts are used</li>
+ * <li><tt>targetUtilization</tt> (double, default midway between the low and high thresholds):
+ * The value each instance should operate at</li>
+ * <li><tt>maxScalingStep</tt> (int, default unbounded): The maximum number of instances
+ * requested at once</li>
+ * <li><tt>scaleUpCoolDown</tt> (long, default the upper threshold dampening time): Time (in
+ * milliseconds) to wait after a scaling action before scaling up</li>
+ * <li><tt>scaleDownCoolDown</tt> (long, default the lower threshold dampening time): Time
+ * (in milliseconds) to wait after a scaling action before scaling down</li>
+ * </ul>
+ */
+public class PredictiveScalingPolicyHandler extends ScalingPolicyHandler implements ObservingThresholdListener {
+    /** The description of the SLA Handler */
+    private static final String description = "Predictive Scaling Policy Handler";
+    private TrendForecaster forecaster;
+    private double forecastSmoothing = 0.5;
+    private double trendSmoothing = 0.3;
+    private long forecastHorizon = -1;
+    private int forecastMinSamples = 3;
+    private double targetUtilization = Double.NaN;
+    private int maxScalingStep = Integer.MAX_VALUE;
+    private long scaleUpCoolDown = -1;
+    private long scaleDownCoolDown = -1;
+    private long lastScaleAction;
+    private volatile ThresholdValues lastObservedThresholds;
+    private volatile Future<?> evaluationTask;
+    private final AtomicBoolean evaluationScheduled = new AtomicBoolean();
+    private final Object forecastLock = new Object();
+    private static final Logger logger = LoggerFactory.getLogger(PredictiveScalingPolicyHandler.class);
+
+    /**
+     * Construct a PredictiveScalingPolicyHandler
+     *
+     * @param sla The SLA for the PredictiveScalingPolicyHandler
+     */
+    public PredictiveScalingPolicyHandler(SLA sla) {
+        super(sla);
+        forecaster = new TrendForecaster(forecastSmoothing, trendSmoothing);
+    }
+
+    @Override
+    public void initialize(Object eventSource, EventHandler eventHandler, ServiceBeanContext context) {
+        super.initialize(eventSource, eventHandler, context);
+        try {
+            Configuration config = getConfiguration();
+            forecastSmoothing = (Double)config.getEntry(CONFIG_COMPONENT, "forecastSmoothing",
+                                                        double.class, forecastSmoothing);
+            trendSmoothing = (Double)config.getEntry(CONFIG_COMPONENT, "trendSmoothing",
+                                                     double.class, trendSmoothing);
+            forecastHorizon = (Long)config.getEntry(CONFIG_COMPONENT, "forecastHorizon",
+                                                    long.class, forecastHorizon);
+            forecastMinSamples = (Integer)config.getEntry(CONFIG_COMPONENT, "forecastMinSamples",
+                                                          int.class, forecastMinSamples);
+            targetUtilization = (Double)config.getEntry(CONFIG_COMPONENT, "targetUtilization",
+                                                        double.class, targetUtilization);
+            maxScalingStep = (Integer)config.getEntry(CONFIG_COMPONENT, "maxScalingStep",
+                                                      int.class, maxScalingStep);
+            scaleUpCoolDown = (Long)config.getEntry(CONFIG_COMPONENT, "scaleUpCoolDown",
+                                                    long.class, scaleUpCoolDown);
+            scaleDownCoolDown = (Long)config.getEntry(CONFIG_COMPONENT, "scaleDownCoolDown",
+                                                      long.class, scaleDownCoolDown);
+        } catch(Exception e) {
+            logger.warn("[{}] Getting predictive scaling configuration, using defaults", getName(), e);
+        }
+        if(forecastSmoothing <= 0 || forecastSmoothing > 1 || trendSmoothing < 0 || trendSmoothing > 1) {
+            logger.warn("[{}] Invalid smoothing factors forecastSmoothing={}, trendSmoothing={}, using defaults",
+                        getName(), forecastSmoothing, trendSmoothing);
+            forecastSmoothing = 0.5;
+            trendSmoothing = 0.3;
+        }
+        synchronized(forecastLock) {
+            forecaster = new TrendForecaster(forecastSmoothing, trendSmoothing);
+        }
+        logger.debug("[{}] PredictiveScalingPolicyHandler [{}]: forecastSmoothing={}, trendSmoothing={}, "+
+                     "forecastHorizon={}, forecastMinSamples={}, targetUtilization={}, maxScalingStep={}",
+                     getName(), getID(), forecastSmoothing, trendSmoothing, getForecastHorizon(),
+                     forecastMinSamples, targetUtilization, maxScalingStep);
+    }
+
+    /**
+     * Override parent's method to return description for this SLA Handler
+     *
+     * @return The descriptive attribute for this SLA Handler
+     */
+    @Override
+    public String getDescription() {
+        return (description);
+    }
+
+    @Override
+    public void disconnect() {
+        cancelEvaluationTask();
+        super.disconnect();
+    }
+
+    /**
+     * Observe every value checked by the ThresholdManager, updating the forecast
+     * and scheduling an evaluation if one is not already pending
+     */
+    public void observe(Calculable calculable, ThresholdValues thresholdValues) {
+        if(!isConnected() || haveDecremented())
+            return;
+        synchronized(forecastLock) {
+            forecaster.update(calculable.getValue(), calculable.getWhen());
+        }
+        lastObservedThresholds = thresholdValues;
+        if(evaluationScheduled.compareAndSet(false, true)) {
+            try {
+                evaluationTask = schedule(new Runnable() {
+                    public void run() {
+                        /* Observations made while evaluating schedule another evaluation */
+                        evaluationScheduled.set(false);
+                        evaluate();
+                    }
+                }, 0);
+            } catch(RejectedExecutionException e) {
+                evaluationScheduled.set(false);
+                logger.debug("[{}] PredictiveScalingPolicyHandler [{}]: evaluation rejected, {}",
+                             getName(), getID(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Once the forecast has warmed up, threshold notifications are only used to
+     * send SLAThresholdEvents, scaling decisions are made by the forecast
+     */
+    @Override
+    public void notify(Calculable calculable, ThresholdValues thresholdValues, ThresholdType type) {
+        if(!isWarmedUp()) {
+            super.notify(calculable, thresholdValues, type);
+            return;
+        }
+        if(!isConnected())
+            return;
+        cancelIncrementTask();
+        cancelDecrementTask();
+        logger.info("[{}] PredictiveScalingPolicyHandler [{}]: Threshold [{}] {} value [{}] low [{}] high [{}]",
+                    getName(), getID(), calculable.getId(), type.name().toLowerCase(), calculable.getValue(),
+                    thresholdValues.getLowThreshold(), thresholdValues.getHighThreshold());
+        sendSLAThresholdEvent(calculable, thresholdValues, type);
+    }
+
+    /*
+     * Evaluate the forecast, scaling up or down as required
+     */
+    void evaluate() {
+        ThresholdValues tValues = lastObservedThresholds;
+        if(!isConnected() || tValues == null || haveDecremented())
+            return;
+        double forecast;
+        synchronized(forecastLock) {
+            if(forecaster.getSampleCount() < forecastMinSamples)
+                return;
+            forecast = forecaster.forecast(getForecastHorizon());
+        }
+        if(Double.isNaN(forecast))
+            return;
+        /* Dead band, no action while the forecast lies between the thresholds */
+        if(forecast >= tValues.getLowThreshold() && forecast <= tValues.getHighThreshold())
+            return;
+
+        OperationalStringManager opMgr = context.getServiceBeanManager().getOperationalStringManager();
+        if(opMgr == null) {
+            logger.debug("[{}] PredictiveScalingPolicyHandler [{}]: No OperationalStringManager, evaluation aborted",
+                         getName(), getID());
+            return;
+        }
+        List<Long> instanceIDs = new ArrayList<Long>();
+        try {
+            for(ServiceBeanInstance instance : opMgr.getServiceBeanInstances(getServiceElement())) {
+                Long id = instance.getServiceBeanConfig().getInstanceID();
+                if(id != null)
+                    instanceIDs.add(id);
+            }
+        } catch(Exception e) {
+            logger.warn("[{}] PredictiveScalingPolicyHandler [{}]: Getting instances", getName(), getID(), e);
+            return;
+        }
+        int current = instanceIDs.size();
+        if(current == 0)
+            return;
+        double target = getTargetUtilization(tValues);
+        int desired = computeDesired(forecast, current, target, getMinServices(), getMaxServices());
+        Long myID = context.getServiceBeanConfig().getInstanceID();
+        long now = System.currentTimeMillis();
+        logger.debug("[{}] PredictiveScalingPolicyHandler [{}]: forecast [{}], target [{}], current [{}], desired [{}]",
+                     getName(), getID(), forecast, target, current, desired);
+
+        if(desired > current) {
+            Collections.sort(instanceIDs);
+            /* Only the instance with the lowest instance identifier requests increments */
+            if(myID == null || !myID.equals(instanceIDs.get(0)))
+                return;
+            if(inCoolDown(now, getScaleUpCoolDown()))
+                return;
+            int pending = getPendingRequests()+getPendingRequestCount(opMgr);
+            int toAdd = Math.min(desired-current-pending, maxScalingStep);
+            if(toAdd <= 0)
+                return;
+            logger.info("[{}] PredictiveScalingPolicyHandler [{}]: forecast [{}] above target [{}], request [{}] "+
+                        "increment(s), current [{}], desired [{}]",
+                        getName(), getID(), forecast, target, toAdd, current, desired);
+            try {
+                for(int i=0; i<toAdd; i++)
+                    requestIncrement();
+            } catch(Exception e) {
+                logger.warn("[{}] PredictiveScalingPolicyHandler [{}]: Requesting increment", getName(), getID(), e);
+                notifyListeners(new SLAPolicyEvent(this, getSLA(), INCREMENT_FAILURE));
+            }
+            markScaleAction(now);
+        } else if(desired < current) {
+            if(inCoolDown(now, getScaleDownCoolDown()))
+                return;
+            int surplus = Math.min(current-desired, maxScalingStep);
+            Collections.sort(instanceIDs, Collections.<Long>reverseOrder());
+            /* The instances with the highest instance identifiers remove themselves */
+            int rank = myID == null ? -1 : instanceIDs.indexOf(myID);
+            if(rank < 0 || rank >= surplus)
+                return;
+            logger.info("[{}] PredictiveScalingPolicyHandler [{}]: forecast [{}] below target [{}], decrement, "+
+                        "current [{}], desired [{}]",
+                        getName(), getID(), forecast, target, current, desired);
+            markScaleAction(now);
+            requestDecrement();
+        }
+    }
+
+    /**
+     * Compute the number of instances required to bring each instance to the target utilization
+     *
+     * @param forecast The forecast per-instance value
+     * @param current The current number of instances
+     * @param target The target per-instance value
+     * @param min The minimum number of instances
+     * @param max The maximum number of instances, or {@link SLA#UNDEFINED} if there is no maximum
+     *
+     * @return The desired number of instances, bounded by <tt>min</tt> and <tt>max</tt>
+     */
+    static int computeDesired(double forecast, int current, double target, int min, int max) {
+        int desired;
+        if(target <= 0 || Double.isNaN(target) || Double.isNaN(forecast))
+            desired = current;
+        else
+            desired = (int)Math.ceil(Math.max(0, forecast)*current/target);
+        if(max != SLA.UNDEFINED && desired > max)
+            desired = max;
+        if(desired < min)
+            desired = min;
+        return desired;
+    }
+
+    private synchronized boolean inCoolDown(long now, long coolDown) {
+        return lastScaleAction > 0 && now-lastScaleAction < coolDown;
+    }
+
+    private synchronized void markScaleAction(long now) {
+        lastScaleAction = now;
+    }
+
+    private boolean isWarmedUp() {
+        synchronized(forecastLock) {
+            return forecaster.getSampleCount() >= forecastMinSamples;
+        }
+    }
+
+    private void cancelEvaluationTask() {
+        Future<?> task = evaluationTask;
+        if(task != null) {
+            task.cancel(false);
+            evaluationTask = null;
+        }
+        evaluationScheduled.set(false);
+    }
+
+    private double getTargetUtilization(ThresholdValues tValues) {
+        if(!Double.isNaN(targetUtilization))
+            return targetUtilization;
+        return (tValues.getLowThreshold()+tValues.getHighThreshold())/2;
+    }
+
+    private long getForecastHorizon() {
+        return forecastHorizon < 0 ? getUpperThresholdDampeningTime() : forecastHorizon;
+    }
+
+    private long getScaleUpCoolDown() {
+        return scaleUpCoolDown < 0 ? getUpperThresholdDampeningTime() : scaleUpCoolDown;
+    }
+
+    private long getScaleDownCoolDown() {
+        return scaleDownCoolDown < 0 ? getLowerThresholdDampeningTime() : scaleDownCoolDown;
+    }
+}
@@ -41,9 +41,8 @@ import org.slf4j.LoggerFactory;
 
 import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
-import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The ScalingPolicyHandler will increment and optionally decrement instances of
@@ -106,7 +105,7 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
     /** The total number of services the ScalingPolicyHandler is aware of */
     private int totalServices;
     /** Flag that indicates we have requested to decrement (and destroy) ourself */
-    private boolean haveDecremented = false;
+    private volatile boolean haveDecremented = false;
     /**
      * The maximum number of services to increment. If the value is -1, then no limit has been set
      */
@@ -121,12 +120,24 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
     private long upperThresholdDampeningTime;
     /** Dampening value for lower thresholds being crossed */
     private long lowerThresholdDampeningTime;
-    /** The Timer to use for scheduling an increment or decrement task */
-    private Timer taskTimer;
-    /** The ScalingTask for incrementing */
-    private ScalingTask incrementTask;
-    /** The ScalingTask for decrementing */
-    private ScalingTask decrementTask;
+    /** The scheduler shared by all ScalingPolicyHandler instances in the JVM, used to
+     * schedule increment, decrement and evaluation tasks. Each handler cancels
+     * its own tasks through the Futures it holds */
+    private static final ScheduledThreadPoolExecutor scheduler =
+        new ScheduledThreadPoolExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()),
+                                        new ThreadFactory() {
+                                            private final AtomicInteger count = new AtomicInteger();
+                                            public Thread newThread(Runnable runnable) {
+                                                Thread t = new Thread(runnable,
+                                                                      "ScalingPolicyHandler-"+count.incrementAndGet());
+                                                t.setDaemon(true);
+                                                return t;
+                                            }
+                                        });
+    /** The scheduled ScalingTask for incrementing */
+    private volatile Future<?> incrementTask;
+    /** The scheduled ScalingTask for decrementing */
+    private volatile Future<?> decrementTask;
     /** The remote ref (e.g. stub or dynamic proxy) */
     private Object ourRemoteRef;
     /** The Exporter */
@@ -134,16 +145,16 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
     /** A ServiceElementChangeListener to listen for ServiceElement changes */
     private ServiceElementChangeManager svcElementListener;
     /** The number of pending provision requests */
-    private int pendingRequests;
+    private final AtomicInteger pendingRequests = new AtomicInteger();
     /** Flag to indicate whether this policy handler is 'connected' */
-    private boolean connected;
+    private volatile boolean connected;
     /** The last calculable */
     protected Calculable lastCalculable;
     /** The last ThresholdValue */
     protected ThresholdValues lastThresholdValues;
     private final Object serviceElementLock = new Object();
     /** Component name */
-    private static final String CONFIG_COMPONENT = "scalingPolicyHandler";
+    protected static final String CONFIG_COMPONENT = "scalingPolicyHandler";
     /** A Logger for this component */
     static Logger logger = LoggerFactory.getLogger(ScalingPolicyHandler.class);
 
@@ -154,7 +165,6 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
      */
     public ScalingPolicyHandler(SLA sla) {
         super(sla);
-        taskTimer = new Timer(true);
     }
 
     /*
@@ -190,9 +200,11 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
         } catch(IllegalStateException e) {
             logger.trace("ScalingPolicyHandler unexport failed", e);
         }
-        if(taskTimer != null)
-            taskTimer.cancel();
         connected = false;
+        cancelIncrementTask();
+        cancelDecrementTask();
+        /* Remove the cancelled tasks of this handler from the shared scheduler */
+        scheduler.purge();
         super.disconnect();
     }
 
@@ -377,13 +389,11 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
                     /* Cancel scheduled decrements */
                     cancelDecrementTask();
                     if(upperThresholdDampeningTime > 0) {
-                        incrementTask = new ScalingTask(true);
-                        long now = System.currentTimeMillis();
                         logger.debug("[{}] ScalingPolicyHandler [{}]: Schedule increment task in [{}] millis",
                                      getName(), getID(), upperThresholdDampeningTime);
                         try {
-                            taskTimer.schedule(incrementTask, new Date(now+upperThresholdDampeningTime));
-                        } catch (IllegalStateException e) {
+                            incrementTask = schedule(new ScalingTask(true), upperThresholdDampeningTime);
+                        } catch (RejectedExecutionException e) {
                             logger.warn("Force disconnect of [{}] ScalingPolicyHandler {}: {}",
                                         getName(), e.getClass().getName(), e.getMessage());
                             disconnect();    
@@ -429,10 +439,10 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
             int pendingCount = getPendingRequestCount(opMgr);
             logger.trace("[{}] ScalingPolicyHandler [{}] totalServices={}, pendingCount={}, pendingRequests={}, planned={}",
                          getName(), getID(), totalServices, pendingCount, pendingRequests, getServiceElement().getPlanned());
-            if(((totalServices+pendingCount)+pendingRequests) >
+            if(((totalServices+pendingCount)+pendingRequests.get()) >
                getServiceElement().getPlanned()) {
                 try {
-                    int numTrimmed = opMgr.trim(getServiceElement(), pendingRequests);
+                    int numTrimmed = opMgr.trim(getServiceElement(), pendingRequests.get());
                     logger.trace("[{}] numTrimmed={}", getID(), numTrimmed);
                 } catch(NoSuchObjectException e) {
                     logger.warn("Remote manager decomissioned for [{}] ScalingPolicyHandler [{}], force disconnect", 
@@ -447,28 +457,100 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
         sendSLAThresholdEvent(calculable, thresholdValues, type);
     }
 
-    private void cancelIncrementTask() {
-        if(incrementTask != null) {
+    protected void cancelIncrementTask() {
+        Future<?> task = incrementTask;
+        if(task != null) {
             logger.debug("[{}] ScalingPolicyHandler [{}]: cancel increment task", getName(), getID());
-            incrementTask.cancel();
+            task.cancel(false);
             incrementTask = null;
         }
     }
 
-    private void cancelDecrementTask() {
-        if(decrementTask != null) {
+    protected void cancelDecrementTask() {
+        Future<?> task = decrementTask;
+        if(task != null) {
             logger.debug("[{}] ScalingPolicyHandler [{}]: cancel decrement task", getName(), getID());
-            decrementTask.cancel();
+            task.cancel(false);
             decrementTask = null;
         }
     }
 
+    /**
+     * Schedule a task on the scheduler shared by all ScalingPolicyHandler instances
+     *
+     * @param task The task to run
+     * @param delay The delay (in milliseconds) before the task is run
+     *
+     * @return A Future that can be used to cancel the task
+     *
+     * @throws RejectedExecutionException if the handler has been disconnected
+     */
+    protected Future<?> schedule(Runnable task, long delay) {
+        if(!connected)
+            throw new RejectedExecutionException("ScalingPolicyHandler ["+getID()+"] has been disconnected");
+        return scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Determine if this handler is connected
+     *
+     * @return True if the handler has been initialized and not disconnected
+     */
+    protected boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Get the minimum number of services that are to exist on the network
+     *
+     * @return The minimum number of services
+     */
+    protected int getMinServices() {
+        return minServices;
+    }
+
+    /**
+     * Get the maximum number of services to increment to
+     *
+     * @return The maximum number of services, or {@link SLA#UNDEFINED} if no limit has been set
+     */
+    protected int getMaxServices() {
+        return maxServices;
+    }
+
+    /**
+     * Get the upper threshold dampening time
+     *
+     * @return The time (in milliseconds) to wait after the upper threshold has been breached before incrementing
+     */
+    protected long getUpperThresholdDampeningTime() {
+        return upperThresholdDampeningTime;
+    }
+
+    /**
+     * Get the lower threshold dampening time
+     *
+     * @return The time (in milliseconds) to wait after the lower threshold has been breached before decrementing
+     */
+    protected long getLowerThresholdDampeningTime() {
+        return lowerThresholdDampeningTime;
+    }
+
+    /**
+     * Get the number of increment requests this handler has made that have not completed
+     *
+     * @return The number of pending increment requests
+     */
+    protected int getPendingRequests() {
+        return pendingRequests.get();
+    }
+
     /**
      * @see org.rioproject.deploy.ServiceProvisionListener#succeeded
      */
     public void succeeded(ServiceBeanInstance jsbInstance) {
         try {
-            pendingRequests--;
+            pendingRequests.decrementAndGet();
             notifyListeners(new SLAPolicyEvent(this, getSLA(), INCREMENT_SUCCEEDED, jsbInstance.getService()));
         } catch(Exception e) {
             logger.warn("Getting service to create SLAPolicyEvent", e);
@@ -480,7 +562,7 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
      */
     public void failed(ServiceElement sElem, boolean resubmitted) {
         if(!resubmitted)
-            pendingRequests--;
+            pendingRequests.decrementAndGet();
         notifyListeners(new SLAPolicyEvent(this, getSLA(), INCREMENT_FAILURE));
     }
 
@@ -559,13 +641,7 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
                              getName(), instances.length, pendingCount, getServiceElement().getPlanned(),
                              (maxServices==SLA.UNDEFINED? "undefined": Integer.toString(maxServices)),
                              getID());
-                notifyListeners(new SLAPolicyEvent(this, getSLA(), INCREMENT_PENDING));
-                if(ourRemoteRef==null)
-                    exportDo();
-                
-                context.getServiceBeanManager().increment((ServiceProvisionListener)ourRemoteRef);
-                logger.trace("[{}] Requested increment through ServiceBeanManager", getName());
-                pendingRequests++;
+                requestIncrement();
             } else {
                 logger.debug("[{}] ScalingPolicyHandler [{}]: Current instance count=[{}], "+
                              "Current pending count=[{}], Planned=[{}], MaxServices=[{}], INCREMENT CANCELLED",
@@ -582,17 +658,54 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
         }
     }
 
+    /**
+     * Request an increment through the ServiceBeanManager, notifying listeners that an increment is pending
+     *
+     * @throws Exception if the increment request cannot be made
+     */
+    protected void requestIncrement() throws Exception {
+        notifyListeners(new SLAPolicyEvent(this, getSLA(), INCREMENT_PENDING));
+        if(ourRemoteRef==null)
+            exportDo();
+
+        context.getServiceBeanManager().increment((ServiceProvisionListener)ourRemoteRef);
+        logger.trace("[{}] Requested increment through ServiceBeanManager", getName());
+        pendingRequests.incrementAndGet();
+    }
+
+    /**
+     * Request this instance be decremented (and destroyed) through the ServiceBeanManager, notifying
+     * listeners of the result
+     */
+    protected void requestDecrement() {
+        try {
+            haveDecremented = true;
+            context.getServiceBeanManager().decrement(true);
+            notifyListeners(new SLAPolicyEvent(this, getSLA(), DECREMENT_DESTROY_SENT));
+        } catch(Exception e) {
+            logger.warn("DECREMENT FAILED", e);
+            notifyListeners(new SLAPolicyEvent(this, getSLA(), DECREMENT_FAILED));
+        }
+    }
+
+    /**
+     * Determine if this instance has requested to be decremented
+     *
+     * @return True if a decrement of this instance has been requested
+     */
+    protected boolean haveDecremented() {
+        return haveDecremented;
+    }
+
     /**
      * Create and schedule a decrement request
      */
     void scheduleDecrement() {
-        decrementTask = new ScalingTask(false);
-        long now = System.currentTimeMillis();
         logger.debug("[{}] ScalingPolicyHandler [{}]: schedule decrement task in [{}] millis",
                      getName(), getID(), lowerThresholdDampeningTime);
         try {
-            taskTimer.schedule(decrementTask, new Date(now+lowerThresholdDampeningTime));
-        } catch (IllegalStateException e) {
+            decrementTask = schedule(new ScalingTask(false), lowerThresholdDampeningTime);
+        } catch (RejectedExecutionException e) {
             logger.warn("Force disconnect of [{}] ScalingPolicyHandler", getName(), e);
             disconnect();    
         }
@@ -640,18 +753,11 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
             return true;
         }
         if(totalServices > minServices) {
-            try {
-                haveDecremented = true;
-                context.getServiceBeanManager().decrement(true);
-                notifyListeners(new SLAPolicyEvent(this, getSLA(), DECREMENT_DESTROY_SENT));
-                logger.debug("[{}] ScalingPolicyHandler [{}]: DECREMENT_DESTROY_SENT. totalServices=[{}], "+
-                             "minServices=[{}], lastCalculable=[{}], currentLowThreshold=[{}]",
-                             getName(), getID(), totalServices, minServices, lastCalculable.getValue(),
-                             lastThresholdValues.getLowThreshold());
-            } catch(Exception e) {
-                logger.warn("DECREMENT FAILED", e);
-                notifyListeners(new SLAPolicyEvent(this, getSLA(), DECREMENT_FAILED));
-            }
+            requestDecrement();
+            logger.debug("[{}] ScalingPolicyHandler [{}]: DECREMENT requested. totalServices=[{}], "+
+                         "minServices=[{}], lastCalculable=[{}], currentLowThreshold=[{}]",
+                         getName(), getID(), totalServices, minServices, lastCalculable.getValue(),
+                         lastThresholdValues.getLowThreshold());
         } else {
             logger.debug("[{}] ScalingPolicyHandler [{}]: INCREMENT CANCELLED, totalServices=[{}], minServices=[{}]",
                          getName(), getID(), totalServices, minServices);
@@ -662,7 +768,7 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
     /**
      * Export the ScalingPolicyHandler
      */
-    private void exportDo() {
+    protected void exportDo() {
         try {            
             ourRemoteRef = exporter.export(this);
         } catch(RemoteException e) {
@@ -691,7 +797,7 @@ public class ScalingPolicyHandler extends SLAPolicyHandler implements ServicePro
      * better control over command to either increase or decrease the number of
      * services the ScalingPolicyHandler is attached to
      */
-    class ScalingTask extends TimerTask {
+    class ScalingTask implements Runnable {
         boolean increment;
 
         /**
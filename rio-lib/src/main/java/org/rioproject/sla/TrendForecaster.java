@@ -0,0 +1,130 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.sla;
+
+/**
+ * Forecasts a series of observed values using Holt's double exponential
+ * smoothing. The level is smoothed with <tt>alpha</tt>, and the trend (expressed
+ * as change per millisecond, so irregularly spaced observations are handled) is
+ * smoothed with <tt>beta</tt>. Setting <tt>beta</tt> to <tt>0</tt> reduces the
+ * forecaster to an exponentially weighted moving average.
+ *
+ * <p>Instances are not thread safe; callers must synchronize access.
+ */
+public class TrendForecaster {
+    private final double alpha;
+    private final double beta;
+    private double level;
+    private double trend;
+    private long lastTime;
+    private int samples;
+
+    /**
+     * Create a TrendForecaster
+     *
+     * @param alpha The level smoothing factor, must be greater than 0 and less than or equal to 1
+     * @param beta The trend smoothing factor, must be between 0 and 1 inclusive
+     *
+     * @throws IllegalArgumentException if either smoothing factor is out of range
+     */
+    public TrendForecaster(final double alpha, final double beta) {
+        if(alpha <= 0 || alpha > 1)
+            throw new IllegalArgumentException("alpha must be in the range (0, 1]");
+        if(beta < 0 || beta > 1)
+            throw new IllegalArgumentException("beta must be in the range [0, 1]");
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    /**
+     * Add an observation
+     *
+     * @param value The observed value
+     * @param when The time (in milliseconds) the value was observed
+     */
+    public void update(final double value, final long when) {
+        if(Double.isNaN(value) || Double.isInfinite(value))
+            return;
+        if(samples == 0) {
+            level = value;
+            trend = 0;
+        } else {
+            long elapsed = when-lastTime;
+            if(elapsed <= 0) {
+                /* Same instant, fold the value into the level only */
+                level = alpha*value+(1-alpha)*level;
+                samples++;
+                return;
+            }
+            double previousLevel = level;
+            level = alpha*value+(1-alpha)*(previousLevel+trend*elapsed);
+            double observedTrend = (level-previousLevel)/elapsed;
+            trend = samples == 1 && beta > 0 ? observedTrend : beta*observedTrend+(1-beta)*trend;
+        }
+        lastTime = when;
+        samples++;
+    }
+
+    /**
+     * Forecast the value
+     *
+     * @param horizon The number of milliseconds past the last observation to forecast
+     *
+     * @return The forecast value, or {@link Double#NaN} if there have been no observations
+     */
+    public double forecast(final long horizon) {
+        if(samples == 0)
+            return Double.NaN;
+        return level+trend*Math.max(0, horizon);
+    }
+
+    /**
+     * Get the smoothed level
+     *
+     * @return The smoothed level
+     */
+    public double getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the smoothed trend
+     *
+     * @return The smoothed trend, as change per millisecond
+     */
+    public double getTrend() {
+        return trend;
+    }
+
+    /**
+     * Get the number of observations
+     *
+     * @return The number of observations
+     */
+    public int getSampleCount() {
+        return samples;
+    }
+
+    /**
+     * Discard all observations
+     */
+    public void reset() {
+        level = 0;
+        trend = 0;
+        lastTime = 0;
+        samples = 0;
+    }
+}
@@ -34,6 +34,11 @@ import org.rioproject.system.measurable.MeasurableCapability;
 import org.rioproject.system.measurable.SigarHelper;
 import org.rioproject.system.measurable.cpu.CPU;
 import org.rioproject.system.measurable.disk.DiskSpace;
+import org.rioproject.system.measurable.gc.GarbageCollection;
+import org.rioproject.system.measurable.gc.GarbageCollectionMeasure;
+import org.rioproject.system.measurable.linux.DiskIO;
+import org.rioproject.system.measurable.linux.Network;
+import org.rioproject.system.measurable.linux.ProcFileSystem;
 import org.rioproject.system.measurable.memory.Memory;
 import org.rioproject.system.measurable.memory.SystemMemory;
 import org.slf4j.Logger;
@@ -81,6 +86,10 @@ public class SystemCapabilities implements SystemCapabilitiesLoader {
      * <ul>
      * <li>org.rioproject.system.measurable.cpu.CPU
      * <li>org.rioproject.system.measurable.memory.Memory
+     * <li>org.rioproject.system.measurable.gc.GarbageCollection, for each
+     * configured <code>GarbageCollectionMeasure</code>. By default the GC
+     * overhead, the 99th percentile GC pause and the allocation rate are
+     * measured
      * </ul>
      *
      * If the operating system is not a member of the "Windows" family of
@@ -90,6 +99,15 @@ public class SystemCapabilities implements SystemCapabilitiesLoader {
      * <ul>
      * <li>org.rioproject.system.measurable.disk.DiskSpace
      * </ul>
+     *
+     * If the operating system is Linux and the proc filesystem can be read,
+     * the following <code>MeasurableCapability</code> objects are also returned:
+     *
+     * <ul>
+     * <li>org.rioproject.system.measurable.memory.SystemMemory
+     * <li>org.rioproject.system.measurable.linux.DiskIO
+     * <li>org.rioproject.system.measurable.linux.Network
+     * </ul>
      */
     public MeasurableCapability[] getMeasurableCapabilities(Configuration config) {
         if(config==null)
@@ -102,10 +120,11 @@ public class SystemCapabilities implements SystemCapabilitiesLoader {
         if(memory.isEnabled())
             measurables.add(memory);
 
-        /* If SIGAR is available, create a Memory MeasurableCapability for the
-         * physical machine as well */
+        /* If SIGAR is available, or the Linux proc filesystem can be read,
+         * create a Memory MeasurableCapability for the physical machine as well */
         boolean haveSigar = SigarHelper.sigarAvailable();
-        if(haveSigar) {
+        boolean haveProcFS = OperatingSystemType.isLinux() && new ProcFileSystem().isAvailable();
+        if(haveSigar || haveProcFS) {
             MeasurableCapability systemMemory = new SystemMemory(config);
             if(systemMemory.isEnabled())
                 measurables.add(systemMemory);
@@ -135,6 +154,18 @@ public class SystemCapabilities implements SystemCapabilitiesLoader {
         if(jvmCpu.isEnabled())
             measurables.add(jvmCpu);
 
+        /* Create the garbage collection MeasurableCapability objects for the JVM */
+        try {
+            GarbageCollectionMeasure[] gcMeasures = GarbageCollection.getConfiguredMeasures(config);
+            for(GarbageCollectionMeasure gcMeasure : gcMeasures) {
+                MeasurableCapability gc = new GarbageCollection(gcMeasure, config);
+                if(gc.isEnabled())
+                    measurables.add(gc);
+            }
+        } catch(ConfigurationException e) {
+            logger.warn("Loading GarbageCollection MeasurableCapability", e);
+        }
+
 
         /*
          * Load the DiskSpace capability only if we have SIGAR or if SIGAR is
@@ -149,6 +180,19 @@ public class SystemCapabilities implements SystemCapabilitiesLoader {
         if(diskSpace!=null && diskSpace.isEnabled())
             measurables.add(diskSpace);
 
+        /*
+         * Load the DiskIO and Network capabilities if the Linux proc
+         * filesystem can be read
+         */
+        if(haveProcFS) {
+            MeasurableCapability diskIO = new DiskIO(config);
+            if(diskIO.isEnabled())
+                measurables.add(diskIO);
+            MeasurableCapability network = new Network(config);
+            if(network.isEnabled())
+                measurables.add(network);
+        }
+
         /*
          * Load any additional MeasurableCapability instances that have been
          * configured
@@ -28,9 +28,12 @@ import java.io.IOException;
  * Handles getting the CPU states for Linux by using the /proc filesystem
  *
  * @author Dennis Reedy
+ * @deprecated Use {@link org.rioproject.system.measurable.linux.LinuxCPUMonitor}, which also
+ * provides per-core utilization and takes control group CPU limits into account
  */
+@Deprecated
 public class LinuxHandler implements MeasurableMonitor<CpuUtilization> {
-    private static double[] knownStats = new double[]{0.0, 0.0, 0.0, 0.0};
+    private final double[] knownStats = new double[]{0.0, 0.0, 0.0, 0.0};
     private static final String PROC_STAT = "/proc/stat";
     private String id;
     private ThresholdValues tVals;
@@ -57,7 +60,7 @@ public class LinuxHandler implements MeasurableMonitor<CpuUtilization> {
     /*
     * Get the system utlization value
     */
-    private double getSystemUtilization() {
+    private synchronized double getSystemUtilization() {
         File statFile = new File(PROC_STAT);
         FileReader fr = null;
         BufferedReader bf = null;
@@ -18,6 +18,8 @@ package org.rioproject.system.measurable.cpu;
 import org.rioproject.system.OperatingSystemType;
 import org.rioproject.system.measurable.MeasurableMonitor;
 import org.rioproject.system.measurable.SigarHelper;
+import org.rioproject.system.measurable.linux.LinuxCPUMonitor;
+import org.rioproject.system.measurable.linux.ProcFileSystem;
 import org.rioproject.watch.ThresholdValues;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +32,7 @@ import java.lang.reflect.Method;
  * CPU monitor that obtains system CPU utilization. This utility uses either
  * Hyperic SIGAR, JDK 1.6 or operating system utilities to obtain CPU
  * utilization for the machine. Hyperic SIGAR is preferred. If not available
+ * and running on Linux, the {@link LinuxCPUMonitor} is used, otherwise
  * JDK 1.6 facilities will be used. If neither of these approaches work
  * operating system utilities will be used (depending on the OS) to obtain
  * CPU utilization.
@@ -48,7 +51,10 @@ public class SystemCPUHandler implements MeasurableMonitor<CpuUtilization> {
 
     public SystemCPUHandler() {
         sigar = SigarHelper.getInstance();
-        if(sigar==null) {
+        if(sigar==null && OperatingSystemType.isLinux() && new ProcFileSystem().isAvailable()) {
+            logger.debug("Create LinuxCPUMonitor");
+            altMonitor = new LinuxCPUMonitor();
+        } else if(sigar==null) {
             String jvmVersion = System.getProperty("java.version");
             if(!jvmVersion.contains("1.5")) {
                 opSysMBean = ManagementFactory.getOperatingSystemMXBean();
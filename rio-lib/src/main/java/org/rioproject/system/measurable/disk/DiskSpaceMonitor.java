@@ -15,25 +15,20 @@
  */
 package org.rioproject.system.measurable.disk;
 
-import org.rioproject.exec.Util;
-import org.rioproject.system.OperatingSystemType;
 import org.rioproject.system.measurable.MeasurableMonitor;
 import org.rioproject.system.measurable.SigarHelper;
 import org.rioproject.watch.ThresholdValues;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.StringTokenizer;
+import java.io.File;
 
 /**
  * The <code>DiskSpaceMonitor</code> monitors disk space usage. This class
- * uses either Hyperic SIGAR, or operations system specific utilities (like df)
- * to obtain this information. The use of SIGAR is preferred, and if not
- * available will use external <tt>df</t> exec by forking a process and parsing
- * it's results.
+ * uses either Hyperic SIGAR, or the file system space methods provided by
+ * {@link java.io.File} to obtain this information. The use of SIGAR is
+ * preferred, and if not available the file system is queried directly,
+ * without forking a process.
  *
  * @author Dennis Reedy
  */
@@ -43,7 +38,6 @@ public class DiskSpaceMonitor implements MeasurableMonitor<DiskSpaceUtilization>
     private ThresholdValues tVals;
     private SigarHelper sigar;
     private String fileSystem = File.separator;
-    private final Object updateLock = new Object();
 
     public DiskSpaceMonitor() {
         sigar = SigarHelper.getInstance();
@@ -104,39 +98,14 @@ public class DiskSpaceMonitor implements MeasurableMonitor<DiskSpaceUtilization>
     }
 
     private DiskSpaceUtilization getDiskSpaceUtilization() {
-        double used = 0;
-        double available = 0;
-        if (!OperatingSystemType.isWindows()) {
-            Process process = null;
-            DFOutputParser outputParser = null;
-            try {
-                synchronized (updateLock) {
-                    try {
-                        process = Runtime.getRuntime().exec("df -k");
-                        outputParser =
-                            new DFOutputParser(process.getInputStream());
-                        outputParser.start();
-                        updateLock.wait();
-                    } catch (InterruptedException e) {
-                        logger.warn("Waiting on updateLock", e);
-                    }
-                }
-                used = outputParser.getUsed() * 1024;
-                available = outputParser.getAvailable() * 1024;
-            } catch (IOException e) {
-                logger.warn("Executing or spawning [df-k]", e);
-            } finally {
-                if (outputParser != null)
-                    outputParser.interrupt();
-                if (process != null) {
-                    Util.close(process.getOutputStream());
-                    Util.close(process.getInputStream());
-                    Util.close(process.getErrorStream());
-                    process.destroy();
-                }
-            }
+        File fs = new File(fileSystem);
+        double capacity = fs.getTotalSpace();
+        double available = fs.getUsableSpace();
+        double used = capacity - fs.getFreeSpace();
+        if(capacity<=0) {
+            logger.warn("Unable to obtain disk space for [{}]", fileSystem);
+            return new DiskSpaceUtilization(id, -1, tVals);
         }
-        double capacity = used + available;
         return (new DiskSpaceUtilization(id,
                                          used,
                                          available,
@@ -144,86 +113,4 @@ public class DiskSpaceMonitor implements MeasurableMonitor<DiskSpaceUtilization>
                                          used / capacity,
                                          tVals));
     }
-
-    /**
-     * Class to parse output from the df -k command
-     */
-    class DFOutputParser extends Thread {
-        InputStream in;
-        double used;
-        double available;
-
-        public DFOutputParser(InputStream in) {
-            this.in = in;
-        }
-
-        double getAvailable() {
-            return (available);
-        }
-
-        double getUsed() {
-            return (used);
-        }
-
-        public void run() {
-            BufferedReader br = null;
-            try {
-                String fileSep = System.getProperty("file.separator");
-                File root = new File(fileSep);
-                List<String> list = new ArrayList<String>();
-                InputStreamReader isr = new InputStreamReader(in);
-                br = new BufferedReader(isr);
-                String line;
-                while ((line = br.readLine()) != null && !isInterrupted()) {
-                    if (line.startsWith("Filesystem"))
-                        continue;
-                    StringTokenizer st = new StringTokenizer(line, " ");
-                    while (st.hasMoreTokens())
-                        list.add(st.nextToken());
-                    /*
-                     * The following 2 lines address the problem when the
-                     * DiskSpaceMonitor parses the result of a 'df -k' and the
-                     * local system has NFS mounted filesystems. On Linux (and
-                     * possibly other OS's), if the name of filesystem (the
-                     * first column) would run into the second column, then the
-                     * df command prints the filesystem on the first line (by
-                     * itself) and the remaining fields are printed on the
-                     * second line. After tokenizing the df output, the run()
-                     * method does a 'list.get(5)'. Unfortunately, list
-                     * sometimes only contains 1 element.
-                     */
-                    if (list.size() == 1)
-                        continue;
-
-                    /*
-                    * Get the mount point
-                    */
-                    String mountPoint = list.get(5);
-                    if (root.getCanonicalPath().startsWith(mountPoint)) {
-                        used = Double.parseDouble(list.get(2));
-                        available = Double.parseDouble(list.get(3));
-                    }
-                    list.clear();
-                }
-            } catch (IOException e) {
-                logger.info("Grabbing output of df -k", e);
-            } finally {
-                try {
-                    if (br != null)
-                        br.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-
-                try {
-                    in.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-                synchronized (updateLock) {
-                    updateLock.notifyAll();
-                }
-            }
-        }
-    }
 }
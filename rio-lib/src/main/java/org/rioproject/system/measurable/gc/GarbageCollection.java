@@ -0,0 +1,178 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.gc;
+
+import com.sun.jini.config.Config;
+import net.jini.config.Configuration;
+import net.jini.config.ConfigurationException;
+import org.rioproject.costmodel.ResourceCostModel;
+import org.rioproject.costmodel.ZeroCostModel;
+import org.rioproject.system.MeasuredResource;
+import org.rioproject.system.measurable.MeasurableCapability;
+import org.rioproject.system.measurable.MeasurableMonitor;
+import org.rioproject.watch.Calculable;
+import org.rioproject.watch.ThresholdValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>GarbageCollection</code> object is a <code>MeasurableCapability</code>
+ * which monitors one {@link GarbageCollectionMeasure} of a JVM's garbage
+ * collection activity. The identifier of the capability is the watch
+ * identifier of the measure, and it is configured using the configuration
+ * component of the measure.
+ */
+public class GarbageCollection extends MeasurableCapability {
+    /** Iteration value for calculating utilization of sampleSize >1 */
+    private int count;
+    /** Temporary utilization value */
+    private double tempUtilization;
+    /** Computed utilization value */
+    private double utilization;
+    private GarbageCollectionMeasure measure;
+    /** Component for Configuration and Logging */
+    static final String COMPONENT = "org.rioproject.system.measurable.gc";
+    static Logger logger = LoggerFactory.getLogger(COMPONENT);
+
+    /**
+     * Construct a new GarbageCollection object
+     *
+     * @param measure The GarbageCollectionMeasure to monitor
+     * @param config Configuration object
+     */
+    public GarbageCollection(GarbageCollectionMeasure measure, Configuration config) {
+        super(measure.getWatchID(), measure.getComponent(), config);
+        this.measure = measure;
+        if(!isEnabled())
+            return;
+        String component = measure.getComponent();
+        try {
+            ThresholdValues tVals =
+                (ThresholdValues)config.getEntry(component,
+                                                 "thresholdValues",
+                                                 ThresholdValues.class,
+                                                 measure.getDefaultThresholdValues());
+            setThresholdValues(tVals);
+            ResourceCostModel rCostModel =
+                (ResourceCostModel)config.getEntry(component,
+                                                   "resourceCost",
+                                                   ResourceCostModel.class,
+                                                   new ZeroCostModel());
+            setResourceCostModel(rCostModel);
+            sampleSize = Config.getIntEntry(config,
+                                            component,
+                                            "sampleSize",
+                                            1,   /* default */
+                                            1,   /* min */
+                                            10); /* max */
+            setSampleSize(sampleSize);
+            GarbageCollectionMonitor defaultMonitor = new GarbageCollectionMonitor();
+            defaultMonitor.setMeasure(measure);
+            int pauseHistorySize = Config.getIntEntry(config,
+                                                      component,
+                                                      "pauseHistorySize",
+                                                      GarbageCollectionMonitor.DEFAULT_PAUSE_HISTORY_SIZE,
+                                                      1,
+                                                      10000);
+            defaultMonitor.setPauseHistorySize(pauseHistorySize);
+            MeasurableMonitor monitor =
+                (MeasurableMonitor)config.getEntry(component,
+                                                   "gcMonitor",
+                                                   MeasurableMonitor.class,
+                                                   defaultMonitor);
+            long reportRate = Config.getLongEntry(config,
+                                                  component,
+                                                  "reportRate",
+                                                  DEFAULT_PERIOD,     /* default */
+                                                  1000,               /* min */
+                                                  Integer.MAX_VALUE); /* max */
+            setPeriod(reportRate);
+            setMeasurableMonitor(monitor);
+        } catch (ConfigurationException e) {
+            logger.warn("Getting {} Configuration", getId(), e);
+        }
+    }
+
+    /**
+     * Get the measures to monitor, from the <code>measures</code> entry of the
+     * <code>org.rioproject.system.measurable.gc</code> component. If the entry
+     * is not configured, the GC overhead, the 99th percentile GC pause and the
+     * allocation rate are monitored.
+     *
+     * @param config Configuration object
+     *
+     * @return The GarbageCollectionMeasures to monitor
+     *
+     * @throws ConfigurationException If the entry cannot be read
+     */
+    public static GarbageCollectionMeasure[] getConfiguredMeasures(Configuration config) throws ConfigurationException {
+        return (GarbageCollectionMeasure[])config.getEntry(COMPONENT,
+                                                           "measures",
+                                                           GarbageCollectionMeasure[].class,
+                                                           new GarbageCollectionMeasure[]{
+                                                               GarbageCollectionMeasure.OVERHEAD,
+                                                               GarbageCollectionMeasure.PAUSE_P99,
+                                                               GarbageCollectionMeasure.ALLOCATION_RATE});
+    }
+
+    /**
+     * Get the measure this <code>GarbageCollection</code> object monitors
+     *
+     * @return The GarbageCollectionMeasure
+     */
+    public GarbageCollectionMeasure getMeasure() {
+        return measure;
+    }
+
+    /**
+     * Override PeriodicWatch.start() to get an initial reading prior to
+     * scheduling
+     */
+    @Override
+    public void start() {
+        checkValue();
+        super.start();
+    }
+
+    /**
+     * Get the computed utilization for this <code>GarbageCollection</code> object
+     *
+     * @return Utilization computed for this component
+     */
+    public double getUtilization() {
+        return utilization;
+    }
+
+    public void checkValue() {
+        count++;
+        if(monitor==null)
+            return;
+        MeasuredResource mRes = monitor.getMeasuredResource();
+        tempUtilization += mRes.getValue();
+        if(count==sampleSize) {
+            utilization = tempUtilization/sampleSize;
+            count = 0;
+            tempUtilization = 0;
+        }
+        logger.trace("{}: utilization={}", getId(), utilization);
+        addWatchRecord(new Calculable(getId(), mRes.getValue(), System.currentTimeMillis()));
+        setLastMeasuredResource(mRes);
+    }
+
+    public MeasurableMonitor getMeasurableMonitor() {
+        return monitor;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.gc;
+
+import org.rioproject.system.SystemWatchID;
+import org.rioproject.watch.ThresholdValues;
+
+/**
+ * The garbage collection measures a {@link GarbageCollection} capability can
+ * be created for. Each measure has its own watch identifier, which an SLA
+ * uses to declare thresholds for it, and its own configuration component.
+ */
+public enum GarbageCollectionMeasure {
+    /** The fraction of elapsed time spent in garbage collection */
+    OVERHEAD(SystemWatchID.GC_OVERHEAD, "overhead", 1.0),
+    /** The 50th percentile pause time, in milliseconds */
+    PAUSE_P50(SystemWatchID.GC_PAUSE_P50, "pause50", Double.MAX_VALUE),
+    /** The 90th percentile pause time, in milliseconds */
+    PAUSE_P90(SystemWatchID.GC_PAUSE_P90, "pause90", Double.MAX_VALUE),
+    /** The 99th percentile pause time, in milliseconds */
+    PAUSE_P99(SystemWatchID.GC_PAUSE_P99, "pause99", Double.MAX_VALUE),
+    /** Garbage collections per second */
+    COLLECTION_RATE(SystemWatchID.GC_COLLECTION_RATE, "collectionRate", Double.MAX_VALUE),
+    /** Bytes allocated per second */
+    ALLOCATION_RATE(SystemWatchID.ALLOCATION_RATE, "allocationRate", Double.MAX_VALUE),
+    /** The fraction of the old generation in use after the last collection */
+    OLD_GEN_OCCUPANCY(SystemWatchID.OLD_GEN_OCCUPANCY, "oldGenOccupancy", 1.0);
+
+    private final String watchID;
+    private final String component;
+    private final double highThreshold;
+
+    GarbageCollectionMeasure(String watchID, String name, double highThreshold) {
+        this.watchID = watchID;
+        this.component = GarbageCollection.COMPONENT+"."+name;
+        this.highThreshold = highThreshold;
+    }
+
+    /**
+     * Get the watch identifier of the measure
+     *
+     * @return The watch identifier
+     */
+    public String getWatchID() {
+        return watchID;
+    }
+
+    /**
+     * Get the configuration component of the measure
+     *
+     * @return The configuration component
+     */
+    public String getComponent() {
+        return component;
+    }
+
+    /**
+     * Get the default ThresholdValues of the measure
+     *
+     * @return A new ThresholdValues covering the range of the measure
+     */
+    public ThresholdValues getDefaultThresholdValues() {
+        return new ThresholdValues(0.0, highThreshold);
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.gc;
+
+import org.rioproject.jmx.JMXUtil;
+import org.rioproject.system.measurable.MeasurableMonitor;
+import org.rioproject.watch.ThresholdValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServerConnection;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.*;
+
+/**
+ * The <code>GarbageCollectionMonitor</code> measures garbage collection using
+ * the {@link GarbageCollectorMXBean} and {@link MemoryPoolMXBean} instances of
+ * the local JVM, or of a JVM reached using an {@link MBeanServerConnection}.
+ *
+ * <p>Each measurement is computed from the change in collection counts, times
+ * and memory pool usage since the previous measurement:
+ * <ul>
+ * <li>The GC overhead is the collection time divided by the elapsed time
+ * <li>Pause percentiles are computed over a history of the average pause of
+ * each collector in each interval. The pause of a collection is exact when a
+ * collector runs at most once in an interval
+ * <li>The allocation rate is estimated from eden space usage: the growth of
+ * eden, plus the committed size of eden for each collection that emptied it
+ * <li>The old generation occupancy is the usage of the old generation after
+ * its last collection
+ * </ul>
+ * The first measurement establishes a baseline and reports no activity.
+ */
+public class GarbageCollectionMonitor implements MeasurableMonitor<GarbageCollectionUtilization> {
+    public static final int DEFAULT_PAUSE_HISTORY_SIZE = 100;
+    private String id;
+    private ThresholdValues tVals;
+    private GarbageCollectionMeasure measure = GarbageCollectionMeasure.OVERHEAD;
+    private PauseHistory pauseHistory = new PauseHistory(DEFAULT_PAUSE_HISTORY_SIZE);
+    private final List<GarbageCollectorMXBean> collectors = new ArrayList<GarbageCollectorMXBean>();
+    private boolean[] collectsEden = new boolean[0];
+    private MemoryPoolMXBean edenPool;
+    private MemoryPoolMXBean oldPool;
+    private long[] lastCounts;
+    private long[] lastTimes;
+    private long lastEdenUsed;
+    private long lastSample;
+    static Logger logger = LoggerFactory.getLogger(GarbageCollectionMonitor.class);
+
+    public GarbageCollectionMonitor() {
+        setMXBeans(ManagementFactory.getGarbageCollectorMXBeans(), ManagementFactory.getMemoryPoolMXBeans());
+    }
+
+    public void terminate() {
+    }
+
+    public void setID(String id) {
+        this.id = id;
+    }
+
+    public void setThresholdValues(ThresholdValues tVals) {
+        this.tVals = tVals;
+    }
+
+    /**
+     * Set the measure reported as the value of each measurement
+     *
+     * @param measure The GarbageCollectionMeasure, must not be null
+     */
+    public void setMeasure(GarbageCollectionMeasure measure) {
+        if(measure==null)
+            throw new IllegalArgumentException("measure is null");
+        this.measure = measure;
+    }
+
+    /**
+     * Set the number of entries kept to compute pause percentiles
+     *
+     * @param size The number of entries, must be greater than 0
+     */
+    public synchronized void setPauseHistorySize(int size) {
+        pauseHistory = new PauseHistory(size);
+    }
+
+    /**
+     * Set the MBeanServerConnection of the JVM to measure. The garbage
+     * collector and memory pool MXBeans are obtained from the connection.
+     *
+     * @param mbsc The MBeanServerConnection, or null to measure the local JVM
+     */
+    public void setMBeanServerConnection(MBeanServerConnection mbsc) {
+        if(mbsc==null) {
+            setMXBeans(ManagementFactory.getGarbageCollectorMXBeans(), ManagementFactory.getMemoryPoolMXBeans());
+            return;
+        }
+        setMXBeans(getPlatformMXBeanProxies(mbsc,
+                                            ManagementFactory.GARBAGE_COLLECTOR_MXBEAN_DOMAIN_TYPE,
+                                            GarbageCollectorMXBean.class),
+                   getPlatformMXBeanProxies(mbsc,
+                                            ManagementFactory.MEMORY_POOL_MXBEAN_DOMAIN_TYPE,
+                                            MemoryPoolMXBean.class));
+    }
+
+    /*
+     * Set the MXBeans to measure, and identify the eden and old generation
+     * pools by name
+     */
+    synchronized void setMXBeans(List<GarbageCollectorMXBean> gcBeans, List<MemoryPoolMXBean> poolBeans) {
+        collectors.clear();
+        collectors.addAll(gcBeans);
+        edenPool = null;
+        oldPool = null;
+        for(MemoryPoolMXBean pool : poolBeans) {
+            if(pool.getType()!=MemoryType.HEAP)
+                continue;
+            String name = pool.getName();
+            if(edenPool==null && (name.contains("Eden") || name.contains("nursery")))
+                edenPool = pool;
+            else if(oldPool==null && (name.contains("Old") || name.contains("Tenured")))
+                oldPool = pool;
+        }
+        collectsEden = new boolean[collectors.size()];
+        if(edenPool!=null) {
+            for(int i=0; i<collectsEden.length; i++)
+                collectsEden[i] = Arrays.asList(collectors.get(i).getMemoryPoolNames()).contains(edenPool.getName());
+        }
+        lastCounts = null;
+        logger.debug("Measuring {} garbage collectors, eden pool: {}, old generation pool: {}",
+                     collectors.size(),
+                     edenPool==null?"unknown":edenPool.getName(),
+                     oldPool==null?"unknown":oldPool.getName());
+    }
+
+    public synchronized GarbageCollectionUtilization getMeasuredResource() {
+        long now = System.nanoTime();
+        long[] counts = new long[collectors.size()];
+        long[] times = new long[collectors.size()];
+        for(int i=0; i<counts.length; i++) {
+            GarbageCollectorMXBean collector = collectors.get(i);
+            counts[i] = Math.max(collector.getCollectionCount(), 0);
+            times[i] = Math.max(collector.getCollectionTime(), 0);
+        }
+        MemoryUsage edenUsage = edenPool==null?null:edenPool.getUsage();
+        long edenUsed = edenUsage==null?0:edenUsage.getUsed();
+
+        double overhead = 0;
+        double collectionRate = 0;
+        double allocationRate = edenUsage==null?-1:0;
+        double elapsed = (now-lastSample)/1000000d;
+        if(lastCounts!=null && elapsed>0) {
+            long collections = 0;
+            long collectionTime = 0;
+            long edenCollections = 0;
+            for(int i=0; i<counts.length; i++) {
+                long count = counts[i]-lastCounts[i];
+                long time = times[i]-lastTimes[i];
+                if(count<=0)
+                    continue;
+                pauseHistory.add((double)time/count, count);
+                collections += count;
+                collectionTime += time;
+                if(collectsEden[i])
+                    edenCollections += count;
+            }
+            overhead = Math.min(1, collectionTime/elapsed);
+            collectionRate = collections/(elapsed/1000);
+            if(edenUsage!=null) {
+                long allocated;
+                if(edenCollections==0) {
+                    allocated = Math.max(0, edenUsed-lastEdenUsed);
+                } else {
+                    long edenSize = edenUsage.getCommitted();
+                    allocated = Math.max(0, edenSize-lastEdenUsed)+(edenCollections-1)*edenSize+edenUsed;
+                }
+                allocationRate = allocated/(elapsed/1000);
+            }
+        }
+        lastCounts = counts;
+        lastTimes = times;
+        lastEdenUsed = edenUsed;
+        lastSample = now;
+
+        double pause50 = pauseHistory.getPercentile(0.5);
+        double pause90 = pauseHistory.getPercentile(0.9);
+        double pause99 = pauseHistory.getPercentile(0.99);
+        double oldGenOccupancy = getOldGenOccupancy();
+        double value;
+        switch(measure) {
+            case PAUSE_P50:
+                value = pause50;
+                break;
+            case PAUSE_P90:
+                value = pause90;
+                break;
+            case PAUSE_P99:
+                value = pause99;
+                break;
+            case COLLECTION_RATE:
+                value = collectionRate;
+                break;
+            case ALLOCATION_RATE:
+                value = Math.max(allocationRate, 0);
+                break;
+            case OLD_GEN_OCCUPANCY:
+                value = Math.max(oldGenOccupancy, 0);
+                break;
+            default:
+                value = overhead;
+        }
+        return new GarbageCollectionUtilization(id,
+                                                value,
+                                                overhead,
+                                                pause50,
+                                                pause90,
+                                                pause99,
+                                                collectionRate,
+                                                allocationRate,
+                                                oldGenOccupancy,
+                                                tVals);
+    }
+
+    private double getOldGenOccupancy() {
+        if(oldPool==null)
+            return -1;
+        MemoryUsage usage = oldPool.getCollectionUsage();
+        if(usage==null)
+            return -1;
+        long max = usage.getMax()>0?usage.getMax():usage.getCommitted();
+        return max>0?(double)usage.getUsed()/(double)max:-1;
+    }
+
+    private static <T> List<T> getPlatformMXBeanProxies(MBeanServerConnection mbsc,
+                                                        String domainType,
+                                                        Class<T> mxBeanInterface) {
+        List<T> proxies = new ArrayList<T>();
+        try {
+            Set<ObjectName> names = mbsc.queryNames(new ObjectName(domainType+",*"), null);
+            for(ObjectName name : names) {
+                T proxy = JMXUtil.getPlatformMXBeanProxy(mbsc, name.toString(), mxBeanInterface);
+                if(proxy!=null)
+                    proxies.add(proxy);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not query {} MXBeans", domainType, e);
+        } catch (MalformedObjectNameException e) {
+            logger.warn("Could not query {} MXBeans", domainType, e);
+        }
+        return proxies;
+    }
+}
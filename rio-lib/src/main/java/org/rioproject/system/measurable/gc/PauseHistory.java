@@ -0,0 +1,88 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.gc;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A bounded history of garbage collection pause times. Each entry is the
+ * average pause of a collector over a sampling interval, weighted by the
+ * number of collections in the interval, so percentiles are computed over
+ * collections rather than intervals. When the history is full the oldest
+ * entry is replaced.
+ */
+class PauseHistory {
+    private final double[] pauses;
+    private final long[] weights;
+    private int next;
+    private int size;
+
+    PauseHistory(int capacity) {
+        if(capacity<1)
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        pauses = new double[capacity];
+        weights = new long[capacity];
+    }
+
+    /**
+     * Add an entry
+     *
+     * @param pause The average pause time, in milliseconds
+     * @param count The number of collections the average was taken over
+     */
+    synchronized void add(double pause, long count) {
+        if(count<1)
+            return;
+        pauses[next] = pause;
+        weights[next] = count;
+        next = (next+1)%pauses.length;
+        if(size<pauses.length)
+            size++;
+    }
+
+    /**
+     * Get a percentile of the pause times in the history
+     *
+     * @param percentile The percentile, between 0 and 1
+     *
+     * @return The pause time at the percentile, in milliseconds, or 0 if the
+     * history is empty
+     */
+    synchronized double getPercentile(double percentile) {
+        if(size==0)
+            return 0;
+        Integer[] order = new Integer[size];
+        long total = 0;
+        for(int i=0; i<size; i++) {
+            order[i] = i;
+            total += weights[i];
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(pauses[i1], pauses[i2]);
+            }
+        });
+        double rank = percentile*total;
+        long cumulative = 0;
+        for(Integer i : order) {
+            cumulative += weights[i];
+            if(cumulative>=rank)
+                return pauses[i];
+        }
+        return pauses[order[size-1]];
+    }
+}
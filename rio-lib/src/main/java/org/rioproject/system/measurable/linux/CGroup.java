@@ -0,0 +1,206 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.linux;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads CPU and memory limits and usage for the control group the current process runs in. Both the
+ * cgroup v1 (per-controller hierarchies) and cgroup v2 (unified hierarchy) layouts are supported.
+ *
+ * <p>The control group path is obtained from <tt>/proc/self/cgroup</tt>. If the path does not exist
+ * below the cgroup root (as is the case inside a container with its own cgroup namespace), the
+ * controller root itself is used.
+ */
+public class CGroup {
+    /** The version of the cgroup hierarchy */
+    public enum Version { NONE, V1, V2 }
+    /** Values at or above this are used by cgroup v1 to indicate no memory limit */
+    static final long UNLIMITED_MEMORY = 1L<<60;
+    /** USER_HZ, the unit used for cpuacct.stat values */
+    private static final long NANOS_PER_TICK = 1000000000L/100;
+    private final Version version;
+    private final Map<String, File> controllers = new HashMap<String, File>();
+    private static final Logger logger = LoggerFactory.getLogger(CGroup.class);
+
+    /**
+     * Create a CGroup
+     *
+     * @param procFS The ProcFileSystem to use, must not be null
+     */
+    public CGroup(ProcFileSystem procFS) {
+        if(procFS==null)
+            throw new IllegalArgumentException("procFS is null");
+        File root = procFS.getCGroupRoot();
+        boolean unified = new File(root, "cgroup.controllers").exists();
+        List<String> lines = null;
+        try {
+            lines = procFS.readProc("self/cgroup");
+        } catch (IOException e) {
+            logger.trace("Unable to read self/cgroup, use cgroup root", e);
+        }
+        if(unified) {
+            String path = "/";
+            if(lines!=null) {
+                for(String line : lines) {
+                    if(line.startsWith("0::")) {
+                        path = line.substring(3);
+                        break;
+                    }
+                }
+            }
+            controllers.put("", resolve(root, path));
+            version = Version.V2;
+        } else if(new File(root, "memory").exists() || new File(root, "cpu").exists()) {
+            if(lines!=null) {
+                for(String line : lines) {
+                    String[] parts = line.split(":", 3);
+                    if(parts.length<3 || parts[1].length()==0)
+                        continue;
+                    File base = new File(root, parts[1]);
+                    for(String controller : parts[1].split(",")) {
+                        File dir = base.exists()?base:new File(root, controller);
+                        controllers.put(controller, resolve(dir, parts[2]));
+                    }
+                }
+            }
+            for(String controller : new String[]{"cpu", "cpuacct", "memory"}) {
+                if(!controllers.containsKey(controller))
+                    controllers.put(controller, new File(root, controller));
+            }
+            version = Version.V1;
+        } else {
+            version = Version.NONE;
+        }
+        logger.trace("cgroup version: {}, controllers: {}", version, controllers);
+    }
+
+    public Version getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the CPU limit imposed on the control group
+     *
+     * @return The number of CPUs the control group is allowed to use (possibly fractional), or -1 if
+     * there is no limit
+     */
+    public double getCpuLimit() {
+        long quota = -1;
+        long period = -1;
+        if(version==Version.V2) {
+            String cpuMax = ProcFileSystem.readFirstLine(file("cpu", "cpu.max"));
+            if(cpuMax!=null) {
+                String[] fields = ProcFileSystem.fields(cpuMax);
+                if(fields.length>0)
+                    quota = ProcFileSystem.parseLong(fields[0], -1);
+                period = fields.length>1?ProcFileSystem.parseLong(fields[1], -1):100000;
+            }
+        } else if(version==Version.V1) {
+            quota = ProcFileSystem.parseLong(ProcFileSystem.readFirstLine(file("cpu", "cpu.cfs_quota_us")), -1);
+            period = ProcFileSystem.parseLong(ProcFileSystem.readFirstLine(file("cpu", "cpu.cfs_period_us")), -1);
+        }
+        if(quota<=0 || period<=0)
+            return -1;
+        return (double)quota/(double)period;
+    }
+
+    /**
+     * Get the memory limit imposed on the control group
+     *
+     * @return The memory limit in bytes, or -1 if there is no limit
+     */
+    public long getMemoryLimit() {
+        long limit = -1;
+        if(version==Version.V2) {
+            limit = ProcFileSystem.parseLong(ProcFileSystem.readFirstLine(file("memory", "memory.max")), -1);
+        } else if(version==Version.V1) {
+            limit = ProcFileSystem.parseLong(ProcFileSystem.readFirstLine(file("memory", "memory.limit_in_bytes")), -1);
+        }
+        return limit<=0 || limit>=UNLIMITED_MEMORY?-1:limit;
+    }
+
+    /**
+     * Get the memory used by the control group
+     *
+     * @return The memory used in bytes, or -1 if not available
+     */
+    public long getMemoryUsage() {
+        String name = version==Version.V2?"memory.current":"memory.usage_in_bytes";
+        if(version==Version.NONE)
+            return -1;
+        return ProcFileSystem.parseLong(ProcFileSystem.readFirstLine(file("memory", name)), -1);
+    }
+
+    /**
+     * Get the cumulative CPU time used by the control group
+     *
+     * @return A two element array containing the user and system CPU time in nanoseconds, or null if
+     * not available
+     */
+    public long[] getCpuUsage() {
+        if(version==Version.NONE)
+            return null;
+        File stat = version==Version.V2?file("cpu", "cpu.stat"):file("cpuacct", "cpuacct.stat");
+        if(!stat.canRead())
+            return null;
+        long user = -1;
+        long system = -1;
+        try {
+            for(String line : ProcFileSystem.readLines(stat)) {
+                String[] fields = ProcFileSystem.fields(line);
+                if(fields.length<2)
+                    continue;
+                if(version==Version.V2) {
+                    if(fields[0].equals("user_usec"))
+                        user = ProcFileSystem.parseLong(fields[1], -1)*1000;
+                    else if(fields[0].equals("system_usec"))
+                        system = ProcFileSystem.parseLong(fields[1], -1)*1000;
+                } else {
+                    if(fields[0].equals("user"))
+                        user = ProcFileSystem.parseLong(fields[1], -1)*NANOS_PER_TICK;
+                    else if(fields[0].equals("system"))
+                        system = ProcFileSystem.parseLong(fields[1], -1)*NANOS_PER_TICK;
+                }
+            }
+        } catch (IOException e) {
+            logger.trace("Unable to read {}", stat, e);
+            return null;
+        }
+        if(user<0 || system<0)
+            return null;
+        return new long[]{user, system};
+    }
+
+    private File file(String controller, String name) {
+        File dir = version==Version.V2?controllers.get(""):controllers.get(controller);
+        return new File(dir, name);
+    }
+
+    private static File resolve(File base, String path) {
+        if(path==null || path.equals("/") || path.length()==0)
+            return base;
+        File dir = new File(base, path);
+        return dir.isDirectory()?dir:base;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.linux;
+
+import org.rioproject.system.measurable.MeasurableMonitor;
+import org.rioproject.system.measurable.cpu.CpuUtilization;
+import org.rioproject.watch.ThresholdValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures system CPU utilization by reading <tt>/proc/stat</tt> and <tt>/proc/loadavg</tt>,
+ * without forking a process. Utilization is computed from the difference between the current and
+ * the previous sample, and is also computed for each core (see {@link #getPerCoreUtilization()}).
+ *
+ * <p>If the process runs in a control group that has a CPU quota lower than the number of
+ * processors on the machine (for example in a container), utilization is computed from the CPU
+ * time used by the control group relative to its quota, and the number of available processors
+ * reflects the quota.
+ *
+ * <p>Sample state is held per instance.
+ */
+public class LinuxCPUMonitor implements MeasurableMonitor<CpuUtilization> {
+    private final ProcFileSystem procFS;
+    private final CGroup cgroup;
+    private String id;
+    private ThresholdValues tVals;
+    /* The last /proc/stat ticks, keyed by cpu name ("cpu", "cpu0", "cpu1", ...) */
+    private final Map<String, long[]> lastTicks = new HashMap<String, long[]>();
+    private Map<String, Double> perCore = Collections.emptyMap();
+    private long[] lastCGroupUsage;
+    private long lastCGroupSampleTime;
+    private static final Logger logger = LoggerFactory.getLogger(LinuxCPUMonitor.class);
+
+    public LinuxCPUMonitor() {
+        this(new ProcFileSystem());
+    }
+
+    public LinuxCPUMonitor(ProcFileSystem procFS) {
+        if(procFS==null)
+            throw new IllegalArgumentException("procFS is null");
+        this.procFS = procFS;
+        this.cgroup = new CGroup(procFS);
+    }
+
+    public void setID(String id) {
+        this.id = id;
+    }
+
+    public void setThresholdValues(ThresholdValues tVals) {
+        this.tVals = tVals;
+    }
+
+    public void terminate() {
+        /* implemented for interface compliance */
+    }
+
+    public CpuUtilization getMeasuredResource() {
+        return sample(System.nanoTime());
+    }
+
+    /**
+     * Get the utilization of each core computed by the last sample
+     *
+     * @return An unmodifiable map of core name (<tt>cpu0</tt>, <tt>cpu1</tt>, ...) to utilization
+     */
+    public synchronized Map<String, Double> getPerCoreUtilization() {
+        return perCore;
+    }
+
+    /**
+     * Get the number of processors available, taking into account any control group CPU quota
+     *
+     * @return The number of processors available
+     */
+    public synchronized int getAvailableProcessors() {
+        int online = countCores();
+        double limit = cgroup.getCpuLimit();
+        if(limit>0 && limit<online)
+            return (int)Math.max(1, Math.ceil(limit));
+        return online;
+    }
+
+    synchronized CpuUtilization sample(long now) {
+        double user = 0;
+        double system = 0;
+        Map<String, Double> cores = new LinkedHashMap<String, Double>();
+        try {
+            for(String line : procFS.readProc("stat")) {
+                if(!line.startsWith("cpu"))
+                    continue;
+                String[] fields = ProcFileSystem.fields(line);
+                if(fields.length<5)
+                    continue;
+                /* user nice system idle iowait irq softirq steal */
+                long[] ticks = new long[8];
+                for(int i=0; i<ticks.length && i+1<fields.length; i++)
+                    ticks[i] = ProcFileSystem.parseLong(fields[i+1], 0);
+                long[] last = lastTicks.put(fields[0], ticks);
+                if(last==null)
+                    continue;
+                double total = 0;
+                for(int i=0; i<ticks.length; i++)
+                    total += ticks[i]-last[i];
+                if(total<=0)
+                    continue;
+                double userDelta = (ticks[0]-last[0])+(ticks[1]-last[1]);
+                double systemDelta = (ticks[2]-last[2])+(ticks[5]-last[5])+(ticks[6]-last[6]);
+                if(fields[0].equals("cpu")) {
+                    user = userDelta/total;
+                    system = systemDelta/total;
+                } else {
+                    double idle = (ticks[3]-last[3])+(ticks[4]-last[4]);
+                    cores.put(fields[0], 1.0-idle/total);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read stat from {}", procFS.getProcRoot(), e);
+        }
+        perCore = Collections.unmodifiableMap(cores);
+        int online = countCores();
+        int available = online;
+        double limit = cgroup.getCpuLimit();
+        if(limit>0 && limit<online) {
+            available = (int)Math.max(1, Math.ceil(limit));
+            long[] usage = cgroup.getCpuUsage();
+            if(usage!=null) {
+                if(lastCGroupUsage!=null && now>lastCGroupSampleTime) {
+                    double allowed = (now-lastCGroupSampleTime)*limit;
+                    user = (usage[0]-lastCGroupUsage[0])/allowed;
+                    system = (usage[1]-lastCGroupUsage[1])/allowed;
+                } else {
+                    user = 0;
+                    system = 0;
+                }
+                lastCGroupUsage = usage;
+                lastCGroupSampleTime = now;
+            }
+        }
+        return new CpuUtilization(id, system, user, getLoadAverage(), available, tVals);
+    }
+
+    private int countCores() {
+        int cores = lastTicks.size()-(lastTicks.containsKey("cpu")?1:0);
+        return cores>0?cores:Runtime.getRuntime().availableProcessors();
+    }
+
+    private double[] getLoadAverage() {
+        double[] load = new double[3];
+        try {
+            String line = ProcFileSystem.readFirstLine(new File(procFS.getProcRoot(), "loadavg"));
+            if(line==null)
+                return null;
+            String[] fields = ProcFileSystem.fields(line);
+            for(int i=0; i<load.length && i<fields.length; i++)
+                load[i] = Double.parseDouble(fields[i]);
+        } catch(NumberFormatException e) {
+            logger.trace("Unable to parse loadavg", e);
+            return null;
+        }
+        return load;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.linux;
+
+import org.rioproject.system.measurable.MeasurableMonitor;
+import org.rioproject.watch.ThresholdValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Measures disk I/O by reading <tt>/proc/diskstats</tt>. The utilization produced is the busy time
+ * of the busiest device over the sampling interval, a value between 0 and 1. Read and write
+ * throughput are summed across devices.
+ *
+ * <p>Unless devices are explicitly set, loop and ram devices, as well as partitions, are ignored so
+ * that I/O is not counted more than once.
+ */
+public class LinuxDiskIOMonitor implements MeasurableMonitor<DiskIOUtilization> {
+    private final ProcFileSystem procFS;
+    private String id;
+    private ThresholdValues tVals;
+    private final Set<String> devices = new HashSet<String>();
+    /* The last sample per device: reads, sectors read, writes, sectors written, ms doing I/O */
+    private final Map<String, long[]> lastStats = new HashMap<String, long[]>();
+    private long lastSampleTime;
+    private static final Pattern IGNORE =
+        Pattern.compile("(loop|ram|fd).*|(sd|hd|vd|xvd)[a-z]+\\d+|(nvme\\d+n\\d+|mmcblk\\d+)p\\d+");
+    private static final int SECTOR_SIZE = 512;
+    private static final Logger logger = LoggerFactory.getLogger(LinuxDiskIOMonitor.class);
+
+    public LinuxDiskIOMonitor() {
+        this(new ProcFileSystem());
+    }
+
+    public LinuxDiskIOMonitor(ProcFileSystem procFS) {
+        if(procFS==null)
+            throw new IllegalArgumentException("procFS is null");
+        this.procFS = procFS;
+    }
+
+    /**
+     * Set the devices to monitor
+     *
+     * @param devices The names of the devices to monitor, as they appear in <tt>/proc/diskstats</tt>,
+     * for example <tt>sda</tt>. If empty, all disks are monitored
+     */
+    public synchronized void setDevices(String... devices) {
+        this.devices.clear();
+        if(devices!=null)
+            this.devices.addAll(Arrays.asList(devices));
+    }
+
+    public void setID(String id) {
+        this.id = id;
+    }
+
+    public void setThresholdValues(ThresholdValues tVals) {
+        this.tVals = tVals;
+    }
+
+    public void terminate() {
+        /* implemented for interface compliance */
+    }
+
+    public DiskIOUtilization getMeasuredResource() {
+        return sample(System.currentTimeMillis());
+    }
+
+    synchronized DiskIOUtilization sample(long now) {
+        long elapsed = now-lastSampleTime;
+        boolean haveLast = lastSampleTime>0 && elapsed>0;
+        double busiest = 0;
+        long reads = 0;
+        long writes = 0;
+        long bytesRead = 0;
+        long bytesWritten = 0;
+        try {
+            for(String line : procFS.readProc("diskstats")) {
+                String[] fields = ProcFileSystem.fields(line);
+                if(fields.length<13 || !include(fields[2]))
+                    continue;
+                long[] stats = new long[]{ProcFileSystem.parseLong(fields[3], 0),
+                                          ProcFileSystem.parseLong(fields[5], 0),
+                                          ProcFileSystem.parseLong(fields[7], 0),
+                                          ProcFileSystem.parseLong(fields[9], 0),
+                                          ProcFileSystem.parseLong(fields[12], 0)};
+                long[] last = lastStats.put(fields[2], stats);
+                if(last==null || !haveLast)
+                    continue;
+                reads += stats[0]-last[0];
+                bytesRead += (stats[1]-last[1])*SECTOR_SIZE;
+                writes += stats[2]-last[2];
+                bytesWritten += (stats[3]-last[3])*SECTOR_SIZE;
+                busiest = Math.max(busiest, Math.min(1.0, (double)(stats[4]-last[4])/(double)elapsed));
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read diskstats from {}", procFS.getProcRoot(), e);
+        }
+        lastSampleTime = now;
+        if(!haveLast)
+            return new DiskIOUtilization(id, 0, 0, 0, 0, 0, tVals);
+        double seconds = elapsed/1000.0;
+        return new DiskIOUtilization(id,
+                                     busiest,
+                                     bytesRead/seconds,
+                                     bytesWritten/seconds,
+                                     reads/seconds,
+                                     writes/seconds,
+                                     tVals);
+    }
+
+    private boolean include(String device) {
+        if(!devices.isEmpty())
+            return devices.contains(device);
+        return !IGNORE.matcher(device).matches();
+    }
+}
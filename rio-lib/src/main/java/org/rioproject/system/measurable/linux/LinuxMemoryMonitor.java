@@ -0,0 +1,110 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.linux;
+
+import org.rioproject.system.measurable.MeasurableMonitor;
+import org.rioproject.system.measurable.memory.SystemMemoryUtilization;
+import org.rioproject.watch.ThresholdValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Measures system memory utilization by reading <tt>/proc/meminfo</tt>. If the process runs in a
+ * control group with a memory limit lower than the memory of the machine, the limit is used as the
+ * total amount of memory, and the memory used by the control group is reported as used memory.
+ */
+public class LinuxMemoryMonitor implements MeasurableMonitor<SystemMemoryUtilization> {
+    private final ProcFileSystem procFS;
+    private final CGroup cgroup;
+    private String id;
+    private ThresholdValues tVals;
+    private static final double MB = Math.pow(1024, 2);
+    private static final Logger logger = LoggerFactory.getLogger(LinuxMemoryMonitor.class);
+
+    public LinuxMemoryMonitor() {
+        this(new ProcFileSystem());
+    }
+
+    public LinuxMemoryMonitor(ProcFileSystem procFS) {
+        if(procFS==null)
+            throw new IllegalArgumentException("procFS is null");
+        this.procFS = procFS;
+        this.cgroup = new CGroup(procFS);
+    }
+
+    public void setID(String id) {
+        this.id = id;
+    }
+
+    public void setThresholdValues(ThresholdValues tVals) {
+        this.tVals = tVals;
+    }
+
+    public void terminate() {
+        /* implemented for interface compliance */
+    }
+
+    public SystemMemoryUtilization getMeasuredResource() {
+        long memTotal = -1;
+        long memFree = -1;
+        long memAvailable = -1;
+        long buffersAndCached = 0;
+        try {
+            for(String line : procFS.readProc("meminfo")) {
+                String[] fields = ProcFileSystem.fields(line);
+                if(fields.length<2)
+                    continue;
+                long bytes = ProcFileSystem.parseLong(fields[1], 0)*1024;
+                if(fields[0].equals("MemTotal:"))
+                    memTotal = bytes;
+                else if(fields[0].equals("MemFree:"))
+                    memFree = bytes;
+                else if(fields[0].equals("MemAvailable:"))
+                    memAvailable = bytes;
+                else if(fields[0].equals("Buffers:") || fields[0].equals("Cached:"))
+                    buffersAndCached += bytes;
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read meminfo from {}", procFS.getProcRoot(), e);
+        }
+        if(memTotal<=0)
+            return new SystemMemoryUtilization(id, tVals);
+        if(memAvailable<0)
+            memAvailable = memFree+buffersAndCached;
+        long total = memTotal;
+        long used = memTotal-memAvailable;
+        long limit = cgroup.getMemoryLimit();
+        if(limit>0 && limit<memTotal) {
+            long usage = cgroup.getMemoryUsage();
+            total = limit;
+            if(usage>=0)
+                used = Math.min(usage, limit);
+        }
+        long free = total-used;
+        double utilization = (double)used/(double)total;
+        return new SystemMemoryUtilization(id,
+                                           utilization,
+                                           total/MB,
+                                           free/MB,
+                                           used/MB,
+                                           ((double)free/(double)total)*100,
+                                           utilization*100,
+                                           memTotal/MB,
+                                           tVals);
+    }
+}
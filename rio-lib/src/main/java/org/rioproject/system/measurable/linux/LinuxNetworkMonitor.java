@@ -0,0 +1,144 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.linux;
+
+import org.rioproject.system.measurable.MeasurableMonitor;
+import org.rioproject.watch.ThresholdValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Measures network throughput by reading <tt>/proc/net/dev</tt>. The utilization produced is the
+ * larger of the receive and transmit rates relative to the configured bandwidth, a value between 0
+ * and 1. The loopback interface is ignored unless interfaces are explicitly set.
+ */
+public class LinuxNetworkMonitor implements MeasurableMonitor<NetworkUtilization> {
+    /** Default bandwidth, 1 Gbit/s expressed in bytes per second */
+    public static final long DEFAULT_BANDWIDTH = 125000000L;
+    private final ProcFileSystem procFS;
+    private String id;
+    private ThresholdValues tVals;
+    private long bandwidth = DEFAULT_BANDWIDTH;
+    private final Set<String> interfaces = new HashSet<String>();
+    /* The last sample per interface: rx bytes, rx errors, rx dropped, tx bytes, tx errors, tx dropped */
+    private final Map<String, long[]> lastStats = new HashMap<String, long[]>();
+    private long lastSampleTime;
+    private static final Logger logger = LoggerFactory.getLogger(LinuxNetworkMonitor.class);
+
+    public LinuxNetworkMonitor() {
+        this(new ProcFileSystem());
+    }
+
+    public LinuxNetworkMonitor(ProcFileSystem procFS) {
+        if(procFS==null)
+            throw new IllegalArgumentException("procFS is null");
+        this.procFS = procFS;
+    }
+
+    /**
+     * Set the bandwidth used to compute utilization
+     *
+     * @param bandwidth The bandwidth of an interface in bytes per second, must be greater than zero
+     */
+    public void setBandwidth(long bandwidth) {
+        if(bandwidth<=0)
+            throw new IllegalArgumentException("bandwidth must be greater than zero");
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * Set the interfaces to monitor
+     *
+     * @param interfaces The names of the interfaces to monitor, for example <tt>eth0</tt>. If empty,
+     * all interfaces except <tt>lo</tt> are monitored
+     */
+    public synchronized void setInterfaces(String... interfaces) {
+        this.interfaces.clear();
+        if(interfaces!=null)
+            this.interfaces.addAll(Arrays.asList(interfaces));
+    }
+
+    public void setID(String id) {
+        this.id = id;
+    }
+
+    public void setThresholdValues(ThresholdValues tVals) {
+        this.tVals = tVals;
+    }
+
+    public void terminate() {
+        /* implemented for interface compliance */
+    }
+
+    public NetworkUtilization getMeasuredResource() {
+        return sample(System.currentTimeMillis());
+    }
+
+    synchronized NetworkUtilization sample(long now) {
+        long elapsed = now-lastSampleTime;
+        boolean haveLast = lastSampleTime>0 && elapsed>0;
+        long[] totals = new long[6];
+        try {
+            for(String line : procFS.readProc("net/dev")) {
+                int ndx = line.indexOf(':');
+                if(ndx<0)
+                    continue;
+                String name = line.substring(0, ndx).trim();
+                if(!include(name))
+                    continue;
+                String[] fields = ProcFileSystem.fields(line.substring(ndx+1));
+                if(fields.length<12)
+                    continue;
+                long[] stats = new long[]{ProcFileSystem.parseLong(fields[0], 0),
+                                          ProcFileSystem.parseLong(fields[2], 0),
+                                          ProcFileSystem.parseLong(fields[3], 0),
+                                          ProcFileSystem.parseLong(fields[8], 0),
+                                          ProcFileSystem.parseLong(fields[10], 0),
+                                          ProcFileSystem.parseLong(fields[11], 0)};
+                long[] last = lastStats.put(name, stats);
+                if(last==null || !haveLast)
+                    continue;
+                for(int i=0; i<totals.length; i++)
+                    totals[i] += stats[i]-last[i];
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read net/dev from {}", procFS.getProcRoot(), e);
+        }
+        lastSampleTime = now;
+        if(!haveLast)
+            return new NetworkUtilization(id, 0, 0, 0, 0, 0, tVals);
+        double seconds = elapsed/1000.0;
+        double received = totals[0]/seconds;
+        double transmitted = totals[3]/seconds;
+        double utilization = Math.min(1.0, Math.max(received, transmitted)/bandwidth);
+        return new NetworkUtilization(id,
+                                      utilization,
+                                      received,
+                                      transmitted,
+                                      (totals[1]+totals[4])/seconds,
+                                      (totals[2]+totals[5])/seconds,
+                                      tVals);
+    }
+
+    private boolean include(String name) {
+        if(!interfaces.isEmpty())
+            return interfaces.contains(name);
+        return !name.equals("lo");
+    }
+}
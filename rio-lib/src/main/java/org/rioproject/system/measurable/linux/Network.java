@@ -0,0 +1,141 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.linux;
+
+import com.sun.jini.config.Config;
+import net.jini.config.Configuration;
+import net.jini.config.ConfigurationException;
+import org.rioproject.costmodel.ResourceCostModel;
+import org.rioproject.costmodel.ZeroCostModel;
+import org.rioproject.system.MeasuredResource;
+import org.rioproject.system.SystemWatchID;
+import org.rioproject.system.measurable.MeasurableCapability;
+import org.rioproject.system.measurable.MeasurableMonitor;
+import org.rioproject.watch.Calculable;
+import org.rioproject.watch.ThresholdValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>Network</code> object is a <code>MeasurableCapability</code> which
+ * monitors a ComputeResource's network utilization
+ */
+public class Network extends MeasurableCapability {
+    /** Iteration value for calculating utilization of sampleSize >1 */
+    private int count;
+    /** Temporary utilization value */
+    private double tempUtilization;
+    /** Computed utilization value */
+    private double utilization;
+    /** Component for Configuration and Logging */
+    static final String COMPONENT = "org.rioproject.system.measurable.network";
+    static Logger logger = LoggerFactory.getLogger(COMPONENT);
+
+    /**
+     * Construct a new Network object
+     *
+     * @param config Configuration object
+     */
+    public Network(Configuration config) {
+        super(SystemWatchID.NETWORK, COMPONENT, config);
+        if(!isEnabled())
+            return;
+        try {
+            ThresholdValues tVals =
+                (ThresholdValues)config.getEntry(COMPONENT,
+                                                 "thresholdValues",
+                                                 ThresholdValues.class,
+                                                 new ThresholdValues(0.0, 1.0));
+            setThresholdValues(tVals);
+            ResourceCostModel rCostModel =
+                (ResourceCostModel)config.getEntry(COMPONENT,
+                                                   "resourceCost",
+                                                   ResourceCostModel.class,
+                                                   new ZeroCostModel());
+            setResourceCostModel(rCostModel);
+            sampleSize = Config.getIntEntry(config,
+                                            COMPONENT,
+                                            "sampleSize",
+                                            1,   /* default */
+                                            1,   /* min */
+                                            10); /* max */
+            setSampleSize(sampleSize);
+            LinuxNetworkMonitor defaultMonitor = new LinuxNetworkMonitor();
+            String[] interfaces = (String[])config.getEntry(COMPONENT,
+                                                            "interfaces",
+                                                            String[].class,
+                                                            new String[0]);
+            defaultMonitor.setInterfaces(interfaces);
+            long bandwidth = Config.getLongEntry(config,
+                                                 COMPONENT,
+                                                 "bandwidth",
+                                                 LinuxNetworkMonitor.DEFAULT_BANDWIDTH, /* default */
+                                                 1,                                     /* min */
+                                                 Long.MAX_VALUE);                       /* max */
+            defaultMonitor.setBandwidth(bandwidth);
+            MeasurableMonitor monitor =
+                (MeasurableMonitor)config.getEntry(COMPONENT,
+                                                   "networkMonitor",
+                                                   MeasurableMonitor.class,
+                                                   defaultMonitor);
+            long reportRate = Config.getLongEntry(config,
+                                                  COMPONENT,
+                                                  "reportRate",
+                                                  DEFAULT_PERIOD,     /* default */
+                                                  1000,               /* min */
+                                                  Integer.MAX_VALUE); /* max */
+            setPeriod(reportRate);
+            setMeasurableMonitor(monitor);
+        } catch (ConfigurationException e) {
+            logger.warn("Getting Network Configuration", e);
+        }
+    }
+
+    /**
+     * Override PeriodicWatch.start() to get an initial reading prior to
+     * scheduling
+     */
+    @Override
+    public void start() {
+        checkValue();
+        super.start();
+    }
+
+    /**
+     * Get the computed utilization for this <code>Network</code> object
+     *
+     * @return Utilization computed for this component
+     */
+    public double getUtilization() {
+        return utilization;
+    }
+
+    public void checkValue() {
+        count++;
+        if(monitor==null)
+            return;
+        MeasuredResource mRes = monitor.getMeasuredResource();
+        tempUtilization += mRes.getValue();
+        if(count==sampleSize) {
+            utilization = tempUtilization/sampleSize;
+            count = 0;
+            tempUtilization = 0;
+        }
+        logger.trace("{}: utilization={}", getId(), utilization);
+        addWatchRecord(new Calculable(getId(), mRes.getValue(), System.currentTimeMillis()));
+        setLastMeasuredResource(mRes);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.linux;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provides access to the Linux <tt>/proc</tt> filesystem and the cgroup filesystem. The roots of
+ * both are configurable so that the monitors in this package can be tested against fixture files.
+ */
+public class ProcFileSystem {
+    public static final String DEFAULT_PROC_ROOT = "/proc";
+    public static final String DEFAULT_CGROUP_ROOT = "/sys/fs/cgroup";
+    private final File procRoot;
+    private final File cgroupRoot;
+
+    /**
+     * Create a ProcFileSystem using <tt>/proc</tt> and <tt>/sys/fs/cgroup</tt>
+     */
+    public ProcFileSystem() {
+        this(new File(DEFAULT_PROC_ROOT), new File(DEFAULT_CGROUP_ROOT));
+    }
+
+    /**
+     * Create a ProcFileSystem
+     *
+     * @param procRoot The directory to use as the root of the proc filesystem, must not be null
+     * @param cgroupRoot The directory to use as the root of the cgroup filesystem, must not be null
+     */
+    public ProcFileSystem(File procRoot, File cgroupRoot) {
+        if(procRoot==null)
+            throw new IllegalArgumentException("procRoot is null");
+        if(cgroupRoot==null)
+            throw new IllegalArgumentException("cgroupRoot is null");
+        this.procRoot = procRoot;
+        this.cgroupRoot = cgroupRoot;
+    }
+
+    public File getProcRoot() {
+        return procRoot;
+    }
+
+    public File getCGroupRoot() {
+        return cgroupRoot;
+    }
+
+    /**
+     * Determine whether the proc filesystem can be read
+     *
+     * @return True if <tt>stat</tt> and <tt>meminfo</tt> can be read from the proc root
+     */
+    public boolean isAvailable() {
+        return new File(procRoot, "stat").canRead() && new File(procRoot, "meminfo").canRead();
+    }
+
+    /**
+     * Read a file relative to the proc root
+     *
+     * @param name The name of the file, relative to the proc root, for example <tt>net/dev</tt>
+     *
+     * @return The lines of the file
+     *
+     * @throws IOException If the file cannot be read
+     */
+    public List<String> readProc(String name) throws IOException {
+        return readLines(new File(procRoot, name));
+    }
+
+    /**
+     * Read all lines from a file
+     *
+     * @param file The file to read
+     *
+     * @return The lines of the file
+     *
+     * @throws IOException If the file cannot be read
+     */
+    static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file), 8192);
+        try {
+            String line;
+            while((line = reader.readLine())!=null)
+                lines.add(line);
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /**
+     * Read the first line of a file
+     *
+     * @param file The file to read
+     *
+     * @return The first line of the file, trimmed, or null if the file does not exist, cannot be read,
+     * or is empty
+     */
+    static String readFirstLine(File file) {
+        if(file==null || !file.canRead())
+            return null;
+        try {
+            List<String> lines = readLines(file);
+            return lines.isEmpty()?null:lines.get(0).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a long value, returning a default value if the value cannot be parsed
+     *
+     * @param value The value to parse
+     * @param defaultValue The value to return if the value is null or not a number
+     *
+     * @return The parsed value, or the default value
+     */
+    static long parseLong(String value, long defaultValue) {
+        if(value==null)
+            return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch(NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Split a line on whitespace, ignoring leading whitespace
+     *
+     * @param line The line to split
+     *
+     * @return The whitespace separated fields of the line
+     */
+    static String[] fields(String line) {
+        String trimmed = line.trim();
+        if(trimmed.length()==0)
+            return new String[0];
+        return trimmed.split("\\s+");
+    }
+}
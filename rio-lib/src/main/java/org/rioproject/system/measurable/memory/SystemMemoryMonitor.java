@@ -15,8 +15,11 @@
  */
 package org.rioproject.system.measurable.memory;
 
+import org.rioproject.system.OperatingSystemType;
 import org.rioproject.system.measurable.MeasurableMonitor;
 import org.rioproject.system.measurable.SigarHelper;
+import org.rioproject.system.measurable.linux.LinuxMemoryMonitor;
+import org.rioproject.system.measurable.linux.ProcFileSystem;
 import org.rioproject.watch.ThresholdValues;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,7 +29,8 @@ import java.text.NumberFormat;
 /**
  * The <code>SystemMemoryMonitor</code> object provides feedback information to
  * the {@link SystemMemory} object, providing memory usage information for the
- * system using SIGAR. If SIGAR is not available, this utility returns a -1 for
+ * system using SIGAR. If SIGAR is not available and running on Linux, the
+ * {@link LinuxMemoryMonitor} is used. Otherwise this utility returns a -1 for
  * system memory utilization.
  *
  * <p><b>Note:</b>
@@ -42,28 +46,39 @@ public class SystemMemoryMonitor implements MeasurableMonitor<SystemMemoryUtiliz
     private String id;
     private ThresholdValues tVals;
     private SigarHelper sigar;
+    private MeasurableMonitor<SystemMemoryUtilization> altMonitor;
     private static double KB = 1024;
     private static double MB = Math.pow(KB, 2);
     static Logger logger = LoggerFactory.getLogger(SystemMemoryMonitor.class);
 
     public SystemMemoryMonitor() {
         sigar = SigarHelper.getInstance();
+        if(sigar==null && OperatingSystemType.isLinux() && new ProcFileSystem().isAvailable())
+            altMonitor = new LinuxMemoryMonitor();
     }
 
     public void terminate() {
+        if(altMonitor!=null)
+            altMonitor.terminate();
     }
 
     public void setID(String id) {
         this.id = id;
+        if(altMonitor!=null)
+            altMonitor.setID(id);
     }
 
     public void setThresholdValues(ThresholdValues tVals) {
         this.tVals = tVals;
+        if(altMonitor!=null)
+            altMonitor.setThresholdValues(tVals);
     }
 
     public SystemMemoryUtilization getMeasuredResource() {
         SystemMemoryUtilization smu;
-        if(sigar==null) {
+        if(altMonitor!=null) {
+            smu = altMonitor.getMeasuredResource();
+        } else if(sigar==null) {
             smu = new SystemMemoryUtilization(id, tVals);
         } else {
             long total = sigar.getTotalSystemMemory();
@@ -0,0 +1,307 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.tools.harvest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The protocol used by a {@code HarvesterAgent} to send files to a {@code HarvesterBean}.
+ *
+ * <p>The agent opens with a manifest of the files it has, listing the name, current length and fingerprint of
+ * each file. The fingerprint is a CRC-32 checksum of the first {@link #FINGERPRINT_SIZE} bytes of the file.
+ * The bean answers with the offset it already holds for each file, the length of its local copy. The offset
+ * is 0 if the bean has no copy, if its copy is longer than the agent's file, or if the fingerprint of its
+ * copy differs: the file has been rolled over, and is sent from the beginning. A local copy shorter than the
+ * fingerprint cannot be compared, and is also sent from the beginning. The agent then
+ * sends a gzip compressed stream of frames, each frame carrying the index of a file in the manifest, the
+ * offset of the frame's content in the file, the content length and the content. Only the bytes past the
+ * bean's offset are sent, so repeated harvests transfer what has been appended since the last harvest, and a
+ * harvest that is interrupted is resumed where it stopped. The bean acknowledges the number of bytes
+ * it received.</p>
+ *
+ * <p>Frames are at most {@link #BUFFER_SIZE} bytes, the amount of memory needed on either side of a
+ * connection does not depend on the size of the files being harvested.</p>
+ */
+class HarvestProtocol {
+    static final int MAGIC = 0x52494f48;
+    static final int VERSION = 2;
+    static final int BUFFER_SIZE = 64*1024;
+    static final int FINGERPRINT_SIZE = 4*1024;
+    static final int MAX_FILES = 100000;
+    private static final int END_OF_FRAMES = -1;
+    private static final Logger logger = LoggerFactory.getLogger(HarvestProtocol.class);
+
+    private HarvestProtocol() {
+    }
+
+    /**
+     * A file to send, and the name the receiver stores it as
+     */
+    static class HarvestFile {
+        final String name;
+        final File file;
+
+        HarvestFile(String name, File file) {
+            if(name==null)
+                throw new IllegalArgumentException("name cannot be null");
+            if(file==null)
+                throw new IllegalArgumentException("file cannot be null");
+            this.name = name;
+            this.file = file;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Send files to a Harvester
+     *
+     * @param socket The socket connected to the Harvester
+     * @param files The files to send
+     *
+     * @return The number of (uncompressed) bytes sent
+     *
+     * @throws IOException If there are errors communicating with the Harvester
+     */
+    static long send(Socket socket, List<HarvestFile> files) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        long[] lengths = new long[files.size()];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        CRC32 crc = new CRC32();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(files.size());
+        for(int i=0; i<lengths.length; i++) {
+            HarvestFile harvestFile = files.get(i);
+            lengths[i] = harvestFile.file.length();
+            int fingerprintLength = 0;
+            crc.reset();
+            if(lengths[i]>0) {
+                RandomAccessFile source = new RandomAccessFile(harvestFile.file, "r");
+                try {
+                    fingerprintLength = readFingerprint(source, (int)Math.min(FINGERPRINT_SIZE, lengths[i]), buffer, crc);
+                } finally {
+                    source.close();
+                }
+            }
+            out.writeUTF(harvestFile.name.replace(File.separatorChar, '/'));
+            out.writeLong(lengths[i]);
+            out.writeInt(fingerprintLength);
+            out.writeLong(crc.getValue());
+        }
+        out.flush();
+
+        if(in.readInt()!=MAGIC)
+            throw new IOException("Unexpected response from Harvester");
+        long[] offsets = new long[lengths.length];
+        for(int i=0; i<offsets.length; i++)
+            offsets[i] = in.readLong();
+
+        GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+        DataOutputStream frames = new DataOutputStream(gzip);
+        long sent = 0;
+        for(int i=0; i<lengths.length; i++) {
+            if(offsets[i]<0 || offsets[i]>=lengths[i])
+                continue;
+            sent += sendFile(i, files.get(i).file, offsets[i], lengths[i], frames, buffer);
+        }
+        frames.writeInt(END_OF_FRAMES);
+        gzip.finish();
+        out.flush();
+        long received = in.readLong();
+        if(received!=sent)
+            throw new IOException(String.format("Harvester received %d of %d bytes", received, sent));
+        return sent;
+    }
+
+    private static long sendFile(int index,
+                                 File file,
+                                 long offset,
+                                 long length,
+                                 DataOutputStream frames,
+                                 byte[] buffer) throws IOException {
+        long position = offset;
+        RandomAccessFile source = new RandomAccessFile(file, "r");
+        try {
+            source.seek(position);
+            while(position<length) {
+                int read = source.read(buffer, 0, (int)Math.min(buffer.length, length-position));
+                if(read==-1)
+                    break;
+                frames.writeInt(index);
+                frames.writeLong(position);
+                frames.writeInt(read);
+                frames.write(buffer, 0, read);
+                position += read;
+            }
+        } finally {
+            source.close();
+        }
+        return position-offset;
+    }
+
+    /**
+     * Receive files from a HarvesterAgent
+     *
+     * @param socket The socket connected to the HarvesterAgent
+     * @param parent The directory to store files in
+     *
+     * @return The files that were harvested
+     *
+     * @throws IOException If there are errors communicating with the HarvesterAgent, or writing files
+     */
+    static List<File> receive(Socket socket, File parent) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if(in.readInt()!=MAGIC)
+            throw new IOException("Not a HarvesterAgent connection");
+        int version = in.readInt();
+        if(version!=VERSION)
+            throw new IOException("Unsupported HarvesterAgent protocol version "+version);
+        int count = in.readInt();
+        if(count<0 || count>MAX_FILES)
+            throw new IOException("Invalid number of files "+count);
+        List<File> harvested = new ArrayList<File>();
+        long[] offsets = new long[count];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for(int i=0; i<count; i++) {
+            File file = getTarget(parent, in.readUTF());
+            long length = in.readLong();
+            int fingerprintLength = in.readInt();
+            long fingerprint = in.readLong();
+            if(fingerprintLength<0 || fingerprintLength>FINGERPRINT_SIZE)
+                throw new IOException("Invalid fingerprint length "+fingerprintLength);
+            offsets[i] = prepare(file, length, fingerprintLength, fingerprint, buffer);
+            harvested.add(file);
+        }
+        out.writeInt(MAGIC);
+        for(long offset : offsets)
+            out.writeLong(offset);
+        out.flush();
+
+        DataInputStream frames = new DataInputStream(new GZIPInputStream(in, BUFFER_SIZE));
+        long received = 0;
+        int currentIndex = -1;
+        RandomAccessFile current = null;
+        try {
+            int index;
+            while((index = frames.readInt())!=END_OF_FRAMES) {
+                long position = frames.readLong();
+                int length = frames.readInt();
+                if(index<0 || index>=count || position<offsets[index] || length<0 || length>buffer.length)
+                    throw new IOException("Invalid frame for file index "+index);
+                frames.readFully(buffer, 0, length);
+                if(index!=currentIndex) {
+                    if(current!=null)
+                        current.close();
+                    current = new RandomAccessFile(harvested.get(index), "rw");
+                    currentIndex = index;
+                }
+                current.seek(position);
+                current.write(buffer, 0, length);
+                received += length;
+            }
+        } finally {
+            if(current!=null)
+                current.close();
+        }
+        out.writeLong(received);
+        out.flush();
+        logger.debug("Received {} bytes for {} files", received, count);
+        return harvested;
+    }
+
+    /*
+     * Get the file to store a harvested file in, making sure it is within the parent directory
+     */
+    static File getTarget(File parent, String name) throws IOException {
+        File file = new File(parent, name.replace('/', File.separatorChar));
+        String parentPath = parent.getCanonicalPath()+File.separator;
+        if(!file.getCanonicalPath().startsWith(parentPath))
+            throw new IOException("Invalid file name "+name);
+        return file;
+    }
+
+    /*
+     * Create the file if needed, and return the offset to resume from. A local copy longer than the
+     * source, or whose fingerprint differs from the source's, has been rolled over and is started from the
+     * beginning.
+     */
+    private static long prepare(File file,
+                                long length,
+                                int fingerprintLength,
+                                long fingerprint,
+                                byte[] buffer) throws IOException {
+        File dir = file.getParentFile();
+        if(dir!=null && !dir.exists() && !dir.mkdirs())
+            throw new IOException("Unable to create "+dir.getPath());
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long offset = raf.length();
+            if(offset>0 && (offset>length || !matches(raf, offset, fingerprintLength, fingerprint, buffer))) {
+                logger.debug("{} has been rolled over, harvest from the beginning", file.getName());
+                offset = 0;
+                raf.setLength(0);
+            }
+            return offset;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /*
+     * Determine if the fingerprint of a local copy matches the fingerprint of the source
+     */
+    private static boolean matches(RandomAccessFile raf,
+                                   long offset,
+                                   int fingerprintLength,
+                                   long fingerprint,
+                                   byte[] buffer) throws IOException {
+        if(offset<fingerprintLength)
+            return false;
+        CRC32 crc = new CRC32();
+        raf.seek(0);
+        return readFingerprint(raf, fingerprintLength, buffer, crc)==fingerprintLength && crc.getValue()==fingerprint;
+    }
+
+    /*
+     * Add the first bytes of a file to a checksum, returning the number of bytes read
+     */
+    private static int readFingerprint(RandomAccessFile raf, int length, byte[] buffer, CRC32 crc) throws IOException {
+        int total = 0;
+        while(total<length) {
+            int read = raf.read(buffer, 0, length-total);
+            if(read==-1)
+                break;
+            crc.update(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+}
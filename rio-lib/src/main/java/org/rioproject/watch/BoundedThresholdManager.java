@@ -48,6 +48,7 @@ public class BoundedThresholdManager extends ThresholdManager {
     }
 
     public void checkThreshold(Calculable calculable) {
+        notifyObservers(calculable);
         ThresholdValues thresholdValues = getThresholdValues();
         double value = calculable.getValue();
         if(thresholdCrossed) {
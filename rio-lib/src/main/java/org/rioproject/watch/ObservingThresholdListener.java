@@ -0,0 +1,32 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.watch;
+
+/**
+ * A {@code ThresholdListener} that is also notified of every {@code Calculable} checked by a
+ * {@code ThresholdManager}, whether or not a threshold has been crossed. This allows a listener to
+ * follow the trend of a watch, not just its threshold crossings.
+ */
+public interface ObservingThresholdListener extends ThresholdListener {
+    /**
+     * Notification of a {@code Calculable} being checked. Implementations should return quickly, this
+     * method is invoked in the thread recording the {@code Calculable}.
+     *
+     * @param calculable The Calculable being checked
+     * @param thresholdValues The current thresholds
+     */
+    void observe(Calculable calculable, ThresholdValues thresholdValues);
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.watch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+/**
+ * Monitor lock contention for a Java Virtual Machine.
+ *
+ * <p>Each sample reads the blocked and waited times of all threads. The
+ * difference from the previous sample gives the time each thread spent
+ * contending for a lock during the interval. The time spent blocked on a
+ * monitor is always counted. The time spent waiting is only counted for a
+ * thread that is waiting on a {@link java.util.concurrent.locks} synchronizer
+ * owned by another thread. The value of the resulting {@link Calculable} is
+ * the average number of threads contending for a lock during the interval.
+ * The detail of the Calculable lists the most contended locks, with the
+ * owner and a bounded-depth stack of a waiting thread.
+ *
+ * <p>Sampling cost is kept within an overhead budget, the fraction of elapsed
+ * time that may be spent sampling. If a sample costs more than the budget,
+ * stacks are no longer captured and subsequent samples are skipped, returning
+ * the previous value, until the cost is back within budget.
+ */
+public class ThreadContentionMonitor {
+    public static final String ID = "thread-contention-monitor";
+    public static final String ACCESSOR = "threadContentionCalculable";
+    public static final double DEFAULT_OVERHEAD_BUDGET = 0.01;
+    public static final int DEFAULT_STACK_DEPTH = 8;
+    public static final int DEFAULT_TOP_LOCKS = 5;
+    private static final int MAX_SAMPLE_STRIDE = 64;
+    private ThreadMXBean threadMXBean;
+    private double overheadBudget = DEFAULT_OVERHEAD_BUDGET;
+    private int stackDepth = DEFAULT_STACK_DEPTH;
+    private int topLocks = DEFAULT_TOP_LOCKS;
+    private Map<Long, long[]> threadTimes = new HashMap<Long, long[]>();
+    private long lastSample;
+    private int sampleStride = 1;
+    private int skipped;
+    private Calculable last;
+    private static Logger logger = LoggerFactory.getLogger(ThreadContentionMonitor.class.getName());
+
+    /**
+     * Set the ThreadMXBean to monitor. Thread contention monitoring is enabled
+     * if it is supported and not already enabled.
+     *
+     * @param threadMXBean The ThreadMXBean, must not be null
+     */
+    public synchronized void setThreadMXBean(ThreadMXBean threadMXBean) {
+        if(threadMXBean==null)
+            throw new IllegalArgumentException("threadMXBean is null");
+        this.threadMXBean = threadMXBean;
+        threadTimes.clear();
+        last = null;
+        try {
+            if(threadMXBean.isThreadContentionMonitoringSupported() &&
+               !threadMXBean.isThreadContentionMonitoringEnabled()) {
+                threadMXBean.setThreadContentionMonitoringEnabled(true);
+            }
+        } catch(SecurityException e) {
+            logger.warn("Unable to enable thread contention monitoring, contention will be estimated from thread states");
+        }
+        if(logger.isInfoEnabled())
+            logger.info("ThreadMXBean set, monitoring JVM for lock contention");
+    }
+
+    /**
+     * Set the fraction of elapsed time that may be spent sampling
+     *
+     * @param overheadBudget The overhead budget, greater than 0 and at most 1
+     */
+    public synchronized void setOverheadBudget(double overheadBudget) {
+        if(overheadBudget<=0 || overheadBudget>1)
+            throw new IllegalArgumentException("overheadBudget must be greater than 0 and at most 1");
+        this.overheadBudget = overheadBudget;
+    }
+
+    /**
+     * Set the maximum number of stack frames captured for a waiting thread
+     *
+     * @param stackDepth The maximum number of stack frames, 0 to capture none
+     */
+    public synchronized void setStackDepth(int stackDepth) {
+        if(stackDepth<0)
+            throw new IllegalArgumentException("stackDepth must not be negative");
+        this.stackDepth = stackDepth;
+    }
+
+    /**
+     * Set the number of most contended locks reported in the detail
+     *
+     * @param topLocks The number of locks reported
+     */
+    public synchronized void setTopLocks(int topLocks) {
+        if(topLocks<0)
+            throw new IllegalArgumentException("topLocks must not be negative");
+        this.topLocks = topLocks;
+    }
+
+    public synchronized Calculable getThreadContentionCalculable() {
+        if(threadMXBean==null)
+            setThreadMXBean(ManagementFactory.getThreadMXBean());
+        long now = System.nanoTime();
+        if(last!=null && ++skipped<sampleStride) {
+            Calculable metric = new Calculable(ID, last.getValue(), System.currentTimeMillis());
+            metric.setDetail(last.getDetail());
+            return metric;
+        }
+        skipped = 0;
+        int depth = sampleStride>1?0:stackDepth;
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds(), depth);
+        double elapsed = lastSample==0?0:(now-lastSample)/1000000d;
+        Map<Long, long[]> currentTimes = new HashMap<Long, long[]>();
+        Map<String, LockContention> locks = new HashMap<String, LockContention>();
+        double contended = 0;
+        for(ThreadInfo ti : infos) {
+            if(ti==null)
+                continue;
+            long[] times = new long[]{ti.getBlockedTime(), ti.getWaitedTime()};
+            currentTimes.put(ti.getThreadId(), times);
+            long[] previous = threadTimes.get(ti.getThreadId());
+            boolean waitingOnOwnedLock = isWaitingOnOwnedLock(ti);
+            double time;
+            if(times[0]<0) {
+                /* Contention monitoring is not enabled, count threads that
+                 * are contending now as contending for the whole interval */
+                time = ti.getThreadState()==Thread.State.BLOCKED || waitingOnOwnedLock?elapsed:0;
+            } else {
+                if(elapsed==0)
+                    continue;
+                /* A thread not known at the previous sample was started
+                 * during the interval */
+                if(previous==null)
+                    previous = new long[]{0, 0};
+                time = times[0]-previous[0];
+                if(waitingOnOwnedLock)
+                    time += times[1]-previous[1];
+            }
+            if(time<=0)
+                continue;
+            contended += time;
+            if(ti.getLockName()!=null && (ti.getThreadState()==Thread.State.BLOCKED || waitingOnOwnedLock)) {
+                LockContention lock = locks.get(ti.getLockName());
+                if(lock==null) {
+                    lock = new LockContention(ti);
+                    locks.put(ti.getLockName(), lock);
+                }
+                lock.add(time);
+            }
+        }
+        threadTimes = currentTimes;
+        lastSample = now;
+        double value = elapsed>0?contended/elapsed:0;
+        Calculable metric = new Calculable(ID, value, System.currentTimeMillis());
+        if(!locks.isEmpty())
+            metric.setDetail(formatContendedLocks(locks.values(), value));
+        last = metric;
+        adjustSampleStride(System.nanoTime()-now, elapsed);
+        if(logger.isTraceEnabled())
+            logger.trace("Average contending threads: {}, sample stride: {}", value, sampleStride);
+        return metric;
+    }
+
+    /**
+     * Get the default {@link org.rioproject.watch.WatchDescriptor} for this
+     * utility. This allows the <tt>ThreadContentionMonitor</tt> to be used
+     * by the SLA framework.
+     *
+     * @return A <tt>WatchDescriptor</tt> set to poll every 10 seconds
+     */
+    public static WatchDescriptor getWatchDescriptor() {
+        return new WatchDescriptor(ID, ACCESSOR, 10000);
+    }
+
+    /*
+     * Skip samples while the cost of sampling exceeds the overhead budget
+     */
+    private void adjustSampleStride(long cost, double elapsed) {
+        if(elapsed<=0)
+            return;
+        double budget = overheadBudget*elapsed*1000000d;
+        if(cost>budget) {
+            sampleStride = Math.min(sampleStride*2, MAX_SAMPLE_STRIDE);
+            logger.debug("Sampling cost of {} ms exceeds the overhead budget, sampling every {} periods",
+                         cost/1000000d, sampleStride);
+        } else if(sampleStride>1 && cost<budget/4) {
+            sampleStride = sampleStride/2;
+        }
+    }
+
+    private boolean isWaitingOnOwnedLock(ThreadInfo ti) {
+        Thread.State state = ti.getThreadState();
+        return (state==Thread.State.WAITING || state==Thread.State.TIMED_WAITING) && ti.getLockOwnerId()!=-1;
+    }
+
+    private String formatContendedLocks(Collection<LockContention> contentions, double value) {
+        List<LockContention> sorted = new ArrayList<LockContention>(contentions);
+        Collections.sort(sorted, new Comparator<LockContention>() {
+            public int compare(LockContention c1, LockContention c2) {
+                return Double.compare(c2.time, c1.time);
+            }
+        });
+        StringBuilder buff = new StringBuilder();
+        buff.append("Average contending threads: ").append(String.format("%.2f", value));
+        buff.append(", contended locks: ").append(sorted.size()).append("\n");
+        int count = 1;
+        for(LockContention lock : sorted.subList(0, Math.min(topLocks, sorted.size()))) {
+            buff.append("\n");
+            buff.append("Contended Lock #").append(count++).append("\n");
+            buff.append("------------------").append("\n");
+            buff.append("Lock: ").append(lock.lockName).append("\n");
+            buff.append("Owned by: ").append(lock.ownerName).append("\n");
+            buff.append("Contended time: ").append(String.format("%.0f", lock.time)).append(" ms, ");
+            buff.append("waiting threads: ").append(lock.waiters).append("\n");
+            if(lock.stack.length>0) {
+                buff.append("Waiting thread ").append(lock.threadName).append(":").append("\n");
+                for(StackTraceElement ste : lock.stack)
+                    buff.append("at ").append(ste).append("\n");
+            }
+        }
+        return buff.toString();
+    }
+
+    /*
+     * Contention for a lock during a sample
+     */
+    private static class LockContention {
+        final String lockName;
+        final String ownerName;
+        final String threadName;
+        final StackTraceElement[] stack;
+        double time;
+        int waiters;
+
+        LockContention(ThreadInfo ti) {
+            lockName = ti.getLockName();
+            ownerName = ti.getLockOwnerName();
+            threadName = ti.getThreadName();
+            stack = ti.getStackTrace();
+        }
+
+        void add(double time) {
+            this.time += time;
+            waiters++;
+        }
+    }
+}
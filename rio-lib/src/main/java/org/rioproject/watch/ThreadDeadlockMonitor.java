@@ -22,16 +22,22 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 /**
- * Monitor thread deadlocks for a Java Virtual Machine.
+ * Monitor thread deadlocks for a Java Virtual Machine. Deadlocks on object
+ * monitors and, if the JVM supports monitoring their usage, on ownable
+ * synchronizers such as {@link java.util.concurrent.locks.ReentrantLock} are
+ * detected. The stacks of deadlocked threads are captured to a bounded depth.
  */
 public class ThreadDeadlockMonitor {
     public static final String ID = "thread-deadlock-monitor";
     public static final String ACCESSOR = "threadDeadlockCalculable";
+    public static final int DEFAULT_STACK_DEPTH = 16;
     private ThreadMXBean threadMXBean;
+    private int stackDepth = DEFAULT_STACK_DEPTH;
     private final Map<Long, ThreadInfo> deadlockedThreads = new HashMap<Long, ThreadInfo>();
     private static Logger logger = LoggerFactory.getLogger(ThreadDeadlockMonitor.class.getName());
 
@@ -41,6 +47,17 @@ public class ThreadDeadlockMonitor {
             logger.info("ThreadMXBean set, monitoring current JVM for thread deadlocks");
     }
 
+    /**
+     * Set the maximum number of stack frames captured for a deadlocked thread
+     *
+     * @param stackDepth The maximum number of stack frames, 0 to capture none
+     */
+    public void setStackDepth(int stackDepth) {
+        if(stackDepth<0)
+            throw new IllegalArgumentException("stackDepth must not be negative");
+        this.stackDepth = stackDepth;
+    }
+
     public Calculable getThreadDeadlockCalculable() {
         int deadlockCount = findDeadlockedThreads();
         Calculable metric = new Calculable(ID, deadlockCount, System.currentTimeMillis());
@@ -72,7 +89,7 @@ public class ThreadDeadlockMonitor {
         StringBuilder buff = new StringBuilder();
         Set<Map.Entry<Long, ThreadInfo>> entrySet;
         synchronized(deadlockedThreads) {
-            entrySet = deadlockedThreads.entrySet();
+            entrySet = new HashMap<Long, ThreadInfo>(deadlockedThreads).entrySet();
         }
         buff.append("Deadlocked thread count: ");
         buff.append(entrySet.size());
@@ -113,25 +130,33 @@ public class ThreadDeadlockMonitor {
         if(threadMXBean==null) {
             setThreadMXBean(ManagementFactory.getThreadMXBean());
         }
-        long[] ids = threadMXBean.findMonitorDeadlockedThreads();
-        if(ids != null && ids.length > 0) {
-            for(Long l : ids) {
-                if(!knowsAbout(l)) {
-                    ThreadInfo ti = threadMXBean.getThreadInfo(l, Integer.MAX_VALUE);
-                    synchronized(deadlockedThreads) {
-                        deadlockedThreads.put(l, ti);
-                    }
+        long[] ids;
+        if(threadMXBean.isSynchronizerUsageSupported())
+            ids = threadMXBean.findDeadlockedThreads();
+        else
+            ids = threadMXBean.findMonitorDeadlockedThreads();
+        synchronized(deadlockedThreads) {
+            if(ids == null || ids.length == 0) {
+                deadlockedThreads.clear();
+                return 0;
+            }
+            /* Only keep the threads that are still deadlocked */
+            Set<Long> current = new HashSet<Long>();
+            for(long id : ids)
+                current.add(id);
+            deadlockedThreads.keySet().retainAll(current);
+            current.removeAll(deadlockedThreads.keySet());
+            if(!current.isEmpty()) {
+                long[] unknown = new long[current.size()];
+                int i = 0;
+                for(Long id : current)
+                    unknown[i++] = id;
+                for(ThreadInfo ti : threadMXBean.getThreadInfo(unknown, stackDepth)) {
+                    if(ti!=null)
+                        deadlockedThreads.put(ti.getThreadId(), ti);
                 }
             }
         }
-        return ids==null?0:ids.length;
-    }
-
-    private boolean knowsAbout(long id) {
-        boolean has;
-        synchronized(deadlockedThreads) {
-            has = deadlockedThreads.containsKey(id);
-        }
-        return has;
+        return ids.length;
     }
 }
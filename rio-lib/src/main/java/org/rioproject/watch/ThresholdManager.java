@@ -95,6 +95,27 @@ public abstract class ThresholdManager {
         }
     }
 
+    /**
+     * Notify all {@link ObservingThresholdListener}s of a Calculable being checked
+     *
+     * @param calculable The Calculable record
+     */
+    protected void notifyObservers(Calculable calculable) {
+        ThresholdValues thresholds = null;
+        for (ThresholdListener tListener : getThresholdListeners()) {
+            if(tListener instanceof ObservingThresholdListener) {
+                if(thresholds==null) {
+                    try {
+                        thresholds = (ThresholdValues)thresholdValues.clone();
+                    } catch (CloneNotSupportedException e) {
+                        thresholds = thresholdValues;
+                    }
+                }
+                ((ObservingThresholdListener)tListener).observe(calculable, thresholds);
+            }
+        }
+    }
+
     /**
      * Add a Threshold listener
      * 
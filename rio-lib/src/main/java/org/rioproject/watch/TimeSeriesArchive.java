@@ -0,0 +1,650 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.watch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@code TimeSeriesArchive} stores the {@code Calculable} records of a watch in
+ * append-only, memory-mapped binary segment files. Each record is stored as the
+ * time and the value (16 bytes); the watch identifier is stored once per archive.
+ *
+ * <p>Each segment file holds a fixed number of records, kept in time order. A
+ * record older than the last appended record is inserted into the segment being
+ * written if it falls within that segment's time range, otherwise it is dropped.
+ * The time range of every segment is kept in memory, so range queries only touch
+ * the segments (and, using a binary search, the records) that fall within the
+ * requested window.
+ *
+ * <p>Only the segment being written is kept mapped and open. Once a segment is
+ * full it is flushed and closed; reads of older segments read the records they
+ * need from the file for the duration of the query, and do not map it. The
+ * mapping of a sealed segment is released when its buffer is garbage collected,
+ * on some platforms the file of a recently sealed segment can not be deleted
+ * until then.
+ *
+ * <p>Segments whose newest record is older than the retention period are
+ * deleted when a new segment is started.
+ *
+ * <p>The {@code TimeSeriesArchive} is added to a {@link WatchDataSourceImpl} as a
+ * {@link WatchDataReplicator}.
+ */
+public class TimeSeriesArchive implements WatchDataReplicator<Calculable> {
+    /** Default number of records per segment */
+    public static final int DEFAULT_SEGMENT_SIZE = 64*1024;
+    /** Default retention, 7 days */
+    public static final long DEFAULT_RETENTION = 7*24*60*60*1000L;
+    static final String SEGMENT_SUFFIX = ".tsa";
+    private static final int MAGIC = 0x52494f54;
+    private static final int VERSION = 1;
+    /* Header: magic(4) version(4) capacity(4) count(4) first(8) last(8) */
+    private static final int HEADER_SIZE = 32;
+    private static final int COUNT_OFFSET = 12;
+    private static final int FIRST_OFFSET = 16;
+    private static final int LAST_OFFSET = 24;
+    private static final int RECORD_SIZE = 16;
+    private final String id;
+    private final File directory;
+    private final int segmentSize;
+    private final long retention;
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private long nextSequence;
+    private long dropped;
+    private boolean closed;
+    private static final Logger logger = LoggerFactory.getLogger(TimeSeriesArchive.class);
+
+    /**
+     * Create a TimeSeriesArchive, opening any existing segments
+     *
+     * @param id The identifier of the watch
+     * @param directory The directory to store segments in, created if it does not exist
+     * @param segmentSize The number of records per segment
+     * @param retention How long (in milliseconds) to keep records, 0 or less to keep all records
+     *
+     * @throws IOException if the directory cannot be created or existing segments cannot be opened
+     * @throws IllegalArgumentException if the id or directory is null, or the segment size is less than 1
+     */
+    public TimeSeriesArchive(String id, File directory, int segmentSize, long retention) throws IOException {
+        if(id==null)
+            throw new IllegalArgumentException("id is null");
+        if(directory==null)
+            throw new IllegalArgumentException("directory is null");
+        if(segmentSize < 1)
+            throw new IllegalArgumentException("segmentSize must be greater than 0");
+        this.id = id;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retention = retention;
+        if(!directory.exists() && !directory.mkdirs())
+            throw new IOException("Unable to create archive directory "+directory.getPath());
+        load();
+    }
+
+    /**
+     * Get the directory an archive for a watch is stored in
+     *
+     * @param root The root archive directory
+     * @param id The identifier of the watch
+     *
+     * @return A directory under the root, named using the watch identifier with
+     * characters that are not valid in file names replaced
+     */
+    public static File getArchiveDirectory(File root, String id) {
+        return new File(root, id.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    private void load() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if(files==null)
+            return;
+        Arrays.sort(files);
+        for(File file : files) {
+            long sequence;
+            try {
+                sequence = Long.parseLong(file.getName().substring(0, file.getName().length()-SEGMENT_SUFFIX.length()));
+            } catch(NumberFormatException e) {
+                logger.warn("Ignoring unrecognized archive file {}", file.getPath());
+                continue;
+            }
+            try {
+                Segment segment = Segment.open(file, sequence);
+                if(segment.count==0) {
+                    delete(segment);
+                    continue;
+                }
+                segments.add(segment);
+                nextSequence = Math.max(nextSequence, sequence+1);
+            } catch(IOException e) {
+                logger.warn("Ignoring unreadable archive file {}: {}", file.getPath(), e.getMessage());
+            }
+        }
+        logger.debug("Watch [{}] archive opened with {} segments in {}", id, segments.size(), directory.getPath());
+    }
+
+    /**
+     * Append a Calculable record to the archive
+     *
+     * @param calculable The Calculable record
+     */
+    public void addCalculable(Calculable calculable) {
+        if(calculable==null)
+            return;
+        try {
+            append(calculable.getWhen(), calculable.getValue());
+        } catch(IOException e) {
+            logger.warn("Watch [{}] unable to archive record", id, e);
+        }
+    }
+
+    /**
+     * Append a value to the archive. A value recorded before the last appended
+     * value is inserted into the segment being written if the segment has room
+     * and the value falls within its time range, otherwise the value is dropped.
+     *
+     * @param when The time the value was recorded
+     * @param value The value
+     *
+     * @throws IOException if a new segment cannot be created
+     */
+    public synchronized void append(long when, double value) throws IOException {
+        if(closed)
+            return;
+        Segment current = segments.isEmpty()?null:segments.get(segments.size()-1);
+        if(current!=null && current.count>0 && when < current.last) {
+            if(current.isWritable() && !current.isFull() && when >= current.first) {
+                current.insert(when, value);
+            } else {
+                dropped++;
+                logger.debug("Watch [{}] dropped late record at {}, last archived record is at {}",
+                             id, when, current.last);
+            }
+            return;
+        }
+        if(current==null || current.isFull() || !current.isWritable()) {
+            if(current!=null)
+                current.seal();
+            current = Segment.create(new File(directory, segmentName(nextSequence)), nextSequence, segmentSize);
+            nextSequence++;
+            segments.add(current);
+            applyRetention(when);
+        }
+        current.append(when, value);
+    }
+
+    /**
+     * Get the records recorded within a time range
+     *
+     * @param from The start time (inclusive)
+     * @param to The end time (inclusive)
+     *
+     * @return The Calculable records within the range, ordered as they were appended.
+     * If there are no records a zero-length array is returned
+     */
+    public Calculable[] getCalculable(long from, long to) {
+        final List<Calculable> list = new ArrayList<Calculable>();
+        scan(from, to, new RecordHandler() {
+            public void record(long when, double value) {
+                list.add(new Calculable(id, value, when));
+            }
+        });
+        return list.toArray(new Calculable[list.size()]);
+    }
+
+    /**
+     * Get down-sampled records within a time range. Records are grouped into
+     * buckets of the provided interval starting at <tt>from</tt>, buckets without
+     * records are omitted.
+     *
+     * @param from The start time (inclusive)
+     * @param to The end time (inclusive)
+     * @param interval The length of each bucket, in milliseconds
+     *
+     * @return The min, max and average for each bucket, in time order. If there
+     * are no records a zero-length array is returned
+     *
+     * @throws IllegalArgumentException if the interval is less than 1
+     */
+    public RollupCalculable[] getRollup(long from, long to, long interval) {
+        if(interval < 1)
+            throw new IllegalArgumentException("interval must be greater than 0");
+        Rollup rollup = new Rollup(id, from, interval);
+        scan(from, to, rollup);
+        return rollup.getResult();
+    }
+
+    /**
+     * Get the time of the oldest record in the archive
+     *
+     * @return The time of the oldest record, or -1 if the archive is empty
+     */
+    public long getFirstTime() {
+        long first = -1;
+        for(Segment segment : getSegments()) {
+            if(segment.count > 0 && (first==-1 || segment.first < first))
+                first = segment.first;
+        }
+        return first;
+    }
+
+    /**
+     * Get the number of records in the archive
+     *
+     * @return The number of records in the archive
+     */
+    public long getSize() {
+        long size = 0;
+        for(Segment segment : getSegments())
+            size += segment.count;
+        return size;
+    }
+
+    /**
+     * Get the number of late records that have been dropped
+     *
+     * @return The number of records that were older than the last appended
+     * record and could not be inserted into the segment being written
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Get the number of segments in the archive
+     *
+     * @return The number of segments in the archive
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Remove all records from the archive, deleting all segment files
+     */
+    public synchronized void clear() {
+        for(Segment segment : segments) {
+            segment.close();
+            delete(segment);
+        }
+        segments.clear();
+        dropped = 0;
+    }
+
+    /**
+     * Close the archive, all segments are flushed to disk
+     */
+    public synchronized void close() {
+        if(closed)
+            return;
+        for(Segment segment : segments)
+            segment.seal();
+        segments.clear();
+        closed = true;
+    }
+
+    private synchronized Segment[] getSegments() {
+        return segments.toArray(new Segment[segments.size()]);
+    }
+
+    private void scan(long from, long to, RecordHandler handler) {
+        if(to < from)
+            return;
+        for(Segment segment : getSegments()) {
+            if(segment.count==0 || segment.last < from || segment.first > to)
+                continue;
+            try {
+                segment.scan(from, to, handler);
+            } catch(IOException e) {
+                logger.warn("Watch [{}] unable to read archive segment {}", id, segment.file.getPath(), e);
+            }
+        }
+    }
+
+    /*
+     * Delete segments whose newest record is older than the retention period
+     */
+    private void applyRetention(long now) {
+        if(retention <= 0)
+            return;
+        long cutoff = now-retention;
+        /* Never remove the segment being appended to */
+        for(int i=0; i<segments.size()-1; i++) {
+            Segment segment = segments.get(i);
+            if(segment.last < cutoff) {
+                segments.remove(i--);
+                segment.close();
+                delete(segment);
+                logger.debug("Watch [{}] removed archive segment {}, older than retention", id, segment.file.getName());
+            }
+        }
+    }
+
+    private void delete(Segment segment) {
+        if(!segment.file.delete())
+            logger.warn("Unable to delete archive segment {}", segment.file.getPath());
+    }
+
+    static String segmentName(long sequence) {
+        return String.format("%019d%s", sequence, SEGMENT_SUFFIX);
+    }
+
+    interface RecordHandler {
+        void record(long when, double value);
+    }
+
+    /*
+     * Accumulates records into buckets
+     */
+    static class Rollup implements RecordHandler {
+        private final String id;
+        private final long from;
+        private final long interval;
+        private final List<RollupCalculable> result = new ArrayList<RollupCalculable>();
+        private long bucket = Long.MIN_VALUE;
+        private double min;
+        private double max;
+        private double sum;
+        private long count;
+
+        Rollup(String id, long from, long interval) {
+            this.id = id;
+            this.from = from;
+            this.interval = interval;
+        }
+
+        public void record(long when, double value) {
+            long start = from+((when-from)/interval)*interval;
+            if(start!=bucket) {
+                flush();
+                bucket = start;
+                min = value;
+                max = value;
+                sum = 0;
+                count = 0;
+            }
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            count++;
+        }
+
+        private void flush() {
+            if(count > 0)
+                result.add(new RollupCalculable(id, bucket, interval, min, max, sum/count, count));
+        }
+
+        /*
+         * Segments do not overlap in time and are scanned in order, so the
+         * buckets are produced in time order
+         */
+        RollupCalculable[] getResult() {
+            flush();
+            count = 0;
+            return result.toArray(new RollupCalculable[result.size()]);
+        }
+    }
+
+    /*
+     * A segment file. The segment being written is kept memory-mapped; once sealed
+     * the file is closed, and each scan reads the records it needs from the file.
+     */
+    static class Segment {
+        /* The number of records read from a sealed segment at a time */
+        private static final int READ_RECORDS = 4096;
+        final File file;
+        final long sequence;
+        final int capacity;
+        private RandomAccessFile raf;
+        private MappedByteBuffer buffer;
+        volatile int count;
+        volatile long first;
+        volatile long last;
+
+        private Segment(File file, long sequence, int capacity, int count, long first, long last) {
+            this.file = file;
+            this.sequence = sequence;
+            this.capacity = capacity;
+            this.count = count;
+            this.first = first;
+            this.last = last;
+        }
+
+        static Segment create(File file, long sequence, int capacity) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                long size = HEADER_SIZE+(long)capacity*RECORD_SIZE;
+                raf.setLength(size);
+                MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, capacity);
+                buffer.putInt(COUNT_OFFSET, 0);
+                buffer.putLong(FIRST_OFFSET, 0);
+                buffer.putLong(LAST_OFFSET, 0);
+                Segment segment = new Segment(file, sequence, capacity, 0, 0, 0);
+                segment.raf = raf;
+                segment.buffer = buffer;
+                return segment;
+            } catch(IOException e) {
+                raf.close();
+                throw e;
+            }
+        }
+
+        static Segment open(File file, long sequence) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                long size = raf.length();
+                if(size < HEADER_SIZE)
+                    throw new IOException("truncated header");
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                read(raf.getChannel(), header, 0);
+                if(header.getInt(0)!=MAGIC)
+                    throw new IOException("not an archive segment");
+                if(header.getInt(4)!=VERSION)
+                    throw new IOException("unsupported version "+header.getInt(4));
+                int capacity = header.getInt(8);
+                int count = header.getInt(COUNT_OFFSET);
+                if(capacity < 1 || count < 0 || count > capacity || size < HEADER_SIZE+(long)capacity*RECORD_SIZE)
+                    throw new IOException("corrupt header");
+                return new Segment(file, sequence, capacity, count, header.getLong(FIRST_OFFSET), header.getLong(LAST_OFFSET));
+            } finally {
+                raf.close();
+            }
+        }
+
+        boolean isFull() {
+            return count >= capacity;
+        }
+
+        synchronized boolean isWritable() {
+            return buffer!=null;
+        }
+
+        synchronized void append(long when, double value) {
+            int index = count;
+            put(index, when, value);
+            if(index==0) {
+                first = when;
+                buffer.putLong(FIRST_OFFSET, when);
+            }
+            last = when;
+            buffer.putLong(LAST_OFFSET, when);
+            /* Publish the record after it has been written */
+            buffer.putInt(COUNT_OFFSET, index+1);
+            count = index+1;
+        }
+
+        /*
+         * Insert a record that is within the time range of the segment, keeping
+         * the records in time order
+         */
+        synchronized void insert(long when, double value) {
+            int index = indexOf(buffer, when+1, count);
+            for(int i=count-1; i>=index; i--)
+                put(i+1, getWhen(buffer, i), getValue(buffer, i));
+            put(index, when, value);
+            buffer.putInt(COUNT_OFFSET, count+1);
+            count = count+1;
+        }
+
+        private void put(int index, long when, double value) {
+            int offset = HEADER_SIZE+index*RECORD_SIZE;
+            buffer.putLong(offset, when);
+            buffer.putDouble(offset+8, value);
+        }
+
+        /*
+         * Pass the records within the time range to the handler. Reads of the
+         * segment being written hold the segment lock, so inserts are not seen
+         * part way through
+         */
+        void scan(long from, long to, RecordHandler handler) throws IOException {
+            int n;
+            synchronized(this) {
+                if(buffer!=null) {
+                    scan(buffer, count, from, to, handler);
+                    return;
+                }
+                n = count;
+            }
+            RandomAccessFile file = new RandomAccessFile(this.file, "r");
+            try {
+                scan(file.getChannel(), n, from, to, handler);
+            } finally {
+                file.close();
+            }
+        }
+
+        /*
+         * Scan the records of a sealed segment, reading them from the file
+         */
+        private static void scan(FileChannel channel, int count, long from, long to, RecordHandler handler)
+            throws IOException {
+            /* Binary search for the first record at or after from */
+            ByteBuffer when = ByteBuffer.allocate(8);
+            int low = 0;
+            int high = count-1;
+            while(low <= high) {
+                int mid = (low+high) >>> 1;
+                when.clear();
+                read(channel, when, HEADER_SIZE+(long)mid*RECORD_SIZE);
+                if(when.getLong(0) < from)
+                    low = mid+1;
+                else
+                    high = mid-1;
+            }
+            ByteBuffer records = ByteBuffer.allocate(Math.min(READ_RECORDS, Math.max(count-low, 1))*RECORD_SIZE);
+            for(int index = low; index < count; ) {
+                int n = Math.min(records.capacity()/RECORD_SIZE, count-index);
+                records.clear();
+                records.limit(n*RECORD_SIZE);
+                read(channel, records, HEADER_SIZE+(long)index*RECORD_SIZE);
+                for(int i=0; i<n; i++) {
+                    long recorded = records.getLong(i*RECORD_SIZE);
+                    if(recorded > to)
+                        return;
+                    handler.record(recorded, records.getDouble(i*RECORD_SIZE+8));
+                }
+                index += n;
+            }
+        }
+
+        /*
+         * Fill the buffer from the file, starting at the provided position
+         */
+        private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while(buffer.hasRemaining()) {
+                if(channel.read(buffer, position+buffer.position()) < 0)
+                    throw new EOFException("unexpected end of "+channel);
+            }
+        }
+
+        private static void scan(ByteBuffer records, int count, long from, long to, RecordHandler handler) {
+            for(int index = indexOf(records, from, count); index < count; index++) {
+                long when = getWhen(records, index);
+                if(when > to)
+                    break;
+                handler.record(when, getValue(records, index));
+            }
+        }
+
+        static long getWhen(ByteBuffer records, int index) {
+            return records.getLong(HEADER_SIZE+index*RECORD_SIZE);
+        }
+
+        static double getValue(ByteBuffer records, int index) {
+            return records.getDouble(HEADER_SIZE+index*RECORD_SIZE+8);
+        }
+
+        /*
+         * Binary search for the index of the first record at or after the provided time
+         */
+        static int indexOf(ByteBuffer records, long when, int count) {
+            int low = 0;
+            int high = count-1;
+            while(low <= high) {
+                int mid = (low+high) >>> 1;
+                if(getWhen(records, mid) < when)
+                    low = mid+1;
+                else
+                    high = mid-1;
+            }
+            return low;
+        }
+
+        /*
+         * Flush the segment to disk and close it, it is no longer written
+         */
+        synchronized void seal() {
+            if(buffer!=null)
+                buffer.force();
+            close();
+        }
+
+        /*
+         * Close the file and clear the reference to the mapped buffer. The
+         * mapping is released when the buffer is garbage collected
+         */
+        synchronized void close() {
+            buffer = null;
+            if(raf==null)
+                return;
+            try {
+                raf.close();
+            } catch(IOException e) {
+                logger.trace("Closing {}", file.getPath(), e);
+            }
+            raf = null;
+        }
+    }
+}
@@ -27,8 +27,11 @@ import org.rioproject.config.ExporterConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -116,6 +119,109 @@ import java.util.List;
  </table>
  </li>
  </ul>
+ <ul>
+ <li><span
+ style="font-weight: bold; font-family: courier new,courier,monospace;">archiveDirectory</span>
+ <br style="font-family: courier new,courier,monospace;">
+ <table cellpadding="2" cellspacing="2" border="0"
+ style="text-align: left; width: 100%;">
+ <tbody>
+ <tr>
+ <td
+ style="vertical-align: top; text-align: right; font-weight: bold;">Type:
+ <br>
+ </td>
+ <td style="vertical-align: top;">String</td>
+ </tr>
+ <tr>
+ <td
+ style="vertical-align: top; text-align: right; font-weight: bold;">Default:
+ <br>
+ </td>
+ <td style="vertical-align: top;">null</td>
+ </tr>
+ <tr>
+ <td
+ style="vertical-align: top; text-align: right; font-weight: bold;">Description:
+ <br>
+ </td>
+ <td style="vertical-align: top;">The root directory
+ of the binary time-series archive. If set, every Calculable
+ record is also appended to a {@link TimeSeriesArchive} in a sub-directory
+ named after the watch, and time range and rollup queries older than the
+ in-memory history are answered from the archive.</td>
+ </tr>
+ </tbody>
+ </table>
+ </li>
+ </ul>
+ <ul>
+ <li><span
+ style="font-weight: bold; font-family: courier new,courier,monospace;">archiveSegmentSize</span>
+ <br style="font-family: courier new,courier,monospace;">
+ <table cellpadding="2" cellspacing="2" border="0"
+ style="text-align: left; width: 100%;">
+ <tbody>
+ <tr>
+ <td
+ style="vertical-align: top; text-align: right; font-weight: bold;">Type:
+ <br>
+ </td>
+ <td style="vertical-align: top;">int</td>
+ </tr>
+ <tr>
+ <td
+ style="vertical-align: top; text-align: right; font-weight: bold;">Default:
+ <br>
+ </td>
+ <td style="vertical-align: top;">65536</td>
+ </tr>
+ <tr>
+ <td
+ style="vertical-align: top; text-align: right; font-weight: bold;">Description:
+ <br>
+ </td>
+ <td style="vertical-align: top;">The number of records held
+ in each archive segment file.</td>
+ </tr>
+ </tbody>
+ </table>
+ </li>
+ </ul>
+ <ul>
+ <li><span
+ style="font-weight: bold; font-family: courier new,courier,monospace;">archiveRetention</span>
+ <br style="font-family: courier new,courier,monospace;">
+ <table cellpadding="2" cellspacing="2" border="0"
+ style="text-align: left; width: 100%;">
+ <tbody>
+ <tr>
+ <td
+ style="vertical-align: top; text-align: right; font-weight: bold;">Type:
+ <br>
+ </td>
+ <td style="vertical-align: top;">long</td>
+ </tr>
+ <tr>
+ <td
+ style="vertical-align: top; text-align: right; font-weight: bold;">Default:
+ <br>
+ </td>
+ <td style="vertical-align: top;">604800000 (7 days)</td>
+ </tr>
+ <tr>
+ <td
+ style="vertical-align: top; text-align: right; font-weight: bold;">Description:
+ <br>
+ </td>
+ <td style="vertical-align: top;">The amount of time (in
+ milliseconds) archived records are kept. Set to 0 to keep
+ all records.</td>
+ </tr>
+ </tbody>
+ </table>
+ </li>
+ </ul>
  <p>
  */
 public class WatchDataSourceImpl implements WatchDataSource, ServerProxyTrust {
@@ -150,6 +256,8 @@ public class WatchDataSourceImpl implements WatchDataSource, ServerProxyTrust {
     /** A suitable Logger */
     protected static Logger logger = LoggerFactory.getLogger(WatchDataSourceImpl.class);
     private final List<WatchDataReplicator> replicators = new ArrayList<WatchDataReplicator>();
+    /** The optional binary time-series archive */
+    private TimeSeriesArchive archive;
 
     /**
      * Create a WatchDataSourceImpl 
@@ -200,9 +308,55 @@ public class WatchDataSourceImpl implements WatchDataSource, ServerProxyTrust {
         }
         logger.trace("Watch [{}] history collection size={}", id, collectionSize);
         max = collectionSize;
+        createArchive();
         initialized = true;
     }
 
+    /*
+     * Create the TimeSeriesArchive if an archive directory has been configured
+     */
+    private void createArchive() {
+        if(archive!=null)
+            return;
+        try {
+            String archiveDirectory = (String)config.getEntry(COMPONENT, "archiveDirectory", String.class, null);
+            if(archiveDirectory==null)
+                return;
+            if(id==null) {
+                logger.warn("WatchDataSource has no id, unable to create archive");
+                return;
+            }
+            int segmentSize = Config.getIntEntry(config,
+                                                 COMPONENT,
+                                                 "archiveSegmentSize",
+                                                 TimeSeriesArchive.DEFAULT_SEGMENT_SIZE,
+                                                 1,
+                                                 Integer.MAX_VALUE/32);
+            long retention = Config.getLongEntry(config, COMPONENT, "archiveRetention",
+                                                  TimeSeriesArchive.DEFAULT_RETENTION,
+                                                  0,
+                                                  Long.MAX_VALUE);
+            archive = new TimeSeriesArchive(id,
+                                            TimeSeriesArchive.getArchiveDirectory(new File(archiveDirectory), id),
+                                            segmentSize,
+                                            retention);
+            addWatchDataReplicator(archive);
+        } catch(ConfigurationException e) {
+            logger.warn("Getting WatchDataSource archive configuration", e);
+        } catch(IOException e) {
+            logger.warn("Watch [{}] unable to create archive", id, e);
+        }
+    }
+
+    /**
+     * Get the binary time-series archive
+     *
+     * @return The TimeSeriesArchive, or null if an archive has not been configured
+     */
+    public TimeSeriesArchive getArchive() {
+        return archive;
+    }
+
     /**
      * Export the WatchDataSourceImpl using a configured Exporter, defaulting to
      * BasicJeriExporter
@@ -405,16 +559,47 @@ public class WatchDataSourceImpl implements WatchDataSource, ServerProxyTrust {
     public Calculable[] getCalculable(long from, long to) {
         List<Calculable> list = new ArrayList<Calculable>();
         if(to>from) {
+            long oldest = Long.MAX_VALUE;
             synchronized(history) {
+                if(!history.isEmpty())
+                    oldest = history.get(0).getWhen();
                 for(Calculable calc : history) {
                     if(calc.getWhen()>=from && calc.getWhen()<=to)
                         list.add(calc);
                 }
             }
+            /* Records older than the in-memory history are read from the archive */
+            if(archive!=null && from<oldest) {
+                Calculable[] archived = archive.getCalculable(from, Math.min(to, oldest-1));
+                List<Calculable> merged = new ArrayList<Calculable>(archived.length+list.size());
+                merged.addAll(Arrays.asList(archived));
+                merged.addAll(list);
+                list = merged;
+            }
         }
         return (list.toArray(new Calculable[list.size()]));
     }
 
+    /**
+     * @see org.rioproject.watch.WatchDataSource#getRollup
+     */
+    public RollupCalculable[] getRollup(long from, long to, long interval) {
+        if(interval < 1)
+            throw new IllegalArgumentException("interval must be greater than 0");
+        if(archive!=null)
+            return archive.getRollup(from, to, interval);
+        TimeSeriesArchive.Rollup rollup = new TimeSeriesArchive.Rollup(id, from, interval);
+        if(to>=from) {
+            synchronized(history) {
+                for(Calculable calc : history) {
+                    if(calc.getWhen()>=from && calc.getWhen()<=to)
+                        rollup.record(calc.getWhen(), calc.getValue());
+                }
+            }
+        }
+        return rollup.getResult();
+    }
+
     /**
      * @see org.rioproject.watch.WatchDataSource#getLastCalculable
      */
@@ -0,0 +1,84 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.bean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.rioproject.deploy.ServiceBeanInstantiationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test the BeanHelper
+ */
+public class BeanHelperTest {
+
+    @Test
+    public void testAnnotatedLifeCycle() throws ServiceBeanInstantiationException {
+        Bean bean = new Bean();
+        BeanHelper.invokeLifeCycle(Started.class, "postStart", bean);
+        BeanHelper.invokeLifeCycle(PreDestroy.class, "preDestroy", bean);
+        BeanHelper.invokeLifeCycle(PreAdvertise.class, "preAdvertise", bean);
+        Assert.assertEquals("[started, preDestroy]", bean.invoked.toString());
+        Assert.assertEquals("begin", BeanHelper.getAnnotatedMethod(bean, Started.class).getName());
+        Assert.assertNull(BeanHelper.getAnnotatedMethod(bean, PreAdvertise.class));
+    }
+
+    @Test
+    public void testInvokeBeanMethod() throws ServiceBeanInstantiationException {
+        Bean bean = new Bean();
+        Object result = BeanHelper.invokeBeanMethod(bean,
+                                                    SetParameters.class,
+                                                    "setParameters",
+                                                    new Class[]{Map.class},
+                                                    new Object[]{null});
+        Assert.assertEquals("parameters", result);
+        Assert.assertNull(BeanHelper.invokeBeanMethod(bean, null, "setFoo", new Class[]{String.class}, new Object[]{"foo"}));
+        Assert.assertEquals("[parameters]", bean.invoked.toString());
+        Assert.assertEquals(Map.class, BeanHelper.getMethodFirstParamType("parameters", bean));
+    }
+
+    @Test(expected = ServiceBeanInstantiationException.class)
+    public void testLifeCycleFailure() throws ServiceBeanInstantiationException {
+        BeanHelper.invokeLifeCycle(Initialized.class, "postInitialize", new Bean());
+    }
+
+    public static class Bean {
+        final List<String> invoked = new ArrayList<String>();
+
+        @Started
+        public void begin() {
+            invoked.add("started");
+        }
+
+        public void preDestroy() {
+            invoked.add("preDestroy");
+        }
+
+        @SetParameters
+        public String parameters(Map<String, Object> parameters) {
+            invoked.add("parameters");
+            return "parameters";
+        }
+
+        @Initialized
+        public void initialized() {
+            throw new IllegalStateException("failed");
+        }
+    }
+}
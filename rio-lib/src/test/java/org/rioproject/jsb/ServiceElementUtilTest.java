@@ -0,0 +1,225 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.jsb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.rioproject.associations.AssociationDescriptor;
+import org.rioproject.associations.AssociationType;
+import org.rioproject.deploy.StagedData;
+import org.rioproject.log.LoggerConfig;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Test creating service instances from a ServiceElement with ServiceElementUtil
+ */
+public class ServiceElementUtilTest {
+
+    @Test
+    public void testPrepareInstanceID() {
+        ServiceElement template = createServiceElement();
+        ServiceElement instance = ServiceElementUtil.prepareInstanceID(template, true, 3);
+        ServiceBeanConfig sbc = instance.getServiceBeanConfig();
+        Assert.assertEquals(3L, sbc.getInstanceID().longValue());
+        Assert.assertEquals(0L, template.getServiceBeanConfig().getInstanceID().longValue());
+        Assert.assertEquals(template, instance);
+        Assert.assertEquals("Echo", sbc.getName());
+        Assert.assertEquals("value-1", sbc.getInitParameters().get("init-1"));
+        Assert.assertEquals("value-1", sbc.getConfigurationParameters().get("parm-1"));
+        Assert.assertEquals(1, sbc.getLoggerConfigs().length);
+        Assert.assertArrayEquals(template.getServiceBeanConfig().getConfigArgs(), sbc.getConfigArgs());
+        Assert.assertEquals(2, instance.getAssociationDescriptors().length);
+        Assert.assertEquals(template.getPlanned(), instance.getPlanned());
+
+        ServiceElement copy = ServiceElementUtil.prepareInstanceID(instance, true, 4);
+        Assert.assertEquals(4L, copy.getServiceBeanConfig().getInstanceID().longValue());
+        Assert.assertEquals("value-1", copy.getServiceBeanConfig().getConfigurationParameters().get("parm-1"));
+
+        ServiceElement same = ServiceElementUtil.prepareInstanceID(copy, false, 5);
+        Assert.assertSame(copy, same);
+        Assert.assertEquals(5L, same.getServiceBeanConfig().getInstanceID().longValue());
+        Assert.assertEquals(1, same.getServiceBeanConfig().getLoggerConfigs().length);
+    }
+
+    @Test
+    public void testChangesAreNotShared() {
+        ServiceElement template = createServiceElement();
+        ServiceElement instance1 = ServiceElementUtil.prepareInstanceID(template, true, 1);
+        ServiceElement instance2 = ServiceElementUtil.prepareInstanceID(template, true, 2);
+
+        template.getServiceBeanConfig().setName("Changed");
+        template.getServiceBeanConfig().addInitParameter("init-1", "changed");
+        template.addAssociationDescriptors(new AssociationDescriptor(AssociationType.USES, "Other"));
+        Assert.assertEquals("Echo", instance1.getServiceBeanConfig().getName());
+        Assert.assertEquals("value-1", instance1.getServiceBeanConfig().getInitParameters().get("init-1"));
+        Assert.assertEquals(2, instance1.getAssociationDescriptors().length);
+
+        instance1.getServiceBeanConfig().setGroups("instance");
+        instance1.getServiceBeanConfig().addInitParameter("instance", "instance");
+        instance1.setStagedData(new StagedData());
+        Assert.assertEquals("rio", instance2.getServiceBeanConfig().getGroups()[0]);
+        Assert.assertNull(instance2.getServiceBeanConfig().getInitParameters().get("instance"));
+        Assert.assertEquals(0, instance2.getStagedData().length);
+        Assert.assertEquals(1, instance1.getStagedData().length);
+        Assert.assertEquals("changed", template.getServiceBeanConfig().getInitParameters().get("init-1"));
+        Assert.assertEquals(3, template.getAssociationDescriptors().length);
+    }
+
+    @Test
+    public void testSerializedInstance() throws Exception {
+        ServiceElement template = createServiceElement();
+        ServiceElement instance = ServiceElementUtil.prepareInstanceID(template, true, 7);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(instance);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        ServiceElement read = (ServiceElement)in.readObject();
+        Assert.assertEquals(instance.getServiceBeanConfig().getConfigurationParameters().keySet(),
+                            read.getServiceBeanConfig().getConfigurationParameters().keySet());
+        Assert.assertEquals("Echo", read.getServiceBeanConfig().getName());
+        Assert.assertEquals(7L, read.getServiceBeanConfig().getInstanceID().longValue());
+        Assert.assertEquals("value-1", read.getServiceBeanConfig().getInitParameters().get("init-1"));
+        Assert.assertEquals(2, read.getAssociationDescriptors().length);
+    }
+
+    @Test
+    public void testElementDigest() throws Exception {
+        ServiceElement template = createServiceElement();
+        ServiceElement instance1 = ServiceElementUtil.prepareInstanceID(template, true, 1);
+        ServiceElement instance2 = ServiceElementUtil.prepareInstanceID(template, true, 2);
+        String digest = ServiceElementUtil.getElementDigest(instance1);
+        Assert.assertEquals(40, digest.length());
+        Assert.assertEquals(digest, ServiceElementUtil.getElementDigest(instance2));
+
+        instance2.getServiceBeanConfig().setGroups("other");
+        Assert.assertFalse(digest.equals(ServiceElementUtil.getElementDigest(instance2)));
+    }
+
+    @Test
+    public void testElementDigestIsCanonical() throws Exception {
+        ServiceElement elem1 = createServiceElement();
+        ServiceElement elem2 = createServiceElement();
+        for(int i=1; i<=100; i++)
+            elem1.getServiceBeanConfig().addInitParameter("key-"+i, i);
+        for(int i=100; i>=1; i--)
+            elem2.getServiceBeanConfig().addInitParameter("key-"+i, i);
+        /* The same parameters in a Map of a different capacity */
+        Map<String, Object> parms = new HashMap<String, Object>(1024);
+        parms.putAll(elem1.getServiceBeanConfig().getConfigurationParameters());
+        elem2.getServiceBeanConfig().setConfigurationParameters(parms);
+        Assert.assertEquals(ServiceElementUtil.getElementDigest(elem1), ServiceElementUtil.getElementDigest(elem2));
+
+        /* The actual instance count is not part of the digest */
+        elem2.setActual(3);
+        Assert.assertEquals(ServiceElementUtil.getElementDigest(elem1), ServiceElementUtil.getElementDigest(elem2));
+        elem2.getServiceBeanConfig().addInitParameter("key-1", 0);
+        Assert.assertFalse(ServiceElementUtil.getElementDigest(elem1).equals(ServiceElementUtil.getElementDigest(elem2)));
+    }
+
+    @Test
+    public void testCreateInstance() throws Exception {
+        ServiceElement template = createServiceElement();
+        ServiceElement instance1 = ServiceElementUtil.prepareInstanceID(template, true, 1);
+        ServiceElement instance2 = ServiceElementUtil.prepareInstanceID(template, true, 2);
+        Map<String, Object> instanceParms = ServiceElementUtil.getInstanceParameters(instance2);
+        Assert.assertEquals(2L, instanceParms.get(ServiceBeanConfig.INSTANCE_ID));
+
+        ServiceElement created = ServiceElementUtil.createInstance(instance1, instanceParms);
+        Assert.assertEquals(2L, created.getServiceBeanConfig().getInstanceID().longValue());
+        Assert.assertEquals(instance2.getServiceBeanConfig().getConfigurationParameters().keySet(),
+                            created.getServiceBeanConfig().getConfigurationParameters().keySet());
+        Assert.assertEquals("value-1", created.getServiceBeanConfig().getInitParameters().get("init-1"));
+        Assert.assertEquals(ServiceElementUtil.getElementDigest(instance2), ServiceElementUtil.getElementDigest(created));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInstancesShareTemplate() throws Exception {
+        ServiceElement template = createServiceElement();
+        ServiceElement instance1 = ServiceElementUtil.prepareInstanceID(template, true, 1);
+        ServiceElement instance2 = ServiceElementUtil.prepareInstanceID(template, true, 2);
+        ServiceBeanConfig templateSBC = template.getServiceBeanConfig();
+        for(ServiceElement instance : new ServiceElement[]{instance1, instance2}) {
+            ServiceBeanConfig sbc = instance.getServiceBeanConfig();
+            Assert.assertSame(field(templateSBC, "initParameters"), field(sbc, "initParameters"));
+            Assert.assertSame(field(templateSBC, "loggerConfigs"), field(sbc, "loggerConfigs"));
+            Assert.assertSame(field(templateSBC, "configArgs"), field(sbc, "configArgs"));
+            Assert.assertSame(field(templateSBC, "configParms"), field(sbc, "templateParms"));
+            for(String name : new String[]{"associations", "stagedData", "remoteRepositories", "ruleMaps"})
+                Assert.assertSame(name, field(template, name), field(instance, name));
+        }
+        /* The instance holds only its own parameters */
+        Map<String, Object> overrides = (Map<String, Object>)field(instance1.getServiceBeanConfig(), "configParms");
+        Assert.assertEquals(1L, overrides.get(ServiceBeanConfig.INSTANCE_ID));
+        Assert.assertFalse(overrides.containsKey("parm-1"));
+
+        try {
+            instance1.getServiceBeanConfig().getInitParameters().put("init-1", "changed");
+            Assert.fail("Shared init parameters should not be modifiable");
+        } catch(UnsupportedOperationException e) {
+            /* expected */
+        }
+        instance1.getServiceBeanConfig().addInitParameter("init-1", "changed");
+        Assert.assertNotSame(field(templateSBC, "initParameters"),
+                             field(instance1.getServiceBeanConfig(), "initParameters"));
+        Assert.assertSame(field(templateSBC, "initParameters"),
+                          field(instance2.getServiceBeanConfig(), "initParameters"));
+        instance1.setStagedData(new StagedData());
+        Assert.assertNotSame(field(template, "stagedData"), field(instance1, "stagedData"));
+        Assert.assertSame(field(template, "stagedData"), field(instance2, "stagedData"));
+    }
+
+    private Object field(final Object o, final String name) throws Exception {
+        Field field = o.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(o);
+    }
+
+    private ServiceElement createServiceElement() {
+        Map<String, Object> parms = new HashMap<String, Object>();
+        for(int i=1; i<=20; i++)
+            parms.put("parm-"+i, "value-"+i);
+        String[] configArgs = new String[10];
+        for(int i=0; i<configArgs.length; i++)
+            configArgs[i] = "org.rioproject.test.entry"+i+"=\"value\"";
+        ServiceBeanConfig sbc = new ServiceBeanConfig(parms, configArgs);
+        sbc.setName("Echo");
+        sbc.setOperationalStringName("Footprint");
+        sbc.setGroups("rio");
+        for(int i=1; i<=10; i++)
+            sbc.addInitParameter("init-"+i, "value-"+i);
+        sbc.addLoggerConfig(new LoggerConfig("org.rioproject.test", Level.INFO));
+        ServiceElement elem = new ServiceElement(ServiceElement.ProvisionType.DYNAMIC,
+                                                 sbc,
+                                                 null,
+                                                 new ClassBundle[]{new ClassBundle("org.rioproject.test.Echo")},
+                                                 null,
+                                                 new ClassBundle("org.rioproject.test.EchoImpl"));
+        elem.setPlanned(100);
+        elem.setAssociationDescriptors(new AssociationDescriptor(AssociationType.USES, "Hello"),
+                                       new AssociationDescriptor(AssociationType.REQUIRES, "World"));
+        return elem;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.opstring;
+
+import net.jini.core.lookup.ServiceItem;
+import net.jini.core.lookup.ServiceRegistrar;
+import net.jini.core.lookup.ServiceTemplate;
+import net.jini.discovery.DiscoveryListener;
+import net.jini.discovery.DiscoveryManagement;
+import net.jini.lookup.LookupCache;
+import net.jini.lookup.ServiceDiscoveryListener;
+import net.jini.lookup.ServiceItemFilter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.rioproject.opstring.OpStringManagerProxy.LookupCacheSource;
+import org.rioproject.opstring.OpStringManagerProxy.MonitorTracker;
+import org.rioproject.opstring.OpStringManagerProxy.OpStringManagerDispatcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test that the {@code OpStringManagerProxy} shares one {@code MonitorTracker}
+ * for each DiscoveryManagement.
+ */
+public class OpStringManagerProxyTest {
+    private final LookupCacheSource original = MonitorTracker.cacheSource;
+
+    @After
+    public void restore() {
+        MonitorTracker.cacheSource = original;
+    }
+
+    @Test
+    public void testAcquireAndRelease() throws Exception {
+        TestLookupCacheSource source = new TestLookupCacheSource(null);
+        MonitorTracker.cacheSource = source;
+        DiscoveryManagement dMgr = new TestDiscoveryManagement();
+
+        OpStringManagerDispatcher d1 = MonitorTracker.acquire("foo", null, dMgr);
+        OpStringManagerDispatcher d2 = MonitorTracker.acquire("foo", null, dMgr);
+        OpStringManagerDispatcher d3 = MonitorTracker.acquire("bar", null, dMgr);
+        Assert.assertSame(d1, d2);
+        Assert.assertNotSame(d1, d3);
+        Assert.assertSame(d1.tracker, d3.tracker);
+        Assert.assertSame(d1.tracker, MonitorTracker.getTracker(dMgr));
+        Assert.assertEquals(1, source.caches.size());
+        Assert.assertEquals(1, source.caches.get(0).listeners.size());
+
+        MonitorTracker.release(d1);
+        MonitorTracker.release(d3);
+        Assert.assertFalse(d1.terminated);
+        Assert.assertTrue(d3.terminated);
+        Assert.assertNotNull(MonitorTracker.getTracker(dMgr));
+
+        MonitorTracker.release(d2);
+        Assert.assertTrue(d1.terminated);
+        Assert.assertNull(MonitorTracker.getTracker(dMgr));
+        Assert.assertEquals(0, source.caches.get(0).listeners.size());
+    }
+
+    @Test
+    public void testConcurrentAcquire() throws Exception {
+        final int threads = 4;
+        TestLookupCacheSource source = new TestLookupCacheSource(new CyclicBarrier(threads));
+        MonitorTracker.cacheSource = source;
+        final DiscoveryManagement dMgr = new TestDiscoveryManagement();
+        final List<OpStringManagerDispatcher> acquired = new CopyOnWriteArrayList<OpStringManagerDispatcher>();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for(int i=0; i<threads; i++) {
+            new Thread() {
+                public void run() {
+                    try {
+                        acquired.add(MonitorTracker.acquire("foo", null, dMgr));
+                    } catch(Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(threads, acquired.size());
+        /* Every tracker was created concurrently, outside of the trackers lock */
+        Assert.assertEquals(threads, source.caches.size());
+
+        MonitorTracker tracker = MonitorTracker.getTracker(dMgr);
+        Assert.assertNotNull(tracker);
+        for(OpStringManagerDispatcher dispatcher : acquired)
+            Assert.assertSame(acquired.get(0), dispatcher);
+        Assert.assertEquals(threads, acquired.get(0).references);
+        /* Only the published tracker is listening */
+        int listening = 0;
+        for(TestLookupCache cache : source.caches)
+            listening += cache.listeners.size();
+        Assert.assertEquals(1, listening);
+        Assert.assertTrue(tracker.lCache instanceof TestLookupCache);
+        Assert.assertEquals(1, ((TestLookupCache)tracker.lCache).listeners.size());
+
+        for(OpStringManagerDispatcher dispatcher : acquired)
+            MonitorTracker.release(dispatcher);
+        Assert.assertNull(MonitorTracker.getTracker(dMgr));
+        for(TestLookupCache cache : source.caches)
+            Assert.assertEquals(0, cache.listeners.size());
+    }
+
+    class TestLookupCacheSource extends LookupCacheSource {
+        final CyclicBarrier barrier;
+        final List<TestLookupCache> caches = new CopyOnWriteArrayList<TestLookupCache>();
+
+        TestLookupCacheSource(CyclicBarrier barrier) {
+            this.barrier = barrier;
+        }
+
+        @Override
+        LookupCache getLookupCache(DiscoveryManagement dMgr, ServiceTemplate template) throws IOException {
+            TestLookupCache cache = new TestLookupCache();
+            caches.add(cache);
+            if(barrier!=null) {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch(Exception e) {
+                    throw new IOException("Trackers were not created concurrently", e);
+                }
+            }
+            return cache;
+        }
+    }
+
+    class TestLookupCache implements LookupCache {
+        final List<ServiceDiscoveryListener> listeners = new ArrayList<ServiceDiscoveryListener>();
+
+        public ServiceItem lookup(ServiceItemFilter filter) {
+            return null;
+        }
+
+        public ServiceItem[] lookup(ServiceItemFilter filter, int maxMatches) {
+            return new ServiceItem[0];
+        }
+
+        public synchronized void addListener(ServiceDiscoveryListener listener) {
+            listeners.add(listener);
+        }
+
+        public synchronized void removeListener(ServiceDiscoveryListener listener) {
+            listeners.remove(listener);
+        }
+
+        public void discard(Object o) {
+        }
+
+        public void terminate() {
+        }
+    }
+
+    class TestDiscoveryManagement implements DiscoveryManagement {
+        public ServiceRegistrar[] getRegistrars() {
+            return new ServiceRegistrar[0];
+        }
+
+        public void discard(ServiceRegistrar registrar) {
+        }
+
+        public void addDiscoveryListener(DiscoveryListener listener) {
+        }
+
+        public void removeDiscoveryListener(DiscoveryListener listener) {
+        }
+
+        public void terminate() {
+        }
+    }
+}
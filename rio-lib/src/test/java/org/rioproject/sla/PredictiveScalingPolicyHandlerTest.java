@@ -0,0 +1,196 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.sla;
+
+import net.jini.config.EmptyConfiguration;
+import net.jini.id.UuidFactory;
+import net.jini.io.MarshalledInstance;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.rioproject.core.jsb.ServiceBeanContext;
+import org.rioproject.core.jsb.ServiceBeanManager;
+import org.rioproject.deploy.ServiceBeanInstance;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.OperationalStringManager;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.watch.Calculable;
+import org.rioproject.watch.ThresholdValues;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test that observations made by the {@code PredictiveScalingPolicyHandler}
+ * result in scaling actions
+ */
+public class PredictiveScalingPolicyHandlerTest {
+    private TestHandler handler;
+
+    @After
+    public void disconnect() {
+        if(handler!=null)
+            handler.disconnect();
+    }
+
+    @Test
+    public void testForecastAboveHighThresholdIncrements() throws Exception {
+        handler = createHandler(1, 2);
+        observe(handler, 0.95, 3);
+        waitFor(handler.increments, 2);
+        /* desired = ceil(0.95*2/0.5) = 4, so 2 increments are requested */
+        Assert.assertEquals(2, handler.increments.get());
+        Assert.assertEquals(0, handler.decrements.get());
+    }
+
+    @Test
+    public void testOnlyLowestInstanceIncrements() throws Exception {
+        handler = createHandler(2, 2);
+        observe(handler, 0.95, 3);
+        handler.evaluate();
+        Assert.assertEquals(0, handler.increments.get());
+    }
+
+    @Test
+    public void testForecastBelowLowThresholdDecrements() throws Exception {
+        handler = createHandler(2, 2);
+        observe(handler, 0.05, 3);
+        waitFor(handler.decrements, 1);
+        Assert.assertEquals(1, handler.decrements.get());
+        Assert.assertEquals(0, handler.increments.get());
+    }
+
+    @Test
+    public void testNoActionWithinThresholds() throws Exception {
+        handler = createHandler(1, 2);
+        observe(handler, 0.5, 3);
+        handler.evaluate();
+        Assert.assertEquals(0, handler.increments.get());
+        Assert.assertEquals(0, handler.decrements.get());
+    }
+
+    @Test
+    public void testNoActionBeforeWarmUp() throws Exception {
+        handler = createHandler(1, 2);
+        observe(handler, 0.95, 2);
+        handler.evaluate();
+        Assert.assertEquals(0, handler.increments.get());
+    }
+
+    private void observe(TestHandler handler, double value, int count) {
+        ThresholdValues thresholdValues = new ThresholdValues(0.2, 0.8);
+        long now = System.currentTimeMillis();
+        for(int i=0; i<count; i++)
+            handler.observe(new Calculable("load", value, now+i*1000), thresholdValues);
+    }
+
+    private void waitFor(AtomicInteger count, int expected) throws InterruptedException {
+        for(int i=0; i<50 && count.get()<expected; i++)
+            Thread.sleep(100);
+    }
+
+    private TestHandler createHandler(long instanceID, int instances) {
+        SLA sla = new SLA("load", 0.2, 0.8);
+        sla.setMaxServices(10);
+        ServiceBeanConfig template = new ServiceBeanConfig();
+        template.setName("Scaled");
+        template.setOperationalStringName("Predictive");
+        final ServiceElement elem = createElement(new ServiceBeanConfig(template, instanceID));
+        final ServiceBeanInstance[] serviceBeanInstances = new ServiceBeanInstance[instances];
+        try {
+            for(int i=0; i<instances; i++) {
+                serviceBeanInstances[i] = new ServiceBeanInstance(UuidFactory.generate(),
+                                                                  new MarshalledInstance("service-"+i),
+                                                                  new ServiceBeanConfig(template, i+1),
+                                                                  null,
+                                                                  null,
+                                                                  null);
+            }
+        } catch(Exception e) {
+            throw new RuntimeException(e);
+        }
+        final OperationalStringManager opMgr = create(OperationalStringManager.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if(method.getName().equals("getServiceBeanInstances"))
+                    return serviceBeanInstances;
+                if(method.getName().equals("getPendingCount"))
+                    return 0;
+                return null;
+            }
+        });
+        final ServiceBeanManager manager = create(ServiceBeanManager.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if(method.getName().equals("getOperationalStringManager"))
+                    return opMgr;
+                return null;
+            }
+        });
+        ServiceBeanContext context = create(ServiceBeanContext.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if(method.getName().equals("getServiceElement"))
+                    return elem;
+                if(method.getName().equals("getServiceBeanConfig"))
+                    return elem.getServiceBeanConfig();
+                if(method.getName().equals("getServiceBeanManager"))
+                    return manager;
+                if(method.getName().equals("getConfiguration"))
+                    return EmptyConfiguration.INSTANCE;
+                return null;
+            }
+        });
+        TestHandler handler = new TestHandler(sla);
+        handler.initialize("source", null, context);
+        return handler;
+    }
+
+    private ServiceElement createElement(ServiceBeanConfig sbc) {
+        ServiceElement elem = new ServiceElement(ServiceElement.ProvisionType.DYNAMIC,
+                                                 sbc,
+                                                 null,
+                                                 new ClassBundle[0],
+                                                 null,
+                                                 new ClassBundle("org.rioproject.test.ScaledImpl"));
+        elem.setPlanned(1);
+        return elem;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T create(Class<T> type, InvocationHandler handler) {
+        return (T)Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    static class TestHandler extends PredictiveScalingPolicyHandler {
+        final AtomicInteger increments = new AtomicInteger();
+        final AtomicInteger decrements = new AtomicInteger();
+
+        TestHandler(SLA sla) {
+            super(sla);
+        }
+
+        @Override
+        protected void requestIncrement() {
+            increments.incrementAndGet();
+        }
+
+        @Override
+        protected void requestDecrement() {
+            decrements.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.sla;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the TrendForecaster and the PredictiveScalingPolicyHandler sizing computation
+ */
+public class TrendForecasterTest {
+
+    @Test
+    public void testNoObservations() {
+        TrendForecaster forecaster = new TrendForecaster(0.5, 0.3);
+        Assert.assertTrue(Double.isNaN(forecaster.forecast(1000)));
+        Assert.assertEquals(0, forecaster.getSampleCount());
+    }
+
+    @Test
+    public void testConstantSeries() {
+        TrendForecaster forecaster = new TrendForecaster(0.5, 0.3);
+        for(int i=0; i<20; i++)
+            forecaster.update(0.4, i*1000);
+        Assert.assertEquals(0.4, forecaster.forecast(0), 0.0001);
+        Assert.assertEquals(0.4, forecaster.forecast(60*1000), 0.0001);
+    }
+
+    @Test
+    public void testLinearTrend() {
+        TrendForecaster forecaster = new TrendForecaster(0.5, 0.3);
+        /* Increase by 0.01 every second */
+        for(int i=0; i<50; i++)
+            forecaster.update(0.1+0.01*i, i*1000);
+        Assert.assertEquals(0.00001, forecaster.getTrend(), 0.000001);
+        double last = 0.1+0.01*49;
+        Assert.assertEquals(last+0.1, forecaster.forecast(10*1000), 0.01);
+    }
+
+    @Test
+    public void testEWMA() {
+        TrendForecaster forecaster = new TrendForecaster(0.5, 0);
+        forecaster.update(0, 0);
+        forecaster.update(1, 1000);
+        Assert.assertEquals(0.5, forecaster.forecast(0), 0.0001);
+        Assert.assertEquals(0.5, forecaster.forecast(5000), 0.0001);
+    }
+
+    @Test
+    public void testIgnoresInvalidValues() {
+        TrendForecaster forecaster = new TrendForecaster(0.5, 0.3);
+        forecaster.update(Double.NaN, 0);
+        forecaster.update(Double.POSITIVE_INFINITY, 1);
+        Assert.assertEquals(0, forecaster.getSampleCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSmoothing() {
+        new TrendForecaster(0, 0.3);
+    }
+
+    @Test
+    public void testComputeDesired() {
+        /* 2 instances at 0.9, target 0.6: need 3 */
+        Assert.assertEquals(3, PredictiveScalingPolicyHandler.computeDesired(0.9, 2, 0.6, 1, SLA.UNDEFINED));
+        /* Ramp that doubles demand scales proportionally rather than by one */
+        Assert.assertEquals(8, PredictiveScalingPolicyHandler.computeDesired(1.2, 4, 0.6, 1, SLA.UNDEFINED));
+        /* Bounded by max */
+        Assert.assertEquals(5, PredictiveScalingPolicyHandler.computeDesired(1.2, 4, 0.6, 1, 5));
+        /* Low load scales down, bounded by min */
+        Assert.assertEquals(2, PredictiveScalingPolicyHandler.computeDesired(0.1, 6, 0.6, 1, SLA.UNDEFINED));
+        Assert.assertEquals(3, PredictiveScalingPolicyHandler.computeDesired(0.0, 6, 0.6, 3, SLA.UNDEFINED));
+        /* Invalid target leaves the count unchanged */
+        Assert.assertEquals(4, PredictiveScalingPolicyHandler.computeDesired(0.9, 4, 0, 1, SLA.UNDEFINED));
+    }
+}
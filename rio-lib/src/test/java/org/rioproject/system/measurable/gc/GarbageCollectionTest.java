@@ -0,0 +1,86 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.gc;
+
+import net.jini.config.EmptyConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.rioproject.system.SystemWatchID;
+import org.rioproject.watch.ThresholdValues;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test garbage collection measurement
+ */
+public class GarbageCollectionTest {
+
+    @Test
+    public void testPauseHistoryPercentiles() {
+        PauseHistory history = new PauseHistory(3);
+        Assert.assertEquals(0, history.getPercentile(0.99), 0);
+        history.add(1, 98);
+        history.add(100, 1);
+        history.add(10, 1);
+        Assert.assertEquals(1, history.getPercentile(0.5), 0);
+        Assert.assertEquals(1, history.getPercentile(0.98), 0);
+        Assert.assertEquals(10, history.getPercentile(0.99), 0);
+        Assert.assertEquals(100, history.getPercentile(1), 0);
+        /* The oldest entry is replaced */
+        history.add(20, 1);
+        Assert.assertEquals(10, history.getPercentile(0.3), 0);
+        Assert.assertEquals(20, history.getPercentile(0.5), 0);
+        Assert.assertEquals(100, history.getPercentile(1), 0);
+    }
+
+    @Test
+    public void testMonitorMeasuresCollections() {
+        GarbageCollectionMonitor monitor = new GarbageCollectionMonitor();
+        monitor.setID(SystemWatchID.GC_OVERHEAD);
+        monitor.setThresholdValues(new ThresholdValues(0.0, 1.0));
+        GarbageCollectionUtilization baseline = monitor.getMeasuredResource();
+        Assert.assertEquals(0, baseline.getOverhead(), 0);
+        Assert.assertEquals(0, baseline.getCollectionRate(), 0);
+
+        List<byte[]> retained = new ArrayList<byte[]>();
+        for(int i=0; i<20000; i++) {
+            byte[] b = new byte[4096];
+            if(i%100==0)
+                retained.add(b);
+        }
+        System.gc();
+        GarbageCollectionUtilization gcu = monitor.getMeasuredResource();
+        Assert.assertTrue(gcu.toString(), gcu.getCollectionRate()>0);
+        Assert.assertTrue(gcu.toString(), gcu.getOverhead()>=0 && gcu.getOverhead()<=1);
+        Assert.assertEquals(gcu.getOverhead(), gcu.getValue(), 0);
+        Assert.assertTrue(gcu.toString(), gcu.getPause99()>=gcu.getPause50());
+        if(gcu.getAllocationRate()!=-1)
+            Assert.assertTrue(gcu.toString(), gcu.getAllocationRate()>0);
+        Assert.assertFalse(retained.isEmpty());
+    }
+
+    @Test
+    public void testCapabilityUsesMeasure() {
+        for(GarbageCollectionMeasure measure : GarbageCollectionMeasure.values()) {
+            GarbageCollection gc = new GarbageCollection(measure, EmptyConfiguration.INSTANCE);
+            Assert.assertEquals(measure.getWatchID(), gc.getId());
+            gc.checkValue();
+            Assert.assertTrue(gc.getMeasuredResource() instanceof GarbageCollectionUtilization);
+            Assert.assertTrue(gc.getMeasuredResource().getValue()>=0);
+        }
+    }
+}
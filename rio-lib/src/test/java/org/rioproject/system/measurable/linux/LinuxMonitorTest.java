@@ -0,0 +1,213 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.system.measurable.linux;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rioproject.system.measurable.cpu.CpuUtilization;
+import org.rioproject.system.measurable.memory.SystemMemoryUtilization;
+import org.rioproject.watch.ThresholdValues;
+
+import java.io.*;
+import java.util.Map;
+
+/**
+ * Test the Linux monitors against fixture files
+ */
+public class LinuxMonitorTest {
+    private static final double DELTA = 0.0001;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private File proc;
+    private File cgroup;
+
+    @Before
+    public void setup() throws IOException {
+        proc = folder.newFolder("proc");
+        cgroup = folder.newFolder("cgroup");
+        install("proc/stat.1", new File(proc, "stat"));
+        install("proc/loadavg", new File(proc, "loadavg"));
+        install("proc/meminfo", new File(proc, "meminfo"));
+    }
+
+    @Test
+    public void testCpuUtilization() throws IOException {
+        LinuxCPUMonitor monitor = createCPUMonitor();
+        monitor.sample(0);
+        install("proc/stat.2", new File(proc, "stat"));
+        CpuUtilization cpu = monitor.sample(1000000000L);
+        Assert.assertEquals(0.3, cpu.getUser(), DELTA);
+        Assert.assertEquals(0.15, cpu.getSystem(), DELTA);
+        Assert.assertEquals(0.45, cpu.getValue(), DELTA);
+        Assert.assertEquals(2, cpu.getAvailableProcessors());
+        Assert.assertArrayEquals(new double[]{0.5, 0.75, 1.0}, cpu.getLoad(), DELTA);
+        Map<String, Double> perCore = monitor.getPerCoreUtilization();
+        Assert.assertEquals(2, perCore.size());
+        Assert.assertEquals(0.55, perCore.get("cpu0"), DELTA);
+        Assert.assertEquals(0.35, perCore.get("cpu1"), DELTA);
+    }
+
+    @Test
+    public void testCpuStateIsPerInstance() throws IOException {
+        LinuxCPUMonitor monitor1 = createCPUMonitor();
+        monitor1.sample(0);
+        install("proc/stat.2", new File(proc, "stat"));
+        LinuxCPUMonitor monitor2 = createCPUMonitor();
+        Assert.assertEquals(0, monitor2.sample(0).getValue(), DELTA);
+        Assert.assertEquals(0.45, monitor1.sample(1000000000L).getValue(), DELTA);
+    }
+
+    @Test
+    public void testCpuUtilizationWithCGroupV2Quota() throws IOException {
+        installCGroupV2();
+        LinuxCPUMonitor monitor = createCPUMonitor();
+        monitor.sample(0);
+        install("proc/stat.2", new File(proc, "stat"));
+        install("cgroup-v2/cpu.stat.2", new File(cgroup, "cpu.stat"));
+        CpuUtilization cpu = monitor.sample(1000000000L);
+        Assert.assertEquals(1, cpu.getAvailableProcessors());
+        Assert.assertEquals(0.4, cpu.getUser(), DELTA);
+        Assert.assertEquals(0.1, cpu.getSystem(), DELTA);
+    }
+
+    @Test
+    public void testCGroupV1() throws IOException {
+        installCGroupV1();
+        CGroup cg = new CGroup(new ProcFileSystem(proc, cgroup));
+        Assert.assertEquals(CGroup.Version.V1, cg.getVersion());
+        Assert.assertEquals(1.0, cg.getCpuLimit(), DELTA);
+        Assert.assertEquals(-1, cg.getMemoryLimit());
+        Assert.assertEquals(1073741824L, cg.getMemoryUsage());
+        Assert.assertArrayEquals(new long[]{1000000000L, 500000000L}, cg.getCpuUsage());
+    }
+
+    @Test
+    public void testCGroupV2() throws IOException {
+        installCGroupV2();
+        CGroup cg = new CGroup(new ProcFileSystem(proc, cgroup));
+        Assert.assertEquals(CGroup.Version.V2, cg.getVersion());
+        Assert.assertEquals(0.5, cg.getCpuLimit(), DELTA);
+        Assert.assertEquals(4194304000L, cg.getMemoryLimit());
+        Assert.assertEquals(1048576000L, cg.getMemoryUsage());
+        Assert.assertArrayEquals(new long[]{1000000000L, 500000000L}, cg.getCpuUsage());
+    }
+
+    @Test
+    public void testMemoryUtilization() throws IOException {
+        installCGroupV1();
+        LinuxMemoryMonitor monitor = new LinuxMemoryMonitor(new ProcFileSystem(proc, cgroup));
+        init(monitor);
+        SystemMemoryUtilization memory = monitor.getMeasuredResource();
+        Assert.assertEquals(0.5, memory.getValue(), DELTA);
+        Assert.assertEquals(16000, memory.getTotal(), DELTA);
+        Assert.assertEquals(8000, memory.getUsed(), DELTA);
+        Assert.assertEquals(8000, memory.getFree(), DELTA);
+        Assert.assertEquals(50, memory.getUsedPercentage(), DELTA);
+    }
+
+    @Test
+    public void testMemoryUtilizationWithCGroupV2Limit() throws IOException {
+        installCGroupV2();
+        LinuxMemoryMonitor monitor = new LinuxMemoryMonitor(new ProcFileSystem(proc, cgroup));
+        init(monitor);
+        SystemMemoryUtilization memory = monitor.getMeasuredResource();
+        Assert.assertEquals(0.25, memory.getValue(), DELTA);
+        Assert.assertEquals(4000, memory.getTotal(), DELTA);
+        Assert.assertEquals(1000, memory.getUsed(), DELTA);
+        Assert.assertEquals(16000, memory.getRam(), DELTA);
+    }
+
+    @Test
+    public void testDiskIOUtilization() throws IOException {
+        install("proc/diskstats.1", new File(proc, "diskstats"));
+        LinuxDiskIOMonitor monitor = new LinuxDiskIOMonitor(new ProcFileSystem(proc, cgroup));
+        init(monitor);
+        Assert.assertEquals(0, monitor.sample(1000).getValue(), DELTA);
+        install("proc/diskstats.2", new File(proc, "diskstats"));
+        DiskIOUtilization diskIO = monitor.sample(2000);
+        Assert.assertEquals(0.5, diskIO.getValue(), DELTA);
+        Assert.assertEquals(100, diskIO.getReads(), DELTA);
+        Assert.assertEquals(300, diskIO.getWrites(), DELTA);
+        Assert.assertEquals(2000*512, diskIO.getBytesRead(), DELTA);
+        Assert.assertEquals(6000*512, diskIO.getBytesWritten(), DELTA);
+    }
+
+    @Test
+    public void testNetworkUtilization() throws IOException {
+        new File(proc, "net").mkdirs();
+        install("proc/net-dev.1", new File(proc, "net/dev"));
+        LinuxNetworkMonitor monitor = new LinuxNetworkMonitor(new ProcFileSystem(proc, cgroup));
+        init(monitor);
+        Assert.assertEquals(0, monitor.sample(1000).getValue(), DELTA);
+        install("proc/net-dev.2", new File(proc, "net/dev"));
+        NetworkUtilization network = monitor.sample(2000);
+        Assert.assertEquals(0.1, network.getValue(), DELTA);
+        Assert.assertEquals(12500000, network.getReceived(), DELTA);
+        Assert.assertEquals(6250000, network.getTransmitted(), DELTA);
+        Assert.assertEquals(2, network.getErrors(), DELTA);
+        Assert.assertEquals(1, network.getDropped(), DELTA);
+    }
+
+    private LinuxCPUMonitor createCPUMonitor() {
+        LinuxCPUMonitor monitor = new LinuxCPUMonitor(new ProcFileSystem(proc, cgroup));
+        init(monitor);
+        return monitor;
+    }
+
+    private void init(org.rioproject.system.measurable.MeasurableMonitor monitor) {
+        monitor.setID("test");
+        monitor.setThresholdValues(new ThresholdValues(0.0, 1.0));
+    }
+
+    private void installCGroupV1() throws IOException {
+        new File(proc, "self").mkdirs();
+        install("proc/self-cgroup-v1", new File(proc, "self/cgroup"));
+        for(String name : new String[]{"cpu/cpu.cfs_quota_us",
+                                       "cpu/cpu.cfs_period_us",
+                                       "cpuacct/cpuacct.stat",
+                                       "memory/memory.limit_in_bytes",
+                                       "memory/memory.usage_in_bytes"}) {
+            File target = new File(cgroup, name);
+            target.getParentFile().mkdirs();
+            install("cgroup-v1/"+name, target);
+        }
+    }
+
+    private void installCGroupV2() throws IOException {
+        new File(proc, "self").mkdirs();
+        install("proc/self-cgroup-v2", new File(proc, "self/cgroup"));
+        for(String name : new String[]{"cgroup.controllers", "cpu.max", "cpu.stat", "memory.max", "memory.current"})
+            install("cgroup-v2/"+name, new File(cgroup, name));
+    }
+
+    private void install(String resource, File target) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream("linux/"+resource);
+        Assert.assertNotNull("Fixture linux/"+resource+" not found", in);
+        OutputStream out = new FileOutputStream(target);
+        try {
+            byte[] buffer = new byte[4096];
+            int read;
+            while((read = in.read(buffer))!=-1)
+                out.write(buffer, 0, read);
+        } finally {
+            out.close();
+            in.close();
+        }
+    }
+}
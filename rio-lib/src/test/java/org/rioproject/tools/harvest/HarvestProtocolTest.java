@@ -0,0 +1,155 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.tools.harvest;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Test the HarvestProtocol
+ */
+public class HarvestProtocolTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIncrementalHarvest() throws Exception {
+        File source = folder.newFolder("source");
+        File target = folder.newFolder("target");
+        File log = new File(source, "service.log");
+        File big = new File(source, "big.log");
+        append(log, "first line\n");
+        StringBuilder builder = new StringBuilder();
+        for(int i=0; i<20000; i++)
+            builder.append("line ").append(i).append('\n');
+        append(big, builder.toString());
+
+        List<HarvestProtocol.HarvestFile> files = new ArrayList<HarvestProtocol.HarvestFile>();
+        files.add(new HarvestProtocol.HarvestFile("host/service.log", log));
+        files.add(new HarvestProtocol.HarvestFile("host/nested/big.log", big));
+        Assert.assertEquals(log.length()+big.length(), harvest(files, target));
+        Assert.assertEquals("first line\n", read(new File(target, "host/service.log")));
+        Assert.assertEquals(builder.toString(), read(new File(target, "host/nested/big.log")));
+
+        /* Only appended content is sent */
+        append(big, "line 20000\n");
+        Assert.assertEquals("line 20000\n".length(), harvest(files, target));
+        Assert.assertEquals(builder.append("line 20000\n").toString(), read(new File(target, "host/nested/big.log")));
+        Assert.assertEquals(0, harvest(files, target));
+
+        /* A copy shorter than the fingerprint cannot be compared, and is sent again */
+        append(log, "second line\n");
+        Assert.assertEquals(log.length(), harvest(files, target));
+        Assert.assertEquals("first line\nsecond line\n", read(new File(target, "host/service.log")));
+        Assert.assertEquals(0, harvest(files, target));
+
+        /* A file that has been rolled over is sent from the beginning */
+        Assert.assertTrue(log.delete());
+        append(log, "new\n");
+        Assert.assertEquals(4, harvest(files, target));
+        Assert.assertEquals("new\n", read(new File(target, "host/service.log")));
+    }
+
+    @Test
+    public void testRolledOverToLongerFile() throws Exception {
+        File source = folder.newFolder("source");
+        File target = folder.newFolder("target");
+        File log = new File(source, "service.log");
+        StringBuilder builder = new StringBuilder();
+        for(int i=0; i<1000; i++)
+            builder.append("line ").append(i).append('\n');
+        append(log, builder.toString());
+        List<HarvestProtocol.HarvestFile> files = new ArrayList<HarvestProtocol.HarvestFile>();
+        files.add(new HarvestProtocol.HarvestFile("host/service.log", log));
+        Assert.assertEquals(log.length(), harvest(files, target));
+
+        /* The new file is longer than the harvested copy, its fingerprint differs */
+        Assert.assertTrue(log.delete());
+        StringBuilder rolled = new StringBuilder();
+        for(int i=0; i<2000; i++)
+            rolled.append("rolled ").append(i).append('\n');
+        append(log, rolled.toString());
+        Assert.assertEquals(log.length(), harvest(files, target));
+        Assert.assertEquals(rolled.toString(), read(new File(target, "host/service.log")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTargetOutsideOfParent() throws IOException {
+        HarvestProtocol.getTarget(folder.newFolder("target"), "../escaped.log");
+    }
+
+    private long harvest(List<HarvestProtocol.HarvestFile> files, final File target) throws Exception {
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<File>> received = executor.submit(new Callable<List<File>>() {
+                public List<File> call() throws Exception {
+                    Socket socket = server.accept();
+                    try {
+                        return HarvestProtocol.receive(socket, target);
+                    } finally {
+                        socket.close();
+                    }
+                }
+            });
+            Socket socket = new Socket(server.getInetAddress(), server.getLocalPort());
+            long sent;
+            try {
+                sent = HarvestProtocol.send(socket, files);
+            } finally {
+                socket.close();
+            }
+            Assert.assertEquals(files.size(), received.get(10, TimeUnit.SECONDS).size());
+            return sent;
+        } finally {
+            executor.shutdownNow();
+            server.close();
+        }
+    }
+
+    private void append(File file, String text) throws IOException {
+        FileWriter writer = new FileWriter(file, true);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private String read(File file) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        Reader reader = new FileReader(file);
+        try {
+            char[] buffer = new char[4096];
+            int read;
+            while((read = reader.read(buffer))!=-1)
+                builder.append(buffer, 0, read);
+        } finally {
+            reader.close();
+        }
+        return builder.toString();
+    }
+}
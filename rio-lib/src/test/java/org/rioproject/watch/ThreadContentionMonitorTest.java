@@ -0,0 +1,121 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.watch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Test {@code ThreadContentionMonitor} and {@code ThreadDeadlockMonitor}
+ */
+public class ThreadContentionMonitorTest {
+
+    @Test
+    public void testContendedLockIsReported() throws Exception {
+        ThreadContentionMonitor monitor = new ThreadContentionMonitor();
+        monitor.setOverheadBudget(1);
+        Calculable baseline = monitor.getThreadContentionCalculable();
+        Assert.assertEquals(0, baseline.getValue(), 0);
+
+        final ReentrantLock lock = new ReentrantLock();
+        lock.lock();
+        Thread[] waiters = new Thread[2];
+        try {
+            for(int i=0; i<waiters.length; i++) {
+                waiters[i] = new Thread("waiter-"+i) {
+                    public void run() {
+                        lock.lock();
+                        lock.unlock();
+                    }
+                };
+                waiters[i].start();
+            }
+            Thread.sleep(500);
+            Calculable contention = monitor.getThreadContentionCalculable();
+            Assert.assertEquals(ThreadContentionMonitor.ID, contention.getId());
+            Assert.assertTrue("Expected contention, got "+contention.getValue(), contention.getValue()>0);
+            Assert.assertNotNull(contention.getDetail());
+            Assert.assertTrue(contention.getDetail(), contention.getDetail().contains(ReentrantLock.class.getName()));
+            Assert.assertTrue(contention.getDetail(), contention.getDetail().contains("waiting threads: 2"));
+        } finally {
+            lock.unlock();
+        }
+        for(Thread waiter : waiters)
+            waiter.join();
+    }
+
+    @Test
+    public void testSynchronizerDeadlockIsDetected() throws Exception {
+        final ReentrantLock lock1 = new ReentrantLock();
+        final ReentrantLock lock2 = new ReentrantLock();
+        final CountDownLatch locked = new CountDownLatch(2);
+        Thread t1 = new DeadlockThread(lock1, lock2, locked);
+        Thread t2 = new DeadlockThread(lock2, lock1, locked);
+        t1.start();
+        t2.start();
+        try {
+            Assert.assertTrue(locked.await(5, TimeUnit.SECONDS));
+            ThreadDeadlockMonitor monitor = new ThreadDeadlockMonitor();
+            monitor.setStackDepth(4);
+            Calculable deadlocks = null;
+            for(int i=0; i<50; i++) {
+                deadlocks = monitor.getThreadDeadlockCalculable();
+                if(deadlocks.getValue()==2)
+                    break;
+                Thread.sleep(100);
+            }
+            Assert.assertEquals(2, deadlocks.getValue(), 0);
+            Assert.assertTrue(deadlocks.getDetail(), deadlocks.getDetail().contains(ReentrantLock.class.getName()));
+        } finally {
+            t1.interrupt();
+            t2.interrupt();
+            t1.join();
+            t2.join();
+        }
+        Assert.assertEquals(0, new ThreadDeadlockMonitor().getThreadDeadlockCalculable().getValue(), 0);
+    }
+
+    private static class DeadlockThread extends Thread {
+        final ReentrantLock first;
+        final ReentrantLock second;
+        final CountDownLatch locked;
+
+        DeadlockThread(ReentrantLock first, ReentrantLock second, CountDownLatch locked) {
+            this.first = first;
+            this.second = second;
+            this.locked = locked;
+            setDaemon(true);
+        }
+
+        public void run() {
+            first.lock();
+            try {
+                locked.countDown();
+                locked.await();
+                second.lockInterruptibly();
+                second.unlock();
+            } catch (InterruptedException e) {
+                /* Deadlock broken */
+            } finally {
+                first.unlock();
+            }
+        }
+    }
+}
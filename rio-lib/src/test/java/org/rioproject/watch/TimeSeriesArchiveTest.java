@@ -0,0 +1,159 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.watch;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Test the TimeSeriesArchive
+ */
+public class TimeSeriesArchiveTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRangeQueryAcrossSegments() throws IOException {
+        TimeSeriesArchive archive = new TimeSeriesArchive("foo", folder.newFolder("foo"), 10, 0);
+        for(int i=0; i<100; i++)
+            archive.append(i*1000, i);
+        Assert.assertEquals(10, archive.getSegmentCount());
+        Assert.assertEquals(100, archive.getSize());
+        Calculable[] calcs = archive.getCalculable(15000, 34000);
+        Assert.assertEquals(20, calcs.length);
+        Assert.assertEquals(15000, calcs[0].getWhen());
+        Assert.assertEquals(34, calcs[calcs.length-1].getValue(), 0);
+        Assert.assertEquals("foo", calcs[0].getId());
+        Assert.assertEquals(0, archive.getCalculable(200000, 300000).length);
+        archive.close();
+    }
+
+    @Test
+    public void testRangeQueryOfLargeSealedSegment() throws IOException {
+        TimeSeriesArchive archive = new TimeSeriesArchive("foo", folder.newFolder("foo"), 10000, 0);
+        for(int i=0; i<10001; i++)
+            archive.append(i*1000L, i);
+        Assert.assertEquals(2, archive.getSegmentCount());
+        /* Spans several reads of the sealed segment */
+        Calculable[] calcs = archive.getCalculable(1000000, 9000000);
+        Assert.assertEquals(8001, calcs.length);
+        for(int i=0; i<calcs.length; i++)
+            Assert.assertEquals(1000+i, calcs[i].getValue(), 0);
+        Assert.assertEquals(10001, archive.getCalculable(0, 10000000).length);
+        archive.close();
+    }
+
+    @Test
+    public void testRollup() throws IOException {
+        TimeSeriesArchive archive = new TimeSeriesArchive("foo", folder.newFolder("foo"), 7, 0);
+        for(int i=0; i<60; i++)
+            archive.append(i*1000, i%10);
+        RollupCalculable[] rollup = archive.getRollup(0, 59000, 10000);
+        Assert.assertEquals(6, rollup.length);
+        for(int i=0; i<rollup.length; i++) {
+            Assert.assertEquals(i*10000, rollup[i].getWhen());
+            Assert.assertEquals(0, rollup[i].getMin(), 0);
+            Assert.assertEquals(9, rollup[i].getMax(), 0);
+            Assert.assertEquals(4.5, rollup[i].getAverage(), 0.0001);
+            Assert.assertEquals(10, rollup[i].getCount());
+        }
+        archive.close();
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        File dir = folder.newFolder("foo");
+        TimeSeriesArchive archive = new TimeSeriesArchive("foo", dir, 16, 0);
+        for(int i=0; i<40; i++)
+            archive.append(i, i);
+        archive.close();
+
+        archive = new TimeSeriesArchive("foo", dir, 16, 0);
+        Assert.assertEquals(40, archive.getSize());
+        archive.append(40, 40);
+        Calculable[] calcs = archive.getCalculable(0, 40);
+        Assert.assertEquals(41, calcs.length);
+        for(int i=0; i<calcs.length; i++)
+            Assert.assertEquals(i, calcs[i].getValue(), 0);
+        archive.close();
+    }
+
+    @Test
+    public void testOutOfOrderRecords() throws IOException {
+        TimeSeriesArchive archive = new TimeSeriesArchive("foo", folder.newFolder("foo"), 100, 0);
+        archive.append(5000, 1);
+        archive.append(6000, 2);
+        archive.append(5500, 3);
+        archive.append(7000, 4);
+        Assert.assertEquals(1, archive.getSegmentCount());
+        Calculable[] calcs = archive.getCalculable(0, 10000);
+        Assert.assertEquals(4, calcs.length);
+        long[] expected = {5000, 5500, 6000, 7000};
+        for(int i=0; i<calcs.length; i++)
+            Assert.assertEquals(expected[i], calcs[i].getWhen());
+        Assert.assertEquals(3, calcs[1].getValue(), 0);
+        /* Older than the segment being written */
+        archive.append(1000, 5);
+        Assert.assertEquals(1, archive.getDroppedCount());
+        Assert.assertEquals(5000, archive.getFirstTime());
+        RollupCalculable[] rollup = archive.getRollup(0, 10000, 10000);
+        Assert.assertEquals(1, rollup.length);
+        Assert.assertEquals(4, rollup[0].getCount());
+        Assert.assertEquals(2.5, rollup[0].getAverage(), 0.0001);
+        archive.close();
+    }
+
+    @Test
+    public void testLateRecordAfterSegmentIsFull() throws IOException {
+        TimeSeriesArchive archive = new TimeSeriesArchive("foo", folder.newFolder("foo"), 2, 0);
+        archive.append(1000, 1);
+        archive.append(3000, 2);
+        archive.append(2000, 3);
+        Assert.assertEquals(1, archive.getDroppedCount());
+        archive.append(4000, 4);
+        Assert.assertEquals(2, archive.getSegmentCount());
+        Assert.assertEquals(3, archive.getSize());
+        archive.close();
+    }
+
+    @Test
+    public void testRetention() throws IOException {
+        File dir = folder.newFolder("foo");
+        TimeSeriesArchive archive = new TimeSeriesArchive("foo", dir, 10, 25000);
+        for(int i=0; i<100; i++)
+            archive.append(i*1000, i);
+        /* When the last segment was started (at 90000), segments whose newest record
+         * was older than 65000 were removed */
+        Assert.assertEquals(60000, archive.getFirstTime());
+        Assert.assertEquals(4, archive.getSegmentCount());
+        Assert.assertEquals(archive.getSegmentCount(), dir.listFiles().length);
+        archive.clear();
+        Assert.assertEquals(0, archive.getSize());
+        Assert.assertEquals(0, dir.listFiles().length);
+        archive.close();
+    }
+
+    @Test
+    public void testArchiveDirectory() {
+        File root = new File("root");
+        Assert.assertEquals(new File(root, "CPU__Core_"), TimeSeriesArchive.getArchiveDirectory(root, "CPU (Core)"));
+    }
+}
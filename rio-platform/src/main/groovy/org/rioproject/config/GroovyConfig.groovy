@@ -34,8 +34,7 @@ class GroovyConfig implements Configuration {
     @SuppressWarnings("unused")
     GroovyConfig(String gFile) {
         File f = new File(gFile)
-        GroovyClassLoader gcl = new GroovyClassLoader(getClass().getClassLoader())
-        parseAndLoad(new GroovyCodeSource(f), gcl)
+        parseAndLoad(new GroovyCodeSource(f), getClass().getClassLoader())
     }
 
     /**
@@ -73,7 +72,10 @@ class GroovyConfig implements Configuration {
     def traverseInputs(String[] args, ClassLoader loader) {
         if(loader==null)
             loader = Thread.currentThread().getContextClassLoader()
-        GroovyClassLoader gcl = new GroovyClassLoader(loader)
+        /* Each configuration is loaded by a class loader whose parent is the class
+         * loader of the preceding configuration, allowing it to reference classes
+         * declared in previously loaded configurations */
+        ClassLoader parent = loader
         for(String arg : args) {
             String groovySource = arg
             long t0 = System.currentTimeMillis()
@@ -97,7 +99,7 @@ class GroovyConfig implements Configuration {
                         }
                     }
                 }
-                parseAndLoad(groovyCodeSource, gcl)
+                parent = parseAndLoad(groovyCodeSource, parent)
             } catch (FileNotFoundException e) {
                 throw new ConfigurationNotFoundException("The configuration file [${groovySource}] does not exist", e)
             } catch(Throwable t) {
@@ -106,7 +108,6 @@ class GroovyConfig implements Configuration {
                 log.debug "Time to parse ${groovySource} : ${(System.currentTimeMillis()-t0)} milliseconds"
             }
         }
-        gcl = null
     }
 
     def clear() {
@@ -120,26 +121,53 @@ class GroovyConfig implements Configuration {
         }
     }
 
-    def parseAndLoad(GroovyCodeSource groovyCodeSource, GroovyClassLoader gcl) {
+    /**
+     * Parse and load a Groovy configuration. Classes compiled from Groovy source are
+     * obtained from the {@link GroovyScriptCache}, if the cache cannot provide the
+     * classes the source is compiled directly.
+     *
+     * @param groovyCodeSource The configuration to load
+     * @param parent The parent class loader
+     *
+     * @return The class loader that loaded the configuration's classes
+     */
+    ClassLoader parseAndLoad(GroovyCodeSource groovyCodeSource, ClassLoader parent) {
         if(groovyCodeSource.getName().endsWith(".class")) {
-            GroovyClassLoader newCl
+            CompilerConfiguration config = new CompilerConfiguration()
+            config.classpath = groovyCodeSource.file.parentFile.path
+            GroovyClassLoader newCl = new GroovyClassLoader(parent, config, true)
+            String name = groovyCodeSource.file.name.substring(0, groovyCodeSource.file.name.indexOf("."))
+            load(newCl.loadClass(name))
+            return newCl
+        }
+        GroovyScriptCache cache = GroovyScriptCache.instance
+        GroovyScriptCache.LoadedScript script = null
+        try {
+            script = cache.load(groovyCodeSource, parent)
+        } catch(IOException e) {
+            log.warn "Unable to use cached classes for ${groovyCodeSource.name}, compiling. ${e.message}"
+        }
+        if(script!=null) {
             try {
-                CompilerConfiguration config = new CompilerConfiguration()
-                config.classpath = groovyCodeSource.file.parentFile.path
-                newCl = new GroovyClassLoader(gcl, config, true)
-                String name = groovyCodeSource.file.name.substring(0, groovyCodeSource.file.name.indexOf("."))
-                load(newCl.loadClass(name))
-            } catch(Throwable t) {
-                throw t
-            } finally {
-                newCl = null
-            }
-        } else {
-            gcl.parseClass(groovyCodeSource)
-            for(Class groovyClass : gcl.loadedClasses) {
-                load(groovyClass)
+                for(Class groovyClass : script.classes) {
+                    load(groovyClass)
+                }
+                return script.classLoader
+            } catch(LinkageError e) {
+                /* The cached classes are incompatible with the class path, discard and compile */
+                log.warn "Cached classes for ${groovyCodeSource.name} are stale, compiling. ${e}"
+                cache.evict(script.key)
+                for(Class groovyClass : script.classes) {
+                    visited.remove(groovyClass.name)
+                }
             }
         }
+        GroovyClassLoader gcl = new GroovyClassLoader(parent)
+        gcl.parseClass(groovyCodeSource)
+        for(Class groovyClass : gcl.loadedClasses) {
+            load(groovyClass)
+        }
+        return gcl
     }
 
     def load(Class groovyClass)  {
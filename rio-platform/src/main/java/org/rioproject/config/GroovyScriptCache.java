@@ -0,0 +1,592 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.config;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
+import groovy.lang.GroovySystem;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.*;
+
+/**
+ * Caches the classes compiled from Groovy scripts, avoiding the cost of compiling
+ * Groovy configuration files and deployment scripts each time they are loaded.
+ *
+ * <p>Compiled classes are cached in memory and on disk, keyed by a digest of the
+ * script's name and content, the Groovy version, and the class path of the parent
+ * class loader (the URLs of all <tt>URLClassLoader</tt>s in the parent chain, and
+ * the size and modification time of each file URL, checked on every load). A change
+ * to any of these results in the script being compiled again.
+ *
+ * <p>Compiled classes are only read from or written to a directory that is owned by
+ * the current user; the directory is created readable and writable by the owner only.
+ * Each entry written to disk is signed with an HMAC using a random key kept in the
+ * directory, entries that fail verification are discarded and the script compiled
+ * again.
+ *
+ * <p>The following system properties control the cache:
+ * <ul>
+ * <li><tt>org.rioproject.groovy.cache</tt>: Set to <tt>false</tt> to disable the cache</li>
+ * <li><tt>org.rioproject.groovy.cache.dir</tt>: The directory to store compiled classes
+ * in, defaults to <tt>${user.home}/.rio/groovy-cache</tt>. Set to <tt>none</tt> to only
+ * cache in memory</li>
+ * <li><tt>org.rioproject.groovy.cache.size</tt>: The maximum number of compiled
+ * scripts held in memory, defaults to 256</li>
+ * </ul>
+ */
+public class GroovyScriptCache {
+    /** System property to enable or disable the cache */
+    public static final String CACHE_ENABLED = Constants.BASE_COMPONENT+".groovy.cache";
+    /** System property for the directory compiled classes are stored in */
+    public static final String CACHE_DIR = Constants.BASE_COMPONENT+".groovy.cache.dir";
+    /** System property for the number of compiled scripts held in memory */
+    public static final String CACHE_SIZE = Constants.BASE_COMPONENT+".groovy.cache.size";
+    private static final int MAGIC = 0x52474353;
+    private static final int FORMAT_VERSION = 2;
+    private static final String SUFFIX = ".gsc";
+    private static final String KEY_FILE = "cache.key";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+    private static final int KEY_LENGTH = 32;
+    private static GroovyScriptCache instance;
+    private final File directory;
+    private final boolean enabled;
+    private final Map<String, CompiledScript> memory;
+    /* The HMAC key for disk entries, null if the directory cannot be used */
+    private byte[] secret;
+    private boolean directoryChecked;
+    private static final Logger logger = LoggerFactory.getLogger(GroovyScriptCache.class);
+
+    /**
+     * Create a GroovyScriptCache
+     *
+     * @param directory The directory to store compiled classes in, if null classes are only cached in memory
+     * @param maxEntries The maximum number of compiled scripts held in memory
+     * @param enabled If false, scripts are always compiled
+     */
+    public GroovyScriptCache(File directory, final int maxEntries, boolean enabled) {
+        this.directory = directory;
+        this.enabled = enabled;
+        memory = new LinkedHashMap<String, CompiledScript>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the GroovyScriptCache, configured using system properties
+     *
+     * @return The GroovyScriptCache for the JVM
+     */
+    public static synchronized GroovyScriptCache getInstance() {
+        if(instance==null) {
+            boolean enabled = !"false".equalsIgnoreCase(System.getProperty(CACHE_ENABLED, "true"));
+            String dir = System.getProperty(CACHE_DIR,
+                                            System.getProperty("user.home")+File.separator+".rio"+
+                                            File.separator+"groovy-cache");
+            int size = 256;
+            try {
+                size = Integer.parseInt(System.getProperty(CACHE_SIZE, "256"));
+            } catch(NumberFormatException e) {
+                logger.warn("Invalid {} value, using {}", CACHE_SIZE, size);
+            }
+            File directory = "none".equalsIgnoreCase(dir) || dir.length()==0 ? null : new File(dir);
+            instance = new GroovyScriptCache(directory, size, enabled);
+        }
+        return instance;
+    }
+
+    /**
+     * Load the classes for a Groovy script, using cached classes if available,
+     * otherwise compiling the script and caching the result
+     *
+     * @param source The Groovy source
+     * @param parent The parent class loader, used to compile the script and load its classes
+     *
+     * @return The loaded script
+     *
+     * @throws IOException if the script cannot be read
+     * @throws org.codehaus.groovy.control.CompilationFailedException if the script cannot be compiled
+     */
+    public LoadedScript load(GroovyCodeSource source, ClassLoader parent) throws IOException {
+        if(source==null)
+            throw new IllegalArgumentException("source is null");
+        if(parent==null)
+            parent = Thread.currentThread().getContextClassLoader();
+        String text = source.getScriptText();
+        if(text==null)
+            throw new IOException("Unable to read script "+source.getName());
+        String key = computeKey(source.getName(), text, parent);
+        CompiledScript compiled = enabled ? lookup(key) : null;
+        if(compiled==null) {
+            long t0 = System.currentTimeMillis();
+            compiled = compile(source, parent);
+            logger.debug("Compiled {} in {} milliseconds", source.getName(), System.currentTimeMillis()-t0);
+            if(enabled)
+                store(key, compiled);
+        } else {
+            logger.debug("Using cached classes for {}", source.getName());
+        }
+        ScriptClassLoader loader = new ScriptClassLoader(parent, key, compiled, source.getCodeSource());
+        List<Class> classes = new ArrayList<Class>();
+        try {
+            for(String name : compiled.names)
+                classes.add(loader.loadClass(name));
+        } catch(ClassNotFoundException e) {
+            evict(key);
+            throw new IOException("Unable to load compiled classes for "+source.getName(), e);
+        } catch(LinkageError e) {
+            evict(key);
+            throw new IOException("Unable to load compiled classes for "+source.getName(), e);
+        }
+        return new LoadedScript(key, loader, classes);
+    }
+
+    /**
+     * Remove a compiled script from the cache
+     *
+     * @param key The key of the compiled script
+     */
+    public void evict(String key) {
+        synchronized(memory) {
+            memory.remove(key);
+        }
+        if(getSecret()!=null) {
+            File file = new File(directory, key+SUFFIX);
+            if(file.exists() && !file.delete())
+                logger.warn("Unable to delete cached script {}", file.getPath());
+        }
+    }
+
+    /**
+     * Remove all compiled scripts from memory
+     */
+    public void clear() {
+        synchronized(memory) {
+            memory.clear();
+        }
+    }
+
+    private CompiledScript lookup(String key) {
+        CompiledScript compiled;
+        synchronized(memory) {
+            compiled = memory.get(key);
+        }
+        byte[] secret = getSecret();
+        if(compiled==null && secret!=null) {
+            compiled = read(key, secret);
+            if(compiled!=null) {
+                synchronized(memory) {
+                    memory.put(key, compiled);
+                }
+            }
+        }
+        return compiled;
+    }
+
+    private void store(String key, CompiledScript compiled) {
+        synchronized(memory) {
+            memory.put(key, compiled);
+        }
+        byte[] secret = getSecret();
+        if(secret!=null)
+            write(key, compiled, secret);
+    }
+
+    /*
+     * Get the key used to sign disk entries, checking the cache directory the first time
+     */
+    private synchronized byte[] getSecret() {
+        if(!directoryChecked && directory!=null) {
+            directoryChecked = true;
+            try {
+                secret = openDirectory();
+            } catch(IOException e) {
+                logger.warn("Unable to use Groovy script cache directory {}, caching in memory only: {}",
+                            directory.getPath(), e.getMessage());
+            }
+        }
+        return secret;
+    }
+
+    private byte[] openDirectory() throws IOException {
+        if(!directory.exists()) {
+            if(!directory.mkdirs())
+                throw new IOException("unable to create directory");
+            setOwnerOnly(directory);
+            directory.setExecutable(false, false);
+            directory.setExecutable(true, true);
+        }
+        if(!directory.isDirectory())
+            throw new IOException("not a directory");
+        String owner = getOwner(directory);
+        String user = System.getProperty("user.name");
+        if(owner!=null && !owner.equals(user) && !owner.endsWith("\\"+user))
+            throw new IOException("directory is owned by "+owner+", not "+user);
+        File keyFile = new File(directory, KEY_FILE);
+        byte[] key = readKey(keyFile);
+        if(key==null) {
+            key = new byte[KEY_LENGTH];
+            new SecureRandom().nextBytes(key);
+            File temp = File.createTempFile("cache", ".tmp", directory);
+            setOwnerOnly(temp);
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(key);
+            } finally {
+                close(out);
+            }
+            if(!temp.renameTo(keyFile) && !temp.delete())
+                temp.deleteOnExit();
+            /* Another process may have created the key first, use the key that was published */
+            key = readKey(keyFile);
+            if(key==null)
+                throw new IOException("unable to create "+keyFile.getName());
+        }
+        return key;
+    }
+
+    private static byte[] readKey(File keyFile) throws IOException {
+        if(!keyFile.exists())
+            return null;
+        if(keyFile.length()!=KEY_LENGTH) {
+            logger.warn("Replacing invalid Groovy script cache key {}", keyFile.getPath());
+            return null;
+        }
+        byte[] key = new byte[KEY_LENGTH];
+        DataInputStream in = new DataInputStream(new FileInputStream(keyFile));
+        try {
+            in.readFully(key);
+        } finally {
+            close(in);
+        }
+        return key;
+    }
+
+    private static void setOwnerOnly(File file) {
+        file.setReadable(false, false);
+        file.setWritable(false, false);
+        file.setReadable(true, true);
+        file.setWritable(true, true);
+    }
+
+    /*
+     * Use reflection so this can be compiled using 1.6, returns null if the owner
+     * cannot be determined
+     */
+    private static String getOwner(File file) {
+        try {
+            Class<?> pathClass = Class.forName("java.nio.file.Path");
+            Class<?> linkOptionClass = Class.forName("java.nio.file.LinkOption");
+            Object path = File.class.getMethod("toPath").invoke(file);
+            Object options = Array.newInstance(linkOptionClass, 0);
+            Method getOwner = Class.forName("java.nio.file.Files").getMethod("getOwner",
+                                                                             pathClass,
+                                                                             options.getClass());
+            Object owner = getOwner.invoke(null, path, options);
+            return (String)owner.getClass().getMethod("getName").invoke(owner);
+        } catch(Exception e) {
+            logger.trace("Unable to determine the owner of {}", file.getPath(), e);
+            return null;
+        }
+    }
+
+    private static byte[] sign(byte[] secret, byte[] data, int length) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, MAC_ALGORITHM));
+            mac.update(data, 0, length);
+            return mac.doFinal();
+        } catch(GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM+" not available", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompiledScript compile(GroovyCodeSource source, ClassLoader parent) {
+        CompilerConfiguration config = new CompilerConfiguration();
+        GroovyClassLoader gcl = new GroovyClassLoader(parent, config);
+        CompilationUnit unit = new CompilationUnit(config, source.getCodeSource(), gcl);
+        unit.addSource(source.getName(), source.getScriptText());
+        unit.compile(Phases.CLASS_GENERATION);
+        CompiledScript compiled = new CompiledScript();
+        for(Object o : unit.getClasses()) {
+            GroovyClass groovyClass = (GroovyClass)o;
+            compiled.names.add(groovyClass.getName());
+            compiled.classes.put(groovyClass.getName(), groovyClass.getBytes());
+        }
+        return compiled;
+    }
+
+    private CompiledScript read(String key, byte[] secret) {
+        File file = new File(directory, key+SUFFIX);
+        if(!file.exists())
+            return null;
+        try {
+            byte[] data = new byte[(int)file.length()];
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                in.readFully(data);
+            } finally {
+                close(in);
+            }
+            int length = data.length-MAC_LENGTH;
+            if(length < 0)
+                throw new IOException("truncated");
+            byte[] signature = new byte[MAC_LENGTH];
+            System.arraycopy(data, length, signature, 0, signature.length);
+            if(!MessageDigest.isEqual(signature, sign(secret, data, length)))
+                throw new IOException("signature does not match");
+            in = new DataInputStream(new ByteArrayInputStream(data, 0, length));
+            if(in.readInt()!=MAGIC || in.readInt()!=FORMAT_VERSION || !key.equals(in.readUTF()))
+                throw new IOException("unrecognized format");
+            CompiledScript compiled = new CompiledScript();
+            int count = in.readInt();
+            for(int i=0; i<count; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                compiled.names.add(name);
+                compiled.classes.put(name, bytes);
+            }
+            return compiled;
+        } catch(IOException e) {
+            logger.warn("Discarding unreadable cached script {}: {}", file.getPath(), e.getMessage());
+            if(!file.delete())
+                logger.warn("Unable to delete cached script {}", file.getPath());
+            return null;
+        }
+    }
+
+    private void write(String key, CompiledScript compiled, byte[] secret) {
+        File temp = null;
+        OutputStream out = null;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(buffer);
+            data.writeInt(MAGIC);
+            data.writeInt(FORMAT_VERSION);
+            data.writeUTF(key);
+            data.writeInt(compiled.names.size());
+            for(String name : compiled.names) {
+                byte[] bytes = compiled.classes.get(name);
+                data.writeUTF(name);
+                data.writeInt(bytes.length);
+                data.write(bytes);
+            }
+            data.flush();
+            byte[] content = buffer.toByteArray();
+            temp = File.createTempFile(key, ".tmp", directory);
+            setOwnerOnly(temp);
+            out = new BufferedOutputStream(new FileOutputStream(temp));
+            out.write(content);
+            out.write(sign(secret, content, content.length));
+            out.close();
+            out = null;
+            /* Publish the entry with a rename, readers never see a partially written file */
+            File file = new File(directory, key+SUFFIX);
+            if(!temp.renameTo(file)) {
+                if(!file.exists())
+                    logger.warn("Unable to store cached script {}", file.getPath());
+                if(!temp.delete())
+                    temp.deleteOnExit();
+            }
+        } catch(IOException e) {
+            logger.warn("Unable to store cached script in {}: {}", directory.getPath(), e.getMessage());
+            close(out);
+            if(temp!=null && !temp.delete())
+                temp.deleteOnExit();
+        }
+    }
+
+    private String computeKey(String name, String text, ClassLoader parent) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+        update(digest, Integer.toString(FORMAT_VERSION));
+        update(digest, GroovySystem.getVersion());
+        update(digest, name);
+        update(digest, text);
+        for(ClassLoader cl = parent; cl!=null; cl = cl.getParent()) {
+            if(cl instanceof ScriptClassLoader) {
+                /* Classes from a previously loaded script, identified by its key */
+                update(digest, ((ScriptClassLoader)cl).key);
+            } else if(cl instanceof URLClassLoader) {
+                for(URL url : ((URLClassLoader)cl).getURLs())
+                    update(digest, fingerprint(url));
+            } else {
+                update(digest, cl.getClass().getName());
+            }
+        }
+        StringBuilder builder = new StringBuilder();
+        for(byte b : digest.digest())
+            builder.append(String.format("%02x", b));
+        return builder.toString();
+    }
+
+    private String fingerprint(URL url) {
+        if(!"file".equals(url.getProtocol()))
+            return url.toExternalForm();
+        File file;
+        try {
+            file = new File(url.toURI());
+        } catch(Exception e) {
+            file = new File(url.getPath());
+        }
+        if(file.isDirectory())
+            return url.toExternalForm();
+        /* Checked on every load, a jar replaced while the JVM is running produces a new key */
+        return url.toExternalForm()+":"+file.length()+":"+file.lastModified();
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        try {
+            digest.update(s.getBytes("UTF-8"));
+            digest.update((byte)0);
+        } catch(UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if(closeable!=null) {
+            try {
+                closeable.close();
+            } catch(IOException e) {
+                logger.trace("Closing", e);
+            }
+        }
+    }
+
+    /**
+     * The classes loaded for a script
+     */
+    public static class LoadedScript {
+        private final String key;
+        private final GroovyClassLoader classLoader;
+        private final List<Class> classes;
+
+        LoadedScript(String key, GroovyClassLoader classLoader, List<Class> classes) {
+            this.key = key;
+            this.classLoader = classLoader;
+            this.classes = Collections.unmodifiableList(classes);
+        }
+
+        /**
+         * Get the cache key for the script
+         *
+         * @return The cache key, used to {@link GroovyScriptCache#evict(String)} the script
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Get the class loader the script's classes were loaded by. This class loader can be used as the
+         * parent when loading scripts that reference the classes of this script.
+         *
+         * @return The class loader the script's classes were loaded by
+         */
+        public GroovyClassLoader getClassLoader() {
+            return classLoader;
+        }
+
+        /**
+         * Get the script's classes
+         *
+         * @return The classes compiled from the script, in the order produced by the compiler
+         */
+        public List<Class> getClasses() {
+            return classes;
+        }
+
+        /**
+         * Get the first class that is assignable to the provided type
+         *
+         * @param type The type to match
+         *
+         * @return The first matching class, or null if there is no match
+         */
+        public Class getClass(Class<?> type) {
+            for(Class c : classes) {
+                if(type.isAssignableFrom(c))
+                    return c;
+            }
+            return null;
+        }
+    }
+
+    /*
+     * The bytecode of a compiled script
+     */
+    static class CompiledScript {
+        final List<String> names = new ArrayList<String>();
+        final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+    }
+
+    /*
+     * Defines the classes of a compiled script on demand
+     */
+    static class ScriptClassLoader extends GroovyClassLoader {
+        private final String key;
+        private final CompiledScript compiled;
+        private final CodeSource codeSource;
+
+        ScriptClassLoader(ClassLoader parent, String key, CompiledScript compiled, CodeSource codeSource) {
+            super(parent);
+            this.key = key;
+            this.compiled = compiled;
+            this.codeSource = codeSource;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = compiled.classes.get(name);
+            if(bytes!=null) {
+                synchronized(this) {
+                    Class<?> c = findLoadedClass(name);
+                    if(c==null)
+                        c = defineClass(name, bytes, 0, bytes.length, codeSource);
+                    return c;
+                }
+            }
+            return super.findClass(name);
+        }
+    }
+}
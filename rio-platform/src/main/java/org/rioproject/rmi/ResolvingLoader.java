@@ -15,6 +15,7 @@
  */
 package org.rioproject.rmi;
 
+import org.rioproject.resolver.RemoteRepository;
 import org.rioproject.resolver.Resolver;
 import org.rioproject.resolver.ResolverException;
 import org.rioproject.resolver.ResolverHelper;
@@ -25,11 +26,12 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.rmi.server.RMIClassLoader;
 import java.rmi.server.RMIClassLoaderSpi;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * An <code>RMIClassLoader</code> provider that supports the resolving of artifacts based on the
@@ -42,6 +44,15 @@ import java.util.concurrent.ConcurrentHashMap;
  * transitive dependencies), and installed locally. The installed artifact location(s) are then passed to the
  * default <code>RMIClassLoader</code> provider instance, where a class loader is created.</p>
  *
+ * <p>A codebase is resolved at most once at a time: threads that need a codebase that is being resolved wait
+ * for that resolution to complete rather than resolving it again. Codebases can also be resolved ahead of
+ * time using {@link #prewarm(String...)}, or recorded with {@link #addResolvedCodebase(String, String[])} when
+ * the artifact has already been resolved by the caller.</p>
+ *
+ * <p>The <code>artifact:</code> annotation is held once for each class loader created for a resolved codebase,
+ * weakly keyed by the class loader, and is discarded when the class loader is
+ * {@link #release(ClassLoader) released} or collected.</p>
+ *
  * @author Dennis Reedy
  */
 @SuppressWarnings("PMD.AvoidThrowingRawExceptionTypes")
@@ -50,13 +61,19 @@ public class ResolvingLoader extends RMIClassLoaderSpi {
      * A table of artifacts to derived codebases. This improves performance by resolving the classpath once per
      * artifact.
      */
-    private final Map<String, String> artifactToCodebase = new ConcurrentHashMap<String, String>();
+    private static final Map<String, String> artifactToCodebase = new ConcurrentHashMap<String, String>();
+    /**
+     * Codebases currently being resolved, used to ensure concurrent requests for the same codebase result in a
+     * single resolution.
+     */
+    private static final ConcurrentMap<String, FutureTask<String>> inFlight =
+        new ConcurrentHashMap<String, FutureTask<String>>();
     /**
-     * A table of classes to artifact: codebase. This will ensure that if the annotation is requested for a class that
-     * has it's classpath resolved from an artifact, that the artifact URL is passed back instead of the resolved
-     * (local) classpath.
+     * A table of class loaders created for a resolved artifact: codebase to that codebase. This will ensure that if
+     * the annotation is requested for a class that has it's classpath resolved from an artifact, that the artifact
+     * URL is passed back instead of the resolved (local) classpath.
      */
-    private final Map<String, String> classAnnotationMap = new ConcurrentHashMap<String, String>();
+    private static final Map<ClassLoader, String> classAnnotationMap = new WeakHashMap<ClassLoader, String>();
     private static final Resolver resolver;
     private static final Logger logger = LoggerFactory.getLogger(ResolvingLoader.class.getName());
     static {
@@ -73,12 +90,11 @@ public class ResolvingLoader extends RMIClassLoaderSpi {
                               final String name,
                               final ClassLoader defaultLoader) throws MalformedURLException, ClassNotFoundException {
         String resolvedCodebase = resolveCodebase(codebase);
-        if(codebase!=null && codebase.startsWith("artifact:") && classAnnotationMap.get(name)==null) {
-            classAnnotationMap.put(name, codebase);
-            logger.trace("class: {}, codebase: {}, size now {}", name, codebase, classAnnotationMap.size());
-        }
         logger.trace("Load class {} using codebase {}, resolved to {}", name, codebase, resolvedCodebase);
-        return loader.loadClass(resolvedCodebase, name, defaultLoader);
+        Class<?> cl = loader.loadClass(resolvedCodebase, name, defaultLoader);
+        if(codebase!=null && codebase.startsWith("artifact:"))
+            addClassAnnotation(cl.getClassLoader(), codebase, resolvedCodebase);
+        return cl;
     }
 
     @Override
@@ -107,12 +123,79 @@ public class ResolvingLoader extends RMIClassLoaderSpi {
 
     @Override
     public String getClassAnnotation(final Class<?> aClass) {
-        String annotation = classAnnotationMap.get(aClass.getName());
+        String annotation = null;
+        ClassLoader cl = aClass.getClassLoader();
+        if(cl!=null) {
+            synchronized(classAnnotationMap) {
+                annotation = classAnnotationMap.get(cl);
+            }
+        }
         if(annotation == null)
             annotation = loader.getClassAnnotation(aClass);
         return annotation;
     }
 
+    /**
+     * Resolve codebases ahead of their use, so that classes loaded from them later on do not wait for
+     * resolution. Codebases that are not <code>artifact:</code> URLs, or that have already been resolved are
+     * ignored.
+     *
+     * @param codebases The codebases to resolve
+     */
+    public static void prewarm(final String... codebases) {
+        if(codebases==null)
+            return;
+        for(String codebase : codebases) {
+            if(codebase!=null && codebase.startsWith("artifact:") && !artifactToCodebase.containsKey(codebase)) {
+                logger.debug("Pre-warm {}", codebase);
+                resolveCodebase(codebase);
+            }
+        }
+    }
+
+    /**
+     * Record the classpath an <code>artifact:</code> codebase has been resolved to, so that classes loaded from
+     * the codebase later on do not resolve it again. A codebase that has already been resolved is not changed.
+     *
+     * @param codebase The <code>artifact:</code> codebase, see {@link #getArtifactCodebase(String, RemoteRepository[])}
+     * @param classPath The classpath the codebase's artifact has been resolved to
+     *
+     * @throws MalformedURLException if an element of the classpath cannot be converted to a URL
+     */
+    public static void addResolvedCodebase(final String codebase, final String[] classPath) throws MalformedURLException {
+        if(codebase==null || !codebase.startsWith("artifact:"))
+            throw new IllegalArgumentException("codebase must be an artifact: codebase");
+        if(classPath==null)
+            throw new IllegalArgumentException("classPath cannot be null");
+        if(artifactToCodebase.containsKey(codebase))
+            return;
+        logger.debug("Add resolved {}", codebase);
+        artifactToCodebase.put(codebase, toCodebase(classPath));
+    }
+
+    /**
+     * Create an <code>artifact:</code> codebase for an artifact and the repositories used to resolve it.
+     *
+     * @param artifact The artifact, in the form of <tt>groupId:artifactId:version[:type[:classifier]]</tt>
+     * @param repositories The repositories to resolve the artifact from, may be null
+     *
+     * @return The <code>artifact:</code> codebase for the artifact
+     */
+    public static String getArtifactCodebase(final String artifact, final RemoteRepository[] repositories) {
+        if(artifact==null)
+            throw new IllegalArgumentException("artifact cannot be null");
+        StringBuilder builder = new StringBuilder();
+        builder.append("artifact:").append(artifact.replaceAll(":", "/"));
+        if(repositories!=null) {
+            for(RemoteRepository repository : repositories) {
+                builder.append(";").append(repository.getUrl());
+                if(repository.getId()!=null)
+                    builder.append("@").append(repository.getId());
+            }
+        }
+        return builder.toString();
+    }
+
     public static void release(final ClassLoader serviceLoader) {
         try {
             Field loaderTable = sun.rmi.server.LoaderHandler.class.getDeclaredField("loaderTable");
@@ -124,40 +207,109 @@ public class ResolvingLoader extends RMIClassLoaderSpi {
         } catch (IllegalAccessException e) {
             logger.warn("Failure accessing the loaderTable field", e);
         }
+        removeClassAnnotations(serviceLoader);
     }
 
-    private String resolveCodebase(final String codebase) {
-        String adaptedCodebase;
-        if(codebase!=null && codebase.startsWith("artifact:")) {
-            adaptedCodebase = artifactToCodebase.get(codebase);
-            if(adaptedCodebase==null) {
-                try {
-                    logger.debug("Resolve {} ", codebase);
-                    StringBuilder builder = new StringBuilder();
-                    String path =  codebase.substring(codebase.indexOf(":")+1);
-                    ArtifactURLConfiguration artifactURLConfiguration = new ArtifactURLConfiguration(path);
-                    String[] cp = resolver.getClassPathFor(artifactURLConfiguration.getArtifact(),
-                                                           artifactURLConfiguration.getRepositories());
-                    for(String s : cp) {
-                        if(builder.length()>0)
-                            builder.append(" ");
-                        builder.append(new File(s).toURI().toURL().toExternalForm());
-                    }
-                    adaptedCodebase = builder.toString();
-                    artifactToCodebase.put(codebase, adaptedCodebase);
-                } catch (ResolverException e) {
-                    logger.warn("Unable to resolve {}", codebase);
-                } catch (MalformedURLException e) {
-                    logger.warn("The codebase {} is malformed", codebase, e);
-                }
+    private static String resolveCodebase(final String codebase) {
+        if(codebase==null || !codebase.startsWith("artifact:"))
+            return codebase;
+        String adaptedCodebase = artifactToCodebase.get(codebase);
+        if(adaptedCodebase!=null)
+            return adaptedCodebase;
+        FutureTask<String> resolution = new FutureTask<String>(new Callable<String>() {
+            public String call() {
+                return doResolveCodebase(codebase);
+            }
+        });
+        FutureTask<String> pending = inFlight.putIfAbsent(codebase, resolution);
+        if(pending==null) {
+            pending = resolution;
+            try {
+                resolution.run();
+            } finally {
+                inFlight.remove(codebase, resolution);
             }
         } else {
-            adaptedCodebase = codebase;
+            logger.trace("Waiting for in-flight resolution of {}", codebase);
+        }
+        try {
+            adaptedCodebase = pending.get();
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted waiting for the resolution of {}", codebase);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Unable to resolve {}", codebase, e.getCause());
         }
+        return adaptedCodebase;
+    }
 
+    private static String doResolveCodebase(final String codebase) {
+        String adaptedCodebase = null;
+        try {
+            logger.debug("Resolve {} ", codebase);
+            String path =  codebase.substring(codebase.indexOf(":")+1);
+            ArtifactURLConfiguration artifactURLConfiguration = new ArtifactURLConfiguration(path);
+            String[] cp = resolver.getClassPathFor(artifactURLConfiguration.getArtifact(),
+                                                   artifactURLConfiguration.getRepositories());
+            adaptedCodebase = toCodebase(cp);
+            artifactToCodebase.put(codebase, adaptedCodebase);
+        } catch (ResolverException e) {
+            logger.warn("Unable to resolve {}", codebase);
+        } catch (MalformedURLException e) {
+            logger.warn("The codebase {} is malformed", codebase, e);
+        }
         return adaptedCodebase;
     }
 
+    /*
+     * Create the space separated codebase of URLs for a classpath
+     */
+    private static String toCodebase(final String[] classPath) throws MalformedURLException {
+        StringBuilder builder = new StringBuilder();
+        for(String s : classPath) {
+            if(builder.length()>0)
+                builder.append(" ");
+            builder.append(new File(s).toURI().toURL().toExternalForm());
+        }
+        return builder.toString();
+    }
+
+    /*
+     * Record the artifact: codebase for a class loader created for the resolved codebase. Classes found by a parent
+     * class loader (or the default loader) are not annotated with the artifact.
+     */
+    private static void addClassAnnotation(final ClassLoader classLoader,
+                                           final String codebase,
+                                           final String resolvedCodebase) {
+        if(!(classLoader instanceof URLClassLoader) || resolvedCodebase==null)
+            return;
+        synchronized(classAnnotationMap) {
+            if(classAnnotationMap.containsKey(classLoader))
+                return;
+        }
+        URL[] urls = ((URLClassLoader)classLoader).getURLs();
+        if(urls.length==0)
+            return;
+        Set<String> resolved = new HashSet<String>(Arrays.asList(resolvedCodebase.split(" ")));
+        for(URL url : urls) {
+            if(!resolved.contains(url.toExternalForm()))
+                return;
+        }
+        synchronized(classAnnotationMap) {
+            classAnnotationMap.put(classLoader, codebase);
+            logger.trace("class loader: {}, codebase: {}, size now {}", classLoader, codebase, classAnnotationMap.size());
+        }
+    }
+
+    private static void removeClassAnnotations(final ClassLoader serviceLoader) {
+        synchronized(classAnnotationMap) {
+            for(Iterator<ClassLoader> it = classAnnotationMap.keySet().iterator(); it.hasNext();) {
+                if(isDescendantOf(it.next(), serviceLoader))
+                    it.remove();
+            }
+        }
+    }
+
     private synchronized static void findAndRemove(ClassLoader loader, Map loaderTable) {
         for(Object o : loaderTable.entrySet()) {
             Map.Entry entry = (Map.Entry) o;
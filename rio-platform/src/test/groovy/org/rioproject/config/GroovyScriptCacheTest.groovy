@@ -0,0 +1,136 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.config
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+import static org.junit.Assert.*
+
+/**
+ * Test the GroovyScriptCache
+ */
+class GroovyScriptCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder()
+    String script = '''
+class CacheBean {
+    def food = 'yummy'
+    def doubled = [1, 2].collect { it * 2 }
+}
+'''
+
+    @Test
+    void testCompileAndReloadFromDisk() {
+        File dir = folder.newFolder('cache')
+        GroovyScriptCache cache = new GroovyScriptCache(dir, 10, true)
+        GroovyScriptCache.LoadedScript loaded = cache.load(source(script), getClass().classLoader)
+        assertEquals 'CacheBean', loaded.classes.get(0).name
+        assertEquals 1, entries(dir).length
+        assertTrue new File(dir, 'cache.key').exists()
+
+        /* A new cache instance reads the compiled classes from disk */
+        GroovyScriptCache other = new GroovyScriptCache(dir, 10, true)
+        GroovyScriptCache.LoadedScript reloaded = other.load(source(script), getClass().classLoader)
+        assertEquals loaded.key, reloaded.key
+        assertEquals loaded.classes.size(), reloaded.classes.size()
+        GroovyObject bean = (GroovyObject)reloaded.classes.get(0).newInstance()
+        assertEquals 'yummy', bean.getProperty('food')
+        assertEquals([2, 4], bean.getProperty('doubled'))
+    }
+
+    @Test
+    void testChangedSourceIsRecompiled() {
+        File dir = folder.newFolder('cache')
+        GroovyScriptCache cache = new GroovyScriptCache(dir, 10, true)
+        String key1 = cache.load(source(script), getClass().classLoader).key
+        GroovyScriptCache.LoadedScript loaded = cache.load(source(script.replace('yummy', 'tasty')), getClass().classLoader)
+        assertNotSame key1, loaded.key
+        assertEquals 'tasty', ((GroovyObject)loaded.classes.get(0).newInstance()).getProperty('food')
+        assertEquals 2, entries(dir).length
+    }
+
+    @Test
+    void testCorruptEntryIsDiscarded() {
+        File dir = folder.newFolder('cache')
+        String key = new GroovyScriptCache(dir, 10, true).load(source(script), getClass().classLoader).key
+        File entry = entries(dir)[0]
+        entry.bytes = 'garbage'.bytes
+        GroovyScriptCache.LoadedScript loaded = new GroovyScriptCache(dir, 10, true).load(source(script), getClass().classLoader)
+        assertEquals key, loaded.key
+        assertEquals 'yummy', ((GroovyObject)loaded.classes.get(0).newInstance()).getProperty('food')
+    }
+
+    @Test
+    void testTamperedEntryIsDiscarded() {
+        File dir = folder.newFolder('cache')
+        new GroovyScriptCache(dir, 10, true).load(source(script), getClass().classLoader)
+        File entry = entries(dir)[0]
+        byte[] bytes = entry.bytes
+        String yummy = new String(bytes, 'ISO-8859-1')
+        int index = yummy.indexOf('yummy')
+        assertTrue index > 0
+        bytes[index] = (byte)'Y'
+        entry.bytes = bytes
+        GroovyScriptCache.LoadedScript loaded = new GroovyScriptCache(dir, 10, true).load(source(script), getClass().classLoader)
+        assertEquals 'yummy', ((GroovyObject)loaded.classes.get(0).newInstance()).getProperty('food')
+    }
+
+    @Test
+    void testChangedJarIsRecompiled() {
+        File jar = new File(folder.root, 'lib.jar')
+        writeJar(jar, 'a.txt')
+        GroovyScriptCache cache = new GroovyScriptCache(null, 10, true)
+        URLClassLoader loader = new URLClassLoader([jar.toURI().toURL()] as URL[], getClass().classLoader)
+        String key1 = cache.load(source(script), loader).key
+        assertEquals key1, cache.load(source(script), loader).key
+        writeJar(jar, 'a.txt', 'b.txt')
+        assertFalse key1.equals(cache.load(source(script), loader).key)
+    }
+
+    @Test
+    void testChainedScripts() {
+        GroovyScriptCache cache = new GroovyScriptCache(null, 10, true)
+        GroovyScriptCache.LoadedScript first = cache.load(source(script), getClass().classLoader)
+        GroovyScriptCache.LoadedScript second = cache.load(new GroovyCodeSource('class Derived extends CacheBean {}',
+                                                                                'derived.groovy',
+                                                                                'groovy/script'),
+                                                           first.classLoader)
+        assertEquals 'yummy', ((GroovyObject)second.classes.get(0).newInstance()).getProperty('food')
+    }
+
+    private static File[] entries(File dir) {
+        return dir.listFiles({ File d, String name -> name.endsWith('.gsc') } as FilenameFilter)
+    }
+
+    private static void writeJar(File jar, String... names) {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))
+        names.each { name ->
+            out.putNextEntry(new JarEntry(name))
+            out.write(name.bytes)
+            out.closeEntry()
+        }
+        out.close()
+    }
+
+    private static GroovyCodeSource source(String text) {
+        return new GroovyCodeSource(text, 'cache_bean.groovy', 'groovy/script')
+    }
+}
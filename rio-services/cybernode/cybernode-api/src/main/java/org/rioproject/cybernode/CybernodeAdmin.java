@@ -22,6 +22,7 @@ import org.rioproject.system.ComputeResourceUtilization;
 
 import java.io.IOException;
 import java.rmi.RemoteException;
+import java.util.Map;
 
 /**
  * CybernodeAdmin defines methods used to administer a Cybernode
@@ -106,4 +107,20 @@ public interface CybernodeAdmin extends ServiceAdmin, ComputeResourceAdmin {
      * @throws RemoteException If communication errors occur
      */
     ComputeResourceUtilization getComputeResourceUtilization(Uuid serviceUuid) throws RemoteException;
+
+    /**
+     * Get the {@link org.rioproject.system.ComputeResourceUtilization} for a
+     * set of instantiated services in a single round trip.
+     *
+     * @param serviceUuids The {@link net.jini.id.Uuid}s of instantiated services
+     *
+     * @return A map of service {@code Uuid} to the ComputeResourceUtilization for
+     * that service, following the same semantics as
+     * {@link #getComputeResourceUtilization(net.jini.id.Uuid)}. Services that
+     * cannot be found are not included in the returned map. A new map is
+     * allocated each time this method is invoked.
+     *
+     * @throws RemoteException If communication errors occur
+     */
+    Map<Uuid, ComputeResourceUtilization> getComputeResourceUtilizations(Uuid... serviceUuids) throws RemoteException;
 }
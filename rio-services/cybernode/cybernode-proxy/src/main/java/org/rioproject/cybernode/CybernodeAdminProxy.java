@@ -32,6 +32,7 @@ import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.rmi.RemoteException;
+import java.util.Map;
 
 /**
  * A <code>CybernodeAdminProxy</code> is a proxy for the CybernodeAdmin
@@ -210,6 +211,10 @@ public class CybernodeAdminProxy extends ServiceAdminProxy implements CybernodeA
         return (((CybernodeAdmin)serviceAdmin).getComputeResourceUtilization(serviceUuid));
     }
 
+    public Map<Uuid, ComputeResourceUtilization> getComputeResourceUtilizations(Uuid... serviceUuids) throws RemoteException {
+        return (((CybernodeAdmin)serviceAdmin).getComputeResourceUtilizations(serviceUuids));
+    }
+
     /**
      * A trust verifier for secure smart proxies.
      */
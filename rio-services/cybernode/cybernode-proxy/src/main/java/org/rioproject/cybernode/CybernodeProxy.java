@@ -106,6 +106,11 @@ class CybernodeProxy extends AbstractProxy implements Cybernode, Serializable {
         return (cybernodeProxy.instantiate(event));
     }
 
+    /** @see org.rioproject.deploy.ServiceBeanInstantiator#instantiate(ServiceProvisionEvent[]) */
+    public InstantiationResult[] instantiate(ServiceProvisionEvent[] events) throws RemoteException {
+        return (cybernodeProxy.instantiate(events));
+    }
+
     /** @see org.rioproject.deploy.ServiceBeanInstantiator#getServiceStatements */
     public ServiceStatement[] getServiceStatements() throws RemoteException {
         return (cybernodeProxy.getServiceStatements());
@@ -28,6 +28,8 @@ import org.rioproject.system.ResourceCapability;
 
 import java.io.IOException;
 import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * The CybernodeAdminImpl class implements the ServiceAdmin interface providing
@@ -145,6 +147,18 @@ public class CybernodeAdminImpl extends ServiceAdminImpl implements CybernodeAdm
         return cru;  
     }
 
+    public Map<Uuid, ComputeResourceUtilization> getComputeResourceUtilizations(Uuid... serviceUuids) {
+        Map<Uuid, ComputeResourceUtilization> utilizations = new HashMap<Uuid, ComputeResourceUtilization>();
+        if(serviceUuids==null)
+            return utilizations;
+        for(Uuid serviceUuid : serviceUuids) {
+            ComputeResourceUtilization cru = getComputeResourceUtilization(serviceUuid);
+            if(cru!=null)
+                utilizations.put(serviceUuid, cru);
+        }
+        return utilizations;
+    }
+
     public TrustVerifier getProxyVerifier() throws RemoteException {
         return(new CybernodeAdminProxy.Verifier(remoteRef));
     }
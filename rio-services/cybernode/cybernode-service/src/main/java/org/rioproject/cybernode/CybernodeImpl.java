@@ -88,8 +88,7 @@ import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.text.NumberFormat;
 import java.util.*;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -131,14 +130,17 @@ public class CybernodeImpl extends ServiceBeanAdapter implements Cybernode,
     private ServiceConsumer svcConsumer=null;
     /** Flag indicating the Cybernode is in shutdown sequence */
     private final AtomicBoolean shutdownSequence= new AtomicBoolean(false);
-    /** Collection of services that are in the process of instantiation */
-    private final List<ServiceProvisionEvent> inProcess = new ArrayList<ServiceProvisionEvent>();
+    /** Cache of ServiceElements received from provisioners, keyed by element
+     * digest. Null if caching has been disabled */
+    private ServiceElementCache serviceElementCache;
     /** Log format version */
     private static final int LOG_VERSION = 1;
     /** PersistentStore to save state */
     //PersistentStore store;
     /** ThreadPool for SLAThresholdEvent processing */
     private Executor thresholdTaskPool;
+    /** ThreadPool for instantiating the events of a batched instantiation */
+    private final ExecutorService instantiationPool = Executors.newCachedThreadPool();
     private ComputeResourcePolicyHandler computeResourcePolicyHandler;
     /** This flag indicates whether the Cybernode has been configured to install
      * external software  defined by ServiceBean instances */
@@ -224,6 +226,7 @@ public class CybernodeImpl extends ServiceBeanAdapter implements Cybernode,
         /* Stop the timer */
         if(taskTimer!=null)
             taskTimer.cancel();
+        instantiationPool.shutdownNow();
         try {
             unadvertise();
         } catch (IOException e) {
@@ -634,6 +637,17 @@ public class CybernodeImpl extends ServiceBeanAdapter implements Cybernode,
             logger.warn("Exception getting serviceLimit, default to 500");
         }
 
+        /* Get the number of ServiceElements to cache, so provisioners can
+         * send the element digest instead of the ServiceElement */
+        int serviceElementCacheSize = Config.getIntEntry(config,
+                                                         getConfigComponent(),
+                                                         "serviceElementCacheSize",
+                                                         64,
+                                                         0,
+                                                         Integer.MAX_VALUE);
+        if(serviceElementCacheSize>0)
+            serviceElementCache = new ServiceElementCache(serviceElementCacheSize);
+
         /* Get the ProxyPreparer for passed in OperationalStringManager
          * instances */
         operationalStringManagerPreparer = (ProxyPreparer)config.getEntry(getConfigComponent(),
@@ -1076,7 +1090,13 @@ public class CybernodeImpl extends ServiceBeanAdapter implements Cybernode,
         throws ServiceBeanInstantiationException, UnknownEventException {
 
         DeployedService deployedService;
+        boolean elementCached = false;
+        ServiceElement reserved = null;
         try {
+            if(serviceElementCache!=null)
+                elementCached = serviceElementCache.resolve(event);
+            else if(event.getServiceElement()==null && event.getElementDigest()!=null)
+                throw new ServiceElementNotCachedException(event.getElementDigest());
             if(shutdownSequence.get()) {
                 StringBuilder builder = new StringBuilder();
                 builder.append(CybernodeLogUtil.logName(event)).append(" shutting down, unavailable for service instantiation");
@@ -1097,119 +1117,141 @@ public class CybernodeImpl extends ServiceBeanAdapter implements Cybernode,
              * multiple instances of a service, and service instantiation time takes
              * longer then expected, or the off chance that multiple provisioners
              * may be managing the same opstring and may not be out of synch with
-             * each other */
-            synchronized(inProcess) {
-                /* Get the number of active instances for the ServiceElement */
-                int instantiatedServiceCount = 0;
-                ServiceRecord[] records = container.getServiceRecords();
-                for (ServiceRecord record : records) {
-                    if (record.getType() == ServiceRecord.ACTIVE_SERVICE_RECORD &&
-                        record.getServiceElement().equals(event.getServiceElement()))
-                        instantiatedServiceCount++;
-                }
-                /* Get the number of instances that are in the process of being
-                 * activated for the ServiceElement */
-                int inProcessServiceCount = 0;
-                for(ServiceProvisionEvent spe : inProcess) {
-                    if(spe.getServiceElement().equals(event.getServiceElement()))
-                        inProcessServiceCount++;
-                }
-
-                /* Set the temporal service count to be equal to the in process
-                 * count and active instances */
-                int activeServiceCounter = inProcessServiceCount+instantiatedServiceCount;
+             * each other.
+             *
+             * The container counts the instances of each ServiceElement that
+             * are in process and active in one count, and the instance is
+             * reserved against that count atomically, so instantiations of
+             * different ServiceElements do not wait on each other. The service
+             * limit is checked the same way, against the count of all services
+             * in process and active */
+            ServiceElement sElem = event.getServiceElement();
+            int maxPerMachine = sElem.getMaxPerMachine();
+            int numPlannedServices = sElem.getPlanned();
+            int limit = maxPerMachine==-1?numPlannedServices:Math.min(maxPerMachine, numPlannedServices);
+            ServiceBeanContainer.Reservation reservation = container.reserve(sElem, limit, serviceLimit);
+            if(reservation==ServiceBeanContainer.Reservation.ELEMENT_LIMIT_REACHED) {
+                int activeServiceCounter = container.getServiceCount(sElem);
                 if(loaderLogger.isTraceEnabled())
-                    loaderLogger.trace("{} activeServiceCounter=[{}], inProcessServiceCount=[{}], instantiatedServiceCount=[{}]",
-                                        CybernodeLogUtil.logName(event), activeServiceCounter, inProcessServiceCount, instantiatedServiceCount);
+                    loaderLogger.trace("{} activeServiceCounter=[{}]", CybernodeLogUtil.logName(event), activeServiceCounter);
                 /* First check max per machine */
-                int maxPerMachine = event.getServiceElement().getMaxPerMachine();
                 if(maxPerMachine!=-1 && activeServiceCounter >= maxPerMachine) {
                     if(loaderLogger.isTraceEnabled())
                         loaderLogger.trace("Abort allocation of {} "+
                                             "activeServiceCounter=[{}] "+
-                                            "inProcessServiceCount=[{}] "+
                                             "maxPerMachine=[{}]",
-                                            CybernodeLogUtil.logName(event), activeServiceCounter, inProcessServiceCount, maxPerMachine);
+                                            CybernodeLogUtil.logName(event), activeServiceCounter, maxPerMachine);
                     throw new ServiceBeanInstantiationException("MaxPerMachine "+"["+maxPerMachine+"] has been reached");
                 }
-
                 /* The check planned service count */
-                int numPlannedServices = event.getServiceElement().getPlanned();
-                if(activeServiceCounter >= numPlannedServices) {
-                    if(loaderLogger.isTraceEnabled())
-                        loaderLogger.trace("Cancel allocation of {} activeServiceCounter=[{}] numPlannedServices=[{}]",
-                                           CybernodeLogUtil.logName(event), activeServiceCounter, numPlannedServices+"]");
-                    return(null);
-                }
-
-                inProcess.add(event);
+                if(loaderLogger.isTraceEnabled())
+                    loaderLogger.trace("Cancel allocation of {} activeServiceCounter=[{}] numPlannedServices=[{}]",
+                                       CybernodeLogUtil.logName(event), activeServiceCounter, numPlannedServices);
+                return(null);
             }
+            if(reservation==ServiceBeanContainer.Reservation.SERVICE_LIMIT_REACHED)
+                throw new ServiceBeanInstantiationException("Service Limit of ["+serviceLimit+"] has been reached");
+            reserved = sElem;
 
-            int inProcessCount;
-            synchronized(inProcess) {
-                inProcessCount = inProcess.size() - container.getActivationInProcessCount();
-            }
-            int containerServiceCount = container.getServiceCounter();
-            if((inProcessCount+containerServiceCount) <= serviceLimit) {
-                OperationalStringManager opMgr = event.getOperationalStringManager();
-                if(!event.getServiceElement().forkService()) {
+            OperationalStringManager opMgr = event.getOperationalStringManager();
+            if(!event.getServiceElement().forkService()) {
+                if(loaderLogger.isTraceEnabled())
+                    loaderLogger.trace("Get OpStringManagerProxy for {}", CybernodeLogUtil.logName(event));
+                try {
+                    opMgr = OpStringManagerProxy.getProxy(
+                        event.getServiceElement().getOperationalStringName(),
+                        event.getOperationalStringManager(),
+                        context.getDiscoveryManagement());
                     if(loaderLogger.isTraceEnabled())
-                        loaderLogger.trace("Get OpStringManagerProxy for {}", CybernodeLogUtil.logName(event));
-                    try {
-                        opMgr = OpStringManagerProxy.getProxy(
-                            event.getServiceElement().getOperationalStringName(),
-                            event.getOperationalStringManager(),
-                            context.getDiscoveryManagement());
-                        if(loaderLogger.isTraceEnabled())
-                            loaderLogger.trace("Got OpStringManagerProxy for {}", CybernodeLogUtil.logName(event));
-                    } catch (Exception e) {
-                        loaderLogger.warn("Unable to create proxy for OperationalStringManager, " +
-                                          "using provided OperationalStringManager",
-                                          e);
-                        if(shutdownSequence.get()) {
-                            throw new ServiceBeanInstantiationException(
-                                String.format("Cancel allocation of %s, Cybernode is shutting down",
-                                              CybernodeLogUtil.logName(event)));
-                        }
-                        opMgr = event.getOperationalStringManager();
+                        loaderLogger.trace("Got OpStringManagerProxy for {}", CybernodeLogUtil.logName(event));
+                } catch (Exception e) {
+                    loaderLogger.warn("Unable to create proxy for OperationalStringManager, " +
+                                      "using provided OperationalStringManager",
+                                      e);
+                    if(shutdownSequence.get()) {
+                        throw new ServiceBeanInstantiationException(
+                            String.format("Cancel allocation of %s, Cybernode is shutting down",
+                                          CybernodeLogUtil.logName(event)));
                     }
+                    opMgr = event.getOperationalStringManager();
                 }
-                try {
-                    loaderLogger.trace("Activating {}", CybernodeLogUtil.logName(event));
-                    ServiceBeanInstance jsbInstance = container.activate(event.getServiceElement(),
-                                                                         opMgr,
-                                                                         getSLAEventHandler());
-                    loaderLogger.trace("Activated {}", CybernodeLogUtil.logName(event));
-                    ServiceBeanDelegate delegate = container.getServiceBeanDelegate(jsbInstance.getServiceBeanID());
-                    ComputeResourceUtilization cru = null;
-                    if(delegate!=null) {
-                        cru = delegate.getComputeResourceUtilization();
-                    }
-                    deployedService = new DeployedService(event.getServiceElement(), jsbInstance, cru);
-                    loaderLogger.trace("Created DeployedService for {}", CybernodeLogUtil.logName(event));
-                } catch(ServiceBeanInstantiationException e) {
-                    if(opMgr instanceof OpStringManagerProxy.OpStringManager) {
-                        try {
-                            ((OpStringManagerProxy.OpStringManager)opMgr).terminate();
-                        } catch(IllegalStateException ex) {
-                            logger.warn("Shutting down OpStringManagerProxy more then once for service {}",
-                                        CybernodeLogUtil.logName(event));
-                        }
+            }
+            try {
+                loaderLogger.trace("Activating {}", CybernodeLogUtil.logName(event));
+                /* The activated service holds the reservation */
+                reserved = null;
+                ServiceBeanInstance jsbInstance = container.activate(event.getServiceElement(),
+                                                                     opMgr,
+                                                                     getSLAEventHandler());
+                loaderLogger.trace("Activated {}", CybernodeLogUtil.logName(event));
+                ServiceBeanDelegate delegate = container.getServiceBeanDelegate(jsbInstance.getServiceBeanID());
+                ComputeResourceUtilization cru = null;
+                if(delegate!=null) {
+                    cru = delegate.getComputeResourceUtilization();
+                }
+                deployedService = new DeployedService(event.getServiceElement(), jsbInstance, cru);
+                if(elementCached)
+                    deployedService.setElementDigest(event.getElementDigest());
+                loaderLogger.trace("Created DeployedService for {}", CybernodeLogUtil.logName(event));
+            } catch(ServiceBeanInstantiationException e) {
+                if(opMgr instanceof OpStringManagerProxy.OpStringManager) {
+                    try {
+                        ((OpStringManagerProxy.OpStringManager)opMgr).terminate();
+                    } catch(IllegalStateException ex) {
+                        logger.warn("Shutting down OpStringManagerProxy more then once for service {}",
+                                    CybernodeLogUtil.logName(event));
                     }
-                    throw e;
                 }
-                return(deployedService);
-            } else {
-                throw new ServiceBeanInstantiationException("Service Limit of ["+serviceLimit+"] has been reached");
+                throw e;
             }
+            return(deployedService);
 
         } finally {
-            synchronized(inProcess) {
-                inProcess.remove(event);
-            }
+            if(reserved!=null)
+                container.release(reserved);
         }
     }
     
+    /**
+     * Instantiates the events in parallel, each as
+     * {@link #instantiate(ServiceProvisionEvent)} would.
+     *
+     * @see org.rioproject.deploy.ServiceBeanInstantiator#instantiate(ServiceProvisionEvent[])
+     */
+    public InstantiationResult[] instantiate(ServiceProvisionEvent[] events) {
+        if(events==null)
+            throw new IllegalArgumentException("events is null");
+        List<Future<InstantiationResult>> futures = new ArrayList<Future<InstantiationResult>>();
+        for(final ServiceProvisionEvent event : events) {
+            futures.add(instantiationPool.submit(new Callable<InstantiationResult>() {
+                public InstantiationResult call() {
+                    try {
+                        return new InstantiationResult(instantiate(event));
+                    } catch (ServiceBeanInstantiationException e) {
+                        return new InstantiationResult(e);
+                    } catch (UnknownEventException e) {
+                        return new InstantiationResult(e);
+                    }
+                }
+            }));
+        }
+        InstantiationResult[] results = new InstantiationResult[events.length];
+        for(int i=0; i<results.length; i++) {
+            try {
+                results[i] = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results[i] = new InstantiationResult(
+                    new ServiceBeanInstantiationException("Interrupted instantiating "+CybernodeLogUtil.logName(events[i])));
+            } catch (ExecutionException e) {
+                results[i] = new InstantiationResult(
+                    new ServiceBeanInstantiationException("Instantiating "+CybernodeLogUtil.logName(events[i]),
+                                                          e.getCause()));
+            }
+        }
+        return results;
+    }
+
     /**
      * Create the container the Cybernode will use
      *
@@ -24,11 +24,14 @@ import org.rioproject.deploy.ServiceRecord;
 import org.rioproject.event.EventHandler;
 import org.rioproject.opstring.OperationalStringManager;
 import org.rioproject.opstring.ServiceElement;
+import org.rioproject.opstring.ServiceElementKey;
 import org.rioproject.system.ComputeResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -51,6 +54,14 @@ public class JSBContainer implements ServiceBeanContainer {
      * routine has not finished.
      */
     private AtomicInteger activationInProcessCount = new AtomicInteger(0);
+    /** The ServiceElementKeys of activated services that have not been
+     * discarded or removed, keyed by their identifier */
+    private final ConcurrentMap<Object, ServiceElementKey> countedServices =
+        new ConcurrentHashMap<Object, ServiceElementKey>();
+    /** Count of reserved and activated services for each ServiceElement */
+    private final ServiceElementCounter serviceCounter = new ServiceElementCounter();
+    /** Count of all reserved and activated services */
+    private final AtomicInteger totalServiceCount = new AtomicInteger(0);
     /** Uuid for the container */
     private Uuid uuid;
     /** Collection of ServiceBeanContainerListeners */
@@ -116,6 +127,9 @@ public class JSBContainer implements ServiceBeanContainer {
         synchronized(controllerMap) {
             controllerMap.clear();
         }
+        countedServices.clear();
+        serviceCounter.clear();
+        totalServiceCount.set(0);
     }
 
     /**
@@ -140,7 +154,7 @@ public class JSBContainer implements ServiceBeanContainer {
     /**
      * @see org.rioproject.cybernode.ServiceBeanContainer#getServiceCounter()
      */
-    public synchronized int getServiceCounter() {
+    public int getServiceCounter() {
         int size;
         synchronized(controllerMap) {
             size = controllerMap.size();
@@ -148,6 +162,44 @@ public class JSBContainer implements ServiceBeanContainer {
         return (size);
     }
 
+    /**
+     * @see org.rioproject.cybernode.ServiceBeanContainer#reserve(ServiceElement, int, int)
+     */
+    public Reservation reserve(ServiceElement element, int limit, int serviceLimit) {
+        if(element==null)
+            throw new IllegalArgumentException("element is null");
+        ServiceElementKey key = element.getKey();
+        if(!serviceCounter.incrementIfLess(key, limit))
+            return Reservation.ELEMENT_LIMIT_REACHED;
+        while(true) {
+            int count = totalServiceCount.get();
+            if(count>=serviceLimit) {
+                serviceCounter.decrement(key);
+                return Reservation.SERVICE_LIMIT_REACHED;
+            }
+            if(totalServiceCount.compareAndSet(count, count+1))
+                return Reservation.RESERVED;
+        }
+    }
+
+    /**
+     * @see org.rioproject.cybernode.ServiceBeanContainer#release(ServiceElement)
+     */
+    public void release(ServiceElement element) {
+        if(element==null)
+            throw new IllegalArgumentException("element is null");
+        release(element.getKey());
+    }
+
+    /**
+     * @see org.rioproject.cybernode.ServiceBeanContainer#getServiceCount(ServiceElement)
+     */
+    public int getServiceCount(ServiceElement element) {
+        if(element==null)
+            throw new IllegalArgumentException("element is null");
+        return serviceCounter.get(element.getKey());
+    }
+
     /**
      * @see org.rioproject.cybernode.ServiceBeanContainer#getActivationInProcessCount()
      */
@@ -169,6 +221,8 @@ public class JSBContainer implements ServiceBeanContainer {
         delegate.setOperationalStringManager(opStringMgr);
         delegate.setServiceElement(sElem);
         delegate.setEventHandler(slaEventHandler);
+        /* The activated service holds the reservation made for it */
+        countedServices.put(identifier, sElem.getKey());
         synchronized(controllerMap) {
             controllerMap.put(identifier, delegate);
             activationInProcessCount.incrementAndGet();
@@ -193,6 +247,7 @@ public class JSBContainer implements ServiceBeanContainer {
                 discarded(identifier);
                 delegate.terminate();
             }
+            releaseService(identifier);
             /* rethrow ServiceBeanInstantiationException */
             throw e;
         } catch(Throwable t) {
@@ -200,6 +255,7 @@ public class JSBContainer implements ServiceBeanContainer {
                 discarded(identifier);
                 delegate.terminate();
             }
+            releaseService(identifier);
             logger.error("Could not activate service {}", CybernodeLogUtil.logName(sElem), t);
             throw new ServiceBeanInstantiationException(String.format("Service %s load failed", CybernodeLogUtil.logName(sElem)),
                                                         t, true);
@@ -304,6 +360,7 @@ public class JSBContainer implements ServiceBeanContainer {
         }
         if(delegate == null)
             return;
+        releaseService(identifier);
         notifyOnDiscard(delegate.getServiceRecord());
     }
 
@@ -311,6 +368,7 @@ public class JSBContainer implements ServiceBeanContainer {
      * @see org.rioproject.cybernode.ServiceBeanContainer#remove(Object)
      */
     public void remove(Object identifier) {
+        releaseService(identifier);
         if(shutdownSequence.get())
             return;
         synchronized(controllerMap) {
@@ -318,6 +376,29 @@ public class JSBContainer implements ServiceBeanContainer {
         }
     }
 
+    /*
+     * Release the reservation held by an activated service, if it has not
+     * been released
+     */
+    private void releaseService(Object identifier) {
+        ServiceElementKey key = countedServices.remove(identifier);
+        if(key!=null)
+            release(key);
+    }
+
+    /*
+     * Release a reservation from the count of the ServiceElement and the
+     * count of all services
+     */
+    private void release(ServiceElementKey key) {
+        serviceCounter.decrement(key);
+        while(true) {
+            int count = totalServiceCount.get();
+            if(count==0 || totalServiceCount.compareAndSet(count, count-1))
+                return;
+        }
+    }
+
     /**
      * @see org.rioproject.cybernode.ServiceBeanContainer#addListener
      */
@@ -25,11 +25,23 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.*;
+import java.util.zip.CRC32;
 
 /**
  * The PersistentServiceStatementManager provides an implementation of the
  * ServiceStatementManager, reading and writing ServiceStatement instances to
- * the file system
+ * the file system.
+ *
+ * <p>ServiceStatement instances are appended to a journal, and held in memory
+ * indexed by the ServiceElement they are for. The journal is read when the
+ * PersistentServiceStatementManager is created, an entry that was only partially
+ * written (the Cybernode stopped while writing it) ends the journal, and is discarded.
+ * An entry that is intact but cannot be deserialized is skipped. If the journal cannot
+ * be read or appended to, ServiceStatements are kept in memory and the journal is
+ * reopened (rewritten from memory) on the next write.
+ * The journal is compacted when it holds more superseded entries than
+ * current ones, and when ServiceStatements age past the <tt>recordAge</tt>.
+ * ServiceStatement files written by earlier versions are moved into the journal.
  *
  * @author Dennis Reedy
  */
@@ -38,20 +50,31 @@ public class PersistentServiceStatementManager implements ServiceStatementManage
     File recordRoot;
     /** Filename extension */
     final static String STATEMENT_EXT = ".stmt";
+    /** The journal file name */
+    final static String JOURNAL = "statements.journal";
     static final long SECOND = 1000;
     static final long MINUTE = SECOND * 60;
     static final long HOUR = MINUTE * 60;
     static final long DAY = HOUR * 24;
     static final long ETERNITY = 0;
+    /** The minimum number of journal entries before the journal is compacted */
+    static final int COMPACT_THRESHOLD = 256;
     /**
      * If a ServiceStatement is older then this value, remove it from the
      * filesystem
      */
     long clean = DAY * 30;
-    /** Timer to shedule FileSweeper tasks */
+    /** Timer to shedule StatementSweeper tasks */
     Timer taskTimer;
     /** A semaphore for reading/writing */
     final Object rwSemaphore = new Object();
+    /** ServiceStatements indexed by the name of their ServiceElement */
+    private final Map<String, Entry> statements = new HashMap<String, Entry>();
+    private DataOutputStream journal;
+    private int journalEntries;
+    /* Whether the journal has been read, guarded by the rwSemaphore */
+    private boolean recovered;
+    private boolean terminated;
     /** Logger */
     static Logger logger = LoggerFactory.getLogger("org.rioproject.cybernode");
 
@@ -76,11 +99,19 @@ public class PersistentServiceStatementManager implements ServiceStatementManage
             } catch(Throwable t) {
                 logger.warn("PersistentServiceStatementManager : exception getting recordAge", t);
             }
+            clean = age;
+            synchronized(rwSemaphore) {
+                try {
+                    recover();
+                } catch(IOException e) {
+                    logger.warn("Reading the ServiceStatement journal, it will be reopened on the next write", e);
+                }
+            }
             if(age != ETERNITY) {
                 logger.debug( "ServiceStatement maximum age [{}] days", (age / DAY));
                 taskTimer = new Timer(true);
                 long now = System.currentTimeMillis();
-                taskTimer.scheduleAtFixedRate(new FileSweeper(age), new Date(now + SECOND), HOUR);
+                taskTimer.scheduleAtFixedRate(new StatementSweeper(age), new Date(now + SECOND), HOUR);
             } else {
                 logger.debug("ServiceStatements live forever");
             }
@@ -95,6 +126,10 @@ public class PersistentServiceStatementManager implements ServiceStatementManage
     public void terminate() {
         if(taskTimer != null)
             taskTimer.cancel();
+        synchronized(rwSemaphore) {
+            terminated = true;
+            closeJournal();
+        }
     }
 
     /**
@@ -102,17 +137,9 @@ public class PersistentServiceStatementManager implements ServiceStatementManage
      */
     public ServiceStatement[] get() {
         List<ServiceStatement> list = new ArrayList<ServiceStatement>();
-        File[] statements = recordRoot.listFiles();
-        if(statements!=null) {
-            for (File statement : statements) {
-                try {
-                    ServiceStatement stmnt = read(statement);
-                    if (stmnt != null)
-                        list.add(stmnt);
-                } catch (Exception e) {
-                    logger.error("Getting ServiceStatement instances", e);
-                }
-            }
+        synchronized(rwSemaphore) {
+            for(Entry entry : statements.values())
+                list.add(entry.statement);
         }
         return (list.toArray(new ServiceStatement[list.size()]));
     }
@@ -121,15 +148,11 @@ public class PersistentServiceStatementManager implements ServiceStatementManage
      * @see org.rioproject.deploy.ServiceStatementManager#get
      */
     public ServiceStatement get(ServiceElement sElem) {
-        ServiceStatement statement = null;
-        try {            
-            statement = read(makeName(sElem) + STATEMENT_EXT);
-        } catch(IOException e) {
-            logger.error("Getting ServiceStatement", e);
-        } catch(ClassNotFoundException e) {
-            logger.error("Getting ServiceStatement", e);
+        Entry entry;
+        synchronized(rwSemaphore) {
+            entry = statements.get(makeName(sElem));
         }
-        return (statement);
+        return (entry==null?null:entry.statement);
     }
 
     /**
@@ -144,44 +167,233 @@ public class PersistentServiceStatementManager implements ServiceStatementManage
     }
 
     /*
-     * Write a ServiceStatement to the file system
+     * Append a ServiceStatement to the journal. The ServiceStatement is
+     * serialized holding the rwSemaphore, ServiceStatements returned by get
+     * are shared and may be changed before they are recorded, so entries are
+     * appended in the order their snapshots are taken
      * 
      * @param statement The ServiceStatement to write
      */
     void write(ServiceStatement statement) throws IOException {
         synchronized(rwSemaphore) {
-            File record = new File(recordRoot, makeName(statement.getServiceElement())+STATEMENT_EXT);
-            ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(record));
-            oos.writeObject(statement);
-            oos.flush();
+            byte[] data = serialize(statement);
+            String name = makeName(statement.getServiceElement());
+            Entry entry = new Entry(statement, System.currentTimeMillis());
+            statements.put(name, entry);
+            if(terminated)
+                return;
+            if(journal!=null) {
+                try {
+                    append(journal, entry.recorded, data);
+                    journal.flush();
+                    journalEntries++;
+                    if(journalEntries>COMPACT_THRESHOLD && journalEntries>statements.size()*2)
+                        compact();
+                    return;
+                } catch(IOException e) {
+                    logger.warn("Appending to the ServiceStatement journal, reopening", e);
+                    closeJournal();
+                }
+            }
+            /* The ServiceStatement is held in memory, reopening rewrites the journal and includes it */
+            try {
+                reopenJournal();
+            } catch(IOException e) {
+                logger.warn("ServiceStatement [{}] was not written to the journal, it will be retried on the next write: {}",
+                            name, e.getMessage());
+            }
         }
     }
 
     /*
-     * Read a ServiceStatement from the file system
-     * 
-     * @param fileName The ServiceStatement file name
-     * @return ServiceStatement
+     * Reopen the journal after a failure, rewriting it from the ServiceStatements held in memory.
+     * If the journal was never read, it is read first, ServiceStatements recorded since are newer
+     * and replace those read. Must be called holding the rwSemaphore
      */
-    ServiceStatement read(String fileName) throws ClassNotFoundException, IOException {
-        File file = new File(recordRoot, fileName);
-        if(file.exists())
-            return (read(file));
-        return (null);
+    void reopenJournal() throws IOException {
+        closeJournal();
+        if(recordRoot==null)
+            throw new IOException("No record directory");
+        if(!recovered) {
+            Map<String, Entry> current = new HashMap<String, Entry>(statements);
+            try {
+                journalEntries = 0;
+                recover();
+            } finally {
+                statements.putAll(current);
+            }
+        }
+        compact();
     }
 
     /*
-     * Read a ServiceStatement from the file system
+     * Read the journal, and any ServiceStatement files written by earlier versions. Must be called
+     * holding the rwSemaphore
+     */
+    void recover() throws IOException {
+        File journalFile = new File(recordRoot, JOURNAL);
+        File compacted = new File(recordRoot, JOURNAL+".tmp");
+        if(compacted.exists()) {
+            /* A compaction that completed writing, but did not replace the journal */
+            if(journalFile.exists() || !compacted.renameTo(journalFile))
+                compacted.delete();
+        }
+        long valid = 0;
+        if(journalFile.exists()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+            try {
+                long remaining = journalFile.length();
+                while(remaining>=20) {
+                    int length = in.readInt();
+                    long recorded = in.readLong();
+                    long checksum = in.readLong();
+                    if(length<0 || length>remaining-20)
+                        break;
+                    byte[] data = new byte[length];
+                    in.readFully(data);
+                    if(checksum(data)!=checksum)
+                        break;
+                    try {
+                        ServiceStatement statement = deserialize(data);
+                        statements.put(makeName(statement.getServiceElement()), new Entry(statement, recorded));
+                    } catch(ClassNotFoundException e) {
+                        logger.warn("Unable to read ServiceStatement journal entry", e);
+                    } catch(IOException e) {
+                        /* The entry is intact, skip it and continue with the next one */
+                        logger.warn("Unable to read ServiceStatement journal entry at {} recorded {}, skipping it",
+                                    valid, new Date(recorded), e);
+                    }
+                    journalEntries++;
+                    remaining -= length+20;
+                    valid += length+20;
+                }
+            } finally {
+                in.close();
+            }
+            if(valid<journalFile.length()) {
+                logger.warn("ServiceStatement journal [{}] has an incomplete entry at {}, discarding {} bytes",
+                            journalFile.getPath(), valid, journalFile.length()-valid);
+            }
+        }
+        File[] legacy = recordRoot.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(STATEMENT_EXT);
+            }
+        });
+        if(legacy!=null && legacy.length>0) {
+            for(File file : legacy) {
+                try {
+                    ServiceStatement statement = read(file);
+                    String name = makeName(statement.getServiceElement());
+                    if(!statements.containsKey(name))
+                        statements.put(name, new Entry(statement, file.lastModified()));
+                } catch(Exception e) {
+                    logger.warn("Unable to read ServiceStatement [{}]", file.getName(), e);
+                }
+            }
+            compact();
+            for(File file : legacy) {
+                if(!file.delete())
+                    logger.warn("Unable to remove ServiceStatement [{}]", file.getName());
+            }
+        } else {
+            if(valid<journalFile.length()) {
+                RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+                try {
+                    raf.setLength(valid);
+                } finally {
+                    raf.close();
+                }
+            }
+            journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+        }
+        recovered = true;
+        logger.debug("Recovered {} ServiceStatements from {} journal entries", statements.size(), journalEntries);
+    }
+
+    /*
+     * Rewrite the journal with the current ServiceStatement instances. The journal is written to a
+     * temporary file that replaces the journal once complete. Must be called holding the rwSemaphore
+     */
+    void compact() throws IOException {
+        File journalFile = new File(recordRoot, JOURNAL);
+        File compacted = new File(recordRoot, JOURNAL+".tmp");
+        FileOutputStream fos = new FileOutputStream(compacted);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+        try {
+            for(Entry entry : statements.values())
+                append(out, entry.recorded, serialize(entry.statement));
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            out.close();
+        }
+        closeJournal();
+        try {
+            if(!compacted.renameTo(journalFile)) {
+                if(!journalFile.delete() || !compacted.renameTo(journalFile))
+                    throw new IOException("Unable to replace "+journalFile.getPath());
+            }
+            logger.debug("Compacted ServiceStatement journal from {} to {} entries", journalEntries, statements.size());
+            journalEntries = statements.size();
+        } finally {
+            journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+        }
+    }
+
+    private void closeJournal() {
+        if(journal!=null) {
+            try {
+                journal.close();
+            } catch(IOException e) {
+                logger.warn("Closing ServiceStatement journal", e);
+            }
+            journal = null;
+        }
+    }
+
+    private void append(DataOutputStream out, long recorded, byte[] data) throws IOException {
+        out.writeInt(data.length);
+        out.writeLong(recorded);
+        out.writeLong(checksum(data));
+        out.write(data);
+    }
+
+    private long checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private byte[] serialize(ServiceStatement statement) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(statement);
+        oos.close();
+        return bytes.toByteArray();
+    }
+
+    private ServiceStatement deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+        try {
+            return ((ServiceStatement)ois.readObject());
+        } finally {
+            ois.close();
+        }
+    }
+
+    /*
+     * Read a ServiceStatement written by earlier versions from the file system
      * 
      * @param input The input File
      * @return ServiceStatement
      */
-    ServiceStatement read(File input) throws ClassNotFoundException,
-        IOException {
-        synchronized(rwSemaphore) {
-            ObjectInputStream ois = 
-                new ObjectInputStream(new FileInputStream(input));
+    ServiceStatement read(File input) throws ClassNotFoundException, IOException {
+        ObjectInputStream ois = new ObjectInputStream(new FileInputStream(input));
+        try {
             return ((ServiceStatement)ois.readObject());
+        } finally {
+            ois.close();
         }
     }
     
@@ -192,17 +404,29 @@ public class PersistentServiceStatementManager implements ServiceStatementManage
         return(sElem.getOperationalStringName()+"."+sElem.getName());
     }
 
+    /*
+     * A ServiceStatement and the time it was last recorded
+     */
+    static class Entry {
+        final ServiceStatement statement;
+        final long recorded;
+
+        Entry(ServiceStatement statement, long recorded) {
+            this.statement = statement;
+            this.recorded = recorded;
+        }
+    }
+
     /**
-     * The FileSweeper class is scheduled every hour to sweep the directory an
-     * determine if any ServiceStatement files are older then the allotted age
-     * (default is a month). If the files are older, and all the ServiceRecord
-     * instances within the ServiceStatement are INACTIVE, then remove the
-     * ServiceStatement
+     * The StatementSweeper class is scheduled every hour to determine if any
+     * ServiceStatement instances were last recorded longer ago than the allotted
+     * age (default is a month). If they were, the ServiceStatement is removed,
+     * and the journal compacted
      */
-    class FileSweeper extends TimerTask {
+    class StatementSweeper extends TimerTask {
         long oldAge;
 
-        FileSweeper(long oldAge) {
+        StatementSweeper(long oldAge) {
             this.oldAge = oldAge;
         }
 
@@ -211,18 +435,22 @@ public class PersistentServiceStatementManager implements ServiceStatementManage
          */
         public void run() {
             long now = System.currentTimeMillis();
-            File[] files = recordRoot.listFiles();
-            if(files!=null) {
-                for (File file : files) {
-                    if (file.getName().endsWith(STATEMENT_EXT)) {
-                        long lastModified = file.lastModified();
-                        long age = now - lastModified;
-                        if (age > oldAge) {
-                            file.delete();
-                            if (logger.isDebugEnabled())
-                                logger.debug("ServiceStatement [{}] has aged past [{}] days, file has been removed",
-                                            file.getName(), (oldAge/ DAY));
-                        }
+            synchronized(rwSemaphore) {
+                boolean removed = false;
+                for(Iterator<Map.Entry<String, Entry>> it = statements.entrySet().iterator(); it.hasNext();) {
+                    Map.Entry<String, Entry> mapEntry = it.next();
+                    if(now - mapEntry.getValue().recorded > oldAge) {
+                        it.remove();
+                        removed = true;
+                        logger.debug("ServiceStatement [{}] has aged past [{}] days, it has been removed",
+                                     mapEntry.getKey(), (oldAge/ DAY));
+                    }
+                }
+                if(removed && journal!=null) {
+                    try {
+                        compact();
+                    } catch(IOException e) {
+                        logger.warn("Compacting ServiceStatement journal", e);
                     }
                 }
             }
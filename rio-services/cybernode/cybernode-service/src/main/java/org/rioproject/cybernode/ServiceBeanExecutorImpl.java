@@ -192,7 +192,7 @@ public class ServiceBeanExecutorImpl implements ServiceBeanExecutor,
                                            final OperationalStringManager opStringMgr)
         throws ServiceBeanInstantiationException {
         logger.info("Instantiating {}, service counter={}", sElem.getName(), container.getServiceCounter());
-        if (container.getServiceCounter() > 0)
+        if (container.reserve(sElem, 1, 1)!=ServiceBeanContainer.Reservation.RESERVED)
             throw new ServiceBeanInstantiationException("ServiceBeanExecutor has already instantiated a service");
 
         OperationalStringManager opMgr = opStringMgr;
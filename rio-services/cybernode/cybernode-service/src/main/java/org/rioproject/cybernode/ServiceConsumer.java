@@ -169,8 +169,7 @@ public class ServiceConsumer extends ServiceDiscoveryAdapter {
         if(lCache==null) {
             ServiceTemplate template = new ServiceTemplate(null, new Class[] {ProvisionManager.class}, null);
             LookupCachePool lcPool = LookupCachePool.getInstance();
-            lCache = lcPool.getLookupCache(dm, template);
-            lCache.addListener(this);
+            lCache = lcPool.getLookupCache(dm, template, this);
         } else {
             for(Map.Entry<ServiceID, ProvisionManager> entry : provisionerMap.entrySet()) {
                 register(entry.getKey(), entry.getValue());
@@ -0,0 +1,136 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.cybernode;
+
+import net.jini.io.MarshalledInstance;
+import org.rioproject.deploy.ServiceElementNotCachedException;
+import org.rioproject.deploy.ServiceProvisionEvent;
+import org.rioproject.deploy.SystemComponent;
+import org.rioproject.jsb.ServiceElementUtil;
+import org.rioproject.opstring.ServiceElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of the ServiceElements received in
+ * {@link ServiceProvisionEvent}s, keyed by their element digest. Resolves the
+ * ServiceElement of an event that carries the element digest and instance
+ * parameters only.
+ *
+ * <p>Each ServiceElement is cached in serialized form, and a new copy is
+ * created for every event it resolves. Service instances created from the
+ * same cached ServiceElement do not share any of its attributes. The actual
+ * instance count and provisionable platform capabilities are not part of the
+ * element digest, the values of the cached ServiceElement are replaced by
+ * those of each event it resolves.
+ */
+class ServiceElementCache {
+    private final Map<String, MarshalledInstance> elements;
+    private static final Logger logger = LoggerFactory.getLogger(ServiceElementCache.class);
+
+    /**
+     * Create a ServiceElementCache
+     *
+     * @param capacity The maximum number of ServiceElements to cache
+     */
+    ServiceElementCache(final int capacity) {
+        if(capacity<1)
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        elements = new LinkedHashMap<String, MarshalledInstance>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, MarshalledInstance> eldest) {
+                return size()>capacity;
+            }
+        };
+    }
+
+    /**
+     * Resolve the ServiceElement of a ServiceProvisionEvent. If the event has
+     * a ServiceElement and an element digest, a serialized copy of the
+     * ServiceElement is cached. If the event has an element digest only, the
+     * ServiceElement is created from a new copy of the cached ServiceElement
+     * and the event's instance parameters, actual instance count and
+     * provisionable platform capabilities, and set into the event.
+     *
+     * @param event The ServiceProvisionEvent
+     *
+     * @return True if the event has an element digest, and the ServiceElement
+     * is cached
+     *
+     * @throws ServiceElementNotCachedException if the event has an element
+     * digest only, and the ServiceElement is not cached
+     */
+    boolean resolve(final ServiceProvisionEvent event) throws ServiceElementNotCachedException {
+        String digest = event.getElementDigest();
+        if(digest==null)
+            return false;
+        ServiceElement sElem = event.getServiceElement();
+        if(sElem!=null) {
+            MarshalledInstance marshalled;
+            try {
+                marshalled = new MarshalledInstance(sElem);
+            } catch (IOException e) {
+                logger.warn("Unable to cache ServiceElement for digest {}", digest, e);
+                return false;
+            }
+            synchronized(elements) {
+                elements.put(digest, marshalled);
+            }
+            return true;
+        }
+        MarshalledInstance marshalled;
+        synchronized(elements) {
+            marshalled = elements.get(digest);
+        }
+        if(marshalled==null) {
+            logger.debug("No ServiceElement for digest {}, request it from the provisioner", digest);
+            throw new ServiceElementNotCachedException(digest);
+        }
+        ServiceElement template;
+        try {
+            template = (ServiceElement)marshalled.get(false);
+        } catch (Exception e) {
+            logger.warn("Unable to read cached ServiceElement for digest {}, request it from the provisioner",
+                        digest, e);
+            synchronized(elements) {
+                elements.remove(digest);
+            }
+            throw new ServiceElementNotCachedException(digest);
+        }
+        ServiceElement resolved = ServiceElementUtil.createInstance(template, event.getInstanceParameters());
+        resolved.setActual(event.getActual());
+        Collection<SystemComponent> provisionable = event.getProvisionablePlatformCapabilities();
+        resolved.setProvisionablePlatformCapabilities(provisionable==null?
+                                                      Collections.<SystemComponent>emptyList():provisionable);
+        event.setServiceElement(resolved);
+        return true;
+    }
+
+    /**
+     * @return The number of cached ServiceElements
+     */
+    int size() {
+        synchronized(elements) {
+            return elements.size();
+        }
+    }
+}
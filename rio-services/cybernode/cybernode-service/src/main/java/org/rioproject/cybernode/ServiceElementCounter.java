@@ -0,0 +1,114 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.cybernode;
+
+import org.rioproject.opstring.ServiceElementKey;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts service instances by the {@link ServiceElementKey} of their
+ * ServiceElement, without a lock shared across ServiceElements. Counts of
+ * different ServiceElements are updated concurrently, and a conditional
+ * increment is atomic with respect to other updates of the same count.
+ *
+ * <p>A count that drops to zero is removed. It is marked as retired first, so
+ * that a concurrent increment creates a new count rather than updating the
+ * removed one.
+ */
+class ServiceElementCounter {
+    private static final int RETIRED = -1;
+    private final ConcurrentMap<ServiceElementKey, AtomicInteger> counts =
+        new ConcurrentHashMap<ServiceElementKey, AtomicInteger>();
+
+    /**
+     * Get the count for a ServiceElementKey
+     *
+     * @param key The ServiceElementKey
+     *
+     * @return The count, or 0 if there is no count for the key
+     */
+    int get(final ServiceElementKey key) {
+        AtomicInteger count = counts.get(key);
+        return count==null?0:Math.max(count.get(), 0);
+    }
+
+    /**
+     * Increment the count for a ServiceElementKey if the count is less than a
+     * limit
+     *
+     * @param key The ServiceElementKey
+     * @param limit The limit
+     *
+     * @return True if the count was incremented
+     */
+    boolean incrementIfLess(final ServiceElementKey key, final int limit) {
+        while(true) {
+            AtomicInteger count = getOrCreate(key);
+            int value = count.get();
+            if(value==RETIRED) {
+                counts.remove(key, count);
+                continue;
+            }
+            if(value>=limit)
+                return false;
+            if(count.compareAndSet(value, value+1))
+                return true;
+        }
+    }
+
+    /**
+     * Decrement the count for a ServiceElementKey. If the count drops to zero
+     * it is removed.
+     *
+     * @param key The ServiceElementKey
+     */
+    void decrement(final ServiceElementKey key) {
+        AtomicInteger count = counts.get(key);
+        if(count==null)
+            return;
+        while(true) {
+            int value = count.get();
+            if(value<=0)
+                return;
+            if(count.compareAndSet(value, value-1)) {
+                if(value==1 && count.compareAndSet(0, RETIRED))
+                    counts.remove(key, count);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove all counts
+     */
+    void clear() {
+        counts.clear();
+    }
+
+    private AtomicInteger getOrCreate(final ServiceElementKey key) {
+        AtomicInteger count = counts.get(key);
+        if(count==null) {
+            AtomicInteger created = new AtomicInteger();
+            count = counts.putIfAbsent(key, created);
+            if(count==null)
+                count = created;
+        }
+        return count;
+    }
+}
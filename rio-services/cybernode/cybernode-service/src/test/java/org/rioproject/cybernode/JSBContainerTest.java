@@ -0,0 +1,122 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.cybernode;
+
+import net.jini.config.EmptyConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test reserving service instances in the {@code JSBContainer}.
+ */
+public class JSBContainerTest {
+
+    @Test
+    public void testReserveAgainstElementLimit() {
+        JSBContainer container = new JSBContainer(EmptyConfiguration.INSTANCE);
+        ServiceElement echo = createServiceElement("Echo");
+        ServiceElement hello = createServiceElement("Hello");
+        Assert.assertEquals(ServiceBeanContainer.Reservation.RESERVED, container.reserve(echo, 2, 10));
+        Assert.assertEquals(ServiceBeanContainer.Reservation.RESERVED, container.reserve(echo, 2, 10));
+        Assert.assertEquals(ServiceBeanContainer.Reservation.ELEMENT_LIMIT_REACHED, container.reserve(echo, 2, 10));
+        Assert.assertEquals(2, container.getServiceCount(echo));
+        Assert.assertEquals(ServiceBeanContainer.Reservation.RESERVED, container.reserve(hello, 1, 10));
+        Assert.assertEquals(1, container.getServiceCount(hello));
+
+        container.release(echo);
+        Assert.assertEquals(1, container.getServiceCount(echo));
+        Assert.assertEquals(ServiceBeanContainer.Reservation.RESERVED, container.reserve(echo, 2, 10));
+    }
+
+    @Test
+    public void testReserveAgainstServiceLimit() {
+        JSBContainer container = new JSBContainer(EmptyConfiguration.INSTANCE);
+        ServiceElement echo = createServiceElement("Echo");
+        ServiceElement hello = createServiceElement("Hello");
+        Assert.assertEquals(ServiceBeanContainer.Reservation.RESERVED, container.reserve(echo, 5, 2));
+        Assert.assertEquals(ServiceBeanContainer.Reservation.RESERVED, container.reserve(hello, 5, 2));
+        Assert.assertEquals(ServiceBeanContainer.Reservation.SERVICE_LIMIT_REACHED, container.reserve(echo, 5, 2));
+        /* A reservation refused by the service limit is not counted */
+        Assert.assertEquals(1, container.getServiceCount(echo));
+
+        container.release(hello);
+        Assert.assertEquals(0, container.getServiceCount(hello));
+        Assert.assertEquals(ServiceBeanContainer.Reservation.RESERVED, container.reserve(echo, 5, 2));
+        Assert.assertEquals(2, container.getServiceCount(echo));
+    }
+
+    @Test
+    public void testConcurrentReservations() throws Exception {
+        final JSBContainer container = new JSBContainer(EmptyConfiguration.INSTANCE);
+        final ServiceElement[] elements = new ServiceElement[]{createServiceElement("Echo"),
+                                                               createServiceElement("Hello")};
+        final int limit = 6;
+        final int serviceLimit = 8;
+        final AtomicInteger[] reserved = new AtomicInteger[]{new AtomicInteger(), new AtomicInteger()};
+        final AtomicInteger total = new AtomicInteger();
+        final AtomicInteger violations = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for(int i=0; i<threads.length; i++) {
+            final int index = i%elements.length;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for(int j=0; j<10000; j++) {
+                        if(container.reserve(elements[index], limit, serviceLimit)==ServiceBeanContainer.Reservation.RESERVED) {
+                            if(reserved[index].incrementAndGet()>limit)
+                                violations.incrementAndGet();
+                            if(total.incrementAndGet()>serviceLimit)
+                                violations.incrementAndGet();
+                            total.decrementAndGet();
+                            reserved[index].decrementAndGet();
+                            container.release(elements[index]);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for(Thread t : threads)
+            t.join();
+        Assert.assertEquals(0, violations.get());
+        for(ServiceElement element : elements)
+            Assert.assertEquals(0, container.getServiceCount(element));
+    }
+
+    private ServiceElement createServiceElement(String name) {
+        ServiceBeanConfig sbc = new ServiceBeanConfig();
+        sbc.setName(name);
+        sbc.setOperationalStringName("Container");
+        return new ServiceElement(ServiceElement.ProvisionType.DYNAMIC,
+                                  sbc,
+                                  null,
+                                  new ClassBundle[0],
+                                  null,
+                                  new ClassBundle("org.rioproject.test."+name+"Impl"));
+    }
+}
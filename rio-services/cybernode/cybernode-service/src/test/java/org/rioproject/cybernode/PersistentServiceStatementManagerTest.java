@@ -0,0 +1,230 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.cybernode;
+
+import net.jini.id.Uuid;
+import net.jini.id.UuidFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rioproject.config.DynamicConfiguration;
+import org.rioproject.deploy.ServiceRecord;
+import org.rioproject.deploy.ServiceStatement;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+
+import java.io.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * Test the {@code PersistentServiceStatementManager}.
+ */
+public class PersistentServiceStatementManagerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private DynamicConfiguration config;
+    private File recordRoot;
+    private final Uuid recordingUuid = UuidFactory.generate();
+
+    @Before
+    public void setup() throws IOException {
+        recordRoot = folder.newFolder("records");
+        config = new DynamicConfiguration();
+        config.setEntry(CybernodeImpl.getConfigComponent(), "recordDirectory", String.class, recordRoot.getPath());
+    }
+
+    @Test
+    public void testRecordAndRecover() throws Exception {
+        PersistentServiceStatementManager manager = new PersistentServiceStatementManager(config);
+        for(int i=0; i<10; i++)
+            manager.record(makeServiceStatement("Service-"+i));
+        ServiceStatement statement = manager.get(makeServiceElement("Service-3"));
+        Assert.assertNotNull(statement);
+        ServiceRecord record = statement.getServiceRecords()[0];
+        record.setType(ServiceRecord.INACTIVE_SERVICE_RECORD);
+        statement.putServiceRecord(recordingUuid, record);
+        manager.record(statement);
+        manager.terminate();
+
+        manager = new PersistentServiceStatementManager(config);
+        Assert.assertEquals(10, manager.get().length);
+        statement = manager.get(makeServiceElement("Service-3"));
+        Assert.assertEquals(1, statement.getServiceRecords(ServiceRecord.INACTIVE_SERVICE_RECORD).length);
+        Assert.assertNull(manager.get(makeServiceElement("Unknown")));
+        manager.terminate();
+    }
+
+    @Test
+    public void testConcurrentRecordAndRecover() throws Exception {
+        final PersistentServiceStatementManager manager = new PersistentServiceStatementManager(config);
+        final ServiceElement element = makeServiceElement("Stymie");
+        manager.record(new ServiceStatement(element));
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for(int i=0; i<threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        /* Each thread changes the shared ServiceStatement, as the Cybernode does */
+                        ServiceRecord record = new ServiceRecord(UuidFactory.generate(), element, "hostname");
+                        for(int j=0; j<50; j++) {
+                            ServiceStatement statement = manager.get(element);
+                            statement.putServiceRecord(recordingUuid, record);
+                            manager.write(statement);
+                        }
+                    } catch(Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for(Thread t : threads)
+            t.join();
+        Assert.assertNull(String.valueOf(failure.get()), failure.get());
+        manager.terminate();
+
+        ServiceStatement recovered = new PersistentServiceStatementManager(config).get(element);
+        Assert.assertEquals(threads.length, recovered.getServiceRecords().length);
+    }
+
+    @Test
+    public void testIncompleteEntryIsDiscarded() throws Exception {
+        PersistentServiceStatementManager manager = new PersistentServiceStatementManager(config);
+        manager.record(makeServiceStatement("Spanky"));
+        manager.record(makeServiceStatement("Alfalfa"));
+        manager.terminate();
+        File journal = new File(recordRoot, PersistentServiceStatementManager.JOURNAL);
+        long length = journal.length();
+        FileOutputStream out = new FileOutputStream(journal, true);
+        /* The start of an entry whose content was not written */
+        out.write(new byte[]{0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 2, 3});
+        out.close();
+
+        manager = new PersistentServiceStatementManager(config);
+        Assert.assertEquals(2, manager.get().length);
+        Assert.assertEquals(length, journal.length());
+        manager.record(makeServiceStatement("Darla"));
+        manager.terminate();
+        Assert.assertEquals(3, new PersistentServiceStatementManager(config).get().length);
+    }
+
+    @Test
+    public void testUnreadableEntryIsSkipped() throws Exception {
+        PersistentServiceStatementManager manager = new PersistentServiceStatementManager(config);
+        manager.record(makeServiceStatement("Spanky"));
+        manager.record(makeServiceStatement("Alfalfa"));
+        manager.terminate();
+        File journal = new File(recordRoot, PersistentServiceStatementManager.JOURNAL);
+        byte[] entries = readFully(journal);
+        /* An intact entry whose content is not a serialized ServiceStatement, followed by the valid entries */
+        byte[] garbage = "not a ServiceStatement".getBytes("UTF-8");
+        CRC32 crc = new CRC32();
+        crc.update(garbage);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(journal));
+        out.writeInt(garbage.length);
+        out.writeLong(System.currentTimeMillis());
+        out.writeLong(crc.getValue());
+        out.write(garbage);
+        out.write(entries);
+        out.close();
+
+        manager = new PersistentServiceStatementManager(config);
+        Assert.assertEquals(2, manager.get().length);
+        manager.terminate();
+    }
+
+    @Test
+    public void testJournalIsReopened() throws Exception {
+        /* A directory in place of the journal, the journal cannot be read or written */
+        File journal = new File(recordRoot, PersistentServiceStatementManager.JOURNAL);
+        Assert.assertTrue(journal.mkdir());
+        PersistentServiceStatementManager manager = new PersistentServiceStatementManager(config);
+        manager.record(makeServiceStatement("Buckwheat"));
+        Assert.assertNotNull(manager.get(makeServiceElement("Buckwheat")));
+        Assert.assertTrue(journal.delete());
+        manager.record(makeServiceStatement("Porky"));
+        manager.terminate();
+        Assert.assertTrue(journal.isFile());
+        Assert.assertEquals(2, new PersistentServiceStatementManager(config).get().length);
+    }
+
+    @Test
+    public void testJournalIsCompacted() throws Exception {
+        PersistentServiceStatementManager manager = new PersistentServiceStatementManager(config);
+        ServiceStatement statement = makeServiceStatement("Stymie");
+        File journal = new File(recordRoot, PersistentServiceStatementManager.JOURNAL);
+        manager.record(statement);
+        long entryLength = journal.length();
+        for(int i=0; i<PersistentServiceStatementManager.COMPACT_THRESHOLD*2; i++)
+            manager.record(statement);
+        manager.terminate();
+        Assert.assertTrue(journal.length()<=entryLength*PersistentServiceStatementManager.COMPACT_THRESHOLD);
+        Assert.assertEquals(1, new PersistentServiceStatementManager(config).get().length);
+    }
+
+    @Test
+    public void testStatementFilesAreMigrated() throws Exception {
+        ServiceStatement statement = makeServiceStatement("Froggy");
+        File file = new File(recordRoot, "Test.Froggy"+PersistentServiceStatementManager.STATEMENT_EXT);
+        ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file));
+        oos.writeObject(statement);
+        oos.close();
+
+        PersistentServiceStatementManager manager = new PersistentServiceStatementManager(config);
+        Assert.assertNotNull(manager.get(makeServiceElement("Froggy")));
+        Assert.assertFalse(file.exists());
+        manager.terminate();
+        Assert.assertEquals(1, new PersistentServiceStatementManager(config).get().length);
+    }
+
+    private byte[] readFully(File file) throws IOException {
+        byte[] bytes = new byte[(int)file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private ServiceStatement makeServiceStatement(String name) {
+        ServiceElement element = makeServiceElement(name);
+        ServiceStatement statement = new ServiceStatement(element);
+        statement.putServiceRecord(recordingUuid, new ServiceRecord(UuidFactory.generate(), element, "hostname"));
+        return statement;
+    }
+
+    private ServiceElement makeServiceElement(String name) {
+        ServiceElement elem = new ServiceElement();
+        ClassBundle main = new ClassBundle("");
+        elem.setComponentBundle(main);
+        ServiceBeanConfig sbc = new ServiceBeanConfig();
+        sbc.setName(name);
+        sbc.setOperationalStringName("Test");
+        elem.setServiceBeanConfig(sbc);
+        return elem;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.cybernode;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.rioproject.deploy.ServiceElementNotCachedException;
+import org.rioproject.deploy.ServiceProvisionEvent;
+import org.rioproject.deploy.SystemComponent;
+import org.rioproject.jsb.ServiceElementUtil;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Test the {@code ServiceElementCache}.
+ */
+public class ServiceElementCacheTest {
+
+    @Test
+    public void testResolve() throws Exception {
+        ServiceElementCache cache = new ServiceElementCache(2);
+        ServiceElement template = createServiceElement("Echo");
+        ServiceElement instance1 = ServiceElementUtil.prepareInstanceID(template, true, 1);
+        ServiceElement instance2 = ServiceElementUtil.prepareInstanceID(template, true, 2);
+        String digest = ServiceElementUtil.getElementDigest(instance1);
+
+        Assert.assertFalse(cache.resolve(new ServiceProvisionEvent(this, null, instance1)));
+        Assert.assertEquals(0, cache.size());
+
+        Assert.assertTrue(cache.resolve(createEvent(instance1, digest, true)));
+        Assert.assertEquals(1, cache.size());
+
+        ServiceProvisionEvent event = createEvent(instance2, digest, false);
+        Assert.assertTrue(cache.resolve(event));
+        Assert.assertEquals(instance2, event.getServiceElement());
+        Assert.assertEquals(2L, event.getServiceElement().getServiceBeanConfig().getInstanceID().longValue());
+    }
+
+    @Test
+    public void testResolvedInstancesAreNotShared() throws Exception {
+        ServiceElementCache cache = new ServiceElementCache(2);
+        ServiceElement template = createServiceElement("Echo");
+        ServiceElement instance1 = ServiceElementUtil.prepareInstanceID(template, true, 1);
+        String digest = ServiceElementUtil.getElementDigest(instance1);
+        Assert.assertTrue(cache.resolve(createEvent(instance1, digest, true)));
+
+        ServiceProvisionEvent event2 = createEvent(ServiceElementUtil.prepareInstanceID(template, true, 2), digest, false);
+        ServiceProvisionEvent event3 = createEvent(ServiceElementUtil.prepareInstanceID(template, true, 3), digest, false);
+        Assert.assertTrue(cache.resolve(event2));
+        Assert.assertTrue(cache.resolve(event3));
+        ServiceElement resolved2 = event2.getServiceElement();
+        ServiceElement resolved3 = event3.getServiceElement();
+        Assert.assertNotSame(instance1.getServiceLevelAgreements(), resolved2.getServiceLevelAgreements());
+        Assert.assertNotSame(resolved2.getServiceLevelAgreements(), resolved3.getServiceLevelAgreements());
+        Assert.assertNotSame(resolved2.getComponentBundle(), resolved3.getComponentBundle());
+        Assert.assertNotSame(resolved2.getExportBundles()[0], resolved3.getExportBundles()[0]);
+        Assert.assertEquals(2L, resolved2.getServiceBeanConfig().getInstanceID().longValue());
+        Assert.assertEquals(3L, resolved3.getServiceBeanConfig().getInstanceID().longValue());
+
+        /* A change made by one service instance is not seen by another */
+        resolved2.getExportBundles()[0].setCodebase("http://changed:9010");
+        Assert.assertFalse("http://changed:9010".equals(resolved3.getExportBundles()[0].getCodebase()));
+    }
+
+    @Test
+    public void testInstanceValuesAreTakenFromEvent() throws Exception {
+        ServiceElementCache cache = new ServiceElementCache(2);
+        ServiceElement template = createServiceElement("Echo");
+        ServiceElement instance1 = ServiceElementUtil.prepareInstanceID(template, true, 1);
+        instance1.setActual(0);
+        instance1.setProvisionablePlatformCapabilities(Arrays.asList(new SystemComponent("Spring", null)));
+        String digest = ServiceElementUtil.getElementDigest(instance1);
+        Assert.assertTrue(cache.resolve(createEvent(instance1, digest, true)));
+
+        ServiceElement instance2 = ServiceElementUtil.prepareInstanceID(template, true, 2);
+        instance2.setActual(1);
+        ServiceProvisionEvent event = createEvent(instance2, digest, false);
+        Assert.assertTrue(cache.resolve(event));
+        Assert.assertEquals(1, event.getServiceElement().getActual());
+        Assert.assertTrue(event.getServiceElement().getProvisionablePlatformCapabilities().isEmpty());
+
+        /* An event without provisionable capabilities */
+        event = createEvent(ServiceElementUtil.prepareInstanceID(template, true, 3), digest, false);
+        event.setProvisionablePlatformCapabilities(null);
+        Assert.assertTrue(cache.resolve(event));
+        Assert.assertTrue(event.getServiceElement().getProvisionablePlatformCapabilities().isEmpty());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ServiceElementCache cache = new ServiceElementCache(1);
+        ServiceElement echo = ServiceElementUtil.prepareInstanceID(createServiceElement("Echo"), true, 1);
+        ServiceElement hello = ServiceElementUtil.prepareInstanceID(createServiceElement("Hello"), true, 1);
+        String echoDigest = ServiceElementUtil.getElementDigest(echo);
+        cache.resolve(createEvent(echo, echoDigest, true));
+        cache.resolve(createEvent(hello, ServiceElementUtil.getElementDigest(hello), true));
+        Assert.assertEquals(1, cache.size());
+        try {
+            cache.resolve(createEvent(echo, echoDigest, false));
+            Assert.fail("Expected ServiceElementNotCachedException");
+        } catch (ServiceElementNotCachedException e) {
+            Assert.assertEquals(echoDigest, e.getElementDigest());
+        }
+    }
+
+    private ServiceProvisionEvent createEvent(ServiceElement instance, String digest, boolean sendElement) {
+        ServiceProvisionEvent event = new ServiceProvisionEvent(this, null, sendElement?instance:null);
+        event.setElementDigest(digest);
+        event.setInstanceParameters(ServiceElementUtil.getInstanceParameters(instance));
+        event.setActual(instance.getActual());
+        event.setProvisionablePlatformCapabilities(instance.getProvisionablePlatformCapabilities());
+        return event;
+    }
+
+    private ServiceElement createServiceElement(String name) {
+        ServiceBeanConfig sbc = new ServiceBeanConfig(new HashMap<String, Object>(), new String[]{"-"});
+        sbc.setName(name);
+        sbc.setOperationalStringName("Cache");
+        return new ServiceElement(ServiceElement.ProvisionType.DYNAMIC,
+                                  sbc,
+                                  null,
+                                  new ClassBundle[]{new ClassBundle("org.rioproject.test."+name)},
+                                  null,
+                                  new ClassBundle("org.rioproject.test."+name+"Impl"));
+    }
+}
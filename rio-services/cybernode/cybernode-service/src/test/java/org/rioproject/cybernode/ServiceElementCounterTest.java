@@ -0,0 +1,102 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.cybernode;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.opstring.ServiceElementKey;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the {@code ServiceElementCounter}.
+ */
+public class ServiceElementCounterTest {
+
+    @Test
+    public void testIncrementIfLess() {
+        ServiceElementCounter counter = new ServiceElementCounter();
+        ServiceElementKey echo = createKey("Echo");
+        ServiceElementKey hello = createKey("Hello");
+        Assert.assertTrue(counter.incrementIfLess(echo, 2));
+        Assert.assertTrue(counter.incrementIfLess(echo, 2));
+        Assert.assertFalse(counter.incrementIfLess(echo, 2));
+        Assert.assertEquals(2, counter.get(echo));
+        Assert.assertTrue(counter.incrementIfLess(hello, 1));
+        Assert.assertEquals(1, counter.get(hello));
+
+        counter.decrement(echo);
+        counter.decrement(echo);
+        Assert.assertEquals(0, counter.get(echo));
+        counter.decrement(echo);
+        Assert.assertEquals(0, counter.get(echo));
+        Assert.assertTrue(counter.incrementIfLess(echo, 1));
+        Assert.assertEquals(1, counter.get(echo));
+    }
+
+    @Test
+    public void testConcurrentReservations() throws Exception {
+        final ServiceElementCounter counter = new ServiceElementCounter();
+        final ServiceElementKey key = createKey("Echo");
+        final int limit = 10;
+        final AtomicInteger reserved = new AtomicInteger();
+        final AtomicInteger maxObserved = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for(int i=0; i<threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for(int j=0; j<10000; j++) {
+                        if(counter.incrementIfLess(key, limit)) {
+                            int current = reserved.incrementAndGet();
+                            if(current>maxObserved.get())
+                                maxObserved.set(current);
+                            reserved.decrementAndGet();
+                            counter.decrement(key);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for(Thread t : threads)
+            t.join();
+        Assert.assertTrue("Observed "+maxObserved.get()+" reservations", maxObserved.get()<=limit);
+        Assert.assertEquals(0, counter.get(key));
+    }
+
+    private ServiceElementKey createKey(String name) {
+        ServiceBeanConfig sbc = new ServiceBeanConfig();
+        sbc.setName(name);
+        sbc.setOperationalStringName("Counter");
+        return new ServiceElement(ServiceElement.ProvisionType.DYNAMIC,
+                                  sbc,
+                                  null,
+                                  new ClassBundle[0],
+                                  null,
+                                  new ClassBundle("org.rioproject.test."+name+"Impl")).getKey();
+    }
+}
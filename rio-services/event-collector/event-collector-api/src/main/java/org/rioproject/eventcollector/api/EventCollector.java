@@ -39,4 +39,18 @@ public interface EventCollector extends Service {
      * @throws IllegalArgumentException If {@code duration} is not positive or Lease.ANY.
      */
     EventCollectorRegistration register(long duration) throws IOException, LeaseDeniedException;
+
+    /**
+     * Get a page of stored events matching an {@link EventQuery}. To get the following page, set the
+     * {@link EventCursor} of the returned {@code EventQueryResult} on the query and invoke this method again.
+     *
+     * @param query The {@code EventQuery}, must not be {@code null}.
+     *
+     * @return An {@code EventQueryResult} holding the matching events in time order, and an {@code EventCursor} if
+     * more events match the query.
+     *
+     * @throws IOException If there is a communication failure between the client and the service.
+     * @throws IllegalArgumentException If {@code query} is {@code null}.
+     */
+    EventQueryResult getEvents(EventQuery query) throws IOException;
 }
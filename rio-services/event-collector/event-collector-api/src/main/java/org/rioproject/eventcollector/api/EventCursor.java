@@ -0,0 +1,85 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.eventcollector.api;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * The position of an event in the time ordered collection of events held by
+ * the {@link EventCollector}. An {@code EventCursor} is returned as part of an
+ * {@link EventQueryResult}, and is used to request the events that follow
+ * the last event of the result. Events added or removed while a client is
+ * paging through results do not change the position of a cursor.
+ */
+public final class EventCursor implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final long time;
+    private final String eventType;
+    private final long sequenceNumber;
+
+    /**
+     * Create an {@code EventCursor}
+     *
+     * @param time The time of the event, in milliseconds
+     * @param eventType The class name of the event, must not be {@code null}
+     * @param sequenceNumber The sequence number of the event
+     *
+     * @throws IllegalArgumentException if the {@code eventType} is {@code null}
+     */
+    public EventCursor(final long time, final String eventType, final long sequenceNumber) {
+        if(eventType==null)
+            throw new IllegalArgumentException("eventType must not be null");
+        this.time = time;
+        this.eventType = eventType;
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    public Date getDate() {
+        return new Date(time);
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if(this == o)
+            return true;
+        if(!(o instanceof EventCursor))
+            return false;
+        EventCursor that = (EventCursor)o;
+        return time==that.time && sequenceNumber==that.sequenceNumber && eventType.equals(that.eventType);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int)(time^(time>>>32));
+        result = 31*result+eventType.hashCode();
+        result = 31*result+(int)(sequenceNumber^(sequenceNumber>>>32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return time+"-"+eventType+"-"+sequenceNumber;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.eventcollector.api;
+
+import org.rioproject.event.RemoteServiceEvent;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Describes the events to get from the {@link EventCollector}. Events are
+ * matched by their type, the name of the OperationalString they were produced
+ * for, and the time they were fired. Matching events are returned in time
+ * order, a page at a time. A page holds at most {@link #getLimit()} events,
+ * and the {@link EventCursor} of a result is set on the query to get the
+ * next page.
+ *
+ * <p>Criteria that are not set match all events.
+ */
+public class EventQuery implements Serializable {
+    private static final long serialVersionUID = 1L;
+    /**
+     * The default maximum number of events returned in a page
+     */
+    public static final int DEFAULT_LIMIT = 100;
+    private final Set<String> eventTypes = new HashSet<String>();
+    private String operationalStringName;
+    private Date from;
+    private Date to;
+    private int limit = DEFAULT_LIMIT;
+    private EventCursor cursor;
+
+    /**
+     * Add an event type to match. If more than one event type is added,
+     * events of any of the types are matched.
+     *
+     * @param eventType The event class, must not be {@code null}
+     *
+     * @return This {@code EventQuery}
+     *
+     * @throws IllegalArgumentException if the {@code eventType} is {@code null}
+     */
+    public EventQuery addEventType(final Class<? extends RemoteServiceEvent> eventType) {
+        if(eventType==null)
+            throw new IllegalArgumentException("eventType must not be null");
+        return addEventType(eventType.getName());
+    }
+
+    /**
+     * Add an event type to match, using the class name of the event. If more
+     * than one event type is added, events of any of the types are matched.
+     *
+     * @param eventType The class name of the event, must not be {@code null}
+     *
+     * @return This {@code EventQuery}
+     *
+     * @throws IllegalArgumentException if the {@code eventType} is {@code null}
+     */
+    public EventQuery addEventType(final String eventType) {
+        if(eventType==null)
+            throw new IllegalArgumentException("eventType must not be null");
+        eventTypes.add(eventType);
+        return this;
+    }
+
+    /**
+     * @return The class names of the event types to match. If empty, events
+     * of all types are matched.
+     */
+    public Set<String> getEventTypes() {
+        return Collections.unmodifiableSet(eventTypes);
+    }
+
+    /**
+     * Set the name of the OperationalString events were produced for
+     *
+     * @param operationalStringName The name of the OperationalString, or
+     * {@code null} to match events for any, or no, OperationalString
+     *
+     * @return This {@code EventQuery}
+     */
+    public EventQuery setOperationalStringName(final String operationalStringName) {
+        this.operationalStringName = operationalStringName;
+        return this;
+    }
+
+    public String getOperationalStringName() {
+        return operationalStringName;
+    }
+
+    /**
+     * Set the earliest time of matched events
+     *
+     * @param from Events fired at or after this time are matched. May be
+     * {@code null}.
+     *
+     * @return This {@code EventQuery}
+     */
+    public EventQuery setFrom(final Date from) {
+        this.from = from;
+        return this;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    /**
+     * Set the time matched events must be fired before
+     *
+     * @param to Events fired before this time are matched. May be
+     * {@code null}.
+     *
+     * @return This {@code EventQuery}
+     */
+    public EventQuery setTo(final Date to) {
+        this.to = to;
+        return this;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    /**
+     * Set the maximum number of events returned in a page. The
+     * {@link EventCollector} may return fewer events than requested.
+     *
+     * @param limit The maximum number of events, must be greater than 0
+     *
+     * @return This {@code EventQuery}
+     *
+     * @throws IllegalArgumentException if the {@code limit} is not greater than 0
+     */
+    public EventQuery setLimit(final int limit) {
+        if(limit<1)
+            throw new IllegalArgumentException("limit must be greater than 0");
+        this.limit = limit;
+        return this;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Set the position to get events after
+     *
+     * @param cursor The {@code EventCursor} returned with the previous page of
+     * results, or {@code null} to get the first page
+     *
+     * @return This {@code EventQuery}
+     */
+    public EventQuery setCursor(final EventCursor cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    public EventCursor getCursor() {
+        return cursor;
+    }
+
+    @Override
+    public String toString() {
+        return "EventQuery{eventTypes="+eventTypes+
+               ", operationalStringName="+operationalStringName+
+               ", from="+from+
+               ", to="+to+
+               ", limit="+limit+
+               ", cursor="+cursor+"}";
+    }
+}
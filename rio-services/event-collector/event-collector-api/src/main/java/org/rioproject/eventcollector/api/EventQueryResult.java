@@ -0,0 +1,72 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.eventcollector.api;
+
+import org.rioproject.event.RemoteServiceEvent;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of events matching an {@link EventQuery}.
+ */
+public class EventQueryResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final List<RemoteServiceEvent> events;
+    private final EventCursor cursor;
+
+    /**
+     * Create an {@code EventQueryResult}
+     *
+     * @param events The matching events in time order, must not be {@code null}
+     * @param cursor The position of the last event, if more events match the
+     * query. If there are no more matching events, {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code events} is {@code null}
+     */
+    public EventQueryResult(final List<RemoteServiceEvent> events, final EventCursor cursor) {
+        if(events==null)
+            throw new IllegalArgumentException("events must not be null");
+        this.events = Collections.unmodifiableList(new ArrayList<RemoteServiceEvent>(events));
+        this.cursor = cursor;
+    }
+
+    /**
+     * @return The matching events in time order. If there are no matching
+     * events, an empty {@code List} is returned.
+     */
+    public List<RemoteServiceEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return The {@code EventCursor} to set on the {@link EventQuery} to get
+     * the next page of events, or {@code null} if there are no more matching
+     * events.
+     */
+    public EventCursor getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @return {@code true} if there are more matching events
+     */
+    public boolean hasMore() {
+        return cursor!=null;
+    }
+}
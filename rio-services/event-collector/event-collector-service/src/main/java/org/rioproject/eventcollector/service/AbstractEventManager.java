@@ -15,6 +15,7 @@
  */
 package org.rioproject.eventcollector.service;
 
+import com.sun.jini.config.Config;
 import net.jini.core.entry.Entry;
 import net.jini.core.event.RemoteEvent;
 import net.jini.core.event.UnknownEventException;
@@ -29,6 +30,8 @@ import org.rioproject.event.BasicEventConsumer;
 import org.rioproject.event.EventDescriptor;
 import org.rioproject.event.RemoteServiceEvent;
 import org.rioproject.event.RemoteServiceEventListener;
+import org.rioproject.eventcollector.api.EventQuery;
+import org.rioproject.eventcollector.api.EventQueryResult;
 import org.rioproject.resources.client.ServiceDiscoveryAdapter;
 import org.rioproject.resources.util.ThrowableUtil;
 import org.slf4j.Logger;
@@ -44,18 +47,31 @@ import java.util.concurrent.Executors;
 /**
  * Provides basic support for an {@code EventManager}.
  *
+ * <p>The event history is replayed to a newly registered listener in batches,
+ * the size of which is set by the {@code historyBatchSize} configuration entry
+ * of the {@code org.rioproject.eventcollector.service} component. The default
+ * is {@link EventQuery#DEFAULT_LIMIT}.
+ *
  * @author Dennis Reedy
  */
 public abstract class AbstractEventManager implements RemoteServiceEventListener, EventManager {
+    static final String CONFIG_COMPONENT = AbstractEventManager.class.getPackage().getName();
     private static final Logger logger = LoggerFactory.getLogger(AbstractEventManager.class.getName());
     private BlockingQueue<RemoteEvent> eventQ;
     private final List<EventProducerManager> eventProducerManagers = new ArrayList<EventProducerManager>();
     private final ExecutorService execService = Executors.newCachedThreadPool();
+    private int historyBatchSize = EventQuery.DEFAULT_LIMIT;
 
     public void initialize(final EventCollectorContext context) throws Exception {
         if(context==null)
             throw new IllegalArgumentException("context must not be null");
         this.eventQ = context.getEventQueue();
+        historyBatchSize = Config.getIntEntry(context.getConfiguration(),
+                                              CONFIG_COMPONENT,
+                                              "historyBatchSize",
+                                              EventQuery.DEFAULT_LIMIT,
+                                              1,
+                                              Integer.MAX_VALUE);
         ServiceDiscoveryManager sdm = new ServiceDiscoveryManager(context.getDiscoveryManager(),
                                                                   new LeaseRenewalManager(context.getConfiguration()),
                                                                   context.getConfiguration());
@@ -209,7 +225,8 @@ public abstract class AbstractEventManager implements RemoteServiceEventListener
     }
 
     /**
-     * This class will read the history and perform the notification to the newly registered listener
+     * This class will read the history and perform the notification to the newly registered listener. The history
+     * is read a batch at a time, each batch starting after the last event of the previous batch.
      */
     class EventHistoryNotifier implements Runnable {
         final RegisteredNotification registeredNotification;
@@ -221,11 +238,19 @@ public abstract class AbstractEventManager implements RemoteServiceEventListener
         public void run() {
             try {
                 registeredNotification.setHistoryUpdating(true);
-                for(RemoteEvent event : getEvents(registeredNotification.getEventIndex())) {
-                    if(!doNotify(event)) {
-                        break;
+                EventQuery query = new EventQuery();
+                query.setFrom(registeredNotification.getEventIndex());
+                query.setLimit(historyBatchSize);
+                EventQueryResult result;
+                do {
+                    result = query(query);
+                    for(RemoteEvent event : result.getEvents()) {
+                        if(!doNotify(event)) {
+                            return;
+                        }
                     }
-                }
+                    query.setCursor(result.getCursor());
+                } while(result.hasMore());
             } finally {
                 registeredNotification.setHistoryUpdating(false);
                 for(RemoteEvent event : registeredNotification.getAndClearMissedEvents()) {
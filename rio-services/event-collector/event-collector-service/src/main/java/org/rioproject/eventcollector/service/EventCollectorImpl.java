@@ -36,6 +36,8 @@ import org.rioproject.event.EventDescriptor;
 import org.rioproject.event.EventDescriptorFactory;
 import org.rioproject.event.RemoteServiceEvent;
 import org.rioproject.eventcollector.api.EventCollectorRegistration;
+import org.rioproject.eventcollector.api.EventQuery;
+import org.rioproject.eventcollector.api.EventQueryResult;
 import org.rioproject.eventcollector.api.UnknownEventCollectorRegistration;
 import org.rioproject.eventcollector.proxy.EventCollectorBackend;
 import org.rioproject.eventcollector.proxy.Registration;
@@ -303,6 +305,12 @@ public class EventCollectorImpl extends ServiceBeanAdapter implements EventColle
         return new Registration((EventCollectorBackend)getServiceProxy(), registrationID, lease);
     }
 
+    public EventQueryResult getEvents(final EventQuery query) {
+        if(query==null)
+            throw new IllegalArgumentException("query must not be null");
+        return eventManager.query(query);
+    }
+
     public void enableDelivery(final Uuid uuid, final RemoteEventListener remoteEventListener)
         throws UnknownEventCollectorRegistration, IOException {
         if (remoteEventListener == null) {
@@ -16,6 +16,8 @@
 package org.rioproject.eventcollector.service;
 
 import org.rioproject.event.RemoteServiceEvent;
+import org.rioproject.eventcollector.api.EventQuery;
+import org.rioproject.eventcollector.api.EventQueryResult;
 
 import java.util.Collection;
 import java.util.Date;
@@ -56,6 +58,17 @@ public interface EventManager {
      */
     Collection<RemoteServiceEvent> getEvents(Date from);
 
+    /**
+     * Get a page of {@code RemoteServiceEvent}s that match an {@link EventQuery}.
+     *
+     * @param query The {@code EventQuery}, must not be {@code null}.
+     *
+     * @return An {@code EventQueryResult} holding the matching events in time order.
+     *
+     * @throws IllegalArgumentException if the {@code query} is {@code null}.
+     */
+    EventQueryResult query(EventQuery query);
+
     /**
      * Get the last recorded event {@code Date} from the collection of recorded {@code RemoteServiceEvent}s.
      *
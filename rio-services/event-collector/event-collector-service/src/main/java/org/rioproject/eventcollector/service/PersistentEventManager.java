@@ -24,6 +24,7 @@ import java.io.*;
 import java.rmi.server.RMIClassLoader;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -87,6 +88,29 @@ public class PersistentEventManager extends TransientEventManager {
 
     @Override
     public int delete(Collection<RemoteServiceEvent> events) {
+        deleteEventFiles(events);
+        return super.delete(events);
+    }
+
+    @Override
+    protected void retired(Collection<RemoteServiceEvent> events) {
+        /* Events that have not been written yet do not need to be */
+        List<RemoteServiceEvent> written = new ArrayList<RemoteServiceEvent>();
+        for(RemoteServiceEvent event : events) {
+            if(!eventWriteQ.remove(event))
+                written.add(event);
+        }
+        deleteEventFiles(written);
+    }
+
+    /*
+     * Added for testing support
+     */
+    File getPersistentEventDirectory() {
+        return persistentEventDirectory;
+    }
+
+    private void deleteEventFiles(Collection<RemoteServiceEvent> events) {
         for(RemoteServiceEvent event : events) {
             File file = new File(persistentEventDirectory, createEventFileName(event));
             if(file.exists()) {
@@ -100,14 +124,6 @@ public class PersistentEventManager extends TransientEventManager {
                 logger.warn(String.format("Could not delete %s, it does not exist", file.getName()));
             }
         }
-        return super.delete(events);
-    }
-
-    /*
-     * Added for testing support
-     */
-    File getPersistentEventDirectory() {
-        return persistentEventDirectory;
     }
 
     @SuppressWarnings("unchecked")
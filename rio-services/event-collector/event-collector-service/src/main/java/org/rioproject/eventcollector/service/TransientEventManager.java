@@ -15,106 +15,390 @@
  */
 package org.rioproject.eventcollector.service;
 
-import net.jini.core.event.RemoteEvent;
+import com.sun.jini.config.Config;
+import net.jini.config.Configuration;
 import org.rioproject.event.RemoteServiceEvent;
+import org.rioproject.eventcollector.api.EventCursor;
+import org.rioproject.eventcollector.api.EventQuery;
+import org.rioproject.eventcollector.api.EventQueryResult;
+import org.rioproject.opstring.ServiceElement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Method;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An {@code EventManager} that keeps an in-memory collection of events.
  *
+ * <p>Events are kept in time order, and are indexed by their type and by the
+ * name of the OperationalString they were produced for. The name of the
+ * OperationalString is obtained from the event's
+ * {@code getOperationalStringName()} or {@code getOpStringName()} method, or
+ * from the {@code ServiceElement} returned by its {@code getServiceElement()}
+ * method.
+ *
+ * <p>Events are not indexed by their source. The source of an event is the
+ * proxy of the service that fired it, and a client querying the collector
+ * asks for the events of an OperationalString rather than of a proxy it
+ * would first have to obtain. The OperationalString index serves those
+ * queries instead.
+ *
+ * <p>The following configuration entries are read, using the
+ * {@code org.rioproject.eventcollector.service} component:
+ * <ul>
+ * <li>{@code maxEvents}: The maximum number of events kept. When exceeded, the
+ * oldest events are removed. Defaults to no limit.</li>
+ * <li>{@code maxEventAge}: The maximum age of events kept, in milliseconds.
+ * Defaults to no limit.</li>
+ * <li>{@code maxQueryLimit}: The maximum number of events returned for an
+ * {@link EventQuery}. Defaults to 1000.</li>
+ * </ul>
+ *
  * @author Dennis Reedy
  */
 public class TransientEventManager extends AbstractEventManager {
+    static final int DEFAULT_MAX_QUERY_LIMIT = 1000;
     private final ConcurrentSkipListMap<EventKey, RemoteServiceEvent> eventLog = new ConcurrentSkipListMap<EventKey, RemoteServiceEvent>();
+    private final ConcurrentMap<String, NavigableSet<EventKey>> typeIndex = new ConcurrentHashMap<String, NavigableSet<EventKey>>();
+    private final ConcurrentMap<String, NavigableSet<EventKey>> opStringIndex = new ConcurrentHashMap<String, NavigableSet<EventKey>>();
+    private final ConcurrentMap<Class<?>, OperationalStringNameAccessor> accessors =
+        new ConcurrentHashMap<Class<?>, OperationalStringNameAccessor>();
+    private final AtomicInteger eventCount = new AtomicInteger();
+    private int maxEvents = Integer.MAX_VALUE;
+    private long maxEventAge = Long.MAX_VALUE;
+    private int maxQueryLimit = DEFAULT_MAX_QUERY_LIMIT;
     private static final Logger logger = LoggerFactory.getLogger(TransientEventManager.class.getName());
 
+    @Override
+    public void initialize(final EventCollectorContext context) throws Exception {
+        super.initialize(context);
+        Configuration config = context.getConfiguration();
+        maxEvents = Config.getIntEntry(config, CONFIG_COMPONENT, "maxEvents", Integer.MAX_VALUE, 1, Integer.MAX_VALUE);
+        maxEventAge = Config.getLongEntry(config, CONFIG_COMPONENT, "maxEventAge", Long.MAX_VALUE, 1, Long.MAX_VALUE);
+        maxQueryLimit = Config.getIntEntry(config,
+                                           CONFIG_COMPONENT,
+                                           "maxQueryLimit",
+                                           DEFAULT_MAX_QUERY_LIMIT,
+                                           1,
+                                           Integer.MAX_VALUE);
+        if(logger.isDebugEnabled())
+            logger.debug(String.format("Retention limits: maxEvents=%d, maxEventAge=%d, maxQueryLimit=%d",
+                                       maxEvents, maxEventAge, maxQueryLimit));
+    }
+
     @Override
     public void postNotify(final RemoteServiceEvent event) {
-        EventKey key = new EventKey(event);
-        if(eventLog.containsKey(key)) {
+        EventKey key = new EventKey(event, getOperationalStringName(event));
+        if(eventLog.putIfAbsent(key, event)!=null) {
             logger.warn("Already have {}", key);
             return;
         }
-        eventLog.put(key, event);
+        eventCount.incrementAndGet();
+        addToIndex(typeIndex, key.name, key);
+        if(key.opStringName!=null)
+            addToIndex(opStringIndex, key.opStringName, key);
+        /* The event may have been removed before it was indexed */
+        if(!eventLog.containsKey(key))
+            removeFromIndexes(key);
+        enforceRetention();
         if(logger.isDebugEnabled())
-            logger.debug(String.format("Added key: %s, we have %d events", key, eventLog.size()));
+            logger.debug(String.format("Added key: %s, we have %d events", key, eventCount.get()));
     }
 
     @Override
     public Collection<RemoteServiceEvent> getEvents() {
-        List<RemoteServiceEvent> events = new LinkedList<RemoteServiceEvent>();
-        events.addAll(eventLog.values());
-        return events;
+        return new ArrayList<RemoteServiceEvent>(eventLog.values());
     }
 
     @Override
     public Date getLastRecordedDate() {
-        if(eventLog.isEmpty())
-            return null;
-        return eventLog.lastKey().date;
+        Map.Entry<EventKey, RemoteServiceEvent> last = eventLog.lastEntry();
+        return last==null?null:last.getKey().date;
     }
 
     @Override
     public Collection<RemoteServiceEvent> getEvents(final Date from) {
         if(from==null)
             return getEvents();
+        Map.Entry<EventKey, RemoteServiceEvent> last = eventLog.lastEntry();
+        if(last==null || from.after(last.getKey().date))
+            return new ArrayList<RemoteServiceEvent>();
         if(logger.isDebugEnabled()) {
             DateFormat formatter = new SimpleDateFormat("HH:mm:ss,SSS");
             logger.debug(String.format("Getting sublist from %s, to %s",
-                                      formatter.format(from), formatter.format(eventLog.lastKey())));
+                                      formatter.format(from), formatter.format(last.getKey().date)));
         }
-        List<RemoteServiceEvent> events = new LinkedList<RemoteServiceEvent>();
-        events.addAll(eventLog.subMap(new EventKey(from), eventLog.lastKey()).values());
-        return events;
+        return new ArrayList<RemoteServiceEvent>(eventLog.subMap(new EventKey(from), last.getKey()).values());
     }
 
     @Override
-    public int delete(Collection<RemoteServiceEvent> events) {
-        List<EventKey> removals = new ArrayList<EventKey>();
-        for(RemoteEvent event : events) {
-            for(Map.Entry<EventKey, RemoteServiceEvent> entry : eventLog.entrySet()) {
-                RemoteEvent remoteEvent = entry.getValue();
-                if(remoteEvent.getClass().getName().equals(event.getClass().getName()) &&
-                    remoteEvent.getSequenceNumber()==event.getSequenceNumber()) {
-                    removals.add(entry.getKey());
-                }
+    public EventQueryResult query(final EventQuery query) {
+        if(query==null)
+            throw new IllegalArgumentException("query must not be null");
+        enforceRetention();
+        int limit = Math.min(query.getLimit(), maxQueryLimit);
+        List<NavigableSet<EventKey>> candidates = new ArrayList<NavigableSet<EventKey>>();
+        if(query.getOperationalStringName()!=null) {
+            NavigableSet<EventKey> keys = opStringIndex.get(query.getOperationalStringName());
+            if(keys!=null)
+                candidates.add(keys);
+        } else if(!query.getEventTypes().isEmpty()) {
+            for(String eventType : query.getEventTypes()) {
+                NavigableSet<EventKey> keys = typeIndex.get(eventType);
+                if(keys!=null)
+                    candidates.add(keys);
+            }
+        } else {
+            candidates.add(eventLog.navigableKeySet());
+        }
+
+        /* Take up to one more key than the limit from each candidate set, to
+         * know whether there are more matching events */
+        List<EventKey> matched = new ArrayList<EventKey>();
+        for(NavigableSet<EventKey> keys : candidates) {
+            int count = 0;
+            for(EventKey key : getRange(keys, query)) {
+                if(!matches(key, query))
+                    continue;
+                matched.add(key);
+                if(++count>limit)
+                    break;
+            }
+        }
+        if(candidates.size()>1)
+            Collections.sort(matched);
+
+        List<RemoteServiceEvent> events = new ArrayList<RemoteServiceEvent>();
+        EventKey lastKey = null;
+        EventCursor cursor = null;
+        for(EventKey key : matched) {
+            if(events.size()==limit) {
+                cursor = new EventCursor(lastKey.date.getTime(), lastKey.name, lastKey.sequenceNumber);
+                break;
+            }
+            RemoteServiceEvent event = eventLog.get(key);
+            if(event!=null) {
+                events.add(event);
+                lastKey = key;
             }
         }
-        for(EventKey eventKey : removals) {
-            eventLog.remove(eventKey);
+        if(logger.isDebugEnabled())
+            logger.debug(String.format("%s matched %d events", query, events.size()));
+        return new EventQueryResult(events, cursor);
+    }
+
+    @Override
+    public int delete(final Collection<RemoteServiceEvent> events) {
+        int deleted = 0;
+        for(RemoteServiceEvent event : events) {
+            String eventType = event.getClass().getName();
+            if(removeEvent(new EventKey(event, null))!=null) {
+                deleted++;
+                continue;
+            }
+            /* Match events of the same type and sequence number */
+            NavigableSet<EventKey> keys = typeIndex.get(eventType);
+            if(keys==null)
+                continue;
+            for(EventKey key : keys) {
+                if(key.sequenceNumber==event.getSequenceNumber() && removeEvent(key)!=null)
+                    deleted++;
+            }
         }
-        return removals.size();
+        return deleted;
     }
 
-    protected void addRemoteEvents(Collection<RemoteServiceEvent> events) {
+    protected void addRemoteEvents(final Collection<RemoteServiceEvent> events) {
         for(RemoteServiceEvent event : events) {
             postNotify(event);
         }
     }
 
     protected int getNumberOfCollectedEvents() {
-        return eventLog.size();
+        return eventCount.get();
+    }
+
+    /**
+     * Invoked when events have been removed because the configured
+     * {@code maxEvents} or {@code maxEventAge} has been exceeded.
+     *
+     * @param events The removed events
+     */
+    protected void retired(final Collection<RemoteServiceEvent> events) {
+    }
+
+    private void enforceRetention() {
+        long cutoff = maxEventAge==Long.MAX_VALUE?Long.MIN_VALUE:System.currentTimeMillis()-maxEventAge;
+        List<RemoteServiceEvent> removed = new ArrayList<RemoteServiceEvent>();
+        Map.Entry<EventKey, RemoteServiceEvent> first;
+        while((first = eventLog.firstEntry())!=null) {
+            if(eventCount.get()<=maxEvents && first.getKey().date.getTime()>=cutoff)
+                break;
+            RemoteServiceEvent event = removeEvent(first.getKey());
+            if(event!=null)
+                removed.add(event);
+        }
+        if(!removed.isEmpty()) {
+            if(logger.isDebugEnabled())
+                logger.debug(String.format("Retired %d events, we have %d events", removed.size(), eventCount.get()));
+            retired(removed);
+        }
+    }
+
+    private RemoteServiceEvent removeEvent(final EventKey key) {
+        RemoteServiceEvent event = eventLog.remove(key);
+        if(event!=null) {
+            eventCount.decrementAndGet();
+            removeFromIndexes(key);
+        }
+        return event;
+    }
+
+    private void removeFromIndexes(final EventKey key) {
+        NavigableSet<EventKey> keys = typeIndex.get(key.name);
+        if(keys!=null)
+            keys.remove(key);
+        if(key.opStringName!=null) {
+            keys = opStringIndex.get(key.opStringName);
+            if(keys!=null)
+                keys.remove(key);
+        }
+    }
+
+    private void addToIndex(final ConcurrentMap<String, NavigableSet<EventKey>> index,
+                            final String value,
+                            final EventKey key) {
+        NavigableSet<EventKey> keys = index.get(value);
+        if(keys==null) {
+            NavigableSet<EventKey> created = new ConcurrentSkipListSet<EventKey>();
+            keys = index.putIfAbsent(value, created);
+            if(keys==null)
+                keys = created;
+        }
+        keys.add(key);
+    }
+
+    /*
+     * Get the keys of a candidate set that are within the cursor, from and to
+     * bounds of the query
+     */
+    private NavigableSet<EventKey> getRange(final NavigableSet<EventKey> keys, final EventQuery query) {
+        EventKey lower = null;
+        boolean inclusive = true;
+        if(query.getCursor()!=null) {
+            EventCursor cursor = query.getCursor();
+            lower = new EventKey(cursor.getDate(), cursor.getEventType(), cursor.getSequenceNumber());
+            inclusive = false;
+        } else if(query.getFrom()!=null) {
+            lower = new EventKey(query.getFrom());
+        }
+        EventKey upper = query.getTo()==null?null:new EventKey(query.getTo());
+        if(lower!=null && upper!=null) {
+            if(lower.compareTo(upper)>=0)
+                return new TreeSet<EventKey>();
+            return keys.subSet(lower, inclusive, upper, false);
+        }
+        if(lower!=null)
+            return keys.tailSet(lower, inclusive);
+        if(upper!=null)
+            return keys.headSet(upper, false);
+        return keys;
+    }
+
+    private boolean matches(final EventKey key, final EventQuery query) {
+        if(!query.getEventTypes().isEmpty() && !query.getEventTypes().contains(key.name))
+            return false;
+        if(query.getOperationalStringName()!=null && !query.getOperationalStringName().equals(key.opStringName))
+            return false;
+        return !(query.getFrom()!=null && key.date.before(query.getFrom()));
+    }
+
+    private String getOperationalStringName(final RemoteServiceEvent event) {
+        OperationalStringNameAccessor accessor = accessors.get(event.getClass());
+        if(accessor==null) {
+            accessor = new OperationalStringNameAccessor(event.getClass());
+            accessors.putIfAbsent(event.getClass(), accessor);
+        }
+        return accessor.get(event);
+    }
+
+    /**
+     * Obtains the name of the OperationalString an event was produced for
+     */
+    private static class OperationalStringNameAccessor {
+        private Method method;
+        private boolean fromServiceElement;
+
+        OperationalStringNameAccessor(final Class<?> eventClass) {
+            for(String name : new String[]{"getOperationalStringName", "getOpStringName", "getServiceElement"}) {
+                try {
+                    Method m = eventClass.getMethod(name);
+                    if(m.getReturnType().equals(String.class)) {
+                        method = m;
+                        break;
+                    }
+                    if(ServiceElement.class.isAssignableFrom(m.getReturnType())) {
+                        method = m;
+                        fromServiceElement = true;
+                        break;
+                    }
+                } catch(NoSuchMethodException e) {
+                    /* Try the next accessor */
+                }
+            }
+        }
+
+        String get(final RemoteServiceEvent event) {
+            if(method==null)
+                return null;
+            try {
+                Object value = method.invoke(event);
+                if(fromServiceElement)
+                    return value==null?null:((ServiceElement)value).getOperationalStringName();
+                return (String)value;
+            } catch(Exception e) {
+                logger.warn("Getting the OperationalString name of {}", event.getClass().getName(), e);
+                return null;
+            }
+        }
     }
 
     private class EventKey implements Comparable<EventKey> {
         private Long sequenceNumber;
         private final Date date;
         private String name;
+        private String opStringName;
+        private boolean bound;
 
-        private EventKey(final RemoteServiceEvent event) {
+        private EventKey(final RemoteServiceEvent event, final String opStringName) {
             sequenceNumber = event.getSequenceNumber();
             date = event.getDate();
             name = event.getClass().getName();
+            this.opStringName = opStringName;
         }
 
+        private EventKey(final Date date, final String name, final long sequenceNumber) {
+            this.date = date;
+            this.name = name;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        /*
+         * Create a key that bounds a range of events by date. The key sorts
+         * before every event of the date, so that it is an inclusive lower
+         * bound and an exclusive upper bound for the events of that date
+         */
         private EventKey(final Date date) {
             this.date = date;
+            this.bound = true;
         }
 
         @Override
@@ -127,6 +411,7 @@ public class TransientEventManager extends AbstractEventManager {
             EventKey eventKey = (EventKey) o;
 
             return date.equals(eventKey.date) &&
+                   bound==eventKey.bound &&
                    !(name != null ? !name.equals(eventKey.name) : eventKey.name != null) &&
                    !(sequenceNumber != null ?
                      !sequenceNumber.equals(eventKey.sequenceNumber) :
@@ -145,6 +430,9 @@ public class TransientEventManager extends AbstractEventManager {
         @Override
         public int compareTo(EventKey o) {
             int result = date.compareTo(o.date);
+            if(result==0 && bound!=o.bound) {
+                result = bound?-1:1;
+            }
             if(result==0) {
                 if(name!=null && o.name!=null) {
                     result = name.compareTo(o.name);
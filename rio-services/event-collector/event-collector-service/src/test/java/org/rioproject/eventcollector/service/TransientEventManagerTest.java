@@ -16,6 +16,8 @@
 package org.rioproject.eventcollector.service;
 
 import junit.framework.Assert;
+import net.jini.config.Configuration;
+import net.jini.config.ConfigurationFile;
 import net.jini.config.EmptyConfiguration;
 import net.jini.core.event.RemoteEvent;
 import net.jini.discovery.LookupDiscovery;
@@ -23,6 +25,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.rioproject.event.EventDescriptor;
 import org.rioproject.event.RemoteServiceEvent;
+import org.rioproject.eventcollector.api.EventQuery;
+import org.rioproject.eventcollector.api.EventQueryResult;
+import org.rioproject.log.ServiceLogEvent;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -30,6 +35,8 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
 
 /**
  * Test the {@code TransientEventManager}
@@ -41,12 +48,7 @@ public class TransientEventManagerTest {
 
     @Before
     public void setUp() throws Exception {
-        eventManager = new TransientEventManager();
-        eventManager.initialize( new EventCollectorContext(EmptyConfiguration.INSTANCE,
-                                                           new LinkedBlockingQueue<RemoteEvent>(),
-                                                           new EventDescriptor[0],
-                                                           new LookupDiscovery(new String[0]),
-                                                           null));
+        eventManager = createEventManager(EmptyConfiguration.INSTANCE);
     }
 
     @Test
@@ -90,6 +92,167 @@ public class TransientEventManagerTest {
         Assert.assertEquals(50, eventManager.getEvents(null).size());
     }
 
+    @Test
+    public void testQueryByEventType() throws Exception {
+        for(RemoteServiceEvent event : createRemoteServiceEvents(20)) {
+            eventManager.notify(event);
+        }
+        for(RemoteServiceEvent event : createServiceLogEvents(5, "Foo")) {
+            eventManager.notify(event);
+        }
+        EventQueryResult result = eventManager.query(new EventQuery().addEventType(ServiceLogEvent.class));
+        Assert.assertEquals(5, result.getEvents().size());
+        Assert.assertFalse(result.hasMore());
+        result = eventManager.query(new EventQuery().addEventType(ServiceLogEvent.class)
+                                                        .addEventType(RemoteServiceEvent.class));
+        Assert.assertEquals(25, result.getEvents().size());
+        assertTimeOrdered(result.getEvents());
+        result = eventManager.query(new EventQuery().addEventType("org.rioproject.Unknown"));
+        Assert.assertEquals(0, result.getEvents().size());
+    }
+
+    @Test
+    public void testQueryByOperationalStringName() throws Exception {
+        for(RemoteServiceEvent event : createServiceLogEvents(10, "Foo")) {
+            eventManager.notify(event);
+        }
+        for(RemoteServiceEvent event : createServiceLogEvents(5, "Bar")) {
+            eventManager.notify(event);
+        }
+        EventQueryResult result = eventManager.query(new EventQuery().setOperationalStringName("Bar"));
+        Assert.assertEquals(5, result.getEvents().size());
+        for(RemoteServiceEvent event : result.getEvents())
+            Assert.assertEquals("Bar", ((ServiceLogEvent)event).getOpStringName());
+        result = eventManager.query(new EventQuery().setOperationalStringName("Foo")
+                                                        .addEventType(RemoteServiceEvent.class));
+        Assert.assertEquals(0, result.getEvents().size());
+    }
+
+    @Test
+    public void testQueryTimeRange() throws Exception {
+        List<RemoteServiceEvent> events = createRemoteServiceEvents(30);
+        for(RemoteServiceEvent event : events) {
+            eventManager.notify(event);
+        }
+        EventQuery query = new EventQuery().setFrom(events.get(10).getDate()).setTo(events.get(20).getDate());
+        EventQueryResult result = eventManager.query(query);
+        Assert.assertEquals(10, result.getEvents().size());
+        Assert.assertEquals(10, result.getEvents().get(0).getSequenceNumber());
+        Assert.assertEquals(19, result.getEvents().get(9).getSequenceNumber());
+    }
+
+    @Test
+    public void testQueryTimeRangeWithSharedDates() throws Exception {
+        List<RemoteServiceEvent> events = createRemoteServiceEvents(12);
+        long time = events.get(0).getDate().getTime();
+        /* Four events for each of three dates */
+        for(int i=0; i<events.size(); i++)
+            events.get(i).getDate().setTime(time+(i/4)*1000);
+        for(RemoteServiceEvent event : events) {
+            eventManager.notify(event);
+        }
+        Date from = new Date(time+1000);
+        Date to = new Date(time+2000);
+        EventQueryResult result = eventManager.query(new EventQuery().setFrom(from).setTo(to));
+        Assert.assertEquals(4, result.getEvents().size());
+        for(int i=0; i<4; i++)
+            Assert.assertEquals(i+4, result.getEvents().get(i).getSequenceNumber());
+
+        result = eventManager.query(new EventQuery().addEventType(RemoteServiceEvent.class).setFrom(from));
+        Assert.assertEquals(8, result.getEvents().size());
+        Assert.assertEquals(4, result.getEvents().get(0).getSequenceNumber());
+
+        result = eventManager.query(new EventQuery().setTo(to));
+        Assert.assertEquals(8, result.getEvents().size());
+        Assert.assertEquals(7, result.getEvents().get(7).getSequenceNumber());
+    }
+
+    @Test
+    public void testQueryPaging() throws Exception {
+        for(RemoteServiceEvent event : createRemoteServiceEvents(50)) {
+            eventManager.notify(event);
+        }
+        EventQuery query = new EventQuery().setLimit(20);
+        List<RemoteServiceEvent> events = new ArrayList<RemoteServiceEvent>();
+        int pages = 0;
+        EventQueryResult result;
+        do {
+            result = eventManager.query(query);
+            events.addAll(result.getEvents());
+            query.setCursor(result.getCursor());
+            pages++;
+        } while(result.hasMore());
+        Assert.assertEquals(3, pages);
+        Assert.assertEquals(50, events.size());
+        for(int i=0; i<events.size(); i++)
+            Assert.assertEquals(i, events.get(i).getSequenceNumber());
+    }
+
+    @Test
+    public void testRetainMaxEvents() throws Exception {
+        TransientEventManager eventManager =
+            createEventManager(createConfiguration("org.rioproject.eventcollector.service.maxEvents=10"));
+        for(RemoteServiceEvent event : createRemoteServiceEvents(50)) {
+            eventManager.notify(event);
+        }
+        Assert.assertEquals(10, eventManager.getEvents().size());
+        Assert.assertEquals(10, eventManager.getNumberOfCollectedEvents());
+        Assert.assertEquals(40, eventManager.getEvents().iterator().next().getSequenceNumber());
+        Assert.assertEquals(10, eventManager.query(new EventQuery().addEventType(RemoteServiceEvent.class))
+                                            .getEvents().size());
+    }
+
+    @Test
+    public void testRetainMaxEventAge() throws Exception {
+        TransientEventManager eventManager =
+            createEventManager(createConfiguration("org.rioproject.eventcollector.service.maxEventAge=500L"));
+        for(RemoteServiceEvent event : createRemoteServiceEvents(10)) {
+            eventManager.notify(event);
+        }
+        Assert.assertEquals(10, eventManager.getEvents().size());
+        Thread.sleep(600);
+        Assert.assertEquals(0, eventManager.query(new EventQuery()).getEvents().size());
+        Assert.assertEquals(0, eventManager.getEvents().size());
+    }
+
+    static TransientEventManager createEventManager(Configuration config) throws Exception {
+        TransientEventManager eventManager = new TransientEventManager();
+        eventManager.initialize(new EventCollectorContext(config,
+                                                          new LinkedBlockingQueue<RemoteEvent>(),
+                                                          new EventDescriptor[0],
+                                                          new LookupDiscovery(new String[0]),
+                                                          null));
+        return eventManager;
+    }
+
+    static Configuration createConfiguration(String override) throws Exception {
+        return new ConfigurationFile(new String[]{"-", override});
+    }
+
+    static void assertTimeOrdered(List<RemoteServiceEvent> events) {
+        for(int i=1; i<events.size(); i++)
+            Assert.assertFalse(events.get(i).getDate().before(events.get(i-1).getDate()));
+    }
+
+    static List<RemoteServiceEvent> createServiceLogEvents(int count, String opStringName) {
+        List<RemoteServiceEvent> list = new ArrayList<RemoteServiceEvent>();
+        for(int i=0; i<count; i++) {
+            ServiceLogEvent event = new ServiceLogEvent("Test Event "+i,
+                                                        new LogRecord(Level.WARNING, "Message "+i),
+                                                        opStringName,
+                                                        "Test",
+                                                        null);
+            event.setSequenceNumber(i);
+            list.add(event);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+        return list;
+    }
+
     static List<RemoteServiceEvent> createRemoteServiceEvents(int count) {
         List<RemoteServiceEvent> list = new ArrayList<RemoteServiceEvent>();
         for(int i=0; i<count; i++) {
@@ -26,21 +26,30 @@ import org.rioproject.resolver.RemoteRepository;
 import org.rioproject.resolver.Resolver;
 import org.rioproject.resolver.ResolverException;
 import org.rioproject.resolver.ResolverHelper;
+import org.rioproject.rmi.ResolvingLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.net.MalformedURLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class is used to verify that either jars declared in an OperationalString can be served, or if the
- * OperationalString is configured to use artifacts, that required artifacts have been resolved
+ * OperationalString is configured to use artifacts, that required artifacts have been resolved.
+ *
+ * <p>The artifacts of all services in an OperationalString (and its nested OperationalStrings) are collected
+ * before any are resolved, each unique artifact is resolved once, using a bounded number of threads, and the
+ * resulting classpath is assigned to every bundle that declares the artifact. The number of threads is set
+ * with the <tt>org.rioproject.monitor.artifactResolutionThreads</tt> configuration entry, defaults to 4.
+ * The time taken to resolve each artifact is logged.
  */
 public class DeploymentVerifier {
     static Logger logger = LoggerFactory.getLogger(DeploymentVerifier.class.getName());
     private final List<RemoteRepository> additionalRepositories = new ArrayList<RemoteRepository>();
+    private int resolutionThreads = 4;
 
     public DeploymentVerifier(Configuration config) {
         try {
@@ -53,6 +62,16 @@ public class DeploymentVerifier {
         } catch (ConfigurationException e) {
             logger.warn("Getting RemoteRepositories", e);
         }
+        try {
+            resolutionThreads = (Integer) config.getEntry("org.rioproject.monitor",
+                                                          "artifactResolutionThreads",
+                                                          int.class,
+                                                          4);
+            if(resolutionThreads<1)
+                resolutionThreads = 1;
+        } catch (ConfigurationException e) {
+            logger.warn("Getting artifactResolutionThreads, default to {}", resolutionThreads, e);
+        }
     }
 
     public void verifyDeploymentRequest(DeployRequest request) throws ResolverException, IOException {
@@ -64,34 +83,154 @@ public class DeploymentVerifier {
     public void verifyOperationalString(OperationalString opString, RemoteRepository[] repositories)
         throws ResolverException, IOException {
         Resolver resolver = ResolverHelper.getResolver();
+        Map<ServiceElement, RemoteRepository[]> services = new IdentityHashMap<ServiceElement, RemoteRepository[]>();
+        collectServices(opString, repositories, services);
+
+        /* Collect the unique artifacts of services deployed as artifacts, check the codebase of the others */
+        Map<ArtifactRequest, String[]> resolved = new LinkedHashMap<ArtifactRequest, String[]>();
+        List<ServiceElement> artifactServices = new ArrayList<ServiceElement>();
+        for(Map.Entry<ServiceElement, RemoteRepository[]> entry : services.entrySet()) {
+            ServiceElement service = entry.getKey();
+            /* Check the component bundle for deployment as an artifact, easier check this way */
+            if(service.getComponentBundle().getArtifact()!=null) {
+                artifactServices.add(service);
+                for(ClassBundle export : service.getExportBundles()) {
+                    for(String artifactPart : getArtifactParts(export)) {
+                        resolved.put(new ArtifactRequest(artifactPart, entry.getValue()), null);
+                    }
+                }
+            } else {
+                OpStringUtil.checkCodebase(service, System.getProperty(Constants.CODESERVER));
+            }
+        }
+        if(artifactServices.isEmpty())
+            return;
+
+        resolve(opString.getName(), resolved, resolver);
+        for(ServiceElement service : artifactServices) {
+            for(ClassBundle export : service.getExportBundles())
+                assignClassPath(export, resolved, services.get(service));
+            resolveOperationalStringService(service, resolver);
+            prewarm(service, resolved, services.get(service));
+        }
+    }
+
+    /*
+     * Collect the services of an OperationalString and its nested OperationalStrings, with the repositories
+     * to resolve their artifacts from
+     */
+    private void collectServices(OperationalString opString,
+                                 RemoteRepository[] repositories,
+                                 Map<ServiceElement, RemoteRepository[]> services) {
         for(ServiceElement service : opString.getServices()) {
-            verifyOperationalStringService(service,
-                                           resolver,
-                                           mergeRepositories(repositories, service.getRemoteRepositories()));
+            services.put(service, mergeRepositories(repositories, service.getRemoteRepositories()));
         }
         for(OperationalString nested : opString.getNestedOperationalStrings())
-            verifyOperationalString(nested, repositories);
+            collectServices(nested, repositories, services);
     }
 
-    void verifyOperationalStringService(ServiceElement service, Resolver resolver, RemoteRepository[] repositories)
-        throws IOException, ResolverException {
-        /* Check the component bundle for deployment as an artifact, easier check this way */
-        if(service.getComponentBundle().getArtifact()!=null) {
-            resolveOperationalStringService(service, resolver, repositories);
-        } else {
-            OpStringUtil.checkCodebase(service, System.getProperty(Constants.CODESERVER));
+    private List<String> getArtifactParts(ClassBundle bundle) {
+        List<String> parts = new ArrayList<String>();
+        if(bundle.getArtifact()!=null) {
+            for(String artifactPart : bundle.getArtifact().split(" ")) {
+                if(artifactPart.length()>0)
+                    parts.add(artifactPart);
+            }
         }
+        return parts;
     }
 
-    void resolveOperationalStringService(ServiceElement service, Resolver resolver, RemoteRepository[] repositories)
-        throws ResolverException {
+    /*
+     * Resolve each artifact request, using at most resolutionThreads threads
+     */
+    private void resolve(final String opStringName,
+                         final Map<ArtifactRequest, String[]> requests,
+                         final Resolver resolver) throws ResolverException {
+        if(requests.isEmpty())
+            return;
+        long start = System.currentTimeMillis();
+        int threads = Math.min(resolutionThreads, requests.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            public Thread newThread(Runnable runnable) {
+                Thread t = new Thread(runnable, "DeploymentVerifier-"+count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        final Map<ArtifactRequest, Long> times = new ConcurrentHashMap<ArtifactRequest, Long>();
+        try {
+            Map<ArtifactRequest, Future<String[]>> futures = new LinkedHashMap<ArtifactRequest, Future<String[]>>();
+            for(final ArtifactRequest request : requests.keySet()) {
+                futures.put(request, executor.submit(new Callable<String[]>() {
+                    public String[] call() throws ResolverException {
+                        long t0 = System.currentTimeMillis();
+                        logger.trace("Artifact: {}, resolver: {}", request.artifact, resolver.getClass().getName());
+                        String[] classPath = resolver.getClassPathFor(request.artifact, request.repositories);
+                        long elapsed = System.currentTimeMillis()-t0;
+                        times.put(request, elapsed);
+                        logger.debug("Resolved {} in {} ms", request.artifact, elapsed);
+                        return classPath;
+                    }
+                }));
+            }
+            for(Map.Entry<ArtifactRequest, Future<String[]>> entry : futures.entrySet()) {
+                String[] resolved = entry.getValue().get();
+                String[] classPath = new String[resolved.length];
+                for(int i=0; i<resolved.length; i++)
+                    classPath[i] = ResolverHelper.handleWindows(resolved[i]);
+                requests.put(entry.getKey(), classPath);
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof ResolverException)
+                throw (ResolverException)cause;
+            throw new ResolverException("Resolving artifacts for "+opStringName, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResolverException("Interrupted resolving artifacts for "+opStringName, e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if(logger.isInfoEnabled()) {
+            List<Map.Entry<ArtifactRequest, Long>> sorted = new ArrayList<Map.Entry<ArtifactRequest, Long>>(times.entrySet());
+            Collections.sort(sorted, new Comparator<Map.Entry<ArtifactRequest, Long>>() {
+                public int compare(Map.Entry<ArtifactRequest, Long> e1, Map.Entry<ArtifactRequest, Long> e2) {
+                    return e2.getValue().compareTo(e1.getValue());
+                }
+            });
+            StringBuilder sb = new StringBuilder();
+            for(Map.Entry<ArtifactRequest, Long> entry : sorted) {
+                sb.append("\n    ").append(entry.getKey().artifact).append(": ").append(entry.getValue()).append(" ms");
+            }
+            logger.info("Resolved {} artifacts for {} in {} ms using {} threads{}",
+                        requests.size(), opStringName, System.currentTimeMillis()-start, threads, sb.toString());
+        }
+    }
+
+    /*
+     * Set the resolved classpath of a bundle's artifact, removing duplicate jars
+     */
+    private void assignClassPath(ClassBundle bundle,
+                                 Map<ArtifactRequest, String[]> resolved,
+                                 RemoteRepository[] repositories) {
+        if(bundle.getArtifact()==null)
+            return;
+        Set<String> jars = new LinkedHashSet<String>();
+        for(String artifactPart : getArtifactParts(bundle)) {
+            Collections.addAll(jars, resolved.get(new ArtifactRequest(artifactPart, repositories)));
+        }
+        bundle.setCodebase("file://");
+        bundle.setJARs(jars.toArray(new String[jars.size()]));
+    }
+
+    void resolveOperationalStringService(ServiceElement service, Resolver resolver) {
         StringBuilder sb = new StringBuilder();
         StringBuilder sb1 = new StringBuilder();
         boolean didResolve = false;
         for (ClassBundle export : service.getExportBundles()) {
             if(export.getArtifact()!=null) {
                 sb.append(" (").append(export.getArtifact()).append("): ");
-                resolve(export, resolver, repositories);
                 didResolve = true;
             }
             for(String jar : export.getJARNames()) {
@@ -109,22 +248,25 @@ public class DeploymentVerifier {
         logger.debug("{} derived classpath for loading artifact {}", service.getName(), sb.toString());
     }
 
-    void resolve(ClassBundle bundle, Resolver resolver, RemoteRepository[] repositories) throws ResolverException {
-        logger.trace("Artifact: {}, resolver: {}", bundle.getArtifact(), resolver.getClass().getName());
-        String artifact = bundle.getArtifact();
-        if (artifact != null) {
-            List<String> jars = new ArrayList<String>();
-            String[] artifactParts = artifact.split(" ");
-            for(String artifactPart : artifactParts) {
-                String[] classPath = resolver.getClassPathFor(artifactPart, repositories);
-                for (String jar : classPath) {
-                    jar = ResolverHelper.handleWindows(jar);
-                    if(!jars.contains(jar))
-                        jars.add(jar);
+    /*
+     * Record the classpath resolved for each artifact of the service's export bundles with the ResolvingLoader,
+     * keyed by the artifact: codebase the service's proxy will be annotated with. Unmarshalling the proxies of
+     * instances as they are provisioned then neither waits on, nor repeats, the resolution
+     */
+    void prewarm(ServiceElement service, Map<ArtifactRequest, String[]> resolved, RemoteRepository[] repositories) {
+        RemoteRepository[] codebaseRepositories = service.getRemoteRepositories();
+        for (ClassBundle export : service.getExportBundles()) {
+            for(String artifactPart : getArtifactParts(export)) {
+                String[] classPath = resolved.get(new ArtifactRequest(artifactPart, repositories));
+                if(classPath==null)
+                    continue;
+                String codebase = ResolvingLoader.getArtifactCodebase(artifactPart, codebaseRepositories);
+                try {
+                    ResolvingLoader.addResolvedCodebase(codebase, classPath);
+                } catch (MalformedURLException e) {
+                    logger.warn("Unable to record the resolved classpath of {}", codebase, e);
                 }
             }
-            bundle.setCodebase("file://");
-            bundle.setJARs(jars.toArray(new String[jars.size()]));
         }
     }
 
@@ -145,4 +287,35 @@ public class DeploymentVerifier {
         }
         return remoteRepositories.toArray(new RemoteRepository[remoteRepositories.size()]);
     }
+
+    /*
+     * An artifact to resolve, and the repositories to resolve it from
+     */
+    static class ArtifactRequest {
+        final String artifact;
+        final RemoteRepository[] repositories;
+        final List<String> repositoryURLs = new ArrayList<String>();
+
+        ArtifactRequest(String artifact, RemoteRepository[] repositories) {
+            this.artifact = artifact;
+            this.repositories = repositories;
+            for(RemoteRepository r : repositories)
+                repositoryURLs.add(r.getUrl());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o)
+                return true;
+            if(!(o instanceof ArtifactRequest))
+                return false;
+            ArtifactRequest that = (ArtifactRequest)o;
+            return artifact.equals(that.artifact) && repositoryURLs.equals(that.repositoryURLs);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31*artifact.hashCode()+repositoryURLs.hashCode();
+        }
+    }
 }
@@ -95,6 +95,27 @@ public class InstantiatorResource {
      * The Uuid that has been assigned to the ServiceBeanInstantiator
      */
     private final Uuid instantiatorUuid;
+    /**
+     * The maximum number of element digests to track
+     */
+    private static final int MAX_ELEMENT_DIGESTS = 256;
+    /**
+     * Digests of the ServiceElements the ServiceBeanInstantiator has cached,
+     * in access order
+     */
+    private final Map<String, Boolean> elementDigests = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size()>MAX_ELEMENT_DIGESTS;
+        }
+    };
+    /**
+     * Whether the ServiceBeanInstantiator caches ServiceElements by element
+     * digest, assumed until it returns a DeployedService without one
+     */
+    private volatile boolean elementCaching = true;
+    /** Whether the ServiceBeanInstantiator supports batched instantiation */
+    private volatile boolean batchedInstantiation = true;
     /** The Logger */
     static final Logger logger = LoggerFactory.getLogger(InstantiatorResource.class);
 
@@ -422,6 +443,88 @@ public class InstantiatorResource {
         return count + inProcess;
     }
 
+    /**
+     * Get whether the ServiceBeanInstantiator has cached the ServiceElement
+     * for an element digest
+     *
+     * @param elementDigest The element digest
+     *
+     * @return True if the ServiceBeanInstantiator has confirmed it cached the
+     * ServiceElement, and the ServiceElement does not need to be sent
+     */
+    public boolean hasElementDigest(String elementDigest) {
+        synchronized(elementDigests) {
+            return elementDigests.containsKey(elementDigest);
+        }
+    }
+
+    /**
+     * Record that the ServiceBeanInstantiator has cached the ServiceElement
+     * for an element digest
+     *
+     * @param elementDigest The element digest
+     */
+    public void addElementDigest(String elementDigest) {
+        synchronized(elementDigests) {
+            elementDigests.put(elementDigest, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Get whether the ServiceBeanInstantiator caches ServiceElements by
+     * element digest
+     *
+     * @return False if the ServiceBeanInstantiator has ignored an element
+     * digest, true otherwise
+     */
+    public boolean getElementCaching() {
+        return elementCaching;
+    }
+
+    /**
+     * Set whether the ServiceBeanInstantiator caches ServiceElements by
+     * element digest
+     *
+     * @param elementCaching False if the ServiceBeanInstantiator does not
+     * cache ServiceElements, and element digests should not be computed for it
+     */
+    public void setElementCaching(boolean elementCaching) {
+        this.elementCaching = elementCaching;
+    }
+
+    /**
+     * Get whether the ServiceBeanInstantiator supports batched instantiation
+     *
+     * @return False if the ServiceBeanInstantiator has been found to predate
+     * batched instantiation, true otherwise
+     */
+    public boolean getBatchedInstantiation() {
+        return batchedInstantiation;
+    }
+
+    /**
+     * Set whether the ServiceBeanInstantiator supports batched instantiation
+     *
+     * @param batchedInstantiation False if the ServiceBeanInstantiator does
+     * not support batched instantiation, and instances should be instantiated
+     * one at a time
+     */
+    public void setBatchedInstantiation(boolean batchedInstantiation) {
+        this.batchedInstantiation = batchedInstantiation;
+    }
+
+    /**
+     * Record that the ServiceBeanInstantiator no longer has the ServiceElement
+     * for an element digest
+     *
+     * @param elementDigest The element digest
+     */
+    public void removeElementDigest(String elementDigest) {
+        synchronized(elementDigests) {
+            elementDigests.remove(elementDigest);
+        }
+    }
+
     /**
      * Get the handback object
      * 
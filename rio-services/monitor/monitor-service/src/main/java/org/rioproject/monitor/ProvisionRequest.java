@@ -54,6 +54,8 @@ public class ProvisionRequest {
     /** The time the ProvisionRequest was created */
     private final long timestamp;
     private final List<String> failureReasons = new ArrayList<String>();
+    /** The element digest of the ServiceElement, if it has been computed */
+    private String elementDigest;
 
     /**
      * Create a ProvisionRequest 
@@ -156,8 +158,35 @@ public class ProvisionRequest {
         return instanceIDMgr;
     }
 
+    /**
+     * Set the ServiceElement. The element digest is cleared.
+     *
+     * @param sElem The ServiceElement
+     */
     public void setServiceElement(ServiceElement sElem) {
         this.sElem = sElem;
+        this.elementDigest = null;
+    }
+
+    /**
+     * Get the element digest of the ServiceElement
+     *
+     * @return The element digest, as computed by
+     * {@link org.rioproject.jsb.ServiceElementUtil#getElementDigest(ServiceElement)},
+     * or null if it has not been computed
+     */
+    public String getElementDigest() {
+        return elementDigest;
+    }
+
+    /**
+     * Set the element digest of the ServiceElement
+     *
+     * @param elementDigest The element digest, must be the digest of this
+     * request's ServiceElement. Cleared if the ServiceElement is set.
+     */
+    public void setElementDigest(String elementDigest) {
+        this.elementDigest = elementDigest;
     }
 
     public long getTimestamp() {
@@ -205,15 +234,17 @@ public class ProvisionRequest {
      * @return A copy of the ProvisionRequest
      */
     public static ProvisionRequest copy(ProvisionRequest pr) {
-        return(new ProvisionRequest(pr.sElem,
-                                    pr.listener,
-                                    pr.opStringMgr,
-                                    pr.instanceIDMgr,
-                                    pr.svcProvisionListener,
-                                    pr.instance,
-                                    pr.excludeUuid,
-                                    pr.requestedUuid,
-                                    pr.type));
+        ProvisionRequest copy = new ProvisionRequest(pr.sElem,
+                                                     pr.listener,
+                                                     pr.opStringMgr,
+                                                     pr.instanceIDMgr,
+                                                     pr.svcProvisionListener,
+                                                     pr.instance,
+                                                     pr.excludeUuid,
+                                                     pr.requestedUuid,
+                                                     pr.type);
+        copy.elementDigest = pr.elementDigest;
+        return(copy);
     }
 }
 
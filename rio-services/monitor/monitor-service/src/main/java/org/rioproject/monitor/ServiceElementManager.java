@@ -89,6 +89,9 @@ public class ServiceElementManager implements InstanceIDManager {
     /** The ServiceElement */
     private ServiceElement svcElement;
     private final Object svcElementRWLock = new Object();
+    /** The element digest of the ServiceElement, computed once for each
+     * version of the ServiceElement */
+    private String elementDigest;
     /** The number of services to maintain */
     private int maintain=0;
     /** The number of services to maintain, as initially set when this manager
@@ -218,7 +221,10 @@ public class ServiceElementManager implements InstanceIDManager {
             throw new IllegalArgumentException("sElem is null");
         boolean update = (this.svcElement != null);
         ServiceElement preElem = svcElement;
-        this.svcElement = newElem;
+        synchronized(svcElementRWLock) {
+            this.svcElement = newElem;
+            elementDigest = null;
+        }
 
         ServiceChannel channel = ServiceChannel.getInstance();
         channel.unsubscribe(serviceChannelClient);
@@ -417,9 +423,29 @@ public class ServiceElementManager implements InstanceIDManager {
 
     private void setInitialPlanned(final int value) {
         initialMaintain = value;
-        svcElement.setServiceBeanConfig(ServiceElementUtil.addConfigParameter(svcElement.getServiceBeanConfig(),
-                                                                              ServiceBeanConfig.INITIAL_PLANNED_SERVICES,
-                                                                              value));
+        synchronized(svcElementRWLock) {
+            svcElement.setServiceBeanConfig(ServiceElementUtil.addConfigParameter(svcElement.getServiceBeanConfig(),
+                                                                                  ServiceBeanConfig.INITIAL_PLANNED_SERVICES,
+                                                                                  value));
+            elementDigest = null;
+        }
+    }
+
+    /*
+     * Get the element digest of the ServiceElement, computed the first time
+     * it is needed for each version of the ServiceElement. Must be called
+     * holding the svcElementRWLock. Returns null if the digest cannot be
+     * computed.
+     */
+    private String getElementDigest() {
+        if(elementDigest==null) {
+            try {
+                elementDigest = ServiceElementUtil.getElementDigest(svcElement);
+            } catch (IOException e) {
+                mgrLogger.debug("Unable to compute element digest for [{}]", LoggingUtil.getLoggingName(svcElement), e);
+            }
+        }
+        return elementDigest;
     }
 
     /*
@@ -494,10 +520,14 @@ public class ServiceElementManager implements InstanceIDManager {
                     removeFixedServiceRequests(svcElement);
                     return;
                 }
-                ProvisionRequest request = new ProvisionRequest(ServiceElementUtil.copyServiceElement(svcElement),
-                                                                listener,
-                                                                opStringMgr,
-                                                                instanceIDMgr);
+                ProvisionRequest request;
+                synchronized(svcElementRWLock) {
+                    request = new ProvisionRequest(ServiceElementUtil.copyServiceElement(svcElement),
+                                                   listener,
+                                                   opStringMgr,
+                                                   instanceIDMgr);
+                    request.setElementDigest(getElementDigest());
+                }
                 request.setServiceProvisionListener(provListener);
                 if(provisioner.getFixedServiceManager().hasServiceElement(svcElement)) {
                     mgrLogger.debug("Update [{}] instance in  FixedServiceManager", LoggingUtil.getLoggingName(svcElement));
@@ -1059,6 +1089,7 @@ public class ServiceElementManager implements InstanceIDManager {
 
             if(okayToIncrement) {
                 svcElement.incrementPlanned();
+                elementDigest = null;
                 if(permanent) {
                     setInitialPlanned(svcElement.getPlanned());
                 }
@@ -1097,6 +1128,7 @@ public class ServiceElementManager implements InstanceIDManager {
 
         synchronized(svcElementRWLock) {
             svcElement.setPlanned(svcElement.getPlanned()-removed.length);
+            elementDigest = null;
             maintain = svcElement.getPlanned();
         }
         return(removed.length);
@@ -1123,6 +1155,7 @@ public class ServiceElementManager implements InstanceIDManager {
 
             if(okayToDecrement) {
                 svcElement.decrementPlanned();
+                elementDigest = null;
                 int temp = svcElement.getPlanned();
                 setInitialPlanned((initialMaintain < temp?initialMaintain:temp));
             }
@@ -1265,6 +1298,9 @@ public class ServiceElementManager implements InstanceIDManager {
                 long instanceID = getNextInstanceID();
                 ServiceElement newElem = ServiceElementUtil.prepareInstanceID(svcElement, instanceID);
                 requests[i] = new ProvisionRequest(newElem, listener, opStringMgr, instanceIDMgr, provListener, null);
+                /* The instances differ only in their instance parameters,
+                 * and share the element digest */
+                requests[i].setElementDigest(getElementDigest());
             }
         }
         doDispatchProvisionRequests(requests);
@@ -1980,6 +2016,8 @@ public class ServiceElementManager implements InstanceIDManager {
                 }
 
                 provRequest.getServiceElement().setPlanned(maintain);
+                /* The ServiceElement was changed in place */
+                provRequest.setElementDigest(null);
                 if(svcElement.getProvisionType()==ProvisionType.DYNAMIC) {
                     int pending = provisioner.getPendingManager().getCount(svcElement);
                     //int actual = getActual()+pending;
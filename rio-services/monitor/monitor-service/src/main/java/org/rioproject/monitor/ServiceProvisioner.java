@@ -70,6 +70,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * fulfill the Quality of Service specification of the
  * <code>ServiceElement</code>.
  *
+ * <p>The ServiceProvisioner can also be created outside of the
+ * ProvisionMonitor, allowing the provisioning path to be driven by simulated
+ * <code>ServiceBeanInstantiator</code> instances.
+ *
  * @author Dennis Reedy
  */
 public class ServiceProvisioner implements ServiceProvisionDispatcher {
@@ -121,10 +125,10 @@ public class ServiceProvisioner implements ServiceProvisionDispatcher {
      * @throws Exception if errors are encountered using the Configuration
      * object or creating LandlordLessor
      */
-    ServiceProvisioner(final Configuration config,
-                       final Object eventSource,
-                       final EventHandler failureHandler,
-                       final GaugeWatch watch) throws Exception {
+    public ServiceProvisioner(final Configuration config,
+                              final Object eventSource,
+                              final EventHandler failureHandler,
+                              final GaugeWatch watch) throws Exception {
         if(config==null)
             throw new IllegalArgumentException("config is null");
         if(failureHandler==null)
@@ -195,7 +199,7 @@ public class ServiceProvisioner implements ServiceProvisionDispatcher {
     /**
      * Clean up all resources
      */
-    void terminate() {
+    public void terminate() {
         terminating = true;
         landlord.stop(true);
         provisioningPool.shutdownNow();
@@ -213,7 +217,7 @@ public class ServiceProvisioner implements ServiceProvisionDispatcher {
     /**
      * @return The PendingManager
      */
-    PendingManager getPendingManager() {
+    public PendingManager getPendingManager() {
         return(pendingMgr);
     }
 
@@ -242,12 +246,12 @@ public class ServiceProvisioner implements ServiceProvisionDispatcher {
      * @throws LeaseDeniedException If the Lease is denied for any reason
      * @throws RemoteException for comm errors
      */
-    EventRegistration register(final MarshalledObject<ServiceBeanInstantiator> sbi,
-                               final MarshalledObject handback,
-                               final ResourceCapability resourceCapability,
-                               final List<DeployedService> deployedServices,
-                               final int serviceLimit,
-                               final long duration) throws LeaseDeniedException, RemoteException {
+    public EventRegistration register(final MarshalledObject<ServiceBeanInstantiator> sbi,
+                                      final MarshalledObject handback,
+                                      final ResourceCapability resourceCapability,
+                                      final List<DeployedService> deployedServices,
+                                      final int serviceLimit,
+                                      final long duration) throws LeaseDeniedException, RemoteException {
         ServiceBeanInstantiator instantiator;
 
         try {
@@ -314,10 +318,10 @@ public class ServiceProvisioner implements ServiceProvisionDispatcher {
      * @throws RemoteException if the ServiceBeanInstantiator proxy fails
      * preparation
      */
-    void handleFeedback(final ServiceBeanInstantiator resource,
-                        final ResourceCapability updatedCapabilities,
-                        final List<DeployedService> deployedServices,
-                        final int serviceLimit) throws UnknownLeaseException, RemoteException {
+    public void handleFeedback(final ServiceBeanInstantiator resource,
+                               final ResourceCapability updatedCapabilities,
+                               final List<DeployedService> deployedServices,
+                               final int serviceLimit) throws UnknownLeaseException, RemoteException {
         ServiceBeanInstantiator preparedResource = resource;
         if(resource instanceof RemoteMethodControl)
             preparedResource = (ServiceBeanInstantiator)instantiatorPreparer.prepareProxy(resource);
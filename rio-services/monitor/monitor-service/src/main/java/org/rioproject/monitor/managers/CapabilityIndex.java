@@ -0,0 +1,141 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.monitor.managers;
+
+import org.rioproject.deploy.SystemComponent;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.sla.ServiceLevelAgreements;
+import org.rioproject.system.capability.PlatformCapability;
+
+import java.util.*;
+
+/**
+ * Indexes requests by the capabilities they require. A request is indexed by
+ * the name and class name of its first {@link SystemComponent} requirement
+ * that cannot be downloaded. A {@link PlatformCapability} only supports a
+ * requirement if its name, simple class name or fully qualified class name
+ * matches, so a resource without a PlatformCapability that matches the index
+ * keys of a request cannot provision it. Requests without such a requirement
+ * are unindexed, and are candidates for every resource.
+ *
+ * <p>The CapabilityIndex is not thread safe, callers must guard it with the
+ * lock of the collection it indexes.
+ *
+ * @param <K> The type of the keys requests are indexed by
+ */
+class CapabilityIndex<K> {
+    private static final String NAME_KEY = "name:";
+    private static final String CLASS_KEY = "class:";
+    private final Map<String, Set<K>> index = new HashMap<String, Set<K>>();
+    /* The index keys of each indexed request */
+    private final Map<K, String[]> indexKeys = new HashMap<K, String[]>();
+    /* Requests that are candidates for every resource */
+    private final Set<K> unindexed = new HashSet<K>();
+
+    /**
+     * Add a request
+     *
+     * @param key The key of the request
+     * @param sElem The ServiceElement of the request
+     */
+    void add(final K key, final ServiceElement sElem) {
+        String[] keys = getIndexKeys(sElem);
+        if(keys.length==0) {
+            unindexed.add(key);
+            return;
+        }
+        indexKeys.put(key, keys);
+        for(String indexKey : keys) {
+            Set<K> requests = index.get(indexKey);
+            if(requests==null) {
+                requests = new HashSet<K>();
+                index.put(indexKey, requests);
+            }
+            requests.add(key);
+        }
+    }
+
+    /**
+     * Remove a request
+     *
+     * @param key The key of the request
+     */
+    void remove(final K key) {
+        if(unindexed.remove(key))
+            return;
+        String[] keys = indexKeys.remove(key);
+        if(keys==null)
+            return;
+        for(String indexKey : keys) {
+            Set<K> requests = index.get(indexKey);
+            if(requests!=null) {
+                requests.remove(key);
+                if(requests.isEmpty())
+                    index.remove(indexKey);
+            }
+        }
+    }
+
+    /**
+     * Get the requests a resource with the provided PlatformCapability
+     * instances could support
+     *
+     * @param pCaps The PlatformCapability instances of the resource
+     *
+     * @return The keys of the unindexed requests, and of the requests indexed
+     * by a name or class name of one of the PlatformCapability instances. A new
+     * set is allocated each time
+     */
+    Set<K> getCandidates(final PlatformCapability[] pCaps) {
+        Set<K> candidates = new HashSet<K>(unindexed);
+        if(!index.isEmpty()) {
+            for(PlatformCapability pCap : pCaps) {
+                addCandidates(NAME_KEY+pCap.getName(), candidates);
+                addCandidates(CLASS_KEY+pCap.getClass().getSimpleName(), candidates);
+                addCandidates(CLASS_KEY+pCap.getClass().getName(), candidates);
+            }
+        }
+        return candidates;
+    }
+
+    private void addCandidates(final String indexKey, final Set<K> candidates) {
+        Set<K> requests = index.get(indexKey);
+        if(requests!=null)
+            candidates.addAll(requests);
+    }
+
+    /*
+     * Get the keys a request is indexed by: the name and class name of the
+     * first SystemComponent requirement that cannot be downloaded. If there
+     * is no such requirement a zero-length array is returned
+     */
+    private String[] getIndexKeys(final ServiceElement sElem) {
+        ServiceLevelAgreements slas = sElem.getServiceLevelAgreements();
+        if(slas==null || slas.getSystemRequirements()==null)
+            return new String[0];
+        for(SystemComponent requirement : slas.getSystemRequirements().getSystemComponents()) {
+            if(requirement.getStagedSoftware()!=null)
+                continue;
+            if(requirement.getName()!=null && requirement.getClassName()!=null)
+                return new String[]{NAME_KEY+requirement.getName(), CLASS_KEY+requirement.getClassName()};
+            if(requirement.getName()!=null)
+                return new String[]{NAME_KEY+requirement.getName()};
+            if(requirement.getClassName()!=null)
+                return new String[]{CLASS_KEY+requirement.getClassName()};
+        }
+        return new String[0];
+    }
+}
@@ -17,6 +17,7 @@ package org.rioproject.monitor.managers;
 
 import org.rioproject.jsb.ServiceElementUtil;
 import org.rioproject.monitor.*;
+import org.rioproject.monitor.tasks.BatchProvisionTask;
 import org.rioproject.monitor.tasks.ProvisionFailureEventTask;
 import org.rioproject.monitor.tasks.ProvisionTask;
 import org.rioproject.monitor.util.LoggingUtil;
@@ -27,13 +28,19 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Manages services of type fixed.
+ *
+ * <p>Fixed-service requests are indexed by the capabilities they require, see
+ * {@link CapabilityIndex}, so that a ServiceResource is only matched against
+ * the requests it could support.
  */
 public class FixedServiceManager extends PendingServiceElementManager {
     private final List<ServiceResource> inProcessResource = Collections.synchronizedList(new ArrayList<ServiceResource>());
+    /* The index of requests by required capability, guarded by the
+     * collection lock */
+    private final CapabilityIndex<Key> capabilityIndex = new CapabilityIndex<Key>();
     private final ServiceProvisionContext context;
     private final Logger logger = LoggerFactory.getLogger(FixedServiceManager.class);
 
@@ -127,10 +134,12 @@ public class FixedServiceManager extends PendingServiceElementManager {
             if(logger.isTraceEnabled()) {
                 dumpCollection();
             }
-            /* Now traverse the collection for everything else, skipping
+            /* Now traverse the requests the resource could support, skipping
              * the service elements that have been processed */
             synchronized (collection) {
-                Set<Key> requests = collection.keySet();
+                List<Key> requests = getCandidates(ir);
+                logger.debug("{} matching {} of {} requests to {}",
+                             getType(), requests.size(), collection.size(), ir.getName());
                 int numDeployed = 0;
                 for (Key requestKey : requests) {
                     ProvisionRequest request = collection.get(requestKey);
@@ -156,6 +165,27 @@ public class FixedServiceManager extends PendingServiceElementManager {
         }
     }
 
+    @Override
+    void requestAdded(final Key key, final ProvisionRequest request) {
+        capabilityIndex.add(key, request.getServiceElement());
+    }
+
+    @Override
+    void requestRemoved(final Key key) {
+        capabilityIndex.remove(key);
+    }
+
+    /*
+     * Get the requests an InstantiatorResource could support, in collection
+     * order. Must be called while holding the collection lock
+     */
+    private List<Key> getCandidates(final InstantiatorResource ir) {
+        List<Key> ordered =
+            new ArrayList<Key>(capabilityIndex.getCandidates(ir.getResourceCapability().getPlatformCapabilities()));
+        Collections.sort(ordered, collection.comparator());
+        return ordered;
+    }
+
     /*
      * Helper method to dispatch a ProvisionFailureEventTask and send a ProvisionFailureEvent
      */
@@ -168,7 +198,8 @@ public class FixedServiceManager extends PendingServiceElementManager {
     }
 
     /**
-     * Do the deployment for a fixed service
+     * Do the deployment for a fixed service. The instances allocated to the
+     * ServiceResource are instantiated by one {@link BatchProvisionTask}.
      *
      * @param resource The ServiceResource
      * @param request  The ProvisionRequest
@@ -197,6 +228,7 @@ public class FixedServiceManager extends PendingServiceElementManager {
             b.append("doDeploy ").append(numAllowed).append(" [");
             b.append(LoggingUtil.getLoggingName(req)).append("] instances");
 
+            List<ProvisionTask> tasks = new ArrayList<ProvisionTask>();
             for (int i = 0; i < numAllowed; i++) {
                 ProvisionRequest request = ProvisionRequest.copy(req);
                 ServiceProvisionContext spc = getServiceProvisionContext();
@@ -204,17 +236,23 @@ public class FixedServiceManager extends PendingServiceElementManager {
                                request.getInstanceIDMgr().getNextInstanceID() : currentID);
                 if(changeInstanceID)
                     logger.warn("[{}] Changing instanceID", LoggingUtil.getLoggingName(request));
+                /* Only the instance parameters change, keep the element digest */
+                String elementDigest = request.getElementDigest();
                 request.setServiceElement(ServiceElementUtil.prepareInstanceID(request.getServiceElement(),
                                                                                true,
                                                                                nextID));
+                request.setElementDigest(elementDigest);
                 logger.trace("[{}] instanceID : {}",
                              LoggingUtil.getLoggingName(request),
                              request.getServiceElement().getServiceBeanConfig().getInstanceID());
                 spc.getInProcess().add(request.getServiceElement());
                 spc.setProvisionRequest(request);
                 spc.setServiceResource(resource);
-                spc.getProvisioningPool().execute(new ProvisionTask(spc, null));
+                tasks.add(new ProvisionTask(spc, null));
             }
+            context.getProvisioningPool().execute(new BatchProvisionTask((InstantiatorResource)resource.getResource(),
+                                                                         tasks,
+                                                                         context.getProvisioningPool()));
             logger.debug(b.toString());
         }
         return (numAllowed);
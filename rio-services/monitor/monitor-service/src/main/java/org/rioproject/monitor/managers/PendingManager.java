@@ -83,6 +83,7 @@ public class PendingManager extends PendingServiceElementManager {
                         if (resource != null) {
                             synchronized (collection) {
                                 collection.remove(key);
+                                requestRemoved(key);
                             }
                         } else {
                             logger.warn(FailureReasonFormatter.format(request, context.getSelector()));
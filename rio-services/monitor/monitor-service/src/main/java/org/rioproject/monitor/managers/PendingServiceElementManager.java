@@ -140,6 +140,7 @@ public abstract class PendingServiceElementManager {
             Long keyIndex = (index == 0 ? collectionIndex++ : index);
             Key key = new Key(request.getServiceElement(), keyIndex, request.getTimestamp());
             collection.put(key, request);
+            requestAdded(key, request);
             ndx = keyIndex;
         }
         return (ndx);
@@ -209,6 +210,7 @@ public abstract class PendingServiceElementManager {
             synchronized(collection) {
                 for (Key removal : removals) {
                     ProvisionRequest pr = collection.remove(removal);
+                    requestRemoved(removal);
                     removed.add(pr);
                 }
             }
@@ -241,6 +243,7 @@ public abstract class PendingServiceElementManager {
             synchronized(collection) {
                 for (Key removal : removals) {
                     ProvisionRequest pr = collection.remove(removal);
+                    requestRemoved(removal);
                     removed.add(pr);
                 }
             }
@@ -292,7 +295,9 @@ public abstract class PendingServiceElementManager {
                     ServiceElement newElem = sElem;
                     if (id != null)
                         newElem = ServiceElementUtil.prepareInstanceID(sElem, id.intValue());
+                    requestRemoved(key);
                     pr.setServiceElement(newElem);
+                    requestAdded(key, pr);
                     if(listener!=null) {
                         pr.setServiceProvisionListener(listener);
                     }
@@ -301,6 +306,29 @@ public abstract class PendingServiceElementManager {
         }
     }
 
+    /**
+     * Invoked while holding the collection lock after a ProvisionRequest has
+     * been added to the collection, or after the ServiceElement of a
+     * ProvisionRequest in the collection has been updated. Subclasses that
+     * index the collection override this method, the default does nothing.
+     *
+     * @param key The Key of the ProvisionRequest
+     * @param request The ProvisionRequest
+     */
+    void requestAdded(Key key, ProvisionRequest request) {
+    }
+
+    /**
+     * Invoked while holding the collection lock after a ProvisionRequest has
+     * been removed from the collection, or before the ServiceElement of a
+     * ProvisionRequest in the collection is updated. Subclasses that index the
+     * collection override this method, the default does nothing.
+     *
+     * @param key The Key of the ProvisionRequest
+     */
+    void requestRemoved(Key key) {
+    }
+
     /**
      * A concrete implementation on how to process the collection is required as
      * follows: The collection will be processed, attempting to have each
@@ -0,0 +1,116 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.monitor.tasks;
+
+import org.rioproject.deploy.InstantiationResult;
+import org.rioproject.deploy.ServiceProvisionEvent;
+import org.rioproject.monitor.InstantiatorResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.rmi.RemoteException;
+import java.rmi.UnmarshalException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * The BatchProvisionTask provisions the instances allocated to one
+ * {@link InstantiatorResource}. The {@link ProvisionTask}s of the instances
+ * are instantiated in a single invocation of the ServiceBeanInstantiator,
+ * after which each ProvisionTask is run to complete its request.
+ *
+ * <p>If the ServiceBeanInstantiator does not support batched instantiation,
+ * or the batched invocation fails, each ProvisionTask is run on the
+ * provisioning pool and instantiates its request itself.
+ */
+public class BatchProvisionTask implements Runnable {
+    private final InstantiatorResource ir;
+    private final List<ProvisionTask> tasks;
+    private final Executor provisioningPool;
+    private final Logger logger = LoggerFactory.getLogger(BatchProvisionTask.class);
+
+    /**
+     * Create a BatchProvisionTask
+     *
+     * @param ir The InstantiatorResource the instances are allocated to, must not be null
+     * @param tasks The ProvisionTasks of the instances, must not be null
+     * @param provisioningPool The pool to run ProvisionTasks on if they cannot
+     * be instantiated in a batch, must not be null
+     */
+    public BatchProvisionTask(InstantiatorResource ir, List<ProvisionTask> tasks, Executor provisioningPool) {
+        if(ir==null)
+            throw new IllegalArgumentException("ir is null");
+        if(tasks==null)
+            throw new IllegalArgumentException("tasks is null");
+        if(provisioningPool==null)
+            throw new IllegalArgumentException("provisioningPool is null");
+        this.ir = ir;
+        this.tasks = new ArrayList<ProvisionTask>(tasks);
+        this.provisioningPool = provisioningPool;
+    }
+
+    public void run() {
+        InstantiationResult[] results = null;
+        if(tasks.size()>1 && ir.getBatchedInstantiation())
+            results = instantiate();
+        if(results==null) {
+            for(ProvisionTask task : tasks)
+                provisioningPool.execute(task);
+            return;
+        }
+        for(int i=0; i<results.length; i++) {
+            ProvisionTask task = tasks.get(i);
+            task.setInstantiationResult(results[i]);
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.warn("Running ProvisionTask", t);
+            }
+        }
+    }
+
+    /*
+     * Instantiate the events of the tasks in one invocation. Returns null if
+     * the tasks must instantiate their events themselves
+     */
+    private InstantiationResult[] instantiate() {
+        ServiceProvisionEvent[] events = new ServiceProvisionEvent[tasks.size()];
+        for(int i=0; i<events.length; i++)
+            events[i] = tasks.get(i).getServiceProvisionEvent();
+        try {
+            InstantiationResult[] results = ir.getInstantiator().instantiate(events);
+            if(results!=null && results.length==events.length)
+                return results;
+            logger.warn("{} at [{}] returned {} results for {} instances, instantiate one at a time",
+                        ir.getName(), ir.getHostAddress(), results==null?"no":results.length, events.length);
+        } catch (AbstractMethodError e) {
+            /* The proxy predates batched instantiation */
+            logger.debug("{} at [{}] does not support batched instantiation", ir.getName(), ir.getHostAddress());
+            ir.setBatchedInstantiation(false);
+        } catch (UnmarshalException e) {
+            /* The ServiceBeanInstantiator predates batched instantiation, and
+             * does not recognize the method */
+            logger.debug("{} at [{}] does not support batched instantiation, {}",
+                         ir.getName(), ir.getHostAddress(), e.getMessage());
+            ir.setBatchedInstantiation(false);
+        } catch (RemoteException e) {
+            logger.debug("Batched instantiation on {} at [{}] failed, instantiate one at a time, {}: {}",
+                         ir.getName(), ir.getHostAddress(), e.getClass().getName(), e.getMessage());
+        }
+        return null;
+    }
+}
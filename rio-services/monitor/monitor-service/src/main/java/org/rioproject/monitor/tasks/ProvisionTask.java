@@ -17,17 +17,22 @@ package org.rioproject.monitor.tasks;
 
 import net.jini.core.event.UnknownEventException;
 import org.rioproject.deploy.DeployedService;
+import org.rioproject.deploy.InstantiationResult;
 import org.rioproject.deploy.ServiceBeanInstance;
 import org.rioproject.deploy.ServiceBeanInstantiationException;
+import org.rioproject.deploy.ServiceElementNotCachedException;
 import org.rioproject.deploy.ServiceProvisionEvent;
+import org.rioproject.jsb.ServiceElementUtil;
 import org.rioproject.monitor.*;
 import org.rioproject.monitor.managers.PendingManager;
 import org.rioproject.monitor.util.LoggingUtil;
+import org.rioproject.opstring.ServiceElement;
 import org.rioproject.resources.servicecore.ServiceResource;
 import org.rioproject.resources.util.ThrowableUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.RMIClassLoader;
 import java.util.concurrent.RejectedExecutionException;
@@ -42,6 +47,8 @@ public class ProvisionTask implements Runnable {
     private String failureReason = null;
     private ServiceProvisionContext context;
     private PendingManager pendingManager;
+    private ServiceProvisionEvent event;
+    private volatile InstantiationResult instantiationResult;
     private final Logger logger = LoggerFactory.getLogger(ProvisionTask.class);
 
     /**
@@ -164,11 +171,9 @@ public class ProvisionTask implements Runnable {
         try {
             //ir.incrementProvisionCounter(request.getServiceElement());
             try {
-                ServiceProvisionEvent event = new ServiceProvisionEvent(context.getEventSource(),
-                                                                        request.getOpStringManager(),
-                                                                        request.getServiceElement());
-                event.setSequenceNumber(context.getServiceProvisionEventSequenceNumber().incrementAndGet());
-                event.setHandback(ir.getHandback());
+                ServiceElement sElem = request.getServiceElement();
+                ServiceProvisionEvent event = getServiceProvisionEvent();
+                String elementDigest = event.getElementDigest();
                 /*
                 * Put the instantiate invocation in a for loop, the
                 * Cybernode may return null if there is a race-condition
@@ -185,8 +190,21 @@ public class ProvisionTask implements Runnable {
                         String retry = (i == 0 ? "" : ", retry (" + i + ") ");
                         logger.debug("Allocating {} [{}] ...", retry, LoggingUtil.getLoggingName(request));
                     }
-                    DeployedService deployedService = ir.getInstantiator().instantiate(event);
+                    DeployedService deployedService;
+                    try {
+                        deployedService = instantiate(ir, event);
+                    } catch (ServiceElementNotCachedException e) {
+                        logger.debug("{} does not have [{}] cached, send the ServiceElement",
+                                     ir.getName(), LoggingUtil.getLoggingName(request));
+                        ir.removeElementDigest(e.getElementDigest());
+                        event.setServiceElement(sElem);
+                        deployedService = ir.getInstantiator().instantiate(event);
+                    }
                     if (deployedService != null) {
+                        if(deployedService.getElementDigest()!=null)
+                            ir.addElementDigest(deployedService.getElementDigest());
+                        else if(elementDigest!=null)
+                            ir.setElementCaching(false);
                         jsbInstance = deployedService.getServiceBeanInstance();
                         ir.addDeployedService(deployedService);
                         logger.info("Allocated [{}]", LoggingUtil.getLoggingName(request));
@@ -265,6 +283,81 @@ public class ProvisionTask implements Runnable {
         return (result);
     }
 
+    /**
+     * Get the ServiceProvisionEvent for the request, created the first time
+     * it is needed
+     *
+     * @return The ServiceProvisionEvent to instantiate the request with
+     */
+    ServiceProvisionEvent getServiceProvisionEvent() {
+        if(event==null) {
+            ProvisionRequest request = context.getProvisionRequest();
+            InstantiatorResource ir = (InstantiatorResource) context.getServiceResource().getResource();
+            ServiceElement sElem = request.getServiceElement();
+            event = new ServiceProvisionEvent(context.getEventSource(), request.getOpStringManager(), sElem);
+            /* Identify the ServiceElement by its digest, and if the
+             * Cybernode has cached it only send the instance parameters,
+             * actual instance count and provisionable capabilities */
+            String elementDigest = ir.getElementCaching()?getElementDigest(request):null;
+            if(elementDigest!=null) {
+                event.setElementDigest(elementDigest);
+                event.setInstanceParameters(ServiceElementUtil.getInstanceParameters(sElem));
+                event.setActual(sElem.getActual());
+                event.setProvisionablePlatformCapabilities(sElem.getProvisionablePlatformCapabilities());
+                if(ir.hasElementDigest(elementDigest))
+                    event.setServiceElement(null);
+            }
+            event.setSequenceNumber(context.getServiceProvisionEventSequenceNumber().incrementAndGet());
+            event.setHandback(ir.getHandback());
+        }
+        return event;
+    }
+
+    /**
+     * Set the result of instantiating the ServiceProvisionEvent of this task
+     * in a batch. The result is used in place of the first instantiation
+     * attempt when the task is run.
+     *
+     * @param instantiationResult The result of the batched instantiation
+     */
+    void setInstantiationResult(InstantiationResult instantiationResult) {
+        this.instantiationResult = instantiationResult;
+    }
+
+    /*
+     * Instantiate the event, using the result of a batched instantiation if
+     * one has been set and not yet used
+     */
+    private DeployedService instantiate(InstantiatorResource ir, ServiceProvisionEvent event)
+        throws ServiceBeanInstantiationException, UnknownEventException, RemoteException {
+        InstantiationResult result = instantiationResult;
+        if(result!=null) {
+            instantiationResult = null;
+            return result.getDeployedService();
+        }
+        return ir.getInstantiator().instantiate(event);
+    }
+
+    /*
+     * Get the element digest for the request's ServiceElement, computed once
+     * and kept with the request. Returns null if it cannot be computed, in
+     * which case the ServiceElement is always sent
+     */
+    private String getElementDigest(ProvisionRequest request) {
+        if(request.getElementDigest()!=null)
+            return request.getElementDigest();
+        ServiceElement sElem = request.getServiceElement();
+        try {
+            String elementDigest = ServiceElementUtil.getElementDigest(sElem);
+            request.setElementDigest(elementDigest);
+            return elementDigest;
+        } catch (IOException e) {
+            logger.debug("Unable to compute element digest for [{}], send the ServiceElement",
+                         LoggingUtil.getLoggingName(sElem), e);
+            return null;
+        }
+    }
+
     /*
      * Helper method to dispatch a ProvisionFailureEventTask and send a ProvisionFailureEvent
      */
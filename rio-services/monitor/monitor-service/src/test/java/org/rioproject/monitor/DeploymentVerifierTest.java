@@ -0,0 +1,143 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.monitor;
+
+import net.jini.config.EmptyConfiguration;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.OpString;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.resolver.RemoteRepository;
+import org.rioproject.resolver.Resolver;
+import org.rioproject.resolver.ResolverHelper;
+import org.rioproject.rmi.ResolvingLoader;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test that the {@code DeploymentVerifier} resolves each artifact once.
+ */
+public class DeploymentVerifierTest {
+    private static final String SHARED = "org.rioproject.test:shared-api:1.0";
+    private static final String HELLO = "org.rioproject.test:hello-api:1.0";
+
+    @BeforeClass
+    public static void setEnv() {
+        System.setProperty(ResolverHelper.RESOLVER_JAR,
+                           System.getProperty("user.dir")+
+                           File.separator+"target"+
+                           File.separator+"test-classes"+
+                           File.separator+"phony.jar");
+    }
+
+    @Test
+    public void testSharedArtifactResolvedOnce() throws Exception {
+        OpString opString = new OpString("Shared", null);
+        opString.addService(createServiceElement("Echo", SHARED));
+        opString.addService(createServiceElement("Hello", SHARED+" "+HELLO));
+
+        new DeploymentVerifier(EmptyConfiguration.INSTANCE).verifyOperationalString(
+            opString, new RemoteRepository[]{createRepository("request", "http://request.example.org/repo")});
+        Assert.assertEquals(1, CountingResolver.getCount(SHARED));
+        Assert.assertEquals(1, CountingResolver.getCount(HELLO));
+        for(ServiceElement service : opString.getServices()) {
+            Assert.assertTrue(service.getExportBundles()[0].getJARNames().length>0);
+        }
+
+        /* The codebases the proxies of the services are annotated with have
+         * been recorded, loading classes from them does not resolve again */
+        for(ServiceElement service : opString.getServices()) {
+            for(String artifact : service.getExportBundles()[0].getArtifact().split(" ")) {
+                ResolvingLoader.prewarm(ResolvingLoader.getArtifactCodebase(artifact, service.getRemoteRepositories()));
+            }
+        }
+        Assert.assertEquals(1, CountingResolver.getCount(SHARED));
+        Assert.assertEquals(1, CountingResolver.getCount(HELLO));
+    }
+
+    private ServiceElement createServiceElement(String name, String exportArtifact) {
+        ServiceBeanConfig sbc = new ServiceBeanConfig();
+        sbc.setName(name);
+        sbc.setOperationalStringName("Shared");
+        ClassBundle export = new ClassBundle();
+        export.setArtifact(exportArtifact);
+        ClassBundle component = new ClassBundle("org.rioproject.test."+name+"Impl");
+        component.setArtifact("org.rioproject.test:"+name.toLowerCase()+"-service:1.0");
+        return new ServiceElement(ServiceElement.ProvisionType.DYNAMIC,
+                                  sbc,
+                                  null,
+                                  new ClassBundle[]{export},
+                                  null,
+                                  component);
+    }
+
+    private static RemoteRepository createRepository(String id, String url) {
+        RemoteRepository repository = new RemoteRepository();
+        repository.setId(id);
+        repository.setUrl(url);
+        return repository;
+    }
+
+    /**
+     * A Resolver that counts the times each artifact is resolved, loaded by
+     * both the DeploymentVerifier and the ResolvingLoader
+     */
+    public static class CountingResolver implements Resolver {
+        private static final ConcurrentMap<String, AtomicInteger> counts = new ConcurrentHashMap<String, AtomicInteger>();
+
+        static int getCount(String artifact) {
+            AtomicInteger count = counts.get(artifact);
+            return count==null?0:count.get();
+        }
+
+        public String[] getClassPathFor(String artifact, File pom, boolean download) {
+            return getClassPathFor(artifact, new RemoteRepository[0]);
+        }
+
+        public String[] getClassPathFor(String artifact) {
+            return getClassPathFor(artifact, new RemoteRepository[0]);
+        }
+
+        public String[] getClassPathFor(String artifact, RemoteRepository[] repositories) {
+            AtomicInteger count = new AtomicInteger();
+            AtomicInteger existing = counts.putIfAbsent(artifact, count);
+            (existing==null?count:existing).incrementAndGet();
+            String[] parts = artifact.split(":");
+            return new String[]{System.getProperty("java.io.tmpdir")+File.separator+parts[1]+"-"+parts[2]+".jar"};
+        }
+
+        public URL getLocation(String artifact, String artifactType) {
+            return null;
+        }
+
+        public URL getLocation(String artifact, String artifactType, RemoteRepository[] repositories) {
+            return null;
+        }
+
+        public Collection<RemoteRepository> getRemoteRepositories() {
+            return Collections.singletonList(createRepository("resolver", "http://resolver.example.org/repo"));
+        }
+    }
+}
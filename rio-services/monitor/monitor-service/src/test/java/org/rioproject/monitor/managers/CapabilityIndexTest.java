@@ -0,0 +1,102 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.monitor.managers;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.rioproject.deploy.SystemComponent;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.sla.ServiceLevelAgreements;
+import org.rioproject.system.capability.PlatformCapability;
+import org.rioproject.system.capability.platform.OperatingSystem;
+import org.rioproject.system.capability.software.SoftwareSupport;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Test the {@code CapabilityIndex}.
+ */
+public class CapabilityIndexTest {
+
+    @Test
+    public void testMatchByName() {
+        CapabilityIndex<String> index = new CapabilityIndex<String>();
+        index.add("linux", createServiceElement(new SystemComponent("Linux", null)));
+        index.add("spring", createServiceElement(new SystemComponent("Spring", null)));
+
+        Assert.assertEquals(set("linux"), index.getCandidates(capabilities(createOperatingSystem("Linux"))));
+        Assert.assertEquals(set(), index.getCandidates(capabilities(createOperatingSystem("Mac OS X"))));
+    }
+
+    @Test
+    public void testMatchByClassName() {
+        CapabilityIndex<String> index = new CapabilityIndex<String>();
+        index.add("simple", createServiceElement(new SystemComponent(null, "OperatingSystem", null)));
+        index.add("qualified", createServiceElement(new SystemComponent(null, OperatingSystem.class.getName(), null)));
+        index.add("software", createServiceElement(new SystemComponent(null, "SoftwareSupport", null)));
+
+        Assert.assertEquals(set("simple", "qualified"),
+                            index.getCandidates(capabilities(createOperatingSystem("Linux"))));
+        Assert.assertEquals(set("software"), index.getCandidates(capabilities(new SoftwareSupport())));
+    }
+
+    @Test
+    public void testUnindexedRequests() {
+        CapabilityIndex<String> index = new CapabilityIndex<String>();
+        index.add("none", createServiceElement());
+        index.add("linux", createServiceElement(new SystemComponent("Linux", null)));
+
+        Assert.assertEquals(set("none"), index.getCandidates(capabilities()));
+        Assert.assertEquals(set("none"), index.getCandidates(capabilities(createOperatingSystem("Mac OS X"))));
+        Assert.assertEquals(set("none", "linux"), index.getCandidates(capabilities(createOperatingSystem("Linux"))));
+    }
+
+    @Test
+    public void testRemove() {
+        CapabilityIndex<String> index = new CapabilityIndex<String>();
+        index.add("none", createServiceElement());
+        index.add("linux", createServiceElement(new SystemComponent("Linux", "OperatingSystem", null)));
+
+        index.remove("linux");
+        Assert.assertEquals(set("none"), index.getCandidates(capabilities(createOperatingSystem("Linux"))));
+        index.remove("none");
+        Assert.assertEquals(set(), index.getCandidates(capabilities(createOperatingSystem("Linux"))));
+    }
+
+    private OperatingSystem createOperatingSystem(String name) {
+        OperatingSystem os = new OperatingSystem();
+        os.define(PlatformCapability.NAME, name);
+        return os;
+    }
+
+    private PlatformCapability[] capabilities(PlatformCapability... pCaps) {
+        return pCaps;
+    }
+
+    private Set<String> set(String... keys) {
+        return new HashSet<String>(Arrays.asList(keys));
+    }
+
+    private ServiceElement createServiceElement(SystemComponent... requirements) {
+        ServiceLevelAgreements slas = new ServiceLevelAgreements();
+        slas.getSystemRequirements().addSystemComponent(requirements);
+        ServiceElement sElem = new ServiceElement();
+        sElem.setServiceLevelAgreements(slas);
+        return sElem;
+    }
+}
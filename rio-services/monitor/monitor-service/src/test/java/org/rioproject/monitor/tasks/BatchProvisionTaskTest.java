@@ -0,0 +1,203 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.monitor.tasks;
+
+import net.jini.id.UuidFactory;
+import net.jini.io.MarshalledInstance;
+import org.junit.Assert;
+import org.junit.Test;
+import org.rioproject.deploy.*;
+import org.rioproject.jsb.ServiceElementUtil;
+import org.rioproject.monitor.*;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.resources.servicecore.ServiceResource;
+import org.rioproject.system.ComputeResourceUtilization;
+import org.rioproject.system.MeasuredResource;
+import org.rioproject.system.ResourceCapability;
+import org.rioproject.system.capability.PlatformCapability;
+import org.rioproject.watch.GaugeWatch;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.UnmarshalException;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the {@code BatchProvisionTask}.
+ */
+public class BatchProvisionTaskTest {
+    private final Executor direct = new Executor() {
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    @Test
+    public void testBatchedInstantiation() throws Exception {
+        Instantiator instantiator = new Instantiator(null);
+        InstantiatorResource ir = createInstantiatorResource(instantiator);
+        Provisioned provisioned = new Provisioned();
+        new BatchProvisionTask(ir, createTasks(ir, provisioned, 3), direct).run();
+
+        Assert.assertEquals(1, instantiator.batched.get());
+        Assert.assertEquals(0, instantiator.single.get());
+        Assert.assertEquals(3, provisioned.instances.size());
+        Assert.assertTrue(ir.getBatchedInstantiation());
+    }
+
+    @Test
+    public void testFallbackForProxyWithoutBatchedInstantiation() throws Exception {
+        Instantiator instantiator = new Instantiator(new AbstractMethodError());
+        InstantiatorResource ir = createInstantiatorResource(instantiator);
+        Provisioned provisioned = new Provisioned();
+        new BatchProvisionTask(ir, createTasks(ir, provisioned, 3), direct).run();
+
+        Assert.assertEquals(3, instantiator.single.get());
+        Assert.assertEquals(3, provisioned.instances.size());
+        Assert.assertFalse(ir.getBatchedInstantiation());
+
+        /* Once known, the batched method is not tried again */
+        new BatchProvisionTask(ir, createTasks(ir, provisioned, 2), direct).run();
+        Assert.assertEquals(1, instantiator.batched.get());
+        Assert.assertEquals(5, instantiator.single.get());
+    }
+
+    @Test
+    public void testFallbackForUnrecognizedMethod() throws Exception {
+        Instantiator instantiator = new Instantiator(new UnmarshalException("unrecognized method hash"));
+        InstantiatorResource ir = createInstantiatorResource(instantiator);
+        Provisioned provisioned = new Provisioned();
+        new BatchProvisionTask(ir, createTasks(ir, provisioned, 3), direct).run();
+
+        Assert.assertEquals(3, instantiator.single.get());
+        Assert.assertEquals(3, provisioned.instances.size());
+        Assert.assertFalse(ir.getBatchedInstantiation());
+    }
+
+    @Test
+    public void testSingleInstanceIsNotBatched() throws Exception {
+        Instantiator instantiator = new Instantiator(null);
+        InstantiatorResource ir = createInstantiatorResource(instantiator);
+        Provisioned provisioned = new Provisioned();
+        new BatchProvisionTask(ir, createTasks(ir, provisioned, 1), direct).run();
+
+        Assert.assertEquals(0, instantiator.batched.get());
+        Assert.assertEquals(1, instantiator.single.get());
+        Assert.assertEquals(1, provisioned.instances.size());
+    }
+
+    private InstantiatorResource createInstantiatorResource(Instantiator instantiator) {
+        ServiceBeanInstantiator proxy =
+            (ServiceBeanInstantiator)Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                            new Class[]{ServiceBeanInstantiator.class},
+                                                            instantiator);
+        ComputeResourceUtilization cru =
+            new ComputeResourceUtilization("Cybernode", "localhost", "127.0.0.1", new ArrayList<MeasuredResource>());
+        ResourceCapability resourceCapability =
+            new ResourceCapability("127.0.0.1", "localhost", false, new PlatformCapability[0], cru);
+        InstantiatorResource ir =
+            new InstantiatorResource(null, proxy, "Cybernode", UuidFactory.generate(), null, resourceCapability, 10);
+        ir.setElementCaching(false);
+        return ir;
+    }
+
+    private List<ProvisionTask> createTasks(InstantiatorResource ir, Provisioned provisioned, int count) {
+        ServiceBeanConfig sbc = new ServiceBeanConfig();
+        sbc.setName("Echo");
+        sbc.setOperationalStringName("Batch");
+        ServiceElement sElem = new ServiceElement(ServiceElement.ProvisionType.FIXED,
+                                                  sbc,
+                                                  null,
+                                                  new ClassBundle[0],
+                                                  null,
+                                                  new ClassBundle("org.rioproject.test.EchoImpl"));
+        List<ProvisionTask> tasks = new ArrayList<ProvisionTask>();
+        for(int i=0; i<count; i++) {
+            ServiceElement instance = ServiceElementUtil.prepareInstanceID(sElem, i+1);
+            ServiceProvisionContext context = new ServiceProvisionContext(null,
+                                                                          null,
+                                                                          Collections.synchronizedList(new ArrayList<ServiceElement>()),
+                                                                          this,
+                                                                          new GaugeWatch("Provision Clock"),
+                                                                          null,
+                                                                          null,
+                                                                          null,
+                                                                          new AtomicInteger());
+            context.setProvisionRequest(new ProvisionRequest(instance, provisioned, null, null));
+            context.setServiceResource(new ServiceResource(ir));
+            tasks.add(new ProvisionTask(context, null));
+        }
+        return tasks;
+    }
+
+    /*
+     * Instantiates services, counting single and batched instantiations
+     */
+    private static class Instantiator implements InvocationHandler {
+        final AtomicInteger single = new AtomicInteger();
+        final AtomicInteger batched = new AtomicInteger();
+        final Throwable batchFailure;
+
+        Instantiator(Throwable batchFailure) {
+            this.batchFailure = batchFailure;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if(!method.getName().equals("instantiate"))
+                throw new UnsupportedOperationException(method.getName());
+            if(args[0] instanceof ServiceProvisionEvent[]) {
+                batched.incrementAndGet();
+                if(batchFailure!=null)
+                    throw batchFailure;
+                ServiceProvisionEvent[] events = (ServiceProvisionEvent[])args[0];
+                InstantiationResult[] results = new InstantiationResult[events.length];
+                for(int i=0; i<events.length; i++)
+                    results[i] = new InstantiationResult(instantiate(events[i]));
+                return results;
+            }
+            single.incrementAndGet();
+            return instantiate((ServiceProvisionEvent)args[0]);
+        }
+
+        DeployedService instantiate(ServiceProvisionEvent event) throws IOException {
+            ServiceElement sElem = event.getServiceElement();
+            ServiceBeanInstance instance = new ServiceBeanInstance(UuidFactory.generate(),
+                                                                   new MarshalledInstance("Echo"),
+                                                                   sElem.getServiceBeanConfig(),
+                                                                   "localhost",
+                                                                   "127.0.0.1",
+                                                                   UuidFactory.generate());
+            return new DeployedService(sElem, instance, null);
+        }
+    }
+
+    private static class Provisioned implements ProvisionListener {
+        final List<ServiceBeanInstance> instances = Collections.synchronizedList(new ArrayList<ServiceBeanInstance>());
+
+        public void serviceProvisioned(ServiceBeanInstance jsbInstance, InstantiatorResource resource) {
+            instances.add(jsbInstance);
+        }
+
+        public void uninstantiable(ProvisionRequest request) {
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.test.simulate;
+
+import net.jini.config.Configuration;
+import net.jini.config.ConfigurationException;
+import net.jini.core.lease.Lease;
+import org.rioproject.deploy.ServiceBeanInstance;
+import org.rioproject.deploy.ServiceBeanInstantiator;
+import org.rioproject.event.DispatchEventHandler;
+import org.rioproject.jsb.ServiceElementUtil;
+import org.rioproject.monitor.*;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.watch.GaugeWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.rmi.MarshalledObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the ProvisionMonitor's provisioning core, the {@link ServiceProvisioner}
+ * with its {@code ServiceResourceSelector} and pending request managers, with
+ * thousands of {@link SimulatedCybernode}s in a single JVM.
+ *
+ * <p>Each SimulatedCybernode is registered with the ServiceProvisioner as a
+ * Cybernode would be, and periodically sends resource feedback, which is
+ * also when the ServiceProvisioner retries pending provision requests.
+ * Instances are dispatched as the ServiceElementManager dispatches them, and
+ * the time from dispatch to provisioned is recorded for each instance.
+ *
+ * <p>The ServiceProvisioner is created with the provided Configuration, so
+ * the {@code org.rioproject.monitor.serviceResourceSelector} can be varied.
+ * The harness itself reads the following entries from the
+ * {@code org.rioproject.test.simulate} component:
+ * <ul>
+ * <li><tt>feedbackInterval</tt>: How often (in milliseconds) each
+ * SimulatedCybernode sends feedback, defaults to 1000
+ * <li><tt>feedbackThreads</tt>: The number of threads used to send
+ * feedback, defaults to 4
+ * <li><tt>seed</tt>: The seed used to derive each SimulatedCybernode's
+ * random number generator, defaults to 0
+ * </ul>
+ */
+public class ProvisioningLoadHarness {
+    private static final String COMPONENT = "org.rioproject.test.simulate";
+    private static final Logger logger = LoggerFactory.getLogger(ProvisioningLoadHarness.class);
+    private final ServiceProvisioner provisioner;
+    private final List<SimulatedCybernode> cybernodes = new CopyOnWriteArrayList<SimulatedCybernode>();
+    private final ScheduledExecutorService feedbackScheduler;
+    private final long feedbackInterval;
+    private final Random random;
+    private final AtomicLong instanceID = new AtomicLong();
+
+    /**
+     * Create a ProvisioningLoadHarness
+     *
+     * @param config The Configuration used to create the ServiceProvisioner and
+     * configure the harness, must not be null
+     *
+     * @throws Exception if the ServiceProvisioner cannot be created
+     */
+    public ProvisioningLoadHarness(final Configuration config) throws Exception {
+        if(config==null)
+            throw new IllegalArgumentException("config is null");
+        feedbackInterval = getEntry(config, "feedbackInterval", long.class, 1000L);
+        int feedbackThreads = getEntry(config, "feedbackThreads", int.class, 4);
+        random = new Random(getEntry(config, "seed", long.class, 0L));
+        provisioner = new ServiceProvisioner(config,
+                                             ProvisioningLoadHarness.class.getName(),
+                                             new DispatchEventHandler(ProvisionFailureEvent.getEventDescriptor(), config),
+                                             new GaugeWatch("Provision Clock"));
+        feedbackScheduler = Executors.newScheduledThreadPool(feedbackThreads, new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread t = new Thread(runnable, "Simulated Cybernode Feedback");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private static <T> T getEntry(final Configuration config,
+                                  final String name,
+                                  final Class<T> type,
+                                  final T defaultValue) throws ConfigurationException {
+        @SuppressWarnings("unchecked")
+        T value = (T)config.getEntry(COMPONENT, name, type, defaultValue);
+        return value;
+    }
+
+    /**
+     * Create and register SimulatedCybernodes
+     *
+     * @param count The number of SimulatedCybernodes to add
+     * @param profile The capabilities and behavior of the SimulatedCybernodes,
+     * must not be null
+     *
+     * @throws Exception if a SimulatedCybernode cannot be created or the
+     * ServiceProvisioner denies the registration
+     */
+    public void addCybernodes(final int count, final SimulatedCybernode.Profile profile) throws Exception {
+        if(profile==null)
+            throw new IllegalArgumentException("profile is null");
+        for(int i=0; i<count; i++) {
+            final SimulatedCybernode cybernode = new SimulatedCybernode(cybernodes.size()+1, profile, random.nextLong());
+            provisioner.register(new MarshalledObject<ServiceBeanInstantiator>(cybernode),
+                                 null,
+                                 cybernode.getResourceCapability(),
+                                 cybernode.getDeployedServices(),
+                                 cybernode.getServiceLimit(),
+                                 Lease.FOREVER);
+            cybernodes.add(cybernode);
+            feedbackScheduler.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        provisioner.handleFeedback(cybernode,
+                                                   cybernode.getResourceCapability(),
+                                                   cybernode.getDeployedServices(),
+                                                   cybernode.getServiceLimit());
+                    } catch (Exception e) {
+                        logger.warn("Feedback from {}", cybernode.getName(), e);
+                    }
+                }
+            }, (long)(random.nextDouble()*feedbackInterval), feedbackInterval, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Registered {} simulated Cybernodes, total {}", count, cybernodes.size());
+    }
+
+    /**
+     * @return The registered SimulatedCybernodes
+     */
+    public List<SimulatedCybernode> getCybernodes() {
+        return new ArrayList<SimulatedCybernode>(cybernodes);
+    }
+
+    /**
+     * Provision instances of a service and wait for them to be provisioned
+     *
+     * @param template The ServiceElement to provision, must not be null. Its
+     * planned value is set to the number of instances.
+     * @param instances The number of instances to provision
+     * @param timeout How long (in milliseconds) to wait for all instances to
+     * be provisioned
+     *
+     * @return A ProvisioningReport for the instances. If the timeout elapsed
+     * the report includes the instances that were still pending.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ProvisioningReport provision(final ServiceElement template,
+                                        final int instances,
+                                        final long timeout) throws InterruptedException {
+        if(template==null)
+            throw new IllegalArgumentException("template is null");
+        ServiceElement element = ServiceElementUtil.copyServiceElement(template);
+        element.setPlanned(instances);
+        Run run = new Run(instances);
+        int failures = getFailureCount();
+        long start = System.nanoTime();
+        for(int i=0; i<instances; i++) {
+            long id = instanceID.incrementAndGet();
+            ServiceElement instance = ServiceElementUtil.prepareInstanceID(element, true, id);
+            run.dispatched.put(id, System.nanoTime());
+            provisioner.dispatch(new ProvisionRequest(instance, run, null, run));
+        }
+        long dispatchTime = System.nanoTime()-start;
+        run.latch.await(timeout, TimeUnit.MILLISECONDS);
+        long elapsed = run.latch.getCount()==0?run.last.get()-start:System.nanoTime()-start;
+        int[] perCybernode = new int[cybernodes.size()];
+        for(int i=0; i<perCybernode.length; i++)
+            perCybernode[i] = cybernodes.get(i).getServiceBeanInstances(element).length;
+        return new ProvisioningReport(cybernodes.size(),
+                                      instances,
+                                      run.uninstantiable.get(),
+                                      getFailureCount()-failures,
+                                      dispatchTime,
+                                      elapsed,
+                                      run.getLatencies(),
+                                      perCybernode);
+    }
+
+    /**
+     * Stop feedback, terminate the ServiceProvisioner and the
+     * SimulatedCybernodes
+     */
+    public void terminate() {
+        feedbackScheduler.shutdownNow();
+        provisioner.terminate();
+        for(SimulatedCybernode cybernode : cybernodes)
+            cybernode.terminate();
+    }
+
+    private int getFailureCount() {
+        int failures = 0;
+        for(SimulatedCybernode cybernode : cybernodes)
+            failures += cybernode.getFailureCount();
+        return failures;
+    }
+
+    /**
+     * Tracks the instances of a call to provision
+     */
+    private class Run implements ProvisionListener, InstanceIDManager {
+        final Map<Long, Long> dispatched = new ConcurrentHashMap<Long, Long>();
+        final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<Long>();
+        final CountDownLatch latch;
+        final AtomicInteger uninstantiable = new AtomicInteger();
+        final AtomicLong last = new AtomicLong();
+
+        Run(final int instances) {
+            latch = new CountDownLatch(instances);
+        }
+
+        public void serviceProvisioned(final ServiceBeanInstance instance, final InstantiatorResource resource) {
+            long now = System.nanoTime();
+            Long start = dispatched.remove(instance.getServiceBeanConfig().getInstanceID());
+            if(start==null)
+                return;
+            latencies.add(now-start);
+            latch.countDown();
+            if(latch.getCount()==0)
+                last.set(now);
+        }
+
+        public void uninstantiable(final ProvisionRequest request) {
+            uninstantiable.incrementAndGet();
+            latch.countDown();
+        }
+
+        public long getNextInstanceID() {
+            return instanceID.incrementAndGet();
+        }
+
+        long[] getLatencies() {
+            List<Long> values = new ArrayList<Long>(latencies);
+            long[] array = new long[values.size()];
+            for(int i=0; i<array.length; i++)
+                array[i] = values.get(i);
+            return array;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.test.simulate;
+
+import net.jini.config.EmptyConfiguration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.rioproject.deploy.SystemComponent;
+import org.rioproject.opstring.ClassBundle;
+import org.rioproject.opstring.ServiceBeanConfig;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.system.capability.PlatformCapability;
+import org.rioproject.system.capability.platform.OperatingSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provisions instances to simulated Cybernodes through the ServiceProvisioner,
+ * and reports provisioning throughput and latency. Half of the Cybernodes do
+ * not meet the service's operating system requirement, so selection has to
+ * skip them. The scale is set with the
+ * {@code org.rioproject.test.simulate.cybernodes} and
+ * {@code org.rioproject.test.simulate.instances} system properties.
+ *
+ * <p>This test is not run with the integration tests, it is run with the
+ * {@code provisioning-load-test} profile.
+ */
+public class ProvisioningLoadTest {
+    static final Logger logger = LoggerFactory.getLogger(ProvisioningLoadTest.class);
+    private ProvisioningLoadHarness harness;
+
+    @Before
+    public void createHarness() throws Exception {
+        harness = new ProvisioningLoadHarness(EmptyConfiguration.INSTANCE);
+    }
+
+    @After
+    public void terminateHarness() {
+        harness.terminate();
+    }
+
+    @Test
+    public void testProvisioningLoad() throws Exception {
+        int cybernodes = Integer.getInteger("org.rioproject.test.simulate.cybernodes", 1000);
+        int instances = Integer.getInteger("org.rioproject.test.simulate.instances", 10000);
+        int serviceLimit = 2*instances/cybernodes+1;
+        harness.addCybernodes(cybernodes/2,
+                              new SimulatedCybernode.Profile(new PlatformCapability[]{operatingSystem("Linux")},
+                                                             serviceLimit, 1, 10, 0.01));
+        harness.addCybernodes(cybernodes-cybernodes/2,
+                              new SimulatedCybernode.Profile(new PlatformCapability[]{operatingSystem("Windows")},
+                                                             serviceLimit, 1, 10, 0.01));
+
+        ProvisioningReport report = harness.provision(createServiceElement("Linux"),
+                                                      instances,
+                                                      TimeUnit.MINUTES.toMillis(5));
+        logger.info("{}", report);
+        Assert.assertEquals(report.toString(), instances, report.getProvisioned());
+        Assert.assertEquals(0, report.getPending());
+        for(SimulatedCybernode cybernode : harness.getCybernodes()) {
+            if(cybernode.getResourceCapability().getPlatformCapabilities()[0].getName().equals("Windows"))
+                Assert.assertEquals(0, cybernode.getInstantiationCount());
+        }
+    }
+
+    private PlatformCapability operatingSystem(String name) {
+        PlatformCapability capability = new OperatingSystem();
+        capability.define(PlatformCapability.NAME, name);
+        return capability;
+    }
+
+    private ServiceElement createServiceElement(String operatingSystem) {
+        ServiceElement elem = new ServiceElement();
+        elem.setComponentBundle(new ClassBundle("org.rioproject.test.simple.SimpleImpl"));
+        ServiceBeanConfig sbc = new ServiceBeanConfig();
+        sbc.setName("Simple");
+        sbc.setOperationalStringName("Load");
+        elem.setServiceBeanConfig(sbc);
+        Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put(PlatformCapability.NAME, operatingSystem);
+        elem.getServiceLevelAgreements().getSystemRequirements()
+            .addSystemComponent(new SystemComponent(null, OperatingSystem.class.getSimpleName(), attributes));
+        return elem;
+    }
+}
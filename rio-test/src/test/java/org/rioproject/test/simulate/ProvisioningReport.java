@@ -0,0 +1,159 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.test.simulate;
+
+import java.util.Arrays;
+
+/**
+ * The results of a {@link ProvisioningLoadHarness} run: provisioning
+ * throughput, the distribution of provisioning latencies, and how the
+ * provisioned instances were spread across the simulated Cybernodes.
+ */
+public class ProvisioningReport {
+    private final int cybernodes;
+    private final int requested;
+    private final int uninstantiable;
+    private final int failures;
+    private final long dispatchTime;
+    private final long elapsed;
+    private final long[] latencies;
+    private final int minPerCybernode;
+    private final int maxPerCybernode;
+
+    /**
+     * Create a ProvisioningReport
+     *
+     * @param cybernodes The number of simulated Cybernodes
+     * @param requested The number of instances requested
+     * @param uninstantiable The number of instances declared uninstantiable
+     * @param failures The number of simulated instantiation failures
+     * @param dispatchTime The time (in nanoseconds) taken to dispatch all
+     * provision requests
+     * @param elapsed The time (in nanoseconds) from the first dispatch until
+     * the last instance was provisioned, or the run timed out
+     * @param latencies The time (in nanoseconds) from dispatch to provisioned
+     * for each provisioned instance
+     * @param perCybernode The number of instances on each simulated Cybernode
+     */
+    public ProvisioningReport(final int cybernodes,
+                              final int requested,
+                              final int uninstantiable,
+                              final int failures,
+                              final long dispatchTime,
+                              final long elapsed,
+                              final long[] latencies,
+                              final int[] perCybernode) {
+        this.cybernodes = cybernodes;
+        this.requested = requested;
+        this.uninstantiable = uninstantiable;
+        this.failures = failures;
+        this.dispatchTime = dispatchTime;
+        this.elapsed = elapsed;
+        this.latencies = latencies.clone();
+        Arrays.sort(this.latencies);
+        int min = perCybernode.length==0?0:Integer.MAX_VALUE;
+        int max = 0;
+        for(int count : perCybernode) {
+            min = Math.min(min, count);
+            max = Math.max(max, count);
+        }
+        this.minPerCybernode = min;
+        this.maxPerCybernode = max;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getProvisioned() {
+        return latencies.length;
+    }
+
+    /**
+     * @return The number of instances that were neither provisioned nor
+     * declared uninstantiable when the run completed
+     */
+    public int getPending() {
+        return requested-latencies.length-uninstantiable;
+    }
+
+    public int getUninstantiable() {
+        return uninstantiable;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return The number of instances provisioned per second
+     */
+    public double getThroughput() {
+        return elapsed==0?0:latencies.length/(elapsed/1e9);
+    }
+
+    /**
+     * Get a provisioning latency percentile
+     *
+     * @param percentile The percentile, from 0 to 100
+     *
+     * @return The latency (in milliseconds) at the percentile, or 0 if no
+     * instances were provisioned
+     */
+    public double getLatency(final double percentile) {
+        if(percentile<0 || percentile>100)
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        if(latencies.length==0)
+            return 0;
+        int index = (int)Math.ceil(percentile/100*latencies.length)-1;
+        return toMillis(latencies[Math.max(0, index)]);
+    }
+
+    public double getMeanLatency() {
+        if(latencies.length==0)
+            return 0;
+        double total = 0;
+        for(long latency : latencies)
+            total += latency;
+        return toMillis(total/latencies.length);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Cybernodes:          ").append(cybernodes).append("\n");
+        builder.append("Requested:           ").append(requested).append("\n");
+        builder.append("Provisioned:         ").append(getProvisioned()).append("\n");
+        builder.append("Pending:             ").append(getPending()).append("\n");
+        builder.append("Uninstantiable:      ").append(uninstantiable).append("\n");
+        builder.append("Simulated failures:  ").append(failures).append("\n");
+        builder.append(String.format("Dispatch time:       %.1f ms%n", toMillis(dispatchTime)));
+        builder.append(String.format("Elapsed:             %.1f ms%n", toMillis(elapsed)));
+        builder.append(String.format("Throughput:          %.1f instances/s%n", getThroughput()));
+        builder.append(String.format("Latency (ms):        mean=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                                     getMeanLatency(),
+                                     getLatency(50),
+                                     getLatency(90),
+                                     getLatency(99),
+                                     getLatency(100)));
+        builder.append("Per Cybernode:       min=").append(minPerCybernode).append(" max=").append(maxPerCybernode);
+        return builder.toString();
+    }
+
+    private static double toMillis(final double nanos) {
+        return nanos/1e6;
+    }
+}
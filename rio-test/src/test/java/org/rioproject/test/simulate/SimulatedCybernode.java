@@ -0,0 +1,318 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.test.simulate;
+
+import net.jini.id.Uuid;
+import net.jini.id.UuidFactory;
+import net.jini.io.MarshalledInstance;
+import org.rioproject.deploy.*;
+import org.rioproject.opstring.OperationalStringManager;
+import org.rioproject.opstring.ServiceElement;
+import org.rioproject.system.ComputeResourceUtilization;
+import org.rioproject.system.MeasuredResource;
+import org.rioproject.system.ResourceCapability;
+import org.rioproject.system.capability.PlatformCapability;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ServiceBeanInstantiator} that simulates a Cybernode. Services are
+ * not created, an instantiation request waits for a simulated latency, fails
+ * at a configured rate, and otherwise records a {@link DeployedService} with a
+ * placeholder proxy.
+ *
+ * <p>A SimulatedCybernode is registered with the ServiceProvisioner in a
+ * <code>MarshalledObject</code>. Only its {@link Uuid} is serialized, when
+ * unmarshalled the running instance in this JVM is resolved, in the same way a
+ * proxy refers to its remote Cybernode.
+ */
+public class SimulatedCybernode implements ServiceBeanInstantiator, Serializable {
+    static final long serialVersionUID = 1L;
+    private static final Map<Uuid, SimulatedCybernode> running = new ConcurrentHashMap<Uuid, SimulatedCybernode>();
+    private final Uuid uuid;
+    private final transient String name;
+    private final transient String hostAddress;
+    private final transient Profile profile;
+    private final transient Random random;
+    private final transient MarshalledInstance proxy;
+    private final transient List<DeployedService> deployed = new ArrayList<DeployedService>();
+    private final transient AtomicInteger instantiations = new AtomicInteger();
+    private final transient AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * Create a SimulatedCybernode
+     *
+     * @param index A unique index for the SimulatedCybernode, used to create
+     * its name and a distinct (unrouted) host address
+     * @param profile The capabilities and behavior of the SimulatedCybernode,
+     * must not be null
+     * @param seed The seed for the random number generator used to compute
+     * latencies and failures
+     *
+     * @throws IOException if the placeholder proxy cannot be created
+     */
+    public SimulatedCybernode(final int index, final Profile profile, final long seed) throws IOException {
+        if(profile==null)
+            throw new IllegalArgumentException("profile is null");
+        this.uuid = UuidFactory.generate();
+        this.name = "Simulated Cybernode-"+index;
+        this.hostAddress = "10."+((index>>16) & 0xff)+"."+((index>>8) & 0xff)+"."+(index & 0xff);
+        this.profile = profile;
+        this.random = new Random(seed);
+        this.proxy = new MarshalledInstance(name);
+        running.put(uuid, this);
+    }
+
+    /**
+     * Remove the SimulatedCybernode from the instances that can be resolved
+     * when unmarshalled
+     */
+    public void terminate() {
+        running.remove(uuid);
+    }
+
+    public DeployedService instantiate(final ServiceProvisionEvent event) throws ServiceBeanInstantiationException {
+        long latency = profile.minLatency;
+        if(profile.maxLatency>profile.minLatency)
+            latency += (long)(random.nextDouble()*(profile.maxLatency-profile.minLatency));
+        if(latency>0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceBeanInstantiationException("Interrupted");
+            }
+        }
+        instantiations.incrementAndGet();
+        if(random.nextDouble()<profile.failureRate) {
+            failures.incrementAndGet();
+            throw new ServiceBeanInstantiationException("Simulated failure instantiating "+event.getServiceElement().getName());
+        }
+        ServiceElement element = event.getServiceElement();
+        synchronized(deployed) {
+            if(deployed.size()>=profile.serviceLimit)
+                throw new ServiceBeanInstantiationException(name+" has reached its service limit of "+profile.serviceLimit);
+            ServiceBeanInstance instance = new ServiceBeanInstance(UuidFactory.generate(),
+                                                                   proxy,
+                                                                   element.getServiceBeanConfig(),
+                                                                   name,
+                                                                   hostAddress,
+                                                                   uuid);
+            DeployedService deployedService = new DeployedService(element, instance, getComputeResourceUtilization());
+            deployed.add(deployedService);
+            return deployedService;
+        }
+    }
+
+    public InstantiationResult[] instantiate(final ServiceProvisionEvent[] events) {
+        InstantiationResult[] results = new InstantiationResult[events.length];
+        for(int i=0; i<events.length; i++) {
+            try {
+                results[i] = new InstantiationResult(instantiate(events[i]));
+            } catch (ServiceBeanInstantiationException e) {
+                results[i] = new InstantiationResult(e);
+            }
+        }
+        return results;
+    }
+
+    public void update(final ServiceElement[] sElements, final OperationalStringManager opStringMgr) {
+    }
+
+    public ServiceStatement[] getServiceStatements() {
+        Map<ServiceElement, ServiceStatement> statements = new HashMap<ServiceElement, ServiceStatement>();
+        for(DeployedService deployedService : getDeployedServices()) {
+            ServiceElement element = deployedService.getServiceElement();
+            ServiceStatement statement = statements.get(element);
+            if(statement==null) {
+                statement = new ServiceStatement(element);
+                statements.put(element, statement);
+            }
+            Uuid id = deployedService.getServiceBeanInstance().getServiceBeanID();
+            statement.putServiceRecord(uuid, new ServiceRecord(id, element, name));
+        }
+        return statements.values().toArray(new ServiceStatement[statements.size()]);
+    }
+
+    public ServiceStatement getServiceStatement(final ServiceElement sElem) {
+        if(sElem==null)
+            throw new IllegalArgumentException("sElem is null");
+        for(ServiceStatement statement : getServiceStatements()) {
+            if(statement.getServiceElement().equals(sElem))
+                return statement;
+        }
+        return null;
+    }
+
+    public ServiceRecord[] getServiceRecords(final int filter) {
+        List<ServiceRecord> records = new ArrayList<ServiceRecord>();
+        if(filter==ServiceRecord.ACTIVE_SERVICE_RECORD) {
+            for(DeployedService deployedService : getDeployedServices()) {
+                records.add(new ServiceRecord(deployedService.getServiceBeanInstance().getServiceBeanID(),
+                                              deployedService.getServiceElement(),
+                                              name));
+            }
+        }
+        return records.toArray(new ServiceRecord[records.size()]);
+    }
+
+    public ServiceBeanInstance[] getServiceBeanInstances(final ServiceElement element) {
+        List<ServiceBeanInstance> instances = new ArrayList<ServiceBeanInstance>();
+        for(DeployedService deployedService : getDeployedServices()) {
+            if(element==null || element.equals(deployedService.getServiceElement()))
+                instances.add(deployedService.getServiceBeanInstance());
+        }
+        return instances.toArray(new ServiceBeanInstance[instances.size()]);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Uuid getInstantiatorUuid() {
+        return uuid;
+    }
+
+    public InetAddress getInetAddress() {
+        try {
+            return InetAddress.getByName(hostAddress);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("Invalid simulated address "+hostAddress, e);
+        }
+    }
+
+    /**
+     * Get the services this SimulatedCybernode has instantiated
+     *
+     * @return A List of DeployedService instances. A new List is created
+     * each time.
+     */
+    public List<DeployedService> getDeployedServices() {
+        synchronized(deployed) {
+            return new ArrayList<DeployedService>(deployed);
+        }
+    }
+
+    /**
+     * Get the capabilities of this SimulatedCybernode. The utilization is the
+     * ratio of instantiated services to the service limit.
+     *
+     * @return A ResourceCapability reflecting the current utilization
+     */
+    public ResourceCapability getResourceCapability() {
+        return new ResourceCapability(hostAddress,
+                                      name,
+                                      false,
+                                      profile.capabilities,
+                                      getComputeResourceUtilization());
+    }
+
+    public int getServiceLimit() {
+        return profile.serviceLimit;
+    }
+
+    /**
+     * @return The number of instantiation requests this SimulatedCybernode
+     * has processed, including failed requests
+     */
+    public int getInstantiationCount() {
+        return instantiations.get();
+    }
+
+    /**
+     * @return The number of simulated instantiation failures
+     */
+    public int getFailureCount() {
+        return failures.get();
+    }
+
+    private ComputeResourceUtilization getComputeResourceUtilization() {
+        double utilization;
+        synchronized(deployed) {
+            utilization = (double)deployed.size()/profile.serviceLimit;
+        }
+        return new ComputeResourceUtilization("Simulated",
+                                              name,
+                                              hostAddress,
+                                              utilization,
+                                              new ArrayList<MeasuredResource>());
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        SimulatedCybernode instance = running.get(uuid);
+        if(instance==null)
+            throw new InvalidObjectException("No running SimulatedCybernode "+uuid);
+        return instance;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * The capabilities and behavior of a SimulatedCybernode
+     */
+    public static class Profile {
+        private final PlatformCapability[] capabilities;
+        private final int serviceLimit;
+        private final long minLatency;
+        private final long maxLatency;
+        private final double failureRate;
+
+        /**
+         * Create a Profile
+         *
+         * @param capabilities The PlatformCapability instances a
+         * SimulatedCybernode advertises, must not be null
+         * @param serviceLimit The maximum number of services a
+         * SimulatedCybernode will instantiate
+         * @param minLatency The minimum time (in milliseconds) an
+         * instantiation request takes
+         * @param maxLatency The maximum time (in milliseconds) an
+         * instantiation request takes
+         * @param failureRate The probability (0.0 to 1.0) that an
+         * instantiation request fails
+         */
+        public Profile(final PlatformCapability[] capabilities,
+                       final int serviceLimit,
+                       final long minLatency,
+                       final long maxLatency,
+                       final double failureRate) {
+            if(capabilities==null)
+                throw new IllegalArgumentException("capabilities is null");
+            if(serviceLimit<=0)
+                throw new IllegalArgumentException("serviceLimit must be greater than 0");
+            if(minLatency<0 || maxLatency<minLatency)
+                throw new IllegalArgumentException("invalid latency range ["+minLatency+"-"+maxLatency+"]");
+            if(failureRate<0 || failureRate>1)
+                throw new IllegalArgumentException("failureRate must be between 0 and 1");
+            this.capabilities = capabilities;
+            this.serviceLimit = serviceLimit;
+            this.minLatency = minLatency;
+            this.maxLatency = maxLatency;
+            this.failureRate = failureRate;
+        }
+    }
+}
@@ -185,6 +185,12 @@ public class CLI {
         buffer.append("\t-noHttp\t\t\t\tDo not start Webster, mutually " +
                 "exclusive\n");
         buffer.append("\t\t\t\t\twith the httpPort option\n");
+        buffer.append("\t-noSession\t\t\tDo not attach to a running " +
+                      "session\n");
+        buffer.append("\n");
+        buffer.append("\tsession\t\t\t\tStart a session that keeps discovery " +
+                      "warm,\n");
+        buffer.append("\t\t\t\t\tsubsequent commands attach to it\n");
 
         for (OptionHandlerDesc option : optionMap.values()) {
             buffer.append("\t").append(option.getName()).append("\n");
@@ -318,6 +324,49 @@ public class CLI {
         return cliOutput;
     }
 
+    /**
+     * Execute a command
+     *
+     * @param input The command and its arguments, must not be null
+     * @param workingDirectory The directory the command is executed relative
+     * to. If null the current directory is used
+     * @param br A BufferedReader for commands that prompt for input, may be null
+     * @param out The PrintStream to write results to, must not be null
+     *
+     * @return If the command is valid, return true, otherwise return false
+     */
+    boolean execute(final String input,
+                    final File workingDirectory,
+                    final BufferedReader br,
+                    final PrintStream out) {
+        if(input == null)
+            throw new IllegalArgumentException("input is null");
+        if(out == null)
+            throw new IllegalArgumentException("out is null");
+        StringTokenizer tok = new StringTokenizer(input);
+        String command = tok.hasMoreTokens()?tok.nextToken():input;
+        if(!validCommand(command))
+            return false;
+        PrintStream output = cliOutput;
+        File directory = currentDir;
+        cliOutput = out;
+        if(workingDirectory!=null)
+            currentDir = workingDirectory;
+        try {
+            OptionHandler handler = getOptionHandler(command);
+            if(handler!=null) {
+                String response = handler.process(input, br, out);
+                if(response.length()>0)
+                    out.println(response);
+            }
+        } finally {
+            cliOutput = output;
+            if(workingDirectory!=null)
+                currentDir = directory;
+        }
+        return true;
+    }
+
     private void setOutput(final PrintStream cliOutput) {
         this.cliOutput = cliOutput;
     }
@@ -589,7 +638,7 @@ public class CLI {
         public void destroyAll(final ServiceItem[] items, final PrintStream out) {
             for (ServiceItem item : items)
                     destroyService(item, out);
-            System.out.println("Checking registry ...");
+            out.println("Checking registry ...");
             try {
                 Thread.sleep(1000);
             } catch (InterruptedException e) {
@@ -1450,6 +1499,19 @@ public class CLI {
         int httpPort = (Integer) sysConfig.getEntry(CONFIG_COMPONENT, "httpPort", int.class, 0);
 
         boolean noHttp = (Boolean) sysConfig.getEntry(CONFIG_COMPONENT, "noHttp", boolean.class, Boolean.FALSE);
+
+        boolean attachToSession =
+            (Boolean) sysConfig.getEntry(CONFIG_COMPONENT, "attachToSession", boolean.class, Boolean.TRUE);
+
+        int sessionPort = (Integer) sysConfig.getEntry(CONFIG_COMPONENT, "sessionPort", int.class, 0);
+
+        File sessionFile = (File) sysConfig.getEntry(CONFIG_COMPONENT,
+                                                     "sessionFile",
+                                                     File.class,
+                                                     CLISession.getDefaultSessionFile());
+        /* Discovery settings provided on the command line may differ from those
+         * of a running session, if provided the command is not sent to a session */
+        boolean discoveryArgs = false;
         /* Look to see if the operator has provided a starting directory,
          * groups, locators, discovery timeout, httpPort or ignore http */
         String homeDir = null;
@@ -1465,6 +1527,7 @@ public class CLI {
                 String[] values = arg.split("=");
                 String groupsArg = values[1].trim();
                 groups = toArray(groupsArg, " \t\n\r\f,");
+                discoveryArgs = true;
                 System.setProperty(Constants.GROUPS_PROPERTY_NAME, groupsArg);
                 for (int j = 0; j < groups.length; j++) {
                     if (groups[j].equalsIgnoreCase("all")) {
@@ -1486,6 +1549,7 @@ public class CLI {
                     list.add(new LookupLocator(aLocatorArray));
                 }
                 locators = list.toArray(new LookupLocator[list.size()]);
+                discoveryArgs = true;
                 commandArgs.remove(arg);
             } else if (arg.startsWith("discoveryTimeout")) {
                 String[] values = arg.split("=");
@@ -1500,13 +1564,29 @@ public class CLI {
             } else if (arg.startsWith("-noHttp")) {
                 noHttp = true;
                 commandArgs.remove(arg);
+            } else if (arg.startsWith("-noSession")) {
+                attachToSession = false;
+                commandArgs.remove(arg);
             }
         }
 
         /* Reset the args parameter, removing the config parameter */
         args = commandArgs.toArray(new String[commandArgs.size()]);
 
-        if(args.length==0)
+        boolean startSession = args.length>0 && args[0].equals(CLISession.SESSION);
+        if(args.length>0 && !startSession && attachToSession && !discoveryArgs) {
+            File workingDirectory = new File(homeDir==null?System.getProperty("user.dir"):homeDir);
+            if(CLISession.attach(sessionFile,
+                                 workingDirectory,
+                                 Formatter.fromArray(args, " "),
+                                 new BufferedReader(new InputStreamReader(System.in)),
+                                 instance.getOutput())) {
+                return args;
+            }
+        }
+
+        /* Interactive use and sessions keep lookup caches */
+        if(args.length==0 || startSession)
             instance.commandLine = false;
         instance.initSettings(groups, locators, discoveryTimeout);
         if(homeDir!=null) {
@@ -1524,15 +1604,18 @@ public class CLI {
 
         if(args.length==0) {
             instance.manageInteraction();
-        } else {
-            if(instance.validCommand(args[0])) {
-                OptionHandler handler = instance.getOptionHandler(args[0]);
-                if(handler!=null) {
-                    String response = handler.process(Formatter.fromArray(args, " "), null, instance.getOutput());
-                    if(response.length()>0)
-                        instance.getOutput().println(response);
+        } else if(startSession) {
+            final CLISession session = new CLISession(sessionPort, sessionFile);
+            Runtime.getRuntime().addShutdownHook(new Thread("CLI Session Shutdown") {
+                public void run() {
+                    session.close();
                 }
-            } else {
+            });
+            instance.getOutput().println(instance.cliName+" CLI session listening on port "+session.getPort()+
+                                         ", session file "+sessionFile.getPath());
+            session.serve();
+        } else {
+            if(!instance.execute(Formatter.fromArray(args, " "), null, null, instance.getOutput())) {
                 instance.printUsage();
             }
             instance.onExit(false);
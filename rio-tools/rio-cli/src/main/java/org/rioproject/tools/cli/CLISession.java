@@ -0,0 +1,372 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.tools.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A long-lived CLI session that other CLI processes attach to. The session
+ * keeps its discovery and lookup caches warm, commands submitted by attached
+ * processes are run against those caches and their output is streamed back
+ * as it is produced.
+ *
+ * <p>The session listens on the loopback interface only. The port and a
+ * randomly generated token are written to a session file readable only by the
+ * owner, an attaching process must present the token before a command is
+ * accepted. Commands are run one at a time.
+ *
+ * <p>The wire protocol is framed: the attaching process sends the token, its
+ * working directory and the command as UTF strings. The session then sends
+ * {@link #OUTPUT} frames (length prefixed bytes), {@link #READ_LINE} requests
+ * when a command prompts for input (answered with a boolean indicating whether
+ * a line follows, and the line), and finally {@link #END}.
+ *
+ * <p>Output is streamed as commands write it, but discovery results are not
+ * streamed service by service: listing commands print a numbered table that
+ * later commands (for example <tt>destroy</tt>) refer to, so the table is
+ * printed once the lookup completes. In a session the lookup is answered from
+ * the warm caches and completes without waiting for discovery.
+ */
+public class CLISession {
+    static final String SESSION = "session";
+    static final byte OUTPUT = 1;
+    static final byte READ_LINE = 2;
+    static final byte END = 3;
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final Logger logger = LoggerFactory.getLogger(CLISession.class);
+    private final ServerSocket serverSocket;
+    private final File sessionFile;
+    private final String token;
+    private final ExecutorService connectionPool;
+    private final Object commandLock = new Object();
+
+    /**
+     * Create a CLISession, binding to the loopback interface and writing the
+     * session file
+     *
+     * @param port The port to listen on, if 0 an anonymous port is used
+     * @param sessionFile The file to record the session port and token in,
+     * must not be null
+     *
+     * @throws IOException if the server socket cannot be created or the session
+     * file cannot be written
+     */
+    CLISession(final int port, final File sessionFile) throws IOException {
+        if(sessionFile==null)
+            throw new IllegalArgumentException("sessionFile is null");
+        this.sessionFile = sessionFile;
+        this.token = new BigInteger(130, new SecureRandom()).toString(32);
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+        writeSessionFile();
+        connectionPool = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread t = new Thread(runnable, "CLI Session");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Get the default session file, {@code ~/.rio/cli.session}
+     *
+     * @return The default session file
+     */
+    static File getDefaultSessionFile() {
+        return new File(System.getProperty("user.home")+File.separator+".rio", "cli.session");
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accept connections from attaching processes until the session is closed
+     */
+    void serve() {
+        while(!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connectionPool.execute(new Runnable() {
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            } catch (IOException e) {
+                if(!serverSocket.isClosed())
+                    logger.warn("Accepting session connection", e);
+            }
+        }
+    }
+
+    /**
+     * Close the session, removing the session file
+     */
+    void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.trace("Closing session socket", e);
+        }
+        connectionPool.shutdownNow();
+        if(sessionFile.exists() && !sessionFile.delete())
+            logger.warn("Unable to remove session file {}", sessionFile.getPath());
+    }
+
+    private void writeSessionFile() throws IOException {
+        File parent = sessionFile.getParentFile();
+        if(parent!=null && !parent.exists() && !parent.mkdirs())
+            throw new IOException("Unable to create "+parent.getPath());
+        Properties props = new Properties();
+        props.setProperty("port", Integer.toString(getPort()));
+        props.setProperty("token", token);
+        /* Create the file and restrict access before the token is written */
+        OutputStream out = new FileOutputStream(sessionFile);
+        try {
+            sessionFile.setReadable(false, false);
+            sessionFile.setWritable(false, false);
+            sessionFile.setReadable(true, true);
+            sessionFile.setWritable(true, true);
+            props.store(out, "Rio CLI session");
+        } finally {
+            out.close();
+        }
+    }
+
+    private void handle(final Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if(!token.equals(in.readUTF())) {
+                logger.warn("Rejected session connection from {}, invalid token", socket.getRemoteSocketAddress());
+                return;
+            }
+            File workingDirectory = new File(in.readUTF());
+            String command = in.readUTF();
+            PrintStream output = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out)), true, "UTF-8");
+            BufferedReader reader = new BufferedReader(new LineRequestReader(in, out, output));
+            try {
+                synchronized(commandLock) {
+                    if(!CLI.getInstance().execute(command, workingDirectory, reader, output)) {
+                        output.println("? Invalid command");
+                        output.println(CLI.getInstance().getInteractiveUsage()+"\n");
+                    }
+                }
+            } catch(Exception e) {
+                output.println("Exception executing ["+command+"]: "+e.getClass().getName()+": "+e.getMessage());
+                logger.warn("Executing session command [{}]", command, e);
+            }
+            output.flush();
+            synchronized(out) {
+                out.writeByte(END);
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.debug("Session connection closed", e);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.trace("Closing session connection", e);
+            }
+        }
+    }
+
+    /**
+     * Attach to a running session and have it execute a command. Output is
+     * written to the provided stream as it is received, and input is read from
+     * the provided reader only when the command prompts for it.
+     *
+     * @param sessionFile The session file, must not be null
+     * @param workingDirectory The directory the command is executed relative
+     * to, must not be null
+     * @param command The command to execute, must not be null
+     * @param in Where to read input from if the command prompts for it
+     * @param out Where to write command output to
+     *
+     * @return {@code true} if the command was executed by a session,
+     * {@code false} if there is no session running
+     *
+     * @throws IOException if the connection to the session fails after the
+     * command has been sent
+     */
+    static boolean attach(final File sessionFile,
+                          final File workingDirectory,
+                          final String command,
+                          final BufferedReader in,
+                          final PrintStream out) throws IOException {
+        if(sessionFile==null)
+            throw new IllegalArgumentException("sessionFile is null");
+        if(workingDirectory==null)
+            throw new IllegalArgumentException("workingDirectory is null");
+        if(command==null)
+            throw new IllegalArgumentException("command is null");
+        if(!sessionFile.exists())
+            return false;
+        Properties props = new Properties();
+        int port;
+        String token;
+        try {
+            InputStream is = new FileInputStream(sessionFile);
+            try {
+                props.load(is);
+            } finally {
+                is.close();
+            }
+            port = Integer.parseInt(props.getProperty("port"));
+            token = props.getProperty("token");
+        } catch (Exception e) {
+            logger.debug("Unable to read session file {}", sessionFile.getPath(), e);
+            return false;
+        }
+        if(token==null)
+            return false;
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getByName(null), port), CONNECT_TIMEOUT);
+        } catch (IOException e) {
+            /* Stale session file, the session is no longer running */
+            logger.debug("Unable to connect to session on port {}", port, e);
+            socket.close();
+            return false;
+        }
+        try {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            dos.writeUTF(token);
+            dos.writeUTF(workingDirectory.getAbsolutePath());
+            dos.writeUTF(command);
+            dos.flush();
+            while(true) {
+                int type = dis.read();
+                if(type==-1 || type==END)
+                    break;
+                if(type==OUTPUT) {
+                    byte[] buffer = new byte[dis.readInt()];
+                    dis.readFully(buffer);
+                    out.write(buffer);
+                    out.flush();
+                } else if(type==READ_LINE) {
+                    String line = in.readLine();
+                    dos.writeBoolean(line!=null);
+                    if(line!=null)
+                        dos.writeUTF(line);
+                    dos.flush();
+                } else {
+                    throw new IOException("Unexpected session frame type "+type);
+                }
+            }
+        } finally {
+            socket.close();
+        }
+        return true;
+    }
+
+    /**
+     * Writes output frames to an attached process
+     */
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+
+        FrameOutputStream(final DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if(len==0)
+                return;
+            synchronized(out) {
+                out.writeByte(OUTPUT);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized(out) {
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Reads input from an attached process, requesting a line each time the
+     * command needs more input
+     */
+    private static class LineRequestReader extends Reader {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final PrintStream output;
+        private String pending;
+        private int position;
+        private boolean eof;
+
+        LineRequestReader(final DataInputStream in, final DataOutputStream out, final PrintStream output) {
+            this.in = in;
+            this.out = out;
+            this.output = output;
+        }
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length) throws IOException {
+            if(eof)
+                return -1;
+            if(pending==null || position==pending.length()) {
+                /* Make sure any prompt has been sent before asking for input */
+                output.flush();
+                synchronized(out) {
+                    out.writeByte(READ_LINE);
+                    out.flush();
+                }
+                if(!in.readBoolean()) {
+                    eof = true;
+                    return -1;
+                }
+                pending = in.readUTF()+"\n";
+                position = 0;
+            }
+            int count = Math.min(length, pending.length()-position);
+            pending.getChars(position, position+count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            eof = true;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.rioproject.tools.cli;
 
+import net.jini.core.lookup.ServiceID;
 import net.jini.core.lookup.ServiceItem;
 import org.rioproject.cybernode.Cybernode;
 import org.rioproject.deploy.DeployAdmin;
@@ -71,24 +72,29 @@ public class Formatter {
 
     public static String[] formattedArray(ServiceItem[] items, int options) {
         List<OutputInfo> list = new ArrayList<OutputInfo>();
-        ServiceInfo[] serviceInfo = CLI.getInstance().finder.getServiceInfo();
+        Map<ServiceID, ServiceInfo> serviceInfo = new HashMap<ServiceID, ServiceInfo>();
+        for (ServiceInfo aServiceInfo : CLI.getInstance().finder.getServiceInfo()) {
+            serviceInfo.put(aServiceInfo.getServiceItem().serviceID, aServiceInfo);
+        }
+        /* Resolve the information for services not yet known all at once, rather
+         * than waiting on each in turn */
+        Map<ServiceID, Future<ServiceInfo>> pending = new HashMap<ServiceID, Future<ServiceInfo>>();
+        for (ServiceItem item : items) {
+            if(!serviceInfo.containsKey(item.serviceID) && !pending.containsKey(item.serviceID))
+                pending.put(item.serviceID, CLI.getInstance().finder.resolveServiceInfo(new ServiceInfo(item)));
+        }
+        long deadline = System.currentTimeMillis()+TimeUnit.SECONDS.toMillis(5);
         for(int i=0; i<items.length; i++) {
-            ServiceInfo sInfo = null;
-            for (ServiceInfo aServiceInfo : serviceInfo) {
-                ServiceItem item = aServiceInfo.getServiceItem();
-                if (item.serviceID.equals(items[i].serviceID)) {
-                    sInfo = aServiceInfo;
-                    break;
-                }
-            }
+            ServiceInfo sInfo = serviceInfo.get(items[i].serviceID);
             if(sInfo==null) {
-                sInfo = new ServiceInfo(items[i]);
-                Future<ServiceInfo> future = CLI.getInstance().finder.resolveServiceInfo(sInfo);
                 try {
-                    sInfo = future.get(5, TimeUnit.SECONDS);
+                    long wait = Math.max(0, deadline-System.currentTimeMillis());
+                    sInfo = pending.get(items[i].serviceID).get(wait, TimeUnit.MILLISECONDS);
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
+                if(sInfo==null)
+                    sInfo = new ServiceInfo(items[i]);
             }
 
             String name = sInfo.getServiceName();
@@ -263,8 +269,8 @@ public class Formatter {
                         String elapsed =TimeUtil.format(record.computeElapsedTime());
                         if(counter % listLength==0)
                             promptMore(br, out);
-                        System.out.format("\t%-18.18s %-18.18s %20s%n",
-                                          record.getName(), groups, elapsed);
+                        out.format("\t%-18.18s %-18.18s %20s%n",
+                                   record.getName(), groups, elapsed);
                         counter++;
                     }
                 }
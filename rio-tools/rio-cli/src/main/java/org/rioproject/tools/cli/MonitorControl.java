@@ -294,7 +294,7 @@ public class MonitorControl {
                         toDeploy = oar.loadOperationalStrings()[0];
                         oarUrl = new URL("http://"+embeddedWebster.getAddress()+":"+embeddedWebster.getPort()+"/"+oarFile.getName());
                     }
-                    System.out.println("===> "+oarUrl);
+                    out.println("===> "+oarUrl);
                 }
             } catch (Exception e) {
                 e.printStackTrace();
@@ -142,19 +142,19 @@ public class ServiceFinder {
             if(!CLI.getInstance().commandLine) {
                 results = allServicesCache.lookup(filter, Integer.MAX_VALUE);
                 if(results.length==0)
-                    System.out.println("num lookups "+ getDiscoveryManagement().getRegistrars().length+
-                                       ", total services "+results.length);
+                    CLI.getInstance().getOutput().println("num lookups "+ getDiscoveryManagement().getRegistrars().length+
+                                                          ", total services "+results.length);
                 else
-                    System.out.println("total services "+results.length);
+                    CLI.getInstance().getOutput().println("total services "+results.length);
             } else {
                 long timeOut = (Long) CLI.getInstance().settings.get(CLI.DISCOVERY_TIMEOUT);
                 long t0 = System.currentTimeMillis();
                 results = sdm.lookup(allServices, 1, Integer.MAX_VALUE, filter, timeOut);
                 long t1 = System.currentTimeMillis();
-                System.out.println("total "+results.length);
-                System.out.println("discovery time "+(t1-t0)+" millis, "+
-                                   ((t1-t0)/1000)+" seconds, "+
-                                   "timeout used "+timeOut);
+                CLI.getInstance().getOutput().println("total "+results.length);
+                CLI.getInstance().getOutput().println("discovery time "+(t1-t0)+" millis, "+
+                                                      ((t1-t0)/1000)+" seconds, "+
+                                                      "timeout used "+timeOut);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -181,16 +181,16 @@ public class ServiceFinder {
                 filter = new ServiceFilter(machines, attrs);
             if(!CLI.getInstance().commandLine) {
                 results = cybernodeCache.lookup(filter, Integer.MAX_VALUE);
-                System.out.println("total "+results.length);
+                CLI.getInstance().getOutput().println("total "+results.length);
             } else {
                 long timeOut =
                     (Long) CLI.getInstance().settings.get(CLI.DISCOVERY_TIMEOUT);
                 long t0 = System.currentTimeMillis();
                 results = sdm.lookup(cybernodeServices, 1, Integer.MAX_VALUE, filter, timeOut);
                 long t1 = System.currentTimeMillis();
-                System.out.println("total "+results.length);
-                System.out.println("discovery time "+(t1-t0)+" millis, "+
-                                   "timeout used "+timeOut);
+                CLI.getInstance().getOutput().println("total "+results.length);
+                CLI.getInstance().getOutput().println("discovery time "+(t1-t0)+" millis, "+
+                                                      "timeout used "+timeOut);
             }
 
         } catch (Exception e) {
@@ -235,7 +235,7 @@ public class ServiceFinder {
             if(!CLI.getInstance().commandLine) {
                 results = monitorCache.lookup(filter, Integer.MAX_VALUE);
                 if(verbose) {
-                    System.out.println("total "+results.length);
+                    CLI.getInstance().getOutput().println("total "+results.length);
                 }
             } else {
                 long timeOut = (Long) CLI.getInstance().settings.get(CLI.DISCOVERY_TIMEOUT);
@@ -243,9 +243,9 @@ public class ServiceFinder {
                 results = sdm.lookup(monitorServices, 1, Integer.MAX_VALUE, filter, timeOut);
                 if(verbose) {
                     long t1 = System.currentTimeMillis();
-                    System.out.println("total "+results.length);
-                    System.out.println("discovery time "+(t1-t0)+" millis, "+
-                            "timeout used "+timeOut);
+                    CLI.getInstance().getOutput().println("total "+results.length);
+                    CLI.getInstance().getOutput().println("discovery time "+(t1-t0)+" millis, "+
+                                                          "timeout used "+timeOut);
                 }
             }
         } catch (Exception e) {
@@ -464,12 +464,12 @@ public class ServiceFinder {
                 Throwable cause = t;
                 if(t.getCause()!=null)
                     cause = t.getCause();
-                System.out.println("Unable to administer service, exception " +
-                                   "preparing proxy ["+
-                                   cause.getClass().getName()+": "+
-                                   cause.getMessage()+
-                                   "], " +
-                                   "check log for details");
+                CLI.getInstance().getOutput().println("Unable to administer service, exception " +
+                                                      "preparing proxy ["+
+                                                      cause.getClass().getName()+": "+
+                                                      cause.getMessage()+
+                                                      "], " +
+                                                      "check log for details");
                 t.printStackTrace();  
             }
         }
@@ -101,9 +101,9 @@ import java.rmi.server.ExportException;
                  mutex.wait(maxTimeout);
                  interactive = false;
                  if(notificationCounter<serviceCounter) {
-                     System.out.println("\t- There are "+
-                                        "["+(serviceCounter-notificationCounter)+"] "+
-                                        "service provisioning requests outstanding");
+                     CLI.getInstance().getOutput().println("\t- There are "+
+                                                           "["+(serviceCounter-notificationCounter)+"] "+
+                                                           "service provisioning requests outstanding");
                  }
              } catch(InterruptedException e) {
                  e.printStackTrace();
@@ -124,9 +124,9 @@ import java.rmi.server.ExportException;
      public void succeeded(ServiceBeanInstance jsbInstance) throws RemoteException {
          provisionedSuccessfully++;         
          if(interactive)
-             System.out.println("\t["+(notificationCounter+1)+"] "+
-                                jsbInstance.getServiceBeanConfig().getName()+" "+
-                                "provisioned to\t"+jsbInstance.getHostAddress());
+             CLI.getInstance().getOutput().println("\t["+(notificationCounter+1)+"] "+
+                                                   jsbInstance.getServiceBeanConfig().getName()+" "+
+                                                   "provisioned to\t"+jsbInstance.getHostAddress());
          receivedNotify();
      }
      
@@ -135,7 +135,7 @@ import java.rmi.server.ExportException;
          provisionFailures++;
          receivedNotify();
          if(interactive)
-             System.out.println("\t"+sElem.getName()+" provision failure");
+             CLI.getInstance().getOutput().println("\t"+sElem.getName()+" provision failure");
      }
      
      public TrustVerifier getProxyVerifier() {
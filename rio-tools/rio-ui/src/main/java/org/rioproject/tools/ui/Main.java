@@ -857,12 +857,8 @@ public class Main extends JFrame {
     void refreshCybernodeTable() {
         if(cruTask!=null) {
             if(cup.getCount()>0) {
-                try {
-                    setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-                    cruTask.run();
-                } finally {
-                    setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
-                }
+                /* Remote calls are made by the task, keep them off the event dispatch thread */
+                scheduler.execute(cruTask);
             }
         }
     }
@@ -1227,17 +1223,18 @@ public class Main extends JFrame {
         public void run() {
             if(cancelled)
                 return;
-            Set<Map.Entry<ServiceItem,CybernodeAdmin>> tableSet;
+            List<Map.Entry<ServiceItem,CybernodeAdmin>> tableSet;
             synchronized(adminTable) {
-                tableSet = adminTable.entrySet();
+                tableSet = new ArrayList<Map.Entry<ServiceItem,CybernodeAdmin>>(adminTable.entrySet());
             }
+            Map<ServiceItem, ComputeResourceUtilization> utilizations =
+                new LinkedHashMap<ServiceItem, ComputeResourceUtilization>();
             for (Map.Entry<ServiceItem, CybernodeAdmin> mapEntry : tableSet) {
                 ServiceItem item = mapEntry.getKey();
                 Cybernode cybernode = (Cybernode)item.service;
                 CybernodeAdmin cAdmin = mapEntry.getValue();
                 try {
-                    ComputeResourceUtilization cru = getComputeResourceUtilization(cAdmin, item);
-                    cup.update(item, cAdmin, cru, utilizationColumnManager);
+                    utilizations.put(item, getComputeResourceUtilization(cAdmin, item));
                 } catch (Throwable e) {
                     if(!ThrowableUtil.isRetryable(e) &&
                        !(e instanceof NullPointerException)) {
@@ -1247,10 +1244,14 @@ public class Main extends JFrame {
                     }
                 }
             }
-            for(ServiceItem item : removals) {
-                adminTable.remove(item);
+            synchronized(adminTable) {
+                for(ServiceItem item : removals) {
+                    adminTable.remove(item);
+                }
             }
             removals.clear();
+            /* Fetch the services of each Cybernode and apply all updates in one pass */
+            cup.update(utilizations);
         }
     }
 
@@ -26,9 +26,7 @@ import org.rioproject.system.measurable.memory.SystemMemoryUtilization;
 import org.rioproject.tools.ui.Constants;
 import org.rioproject.tools.ui.UtilizationColumnManager;
 
-import javax.swing.*;
 import javax.swing.table.TableColumn;
-import java.awt.*;
 import java.text.NumberFormat;
 
 /**
@@ -130,7 +128,7 @@ public class ColumnValueHelper {
             value = (mem==null?"?" : format(mem.getResident(), " MB"));
         }
         if(isAThresholdColumn(cName)) {
-            return getThresholdLabel(cName, value, cru);
+            return getThresholdValue(cName, value, cru);
         }
         return (value);
     }
@@ -158,28 +156,21 @@ public class ColumnValueHelper {
         return ("?");
     }
 
-    private boolean isAThresholdColumn(final String columnName) {
+    static boolean isAThresholdColumn(final Object columnName) {
         boolean isA = false;
-        if(columnName.equals(Constants.UTIL_PERCENT_CPU)      ||
-           columnName.equals(Constants.UTIL_PERCENT_MEMORY)   ||
-           columnName.equals(Constants.UTIL_PERCENT_DISK)     ||
-           columnName.equals(Constants.UTIL_PERCENT_CPU_PROC) ||
-           columnName.equals(Constants.UTIL_PERCENT_HEAP_JVM)) {
+        if(Constants.UTIL_PERCENT_CPU.equals(columnName)      ||
+           Constants.UTIL_PERCENT_MEMORY.equals(columnName)   ||
+           Constants.UTIL_PERCENT_DISK.equals(columnName)     ||
+           Constants.UTIL_PERCENT_CPU_PROC.equals(columnName) ||
+           Constants.UTIL_PERCENT_HEAP_JVM.equals(columnName)) {
             isA = true;
         }
         return isA;
     }
 
-    private JLabel getThresholdLabel(final String columnName, final String text, final ComputeResourceUtilization cru) {
-        JLabel label = new JLabel(text);
+    private ThresholdValue getThresholdValue(final String columnName, final String text, final ComputeResourceUtilization cru) {
         MeasuredResource mRes = getMeasuredResource(columnName, cru);
-        if(mRes!=null && mRes.thresholdCrossed()) {
-            label.setForeground(new Color(178, 34, 34));
-            label.setFont(label.getFont().deriveFont(Font.BOLD));
-        } else {
-            label.setForeground(new Color(0, 100, 0));
-        }
-        return label;
+        return new ThresholdValue(text, mRes!=null && mRes.thresholdCrossed());
     }
 
     private MeasuredResource getMeasuredResource(final String columnName, final ComputeResourceUtilization cru) {
@@ -198,4 +189,27 @@ public class ColumnValueHelper {
         return mRes;
     }
 
+    /**
+     * The value of a threshold column, rendered based on whether the threshold
+     * of the measured resource has been crossed. Only cells that are painted
+     * are turned into components, by a single shared renderer.
+     */
+    static class ThresholdValue {
+        private final String text;
+        private final boolean thresholdCrossed;
+
+        ThresholdValue(final String text, final boolean thresholdCrossed) {
+            this.text = text;
+            this.thresholdCrossed = thresholdCrossed;
+        }
+
+        boolean isThresholdCrossed() {
+            return thresholdCrossed;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
 }
@@ -36,6 +36,7 @@ public class CybernodeNode extends AbstractMutableTreeTableNode implements CRUNo
     private String hostName;
     private final CybernodeAdmin admin;
     private final ColumnValueHelper columnValueHelper;
+    private volatile boolean supportsBatchedUtilization = true;
 
     public CybernodeNode(final ServiceItem item,
                          final CybernodeAdmin admin,
@@ -94,6 +95,18 @@ public class CybernodeNode extends AbstractMutableTreeTableNode implements CRUNo
         return cru;
     }
 
+    /*
+     * Whether the Cybernode's admin proxy provides
+     * CybernodeAdmin.getComputeResourceUtilizations(Uuid...)
+     */
+    boolean supportsBatchedUtilization() {
+        return supportsBatchedUtilization;
+    }
+
+    void setSupportsBatchedUtilization(final boolean supportsBatchedUtilization) {
+        this.supportsBatchedUtilization = supportsBatchedUtilization;
+    }
+
     public ServiceItem getServiceItem() {
         return item;
     }
@@ -31,6 +31,8 @@ import org.rioproject.system.ComputeResourceUtilization;
 import org.rioproject.tools.ui.serviceui.ServiceAdminManager;
 
 import javax.swing.*;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
 import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -74,25 +76,32 @@ public class CybernodeUtilizationPanel extends JPanel {
 
         List<String> columns = getColumns(selectedColumns);
 
+        final ThresholdCellRenderer thresholdRenderer = new ThresholdCellRenderer();
         treeTable = /*new JXTreeTable();*/
         new JXTreeTable() {
             @Override public TableCellRenderer getCellRenderer(int row, int column) {
-                Object value;
-                try {
-                    value = super.getValueAt(row, column);
-                } catch (IllegalArgumentException e) {
-                    value = null;
-                }
-                if(value != null) {
-                    if(value instanceof JLabel) {
-                        return new JLabelCellRenderer(((JLabel)value));
-                    }
-                    return super.getCellRenderer(row, column);
-                }
+                if(ColumnValueHelper.isAThresholdColumn(getColumnModel().getColumn(column).getHeaderValue()))
+                    return thresholdRenderer;
                 return super.getCellRenderer(row, column);
             }
         };
         utilizationModel = createModel(columns);
+        utilizationModel.addTreeModelListener(new TreeModelListener() {
+            public void treeNodesChanged(TreeModelEvent e) {
+            }
+
+            public void treeNodesInserted(TreeModelEvent e) {
+                statusPanel.repaint();
+            }
+
+            public void treeNodesRemoved(TreeModelEvent e) {
+                statusPanel.repaint();
+            }
+
+            public void treeStructureChanged(TreeModelEvent e) {
+                statusPanel.repaint();
+            }
+        });
 
         treeTable.setTreeTableModel(utilizationModel);
         treeTable.setRootVisible(false);
@@ -238,6 +247,7 @@ public class CybernodeUtilizationPanel extends JPanel {
                     row--;
                 }
                 expandAll = false;
+                utilizationModel.setExpandAll(false);
             }
         });
 
@@ -254,6 +264,7 @@ public class CybernodeUtilizationPanel extends JPanel {
                     row++;
                 }
                 expandAll = true;
+                utilizationModel.setExpandAll(true);
             }
         });
 
@@ -363,23 +374,26 @@ public class CybernodeUtilizationPanel extends JPanel {
                                                cru,
                                                new ColumnValueHelper(utilizationColumnManager, treeTable));
         utilizationModel.addCybernodeNode(node);
-        statusPanel.repaint();
     }
 
     public void removeCybernode(Cybernode item) {
         utilizationModel.removeCybernode(item);
-        statusPanel.repaint();
     }    
 
-    public void update(final ServiceItem item,
-                       final CybernodeAdmin admin,
-                       final ComputeResourceUtilization cru,
-                       final UtilizationColumnManager utilizationColumnManager) {
-        CybernodeNode node = new CybernodeNode(item,
-                                               admin,
-                                               cru,
-                                               new ColumnValueHelper(utilizationColumnManager, treeTable));
-        utilizationModel.updateCybernode(node);
+    /**
+     * Update the table with the latest compute resource utilization of
+     * Cybernodes. The services of each Cybernode are fetched using the calling
+     * thread, this method should not be invoked on the event dispatch thread.
+     *
+     * @param utilizations Map of Cybernode ServiceItems to their compute resource
+     * utilization
+     */
+    public void update(final Map<ServiceItem, ComputeResourceUtilization> utilizations) {
+        Map<Cybernode, ComputeResourceUtilization> updates = new LinkedHashMap<Cybernode, ComputeResourceUtilization>();
+        for(Map.Entry<ServiceItem, ComputeResourceUtilization> entry : utilizations.entrySet()) {
+            updates.put((Cybernode)entry.getKey().service, entry.getValue());
+        }
+        utilizationModel.updateCybernodes(updates);
     }
 
     public void updateCybernodesAt(final String hostAddress) {
@@ -387,25 +401,32 @@ public class CybernodeUtilizationPanel extends JPanel {
     }
 
     /**
-     * Renderer for nodes that use a JLabel
+     * Renderer for threshold columns, shared by all cells
      */
-    class JLabelCellRenderer extends DefaultTableCellRenderer {
-        final JLabel label;
-        public JLabelCellRenderer(JLabel label) {
-            super();
-            this.label = label;
+    static class ThresholdCellRenderer extends DefaultTableCellRenderer {
+        private final Color thresholdCrossedColor = new Color(178, 34, 34);
+        private final Color normalColor = new Color(0, 100, 0);
+        private Font font;
+        private Font boldFont;
 
-        }
         public Component getTableCellRendererComponent(JTable table,
                                                        Object value,
                                                        boolean isSelected,
                                                        boolean hasFocus,
                                                        int row,
                                                        int column) {
-            setValue(value);
-            return label;
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            if(value instanceof ColumnValueHelper.ThresholdValue) {
+                if(font!=table.getFont()) {
+                    font = table.getFont();
+                    boldFont = font.deriveFont(Font.BOLD);
+                }
+                boolean thresholdCrossed = ((ColumnValueHelper.ThresholdValue)value).isThresholdCrossed();
+                setForeground(thresholdCrossed?thresholdCrossedColor:normalColor);
+                setFont(thresholdCrossed?boldFont:font);
+            }
+            return this;
         }
-
     }
 
     class ServiceItemAccessor {
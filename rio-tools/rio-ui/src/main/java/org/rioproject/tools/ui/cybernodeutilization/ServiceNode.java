@@ -62,7 +62,11 @@ public class ServiceNode extends AbstractMutableTreeTableNode implements CRUNode
     }
 
     public boolean isForked() {
-        return (getServiceElement().forkService() || getServiceElement().getExecDescriptor()!=null);
+        return isForked(getServiceElement());
+    }
+
+    static boolean isForked(final ServiceElement element) {
+        return (element.forkService() || element.getExecDescriptor()!=null);
     }
 
     public ComputeResourceUtilization getComputeResourceUtilization() {
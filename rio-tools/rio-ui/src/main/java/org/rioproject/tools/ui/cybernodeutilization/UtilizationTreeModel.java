@@ -15,32 +15,44 @@
  */
 package org.rioproject.tools.ui.cybernodeutilization;
 
+import net.jini.id.Uuid;
 import org.jdesktop.swingx.JXTreeTable;
 import org.jdesktop.swingx.treetable.AbstractMutableTreeTableNode;
 import org.jdesktop.swingx.treetable.DefaultTreeTableModel;
 import org.jdesktop.swingx.treetable.MutableTreeTableNode;
 import org.jdesktop.swingx.treetable.TreeTableNode;
 import org.rioproject.cybernode.Cybernode;
-import org.rioproject.cybernode.CybernodeAdmin;
 import org.rioproject.deploy.ServiceRecord;
 import org.rioproject.system.ComputeResourceUtilization;
 
+import javax.swing.*;
 import javax.swing.tree.TreePath;
 import java.rmi.RemoteException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.rmi.UnmarshalException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 /**
+ * The model for the Cybernode utilization tree table.
+ *
+ * <p>Remote state is fetched off the event dispatch thread, one batched fetch
+ * per Cybernode: the active {@code ServiceRecord}s and, in a single call, the
+ * utilization of all forked services. Fetched updates are queued and applied to
+ * the model in one pass on the event dispatch thread; updates for a Cybernode
+ * that arrive before the pending pass runs replace each other, so a slow event
+ * dispatch thread sees only the latest state.
+ *
  * @author Dennis Reedy
  */
 public class UtilizationTreeModel extends DefaultTreeTableModel {
     private boolean expandAll;
     private final JXTreeTable treeTable;
     private final Executor updateHandler = Executors.newSingleThreadExecutor();
+    private final Map<Cybernode, CybernodeNode> cybernodes = new ConcurrentHashMap<Cybernode, CybernodeNode>();
+    private final Map<CybernodeNode, CybernodeUpdate> pendingUpdates = new LinkedHashMap<CybernodeNode, CybernodeUpdate>();
+    private boolean applyScheduled;
 
     public UtilizationTreeModel(final TreeTableNode root,
                                 final java.util.List<String> columns,
@@ -53,36 +65,40 @@ public class UtilizationTreeModel extends DefaultTreeTableModel {
         this.expandAll = expandAll;
     }
 
+    /**
+     * Get the number of Cybernodes that have services instantiated. The count is
+     * taken from the model, no remote calls are made.
+     *
+     * @return The number of Cybernodes that have services instantiated
+     */
     public int getCybernodesInUse() {
         int inUse = 0;
         for (int i = 0; i < getRoot().getChildCount(); i++) {
-            CybernodeNode node = (CybernodeNode) getRoot().getChildAt(i);
-            try {
-                Integer num = ((CybernodeAdmin) node.getCybernode().getAdmin()).getServiceCount();
-                if (num > 0)
-                    inUse++;
-            } catch (Throwable t) {
-                t.printStackTrace();
-            }
+            if (getRoot().getChildAt(i).getChildCount() > 0)
+                inUse++;
         }
         return (inUse);
     }
 
-    public synchronized void addCybernodeNode(final CybernodeNode item) {
-        insertNodeInto(item, (MutableTreeTableNode) getRoot(), getRoot().getChildCount());
-        modelSupport.firePathChanged(nodeToTreePath(getRoot()));
-        setServices(item);
+    public void addCybernodeNode(final CybernodeNode item) {
+        cybernodes.put(item.getCybernode(), item);
+        updateHandler.execute(new Runnable() {
+            public void run() {
+                post(Collections.singletonList(fetch(item, null)));
+            }
+        });
     }
 
     public void removeCybernode(final Cybernode item) {
-        for (int i = 0; i < getRoot().getChildCount(); i++) {
-            CybernodeNode node = (CybernodeNode) getRoot().getChildAt(i);
-            if (item.equals(node.getCybernode())) {
-                removeNodeFromParent(node);
-                break;
+        final CybernodeNode node = cybernodes.remove(item);
+        if (node == null)
+            return;
+        onEventDispatchThread(new Runnable() {
+            public void run() {
+                if (node.getParent() != null)
+                    removeNodeFromParent(node);
             }
-        }
-        modelSupport.firePathChanged(nodeToTreePath(getRoot()));
+        });
     }
 
     public ServiceNode getServiceNode(final int row) {
@@ -96,150 +112,202 @@ public class UtilizationTreeModel extends DefaultTreeTableModel {
     }
 
     public AbstractMutableTreeTableNode getNode(final int row) {
-        int rowCounter = 0;
-        AbstractMutableTreeTableNode node = null;
-
-        for (int i = 0; i < getRoot().getChildCount(); i++) {
-            AbstractMutableTreeTableNode tn = (AbstractMutableTreeTableNode) getRoot().getChildAt(i);
-            if (rowCounter == row) {
-                node = tn;
-                break;
-            }
-            rowCounter++;
-            for (int j = 0; j < tn.getChildCount(); j++) {
-                AbstractMutableTreeTableNode t = (AbstractMutableTreeTableNode) tn.getChildAt(j);
-                if (treeTable.isVisible(treeTable.getPathForRow(rowCounter))) {
-                    if (rowCounter == row) {
-                        node = t;
-                        break;
-                    }
-                    rowCounter++;
-                }
-            }
-
-            if (node != null)
-                break;
-        }
-        return node;
+        TreePath path = treeTable.getPathForRow(row);
+        Object node = (path == null ? null : path.getLastPathComponent());
+        return (node instanceof AbstractMutableTreeTableNode ? (AbstractMutableTreeTableNode) node : null);
     }
 
     public int getCybernodeCount() {
         return (getRoot().getChildCount());
     }
 
-    public void updateCybernode(final CybernodeNode node) {
-        int row = getCybernodeRow(node.getCybernode());
-        if (row != -1) {
-            setValueAt(node, row);
-        } else {
-            System.err.println("Could not update Cybernode at ["+node+"], unable to find table row");
+    /**
+     * Update Cybernodes with their latest compute resource utilization. The
+     * services of each Cybernode are fetched using the calling thread, and the
+     * results are applied to the model in a single pass on the event dispatch
+     * thread.
+     *
+     * @param utilizations Map of Cybernodes to their compute resource
+     * utilization, must not be {@code null}
+     */
+    public void updateCybernodes(final Map<Cybernode, ComputeResourceUtilization> utilizations) {
+        List<CybernodeUpdate> updates = new ArrayList<CybernodeUpdate>();
+        for (Map.Entry<Cybernode, ComputeResourceUtilization> entry : utilizations.entrySet()) {
+            CybernodeNode node = cybernodes.get(entry.getKey());
+            if (node == null) {
+                System.err.println("Could not update Cybernode ["+entry.getKey()+"], it is not in the table");
+                continue;
+            }
+            updates.add(fetch(node, entry.getValue()));
         }
+        post(updates);
     }
 
     public void updateCybernodesAt(final String hostAddress) {
         updateHandler.execute(new Runnable() {
-            List<CybernodeNode> nodes = new ArrayList<CybernodeNode>();
             public void run() {
-                for(int i=0; i<getRoot().getChildCount(); i++) {
-                    nodes.add((CybernodeNode)getChild(getRoot(), i));
-                }
-                for(CybernodeNode node : nodes) {
-                    if(node.getHostName().equals(hostAddress)) {
-                        setServices(node);
+                List<CybernodeUpdate> updates = new ArrayList<CybernodeUpdate>();
+                for (CybernodeNode node : cybernodes.values()) {
+                    if (node.getHostName().equals(hostAddress)) {
+                        updates.add(fetch(node, null));
                     }
                 }
+                post(updates);
             }
         });
     }
 
-    public void setValueAt(final Object item, final int row) {
-        CybernodeNode node = getCybernodeNode(row);
-        if (node != null) {
-            node.setComputeResourceUtilization(((CybernodeNode) item).getComputeResourceUtilization());
-            setServices(node);
-            modelSupport.firePathChanged(nodeToTreePath(node));
-        }
-    }
-
-    private void setServices(final CybernodeNode node) {
-        java.util.List<ServiceRecord> serviceList = new ArrayList<ServiceRecord>();
+    /*
+     * Fetch the services of a Cybernode and the utilization of its forked
+     * services. Not called on the event dispatch thread.
+     */
+    private CybernodeUpdate fetch(final CybernodeNode node, final ComputeResourceUtilization cru) {
+        ServiceRecord[] records = null;
         try {
-            ServiceRecord[] records = node.getCybernode().getServiceRecords(ServiceRecord.ACTIVE_SERVICE_RECORD);
-            serviceList.addAll(Arrays.asList(records));
+            records = node.getCybernode().getServiceRecords(ServiceRecord.ACTIVE_SERVICE_RECORD);
         } catch (RemoteException e) {
             e.printStackTrace();
         }
-        List<ServiceNode> removals = new ArrayList<ServiceNode>();
-        ServiceRecord[] cybernodeServices =
-            serviceList.toArray(new ServiceRecord[serviceList.size()]);
-
-        for (int i = 0; i < node.getChildCount(); i++) {
-            boolean found = false;
-            ServiceNode sNode = (ServiceNode) node.getChildAt(i);
-            for (ServiceRecord record : cybernodeServices) {
-                if (sNode.getName().equals(record.getServiceElement().getName())) {
-                    if (serviceList.remove(record)) {
-                        found = true;
-                        setServiceNodeUtilization(sNode, node.getAdmin());
-                        break;
-                    }
-                }
+        Map<Uuid, ComputeResourceUtilization> serviceUtilizations = Collections.emptyMap();
+        if (records != null) {
+            List<Uuid> forked = new ArrayList<Uuid>();
+            for (ServiceRecord record : records) {
+                if (ServiceNode.isForked(record.getServiceElement()))
+                    forked.add(record.getServiceID());
             }
-            if (!found)
-                removals.add(sNode);
-        }
-
-        /* Remove services */
-        for (ServiceNode sNode : removals) {
-            removeNodeFromParent(sNode);
+            if (!forked.isEmpty())
+                serviceUtilizations = getServiceUtilizations(node, forked);
         }
+        return new CybernodeUpdate(node, cru, records, serviceUtilizations);
+    }
 
-        /* Add new services */
-        for (ServiceRecord record : serviceList) {
-            ServiceNode sNode = new ServiceNode(record, node.getColumnHelper());
-            setServiceNodeUtilization(sNode, node.getAdmin());
-            insertNodeInto(sNode, node, node.getChildCount());
-        }
-        try {
-            modelSupport.fireTreeStructureChanged(nodeToTreePath(node));
-        } catch(Exception e) {
-            e.printStackTrace();
+    /*
+     * Get the compute resource utilization for forked services in a single
+     * call, falling back to a call per service for Cybernodes whose proxy or
+     * service does not provide the batched method. If the batched call fails
+     * for another remote failure, the calls per service are made for this
+     * update only
+     */
+    private Map<Uuid, ComputeResourceUtilization> getServiceUtilizations(final CybernodeNode node,
+                                                                         final List<Uuid> serviceUuids) {
+        if (node.supportsBatchedUtilization()) {
+            try {
+                return node.getAdmin().getComputeResourceUtilizations(serviceUuids.toArray(new Uuid[serviceUuids.size()]));
+            } catch (AbstractMethodError e) {
+                /* The proxy predates the batched method */
+                node.setSupportsBatchedUtilization(false);
+            } catch (UnmarshalException e) {
+                /* The Cybernode predates the batched method, and does not recognize it */
+                node.setSupportsBatchedUtilization(false);
+            } catch (RemoteException e) {
+                e.printStackTrace();
+            }
         }
-        if (expandAll) {
-            treeTable.expandRow(getCybernodeRow(node.getCybernode()));
+        Map<Uuid, ComputeResourceUtilization> serviceUtilizations = new HashMap<Uuid, ComputeResourceUtilization>();
+        for (Uuid serviceUuid : serviceUuids) {
+            try {
+                ComputeResourceUtilization cru = node.getAdmin().getComputeResourceUtilization(serviceUuid);
+                if (cru != null)
+                    serviceUtilizations.put(serviceUuid, cru);
+            } catch (RemoteException e) {
+                e.printStackTrace();
+                break;
+            }
         }
+        return serviceUtilizations;
     }
 
-    private int getCybernodeRow(final Cybernode item) {
-        int rowCounter = 0;
-        for (int i = 0; i < getRoot().getChildCount(); i++) {
-            CybernodeNode node = (CybernodeNode) getRoot().getChildAt(i);
-            if (item.equals(node.getCybernode())) {
-                return (rowCounter);
+    /*
+     * Queue updates, scheduling a pass on the event dispatch thread if one is
+     * not already pending
+     */
+    private void post(final Collection<CybernodeUpdate> updates) {
+        synchronized (pendingUpdates) {
+            for (CybernodeUpdate update : updates) {
+                CybernodeUpdate pending = pendingUpdates.get(update.node);
+                pendingUpdates.put(update.node, pending == null ? update : update.merge(pending));
             }
-            rowCounter++;
-            for (int j = 0; j < node.getChildCount(); j++) {
-                TreeTableNode t = node.getChildAt(j);
-                if (treeTable.isVisible(nodeToTreePath(t))) {
-                    rowCounter++;
-                }
+            if (applyScheduled || pendingUpdates.isEmpty())
+                return;
+            applyScheduled = true;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                applyPendingUpdates();
+            }
+        });
+    }
+
+    private void applyPendingUpdates() {
+        List<CybernodeUpdate> updates;
+        synchronized (pendingUpdates) {
+            updates = new ArrayList<CybernodeUpdate>(pendingUpdates.values());
+            pendingUpdates.clear();
+            applyScheduled = false;
+        }
+        for (CybernodeUpdate update : updates) {
+            try {
+                apply(update);
+            } catch (Exception e) {
+                e.printStackTrace();
             }
         }
-        return (-1);
     }
 
     /*
-     * set the compute resource utilization for a ServiceNode
+     * Apply an update to the model, must be called on the event dispatch thread
      */
-    private void setServiceNodeUtilization(final ServiceNode sNode, final CybernodeAdmin cAdmin) {
-        if (sNode.isForked()) {
-            try {
-                ComputeResourceUtilization util = cAdmin.getComputeResourceUtilization(sNode.getUuid());
-                sNode.setComputeResourceUtilization(util);
-            } catch (RemoteException e) {
-                e.printStackTrace();
+    private void apply(final CybernodeUpdate update) {
+        CybernodeNode node = update.node;
+        /* The Cybernode has been removed (or replaced) since the update was fetched */
+        if (cybernodes.get(node.getCybernode()) != node)
+            return;
+        MutableTreeTableNode root = (MutableTreeTableNode) getRoot();
+        if (node.getParent() == null)
+            insertNodeInto(node, root, root.getChildCount());
+        if (update.cru != null)
+            node.setComputeResourceUtilization(update.cru);
+
+        boolean added = false;
+        if (update.records != null) {
+            Map<Uuid, ServiceRecord> records = new LinkedHashMap<Uuid, ServiceRecord>();
+            for (ServiceRecord record : update.records)
+                records.put(record.getServiceID(), record);
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                ServiceNode sNode = (ServiceNode) node.getChildAt(i);
+                if (records.remove(sNode.getUuid()) == null)
+                    removeNodeFromParent(sNode);
+            }
+            for (ServiceRecord record : records.values()) {
+                insertNodeInto(new ServiceNode(record, node.getColumnHelper()), node, node.getChildCount());
+                added = true;
             }
         }
+
+        int childCount = node.getChildCount();
+        int[] indices = new int[childCount];
+        Object[] children = new Object[childCount];
+        for (int i = 0; i < childCount; i++) {
+            ServiceNode sNode = (ServiceNode) node.getChildAt(i);
+            ComputeResourceUtilization cru = update.serviceUtilizations.get(sNode.getUuid());
+            if (cru != null)
+                sNode.setComputeResourceUtilization(cru);
+            indices[i] = i;
+            children[i] = sNode;
+        }
+        TreePath path = nodeToTreePath(node);
+        modelSupport.firePathChanged(path);
+        if (childCount > 0)
+            modelSupport.fireChildrenChanged(path, indices, children);
+        if (added && expandAll)
+            treeTable.expandPath(path);
+    }
+
+    private void onEventDispatchThread(final Runnable runnable) {
+        if (SwingUtilities.isEventDispatchThread())
+            runnable.run();
+        else
+            SwingUtilities.invokeLater(runnable);
     }
 
     private TreePath nodeToTreePath(final TreeTableNode n) {
@@ -257,4 +325,41 @@ public class UtilizationTreeModel extends DefaultTreeTableModel {
         }
         return ret;
     }
+
+    /**
+     * The state of a Cybernode and its services, fetched off the event dispatch
+     * thread
+     */
+    private static class CybernodeUpdate {
+        final CybernodeNode node;
+        final ComputeResourceUtilization cru;
+        /* null if the records could not be fetched, existing service nodes are left as is */
+        final ServiceRecord[] records;
+        final Map<Uuid, ComputeResourceUtilization> serviceUtilizations;
+
+        CybernodeUpdate(final CybernodeNode node,
+                        final ComputeResourceUtilization cru,
+                        final ServiceRecord[] records,
+                        final Map<Uuid, ComputeResourceUtilization> serviceUtilizations) {
+            this.node = node;
+            this.cru = cru;
+            this.records = records;
+            this.serviceUtilizations = serviceUtilizations;
+        }
+
+        /*
+         * Merge with an update that has not been applied yet, values in this
+         * update replace those of the older update, values this update does
+         * not have are kept
+         */
+        CybernodeUpdate merge(final CybernodeUpdate older) {
+            Map<Uuid, ComputeResourceUtilization> merged =
+                new HashMap<Uuid, ComputeResourceUtilization>(older.serviceUtilizations);
+            merged.putAll(serviceUtilizations);
+            return new CybernodeUpdate(node,
+                                       cru == null ? older.cru : cru,
+                                       records == null ? older.records : records,
+                                       merged);
+        }
+    }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.tools.webster;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A bounded, size-aware cache of file contents served by Webster. Entries are
+ * validated against the file's modification time and length on each access,
+ * and evicted least recently used first once the total size of the cached
+ * content exceeds the configured capacity. Files larger than the maximum
+ * entry size are not cached.
+ *
+ * <p>If enabled, a gzip variant of each cached file is computed when the file
+ * is loaded. The variant is only kept if it is meaningfully smaller than the
+ * file, already compressed content such as JARs typically is not. Concurrent
+ * requests for a file that is not cached result in a single read of the file.
+ */
+class FileCache {
+    /* Keep the gzip variant only if it is at most this fraction of the original */
+    private static final double MIN_COMPRESSION = 0.9;
+    private final long capacity;
+    private final long maxEntrySize;
+    private final boolean gzip;
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final ConcurrentMap<String, FutureTask<Entry>> loading = new ConcurrentHashMap<String, FutureTask<Entry>>();
+    private long size;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Create a FileCache
+     *
+     * @param capacity The maximum number of bytes of file content (including
+     * gzip variants) to hold
+     * @param maxEntrySize Files larger than this are not cached
+     * @param gzip Whether to compute gzip variants of cached files
+     */
+    FileCache(final long capacity, final long maxEntrySize, final boolean gzip) {
+        if(capacity<=0)
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        this.capacity = capacity;
+        this.maxEntrySize = Math.min(maxEntrySize, capacity);
+        this.gzip = gzip;
+    }
+
+    /**
+     * Get the cached content of a file, loading it if it is not cached or the
+     * file has changed since it was cached
+     *
+     * @param file The file, must not be null
+     *
+     * @return The cached content, or null if the file is not a regular file or
+     * is too large to cache
+     *
+     * @throws IOException if the file cannot be read
+     */
+    Entry get(final File file) throws IOException {
+        if(file==null)
+            throw new IllegalArgumentException("file is null");
+        if(!file.isFile())
+            return null;
+        long lastModified = file.lastModified();
+        long length = file.length();
+        if(length>maxEntrySize)
+            return null;
+        String key = file.getAbsolutePath();
+        synchronized(entries) {
+            Entry entry = entries.get(key);
+            if(entry!=null) {
+                if(entry.lastModified==lastModified && entry.length==length) {
+                    hits.incrementAndGet();
+                    return entry;
+                }
+                remove(key);
+                invalidations.incrementAndGet();
+            }
+        }
+        FutureTask<Entry> task = new FutureTask<Entry>(new Loader(file, lastModified));
+        FutureTask<Entry> existing = loading.putIfAbsent(key, task);
+        if(existing==null) {
+            misses.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                loading.remove(key, task);
+            }
+        } else {
+            hits.incrementAndGet();
+            task = existing;
+        }
+        try {
+            Entry entry = task.get();
+            if(existing==null)
+                put(key, entry);
+            return entry;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted loading "+file.getPath());
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new IOException("Loading "+file.getPath(), e.getCause());
+        }
+    }
+
+    /**
+     * Remove a file from the cache, used when a file is written or deleted
+     *
+     * @param file The file to remove
+     */
+    void invalidate(final File file) {
+        synchronized(entries) {
+            if(remove(file.getAbsolutePath())!=null)
+                invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the statistics of the cache
+     *
+     * @return The current statistics. A new object is created each time.
+     */
+    Statistics getStatistics() {
+        synchronized(entries) {
+            return new Statistics(hits.get(),
+                                  misses.get(),
+                                  evictions.get(),
+                                  invalidations.get(),
+                                  entries.size(),
+                                  size,
+                                  capacity);
+        }
+    }
+
+    private void put(final String key, final Entry entry) {
+        synchronized(entries) {
+            Entry replaced = entries.put(key, entry);
+            if(replaced!=null)
+                size -= replaced.getSize();
+            size += entry.getSize();
+            for(Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext() && size>capacity;) {
+                Map.Entry<String, Entry> eldest = it.next();
+                if(eldest.getValue()==entry)
+                    continue;
+                size -= eldest.getValue().getSize();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private Entry remove(final String key) {
+        Entry entry = entries.remove(key);
+        if(entry!=null)
+            size -= entry.getSize();
+        return entry;
+    }
+
+    private class Loader implements Callable<Entry> {
+        private final File file;
+        private final long lastModified;
+
+        Loader(final File file, final long lastModified) {
+            this.file = file;
+            this.lastModified = lastModified;
+        }
+
+        public Entry call() throws IOException {
+            byte[] content = read(file);
+            byte[] compressed = null;
+            if(gzip && content.length>0) {
+                byte[] deflated = compress(content);
+                if(deflated.length <= content.length*MIN_COMPRESSION)
+                    compressed = deflated;
+            }
+            return new Entry(content, compressed, lastModified);
+        }
+    }
+
+    static byte[] read(final File file) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            byte[] content = new byte[(int)file.length()];
+            in.readFully(content);
+            return content;
+        } finally {
+            in.close();
+        }
+    }
+
+    static byte[] compress(final byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length/2);
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(content);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The cached content of a file
+     */
+    static class Entry {
+        private final byte[] content;
+        private final byte[] gzipContent;
+        private final long lastModified;
+        private final long length;
+
+        Entry(final byte[] content, final byte[] gzipContent, final long lastModified) {
+            this.content = content;
+            this.gzipContent = gzipContent;
+            this.lastModified = lastModified;
+            this.length = content.length;
+        }
+
+        byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * @return The gzip compressed content, or null if there is no gzip variant
+         */
+        byte[] getGzipContent() {
+            return gzipContent;
+        }
+
+        long getSize() {
+            return content.length+(gzipContent==null?0:gzipContent.length);
+        }
+    }
+
+    /**
+     * Hit, miss and eviction counts, and the current size of the cache
+     */
+    static class Statistics {
+        final long hits;
+        final long misses;
+        final long evictions;
+        final long invalidations;
+        final int entries;
+        final long size;
+        final long capacity;
+
+        Statistics(final long hits,
+                   final long misses,
+                   final long evictions,
+                   final long invalidations,
+                   final int entries,
+                   final long size,
+                   final long capacity) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.entries = entries;
+            this.size = size;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public String toString() {
+            return "hits="+hits+"\n"+
+                   "misses="+misses+"\n"+
+                   "evictions="+evictions+"\n"+
+                   "invalidations="+invalidations+"\n"+
+                   "entries="+entries+"\n"+
+                   "size="+size+"\n"+
+                   "capacity="+capacity+"\n";
+        }
+    }
+}
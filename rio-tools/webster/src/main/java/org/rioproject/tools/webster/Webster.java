@@ -49,14 +49,42 @@ import java.util.concurrent.ThreadPoolExecutor;
  * directories which are separated by a <code>;</code></td>
  * <td>System.getProperty(user.home)</td>
  * </tr>
+ * <tr>
+ * <td>org.rioproject.tools.webster.cache.size</td>
+ * <td>The maximum number of bytes of file content held in memory for files
+ * that are requested often. Files are revalidated against their modification
+ * time and length on each request. A value of 0 disables the cache</td>
+ * <td>33554432</td>
+ * </tr>
+ * <tr>
+ * <td>org.rioproject.tools.webster.cache.maxFileSize</td>
+ * <td>Files larger than this (in bytes) are not cached, and are read from disk
+ * on each request</td>
+ * <td>8388608</td>
+ * </tr>
+ * <tr>
+ * <td>org.rioproject.tools.webster.cache.gzip</td>
+ * <td>Whether a gzip variant of cached files is kept, and served to clients
+ * that send <code>Accept-Encoding: gzip</code></td>
+ * <td>true</td>
+ * </tr>
  * 
  * </table>
  *
+ * <p>If the cache is enabled, a <code>GET</code> of {@link #CACHE_STATUS_PATH}
+ * returns the cache hit, miss and eviction counts.
+ *
  * @author Dennis Reedy
  */
 @SuppressWarnings("PMD.AvoidThrowingRawExceptionTypes")
 public class Webster implements Runnable {
     static final int DEFAULT_MAX_THREADS = 10;
+    static final long DEFAULT_CACHE_SIZE = 32*1024*1024;
+    static final long DEFAULT_CACHE_MAX_FILE_SIZE = 8*1024*1024;
+    /**
+     * The path that returns the statistics of the file cache
+     */
+    public static final String CACHE_STATUS_PATH = ".webster/cache";
     private ServerSocket ss;
     private int port;
     private boolean run = true;
@@ -69,6 +97,7 @@ public class Webster implements Runnable {
     private com.sun.jini.start.LifeCycle lifeCycle;
     private boolean debug = false;
     private ServerSocketFactory socketFactory;
+    private FileCache fileCache;
     private static String SERVER_DESCRIPTION=Webster.class.getName();
 
     /**
@@ -257,6 +286,15 @@ public class Webster implements Runnable {
         if(d != null)
             debug = true;
         setupRoots(roots);
+        long cacheSize = Long.getLong("org.rioproject.tools.webster.cache.size", DEFAULT_CACHE_SIZE);
+        if(cacheSize>0) {
+            long maxFileSize = Long.getLong("org.rioproject.tools.webster.cache.maxFileSize",
+                                            DEFAULT_CACHE_MAX_FILE_SIZE);
+            String gzip = System.getProperty("org.rioproject.tools.webster.cache.gzip", "true");
+            fileCache = new FileCache(cacheSize, maxFileSize, Boolean.parseBoolean(gzip));
+            if(logger.isDebugEnabled())
+                logger.debug("Webster file cache size ["+cacheSize+"], max file size ["+maxFileSize+"], gzip ["+gzip+"]");
+        }
         try {
             InetAddress addr;
             if(bindAddress==null) {
@@ -414,23 +452,65 @@ public class Webster implements Runnable {
     }
 
     /*
-     * Read the request and return the initial request line.
+     * Read the request and return the initial request line. The request
+     * header fields are added to the provided Properties. The stream is left
+     * positioned at the start of the request body, if any.
      */
-    private String getRequest(Socket sock) throws IOException {
-        BufferedInputStream in = new BufferedInputStream(sock.getInputStream(),
-                                                         256);
+    private String getRequest(BufferedInputStream in, Properties header) throws IOException {
         StringBuffer buf = new StringBuffer(80);
         do {
             if(!readLine(in, buf))
                 return (null);
         } while (buf.length() == 0);
         String req = buf.toString();
-        do {
+        while(true) {
             buf.setLength(0);
-        } while (readLine(in, buf) && buf.length() > 0);
+            if(!readLine(in, buf) || buf.length()==0)
+                break;
+            int ndx = buf.indexOf(":");
+            if(ndx>0)
+                header.setProperty(buf.substring(0, ndx).trim(), buf.substring(ndx+1).trim());
+        }
         return (req);
     }
 
+    /**
+     * Get the statistics of the file cache
+     *
+     * @return The hit, miss, eviction and invalidation counts and the size of
+     * the file cache, one per line. If the file cache is disabled, return null.
+     */
+    public String getFileCacheStatistics() {
+        return fileCache==null?null:fileCache.getStatistics().toString();
+    }
+
+    /*
+     * Determine whether the client accepts a gzip encoded response
+     */
+    static boolean acceptsGzip(Properties header) {
+        String acceptEncoding = ignoreCaseProperty(header, "Accept-Encoding");
+        if(acceptEncoding==null)
+            return false;
+        for(String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if(parts[0].trim().equalsIgnoreCase("gzip")) {
+                return !(parts.length>1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?"));
+            }
+        }
+        return false;
+    }
+
+    static String ignoreCaseProperty(Properties props, String field) {
+        Enumeration names = props.propertyNames();
+        while (names.hasMoreElements()) {
+            String propName = (String)names.nextElement();
+            if(field.equalsIgnoreCase(propName)) {
+                return (props.getProperty(propName));
+            }
+        }
+        return (null);
+    }
+
     public void run() {
         Socket s  ;
         try {
@@ -444,7 +524,9 @@ public class Webster implements Runnable {
                 String line;
                 Properties header = new Properties();
                 try {
-                    line = getRequest(s);
+                    /* The same stream is used to read the body of a PUT, it may already hold buffered content */
+                    BufferedInputStream in = new BufferedInputStream(s.getInputStream(), 256);
+                    line = getRequest(in, header);
                     int port = s.getPort();
                     String from = s.getInetAddress().getHostAddress()+":"+port;
                     if(debug) {
@@ -489,9 +571,9 @@ public class Webster implements Runnable {
                             }
                         }
                         if(header.getProperty("GET") != null) {
-                            pool.execute(new GetFile(s, fileName));
+                            pool.execute(new GetFile(s, fileName, acceptsGzip(header)));
                         } else if(header.getProperty("PUT") != null) {
-                            pool.execute(new PutFile(s, fileName, header));
+                            pool.execute(new PutFile(s, in, fileName, header));
                         } else if(header.getProperty("DELETE") != null) {
                             pool.execute(new DelFile(s, fileName));
                         } else if(header.getProperty("HEAD") != null) {
@@ -752,17 +834,24 @@ public class Webster implements Runnable {
         private Socket client;
         private String fileName;
         private int fileLength;
+        private boolean acceptsGzip;
 
-        GetFile(Socket s, String fileName) {
+        GetFile(Socket s, String fileName, boolean acceptsGzip) {
             client = s;
             this.fileName = fileName;
+            this.acceptsGzip = acceptsGzip;
         }
 
         public void run() {
             StringBuilder dirData = new StringBuilder();
             StringBuilder logData = new StringBuilder();
             DataInputStream requestedFile = null;
+            byte[] content = null;
             try {
+                if(fileCache!=null && fileName.equals(CACHE_STATUS_PATH)) {
+                    sendCacheStatistics();
+                    return;
+                }
                 File getFile = parseFileName(fileName);
                 logData.append("Do GET: input=")
                     .append(fileName)
@@ -802,10 +891,24 @@ public class Webster implements Runnable {
                              + fileLength
                              + "\r\n\r\n";
                 } else if(getFile.exists()) {
-                    requestedFile =
-                        new DataInputStream(
-                             new BufferedInputStream(new FileInputStream(getFile)));
-                    fileLength = requestedFile.available();
+                    FileCache.Entry cached = fileCache==null?null:fileCache.get(getFile);
+                    String encoding = "";
+                    if(cached!=null) {
+                        content = cached.getContent();
+                        if(cached.getGzipContent()!=null) {
+                            encoding = "Vary: Accept-Encoding\n";
+                            if(acceptsGzip) {
+                                content = cached.getGzipContent();
+                                encoding += "Content-Encoding: gzip\n";
+                            }
+                        }
+                        fileLength = content.length;
+                    } else {
+                        requestedFile =
+                            new DataInputStream(
+                                 new BufferedInputStream(new FileInputStream(getFile)));
+                        fileLength = requestedFile.available();
+                    }
                     String fileType =
                         fileName.substring(fileName.lastIndexOf(".") + 1,
                                            fileName.length());
@@ -816,6 +919,7 @@ public class Webster implements Runnable {
                              + "Content-Type: "
                              + fileType
                              + "\n"
+                             + encoding
                              + "Content-Length: "
                              + fileLength
                              + "\r\n\r\n";
@@ -830,9 +934,14 @@ public class Webster implements Runnable {
                 if(getFile.isDirectory()) {
                     clientStream.writeBytes(dirData.toString());
                 } else if(getFile.exists()) {
-                    byte[] buffer = new byte[fileLength];
-                    requestedFile.readFully(buffer);
+                    byte[] buffer = content;
+                    if(buffer==null) {
+                        buffer = new byte[fileLength];
+                        requestedFile.readFully(buffer);
+                    }
                     logData.append("file size: [").append(fileLength).append("]");
+                    if(content!=null)
+                        logData.append(", cached");
                     try {
                         clientStream.write(buffer);
                     } catch(Exception e) {
@@ -870,15 +979,34 @@ public class Webster implements Runnable {
                 }
             }
         } // end of GetFile
+
+        private void sendCacheStatistics() throws IOException {
+            byte[] statistics = fileCache.getStatistics().toString().getBytes("UTF-8");
+            DataOutputStream clientStream =
+                new DataOutputStream(
+                           new BufferedOutputStream(client.getOutputStream()));
+            clientStream.writeBytes("HTTP/1.1 200 OK\n"
+                                    + "Allow: GET\nMIME-Version: 1.0\n"
+                                    + "Server: "+SERVER_DESCRIPTION+"\n"
+                                    + "Content-Type: text/plain\n"
+                                    + "Content-Length: "
+                                    + statistics.length
+                                    + "\r\n\r\n");
+            clientStream.write(statistics);
+            clientStream.flush();
+            clientStream.close();
+        }
     }
     class PutFile implements Runnable {
         private Socket client;
+        private InputStream in;
         private String fileName;
         private Properties rheader;
 
-        PutFile(Socket s, String fileName, Properties header) {
+        PutFile(Socket s, InputStream in, String fileName, Properties header) {
             rheader = header;
             client = s;
+            this.in = in;
             this.fileName = fileName;
         }
 
@@ -902,12 +1030,17 @@ public class Webster implements Runnable {
                              + "\n\n <H1>201 File Created</H1>\n";
                 }
                 FileOutputStream requestedFile = new FileOutputStream(putFile);
-                InputStream in = client.getInputStream();
                 int length = Integer.parseInt(ignoreCaseProperty(rheader,
                                                                  "Content-Length"));
                 try {
-                    for(int i = 0; i < length; i++) {
-                        requestedFile.write(in.read());
+                    byte[] buffer = new byte[8*1024];
+                    int remaining = length;
+                    while(remaining > 0) {
+                        int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                        if(read < 0)
+                            throw new EOFException("Expected "+length+" bytes, received "+(length-remaining));
+                        requestedFile.write(buffer, 0, read);
+                        remaining -= read;
                     }
                 } catch(IOException e) {
                     header = "HTTP/1.1 500 Internal Server Error\n"
@@ -923,6 +1056,8 @@ public class Webster implements Runnable {
                 clientStream.writeBytes(header);
                 clientStream.flush();
                 close(requestedFile);
+                if(fileCache!=null)
+                    fileCache.invalidate(putFile);
                 close(clientStream);
             } catch(Exception e) {
                 logger.warn("Closing Socket", e);
@@ -934,17 +1069,6 @@ public class Webster implements Runnable {
                 }
             }
         }
-
-        public String ignoreCaseProperty(Properties props, String field) {
-            Enumeration names = props.propertyNames();
-            while (names.hasMoreElements()) {
-                String propName = (String)names.nextElement();
-                if(field.equalsIgnoreCase(propName)) {
-                    return (props.getProperty(propName));
-                }
-            }
-            return (null);
-        }
     } // end of PutFile
     
     class DelFile implements Runnable {
@@ -968,6 +1092,8 @@ public class Webster implements Runnable {
                              + "\n\n <H1>404 File not Found</H1>\n"
                              + "<BR>";
                 } else if(putFile.delete()) {
+                    if(fileCache!=null)
+                        fileCache.invalidate(putFile);
                     header = "HTTP/1.1 200 OK\n"
                              + "Allow: PUT\n"
                              + "MIME-Version: 1.0\n"
@@ -0,0 +1,153 @@
+/*
+ * Copyright to the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rioproject.tools.webster;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Unit tests for the Webster FileCache
+ */
+public class FileCacheUTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHitAndMiss() throws IOException {
+        File file = write("a.txt", 1000, false);
+        FileCache cache = new FileCache(10000, 10000, false);
+        FileCache.Entry first = cache.get(file);
+        Assert.assertNotNull(first);
+        Assert.assertArrayEquals(FileCache.read(file), first.getContent());
+        Assert.assertSame(first, cache.get(file));
+        FileCache.Statistics stats = cache.getStatistics();
+        Assert.assertEquals(1, stats.misses);
+        Assert.assertEquals(1, stats.hits);
+        Assert.assertEquals(1000, stats.size);
+    }
+
+    @Test
+    public void testModifiedFileIsReloaded() throws IOException {
+        File file = write("a.txt", 1000, false);
+        FileCache cache = new FileCache(10000, 10000, false);
+        FileCache.Entry first = cache.get(file);
+        write("a.txt", 500, false);
+        FileCache.Entry second = cache.get(file);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(500, second.getContent().length);
+        Assert.assertEquals(1, cache.getStatistics().invalidations);
+        Assert.assertEquals(500, cache.getStatistics().size);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws IOException {
+        File a = write("a.txt", 400, false);
+        File b = write("b.txt", 400, false);
+        File c = write("c.txt", 400, false);
+        FileCache cache = new FileCache(1000, 1000, false);
+        cache.get(a);
+        cache.get(b);
+        cache.get(a);
+        cache.get(c);
+        FileCache.Statistics stats = cache.getStatistics();
+        Assert.assertEquals(1, stats.evictions);
+        Assert.assertEquals(2, stats.entries);
+        Assert.assertEquals(800, stats.size);
+        /* b was evicted, a was not */
+        cache.get(a);
+        Assert.assertEquals(3, cache.getStatistics().misses);
+    }
+
+    @Test
+    public void testLargeFileIsNotCached() throws IOException {
+        File file = write("big.txt", 2000, false);
+        FileCache cache = new FileCache(10000, 1000, false);
+        Assert.assertNull(cache.get(file));
+        Assert.assertNull(cache.get(folder.getRoot()));
+        Assert.assertEquals(0, cache.getStatistics().entries);
+    }
+
+    @Test
+    public void testGzipVariant() throws IOException {
+        File text = write("a.txt", 5000, false);
+        File random = write("b.bin", 5000, true);
+        FileCache cache = new FileCache(100000, 100000, true);
+        FileCache.Entry entry = cache.get(text);
+        Assert.assertNotNull(entry.getGzipContent());
+        Assert.assertTrue(entry.getGzipContent().length<entry.getContent().length);
+        Assert.assertArrayEquals(entry.getContent(), gunzip(entry.getGzipContent()));
+        /* Content that does not compress has no gzip variant */
+        Assert.assertNull(cache.get(random).getGzipContent());
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        File file = write("a.txt", 1000, false);
+        FileCache cache = new FileCache(10000, 10000, false);
+        cache.get(file);
+        cache.invalidate(file);
+        Assert.assertEquals(0, cache.getStatistics().entries);
+        Assert.assertEquals(0, cache.getStatistics().size);
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        Assert.assertFalse(Webster.acceptsGzip(new Properties()));
+        Assert.assertTrue(Webster.acceptsGzip(header("gzip, deflate")));
+        Assert.assertTrue(Webster.acceptsGzip(header("deflate, GZIP;q=0.5")));
+        Assert.assertFalse(Webster.acceptsGzip(header("gzip;q=0")));
+        Assert.assertFalse(Webster.acceptsGzip(header("identity")));
+    }
+
+    private Properties header(String acceptEncoding) {
+        Properties header = new Properties();
+        header.setProperty("accept-encoding", acceptEncoding);
+        return header;
+    }
+
+    private File write(String name, int size, boolean random) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        byte[] content = new byte[size];
+        if(random)
+            new java.util.Random(size).nextBytes(content);
+        else
+            Arrays.fill(content, (byte)'r');
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private byte[] gunzip(byte[] content) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(content));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while((read = in.read(buffer))!=-1)
+            out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+}
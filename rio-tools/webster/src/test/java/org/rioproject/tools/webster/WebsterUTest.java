@@ -19,13 +19,11 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.rioproject.net.PortRangeServerSocketFactory;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.net.BindException;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
+import java.net.Socket;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
@@ -177,6 +175,47 @@ public class WebsterUTest {
         Assert.assertTrue(items.size() == cwd.list().length);
     }
 
+    @Test
+    public void verifyPutToWebster() throws IOException {
+        File root = File.createTempFile("webster", "put");
+        Assert.assertTrue(root.delete());
+        Assert.assertTrue(root.mkdirs());
+        Webster w = new Webster(0, root.getAbsolutePath());
+        try {
+            StringBuilder content = new StringBuilder();
+            for(int i=0; i<1000; i++)
+                content.append("line ").append(i).append("\n");
+            byte[] body = content.toString().getBytes("UTF-8");
+            /* The request line, header and body are sent together, so the body is read along with the header */
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            request.write(("PUT /put.txt HTTP/1.1\r\nContent-Length: "+body.length+"\r\n\r\n").getBytes("UTF-8"));
+            request.write(body);
+            Socket socket = new Socket(w.getAddress(), w.getPort());
+            try {
+                socket.getOutputStream().write(request.toByteArray());
+                socket.getOutputStream().flush();
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                Assert.assertTrue(in.readLine().startsWith("HTTP/1.1 201"));
+            } finally {
+                socket.close();
+            }
+            File put = new File(root, "put.txt");
+            Assert.assertEquals(body.length, put.length());
+            byte[] written = new byte[body.length];
+            DataInputStream in = new DataInputStream(new FileInputStream(put));
+            try {
+                in.readFully(written);
+            } finally {
+                in.close();
+            }
+            Assert.assertArrayEquals(body, written);
+            Assert.assertTrue(put.delete());
+        } finally {
+            w.terminate();
+            root.delete();
+        }
+    }
+
     private List<String> get(int port) throws IOException {
         URL url = new URL("http://" + InetAddress.getLocalHost().getHostAddress() + ":" + port);
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();